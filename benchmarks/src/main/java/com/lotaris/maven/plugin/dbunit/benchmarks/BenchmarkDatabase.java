@@ -0,0 +1,237 @@
+package com.lotaris.maven.plugin.dbunit.benchmarks;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.Arrays;
+
+/**
+ * Database generated for a benchmark, in memory or on disk. The tables BENCH_0 to BENCH_n
+ * have an integer primary key, a reference to the previous table and the
+ * configured number of VARCHAR columns filled to the configured width, so the
+ * tables have to be ordered and the rows grow with the width.
+ *
+ * @author Laurent Prévost <laurent.prevost@lotaris.com>
+ */
+public class BenchmarkDatabase implements AutoCloseable {
+	/**
+	 * HSQLDB 1.8, the database of the plugin tests
+	 */
+	public static final String HSQLDB = "hsqldb";
+
+	public static final String H2 = "h2";
+
+	private final String database;
+
+	private final String url;
+
+	/**
+	 * Directory of the files of the database, null when in memory
+	 */
+	private final File directory;
+
+	private final int tables;
+
+	private final int columns;
+
+	private final int width;
+
+	private final Connection connection;
+
+	//<editor-fold defaultstate="collapsed" desc="Constructors">
+	/**
+	 * Constructor, creates the tables without rows
+	 *
+	 * @param database The database, hsqldb or h2
+	 * @param name The name of the in-memory database, unique per benchmark
+	 * @param tables The number of tables
+	 * @param columns The number of VARCHAR columns of each table
+	 * @param width The number of characters of the values
+	 * @throws Exception When the database cannot be created
+	 */
+	public BenchmarkDatabase(String database, String name, int tables, int columns, int width) throws Exception {
+		this(database, name, tables, columns, width, false);
+	}
+
+	/**
+	 * Constructor, creates the tables without rows. On disk, the rows do not
+	 * take the heap of the benchmark, so the memory of the plugin can be
+	 * measured on large tables.
+	 *
+	 * @param database The database, hsqldb or h2
+	 * @param name The name of the database, unique per benchmark
+	 * @param tables The number of tables
+	 * @param columns The number of VARCHAR columns of each table
+	 * @param width The number of characters of the values
+	 * @param onDisk True to store the database in a temporary directory
+	 * @throws Exception When the database cannot be created
+	 */
+	public BenchmarkDatabase(String database, String name, int tables, int columns, int width, boolean onDisk) throws Exception {
+		this.database = database;
+		this.tables = tables;
+		this.columns = columns;
+		this.width = width;
+
+		if (onDisk) {
+			directory = File.createTempFile("benchmark-" + name, "");
+			directory.delete();
+			directory.mkdirs();
+		}
+		else {
+			directory = null;
+		}
+
+		switch (database) {
+			case HSQLDB:
+				Class.forName("org.hsqldb.jdbcDriver");
+				url = onDisk ? "jdbc:hsqldb:file:" + new File(directory, name).getAbsolutePath() : "jdbc:hsqldb:mem:" + name;
+				break;
+			case H2:
+				Class.forName("org.h2.Driver");
+				url = onDisk ? "jdbc:h2:file:" + new File(directory, name).getAbsolutePath() : "jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1";
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown benchmark database " + database + ", use hsqldb or h2");
+		}
+
+		// Kept open so the database lives as long as the benchmark
+		connection = DriverManager.getConnection(url, "sa", "");
+		createTables();
+	}
+	//</editor-fold>
+
+	//<editor-fold defaultstate="collapsed" desc="Getters & Setters">
+	public String getUrl() {
+		return url;
+	}
+
+	public String getDriver() {
+		return HSQLDB.equals(database) ? "org.hsqldb.jdbcDriver" : "org.h2.Driver";
+	}
+
+	public String getDataTypeFactoryName() {
+		return HSQLDB.equals(database) ? "org.dbunit.ext.hsqldb.HsqldbDataTypeFactory" : "org.dbunit.ext.h2.H2DataTypeFactory";
+	}
+
+	public int getTables() {
+		return tables;
+	}
+	//</editor-fold>
+
+	private void createTables() throws SQLException {
+		try (Statement statement = connection.createStatement()) {
+			for (int t = 0; t < tables; t++) {
+				// The cached tables of HSQLDB keep their rows on disk, the memory tables are loaded in the heap
+				StringBuilder sql = new StringBuilder(directory != null && HSQLDB.equals(database) ? "CREATE CACHED TABLE BENCH_" : "CREATE TABLE BENCH_").append(t).append(" (ID INT PRIMARY KEY, PARENT_ID INT");
+				for (int c = 0; c < columns; c++) {
+					sql.append(", C").append(c).append(" VARCHAR(").append(width).append(")");
+				}
+				if (t > 0) {
+					sql.append(", CONSTRAINT FK_BENCH_").append(t).append(" FOREIGN KEY (PARENT_ID) REFERENCES BENCH_").append(t - 1).append(" (ID)");
+				}
+				statement.execute(sql.append(")").toString());
+			}
+		}
+	}
+
+	/**
+	 * Insert the rows in all the tables, parents first
+	 *
+	 * @param rows The number of rows of each table
+	 * @throws SQLException When the rows cannot be inserted
+	 */
+	public void fill(int rows) throws SQLException {
+		char[] chars = new char[width];
+		Arrays.fill(chars, 'x');
+		String value = new String(chars);
+
+		connection.setAutoCommit(false);
+		try {
+			for (int t = 0; t < tables; t++) {
+				StringBuilder sql = new StringBuilder("INSERT INTO BENCH_").append(t).append(" VALUES (?, ?");
+				for (int c = 0; c < columns; c++) {
+					sql.append(", ?");
+				}
+
+				try (PreparedStatement statement = connection.prepareStatement(sql.append(")").toString())) {
+					for (int row = 0; row < rows; row++) {
+						statement.setInt(1, row);
+						if (t > 0) {
+							statement.setInt(2, row);
+						}
+						else {
+							statement.setNull(2, Types.INTEGER);
+						}
+
+						// A distinct prefix per row keeps the values realistic for the sorts and comparisons
+						String prefix = row + "-";
+						String rowValue = prefix.length() < width ? prefix + value.substring(prefix.length()) : value.substring(0, width);
+						for (int c = 0; c < columns; c++) {
+							statement.setString(c + 3, rowValue);
+						}
+						statement.addBatch();
+
+						if (row % 1000 == 999) {
+							statement.executeBatch();
+						}
+
+						// Bounds the undo log of the large tables
+						if (row % 100000 == 99999) {
+							connection.commit();
+						}
+					}
+					statement.executeBatch();
+				}
+			}
+			connection.commit();
+		}
+		finally {
+			connection.setAutoCommit(true);
+		}
+	}
+
+	/**
+	 * Delete the rows of all the tables, children first
+	 *
+	 * @throws SQLException When the rows cannot be deleted
+	 */
+	public void clear() throws SQLException {
+		try (Statement statement = connection.createStatement()) {
+			for (int t = tables - 1; t >= 0; t--) {
+				statement.executeUpdate("DELETE FROM BENCH_" + t);
+			}
+		}
+	}
+
+	/**
+	 * Drop the database and delete its files
+	 *
+	 * @throws SQLException When the database cannot be shut down
+	 */
+	@Override
+	public void close() throws SQLException {
+		try (Statement statement = connection.createStatement()) {
+			statement.execute("SHUTDOWN");
+		}
+		finally {
+			connection.close();
+			delete(directory);
+		}
+	}
+
+	private static void delete(File file) {
+		if (file != null) {
+			File[] children = file.listFiles();
+			if (children != null) {
+				for (File child : children) {
+					delete(child);
+				}
+			}
+			file.delete();
+		}
+	}
+}
@@ -0,0 +1,90 @@
+package com.lotaris.maven.plugin.dbunit.benchmarks;
+
+import com.lotaris.maven.plugin.dbunit.CompareMojo;
+import com.lotaris.maven.plugin.dbunit.ExportMojo;
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Comparison of the database with a flat XML data set of the same rows by the
+ * compare goal, with the DB Unit and the streaming engines.
+ *
+ * @author Laurent Prévost <laurent.prevost@lotaris.com>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CompareBenchmark {
+	@Param({"hsqldb", "h2"})
+	public String database;
+
+	@Param({"false", "true"})
+	public boolean streaming;
+
+	/**
+	 * Only used by the streaming comparison
+	 */
+	@Param({"1"})
+	public int threads;
+
+	@Param({"1000", "10000"})
+	public int rows;
+
+	@Param({"16", "256"})
+	public int width;
+
+	@Param({"4"})
+	public int tables;
+
+	@Param({"8"})
+	public int columns;
+
+	private BenchmarkDatabase benchmarkDatabase;
+
+	private File src;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		benchmarkDatabase = new BenchmarkDatabase(database, "compare", tables, columns, width);
+		benchmarkDatabase.fill(rows);
+
+		src = File.createTempFile("compare-benchmark", ".xml");
+		ExportMojo export = Mojos.configure(new ExportMojo(), benchmarkDatabase);
+		Mojos.set(export, "dest", src);
+		Mojos.set(export, "format", "flat");
+		export.execute();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		benchmarkDatabase.close();
+		src.delete();
+	}
+
+	@Benchmark
+	public void compare() throws Exception {
+		CompareMojo mojo = Mojos.configure(new CompareMojo(), benchmarkDatabase);
+		Mojos.set(mojo, "src", src);
+		Mojos.set(mojo, "format", "flat");
+		Mojos.set(mojo, "streaming", streaming);
+		Mojos.set(mojo, "threads", threads);
+		Mojos.set(mojo, "report", null);
+		mojo.execute();
+	}
+}
@@ -0,0 +1,85 @@
+package com.lotaris.maven.plugin.dbunit.benchmarks;
+
+import com.lotaris.maven.plugin.dbunit.ExportMojo;
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * End to end export of the database by the export goal, per format and engine.
+ * The score is the time of a whole export, the schema metadata included.
+ *
+ * @author Laurent Prévost <laurent.prevost@lotaris.com>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ExportBenchmark {
+	@Param({"hsqldb", "h2"})
+	public String database;
+
+	@Param({"flat", "xml", "binary"})
+	public String format;
+
+	/**
+	 * The binary format is always written by the streaming export
+	 */
+	@Param({"false", "true"})
+	public boolean streaming;
+
+	@Param({"1000", "10000"})
+	public int rows;
+
+	@Param({"16", "256"})
+	public int width;
+
+	@Param({"4"})
+	public int tables;
+
+	@Param({"8"})
+	public int columns;
+
+	private BenchmarkDatabase benchmarkDatabase;
+
+	private File dest;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		benchmarkDatabase = new BenchmarkDatabase(database, "export", tables, columns, width);
+		benchmarkDatabase.fill(rows);
+		dest = File.createTempFile("export-benchmark", "." + format);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		benchmarkDatabase.close();
+		dest.delete();
+	}
+
+	@Benchmark
+	public long export() throws Exception {
+		ExportMojo mojo = Mojos.configure(new ExportMojo(), benchmarkDatabase);
+		Mojos.set(mojo, "dest", dest);
+		Mojos.set(mojo, "format", format);
+		Mojos.set(mojo, "streaming", streaming);
+		Mojos.set(mojo, "ordered", true);
+		mojo.execute();
+
+		return dest.length();
+	}
+}
@@ -0,0 +1,63 @@
+package com.lotaris.maven.plugin.dbunit.benchmarks;
+
+import com.lotaris.maven.plugin.dbunit.model.UnitColumn;
+import com.lotaris.maven.plugin.dbunit.model.UnitTable;
+import java.sql.Types;
+import java.util.concurrent.TimeUnit;
+import org.dbunit.ant.Query;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Building of the queries of a table from its metadata, done once per table by
+ * the export and once per chunk by the chunked export.
+ *
+ * @author Laurent Prévost <laurent.prevost@lotaris.com>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ExtractQueryBenchmark {
+	@Param({"4", "32", "256"})
+	public int columns;
+
+	@Param({"1", "3"})
+	public int keyColumns;
+
+	private UnitTable table;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		table = new UnitTable("BENCH_TABLE");
+		for (int i = 0; i < columns; i++) {
+			UnitColumn column = new UnitColumn("COLUMN_" + i, Types.VARCHAR, "VARCHAR", 32, i >= keyColumns, i + 1);
+			if (i < keyColumns) {
+				column.setPrimaryKeySequence(i + 1);
+			}
+			table.addColumn(column);
+		}
+	}
+
+	@Benchmark
+	public Query buildExtractQuery() {
+		return table.buildExtractQuery();
+	}
+
+	@Benchmark
+	public String buildChunkQuery() {
+		return table.buildChunkQuery(false);
+	}
+}
@@ -0,0 +1,110 @@
+package com.lotaris.maven.plugin.dbunit.benchmarks;
+
+import com.lotaris.maven.plugin.dbunit.ExportMojo;
+import com.lotaris.maven.plugin.dbunit.OperationMojo;
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Import of a data set by the operation goal, per format and operation type.
+ * The database is prepared before each invocation, out of the measure: emptied
+ * for INSERT, filled with the rows of the data set for the other types. The
+ * size of the data set file is printed when it is exported, to compare the
+ * formats. The streaming import is measured by {@link StreamingImportBenchmark}.
+ *
+ * @author Laurent Prévost <laurent.prevost@lotaris.com>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ImportBenchmark {
+	@Param({"hsqldb", "h2"})
+	public String database;
+
+	@Param({"flat", "xml", "binary"})
+	public String format;
+
+	@Param({"CLEAN_INSERT", "INSERT", "UPDATE", "REFRESH", "DELETE_ALL"})
+	public String type;
+
+	@Param({"1000", "10000"})
+	public int rows;
+
+	@Param({"16", "256"})
+	public int width;
+
+	@Param({"4"})
+	public int tables;
+
+	@Param({"8"})
+	public int columns;
+
+	private BenchmarkDatabase benchmarkDatabase;
+
+	private File src;
+
+	private boolean filled;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		benchmarkDatabase = new BenchmarkDatabase(database, "import", tables, columns, width);
+		benchmarkDatabase.fill(rows);
+		filled = true;
+
+		src = File.createTempFile("import-benchmark", "." + format);
+		ExportMojo export = Mojos.configure(new ExportMojo(), benchmarkDatabase);
+		Mojos.set(export, "dest", src);
+		Mojos.set(export, "format", format);
+		Mojos.set(export, "ordered", true);
+		export.execute();
+
+		System.out.println("Data set of " + rows + " rows per table in " + format + ": " + src.length() + " bytes");
+	}
+
+	@Setup(Level.Invocation)
+	public void prepare() throws Exception {
+		if ("INSERT".equals(type)) {
+			if (filled) {
+				benchmarkDatabase.clear();
+				filled = false;
+			}
+		}
+		else if (!filled) {
+			benchmarkDatabase.fill(rows);
+			filled = true;
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		benchmarkDatabase.close();
+		src.delete();
+	}
+
+	@Benchmark
+	public void apply() throws Exception {
+		OperationMojo mojo = Mojos.configure(new OperationMojo(), benchmarkDatabase);
+		Mojos.set(mojo, "src", src);
+		Mojos.set(mojo, "format", format);
+		Mojos.set(mojo, "type", type);
+		mojo.execute();
+
+		filled = !"DELETE_ALL".equals(type);
+	}
+}
@@ -0,0 +1,69 @@
+package com.lotaris.maven.plugin.dbunit.benchmarks;
+
+import com.lotaris.maven.plugin.dbunit.database.MetadataLoader;
+import com.lotaris.maven.plugin.dbunit.model.UnitSchema;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Discovery of the schema metadata, as done by the export before building the
+ * queries of the tables.
+ *
+ * @author Laurent Prévost <laurent.prevost@lotaris.com>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MetadataBenchmark {
+	@Param({"hsqldb", "h2"})
+	public String database;
+
+	@Param({"10", "100"})
+	public int tables;
+
+	@Param({"4", "32"})
+	public int columns;
+
+	@Param({"true", "false"})
+	public boolean loadKeys;
+
+	private BenchmarkDatabase benchmarkDatabase;
+
+	private Connection connection;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		benchmarkDatabase = new BenchmarkDatabase(database, "metadata", tables, columns, 16);
+		connection = DriverManager.getConnection(benchmarkDatabase.getUrl(), "sa", "");
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		connection.close();
+		benchmarkDatabase.close();
+	}
+
+	@Benchmark
+	public UnitSchema load() throws Exception {
+		MetadataLoader loader = new MetadataLoader(null);
+		loader.setLoadKeys(loadKeys);
+		return loader.load(connection);
+	}
+}
@@ -0,0 +1,62 @@
+package com.lotaris.maven.plugin.dbunit.benchmarks;
+
+import com.lotaris.maven.plugin.dbunit.AbstractDbUnitMojo;
+import java.lang.reflect.Field;
+import org.apache.maven.monitor.logging.DefaultLog;
+import org.codehaus.plexus.logging.Logger;
+import org.codehaus.plexus.logging.console.ConsoleLogger;
+
+/**
+ * Configure the goals of the plugin outside of a build. The parameters are set
+ * the way Maven injects them, on the fields, and only the warnings are logged
+ * so that the logging does not weigh on the measures.
+ *
+ * @author Laurent Prévost <laurent.prevost@lotaris.com>
+ */
+public final class Mojos {
+	private Mojos() {}
+
+	/**
+	 * Connect a goal to a benchmark database
+	 *
+	 * @param <T> The type of the goal
+	 * @param mojo The goal
+	 * @param database The database
+	 * @return The goal
+	 */
+	public static <T extends AbstractDbUnitMojo> T configure(T mojo, BenchmarkDatabase database) {
+		set(mojo, "driver", database.getDriver());
+		set(mojo, "url", database.getUrl());
+		set(mojo, "username", "sa");
+		set(mojo, "password", "");
+		set(mojo, "dataTypeFactoryName", database.getDataTypeFactoryName());
+		mojo.setLog(new DefaultLog(new ConsoleLogger(Logger.LEVEL_WARN, "benchmark")));
+		return mojo;
+	}
+
+	/**
+	 * Set a parameter of a goal
+	 *
+	 * @param mojo The goal
+	 * @param name The name of the parameter field
+	 * @param value The value
+	 */
+	public static void set(Object mojo, String name, Object value) {
+		for (Class<?> type = mojo.getClass(); type != null; type = type.getSuperclass()) {
+			try {
+				Field field = type.getDeclaredField(name);
+				field.setAccessible(true);
+				field.set(mojo, value);
+				return;
+			}
+			catch (NoSuchFieldException e) {
+				// Declared by a super class
+			}
+			catch (IllegalAccessException e) {
+				throw new IllegalStateException("Unable to set the parameter " + name, e);
+			}
+		}
+
+		throw new IllegalArgumentException("Unknown parameter " + name + " of " + mojo.getClass().getSimpleName());
+	}
+}
@@ -0,0 +1,113 @@
+package com.lotaris.maven.plugin.dbunit.benchmarks;
+
+import com.lotaris.maven.plugin.dbunit.ExportMojo;
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Peak heap of the streaming export of a large table. The database is on disk
+ * so its rows do not take the heap, and the fork is limited to 256 MB so an
+ * export that keeps the rows in memory fails instead of being measured. The
+ * peak heap of the export is printed at the end of each iteration; run with
+ * -prof gc for the allocation rate:
+ * <pre>
+ * java -jar target/benchmarks.jar StreamingExportHeapBenchmark -prof gc
+ * </pre>
+ *
+ * @author Laurent Prévost <laurent.prevost@lotaris.com>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx256m")
+public class StreamingExportHeapBenchmark {
+	/**
+	 * H2 spools the large results to disk, HSQLDB 1.8 keeps the whole result in the heap
+	 */
+	@Param({"h2"})
+	public String database;
+
+	@Param({"flat", "xml", "binary"})
+	public String format;
+
+	@Param({"10000000"})
+	public int rows;
+
+	@Param({"16"})
+	public int width;
+
+	@Param({"4"})
+	public int columns;
+
+	private BenchmarkDatabase benchmarkDatabase;
+
+	private File dest;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		benchmarkDatabase = new BenchmarkDatabase(database, "heap", 1, columns, width, true);
+		benchmarkDatabase.fill(rows);
+		dest = File.createTempFile("heap-benchmark", "." + format);
+	}
+
+	@Setup(Level.Iteration)
+	public void resetPeak() {
+		System.gc();
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				pool.resetPeakUsage();
+			}
+		}
+	}
+
+	/**
+	 * Prints the sum of the peaks of the heap pools, an upper bound of the
+	 * peak heap as the pools do not peak at the same time
+	 */
+	@TearDown(Level.Iteration)
+	public void printPeak() {
+		long peak = 0;
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (pool.getType() == MemoryType.HEAP) {
+				peak += pool.getPeakUsage().getUsed();
+			}
+		}
+		System.out.println("Peak heap of the export of " + rows + " rows to " + format + ": " + peak / (1024 * 1024) + " MB, file of " + dest.length() / (1024 * 1024) + " MB");
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		benchmarkDatabase.close();
+		dest.delete();
+	}
+
+	@Benchmark
+	public long export() throws Exception {
+		ExportMojo mojo = Mojos.configure(new ExportMojo(), benchmarkDatabase);
+		Mojos.set(mojo, "dest", dest);
+		Mojos.set(mojo, "format", format);
+		Mojos.set(mojo, "streaming", true);
+		Mojos.set(mojo, "ordered", true);
+		mojo.execute();
+
+		return dest.length();
+	}
+}
@@ -0,0 +1,102 @@
+package com.lotaris.maven.plugin.dbunit.benchmarks;
+
+import com.lotaris.maven.plugin.dbunit.ExportMojo;
+import com.lotaris.maven.plugin.dbunit.OperationMojo;
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Import of a data set by the streaming operation, per format, inserted by
+ * batches or loaded by the bulk loader of the database. Only the types that
+ * insert rows without reading the existing ones can be streamed. The database
+ * is on disk, as the HSQLDB bulk loader requires, and is emptied before each
+ * invocation, out of the measure.
+ *
+ * @author Laurent Prévost <laurent.prevost@lotaris.com>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class StreamingImportBenchmark {
+	@Param({"hsqldb", "h2"})
+	public String database;
+
+	@Param({"flat", "xml", "binary"})
+	public String format;
+
+	@Param({"CLEAN_INSERT", "INSERT"})
+	public String type;
+
+	/**
+	 * False to insert the rows by JDBC batches, true to load them with the bulk loader
+	 */
+	@Param({"false", "true"})
+	public boolean bulkLoad;
+
+	@Param({"1000", "10000"})
+	public int rows;
+
+	@Param({"16", "256"})
+	public int width;
+
+	@Param({"4"})
+	public int tables;
+
+	@Param({"8"})
+	public int columns;
+
+	private BenchmarkDatabase benchmarkDatabase;
+
+	private File src;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		benchmarkDatabase = new BenchmarkDatabase(database, "streaming", tables, columns, width, true);
+		benchmarkDatabase.fill(rows);
+
+		src = File.createTempFile("streaming-import-benchmark", "." + format);
+		ExportMojo export = Mojos.configure(new ExportMojo(), benchmarkDatabase);
+		Mojos.set(export, "dest", src);
+		Mojos.set(export, "format", format);
+		Mojos.set(export, "ordered", true);
+		export.execute();
+	}
+
+	@Setup(Level.Invocation)
+	public void prepare() throws Exception {
+		benchmarkDatabase.clear();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		benchmarkDatabase.close();
+		src.delete();
+	}
+
+	@Benchmark
+	public void apply() throws Exception {
+		OperationMojo mojo = Mojos.configure(new OperationMojo(), benchmarkDatabase);
+		Mojos.set(mojo, "src", src);
+		Mojos.set(mojo, "format", format);
+		Mojos.set(mojo, "type", type);
+		Mojos.set(mojo, "streaming", true);
+		Mojos.set(mojo, "bulkLoad", bulkLoad);
+		mojo.execute();
+	}
+}
@@ -24,18 +24,31 @@ package com.lotaris.maven.plugin.dbunit;
  * SOFTWARE.
 */
 
+import com.lotaris.maven.plugin.dbunit.database.ConnectionProvider;
+import com.lotaris.maven.plugin.dbunit.database.MetadataCache;
+import com.lotaris.maven.plugin.dbunit.database.MetadataLoader;
+import com.lotaris.maven.plugin.dbunit.database.SchemaFingerprint;
+import com.lotaris.maven.plugin.dbunit.database.SessionConnectionRegistry;
+import com.lotaris.maven.plugin.dbunit.database.SessionDatabaseConnection;
+import com.lotaris.maven.plugin.dbunit.model.UnitSchema;
+import com.lotaris.maven.plugin.dbunit.util.RunReport;
+import java.io.File;
+import java.io.IOException;
 import java.sql.Connection;
 import java.sql.Driver;
 import java.sql.SQLException;
 import java.util.Properties;
 
+import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecution;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.settings.Server;
 import org.apache.maven.settings.Settings;
+import org.dbunit.DatabaseUnitException;
 import org.dbunit.database.DatabaseConfig;
 import org.dbunit.database.DatabaseConnection;
 import org.dbunit.database.ForwardOnlyResultSetTableFactory;
@@ -55,7 +68,7 @@ import org.dbunit.dataset.datatype.IDataTypeFactory;
  * 
  * @requiresDependencyResolution compile
  */
-public abstract class AbstractDbUnitMojo extends AbstractMojo {
+public abstract class AbstractDbUnitMojo extends AbstractMojo implements ConnectionProvider {
 	/**
 	 * The class name of the JDBC driver to be used.
 	 */
@@ -104,6 +117,19 @@ public abstract class AbstractDbUnitMojo extends AbstractMojo {
 	@Parameter(defaultValue = "${false}")
 	protected boolean useQualifiedTableNames = false;
 	
+	/**
+	 * Number of statements sent to the database in one batch. Enables the batched statements when set.
+	 */
+	@Parameter
+	protected Integer batchSize;
+	
+	/**
+	 * Number of rows fetched from the database per round-trip when reading tables. Some drivers, like
+	 * the PostgreSQL one, only honor it outside of the auto commit mode.
+	 */
+	@Parameter
+	protected Integer fetchSize;
+	
 	/**
 	 * Enable or disable the warning message displayed when DbUnit encounter an unsupported data type.
 	 */
@@ -158,19 +184,199 @@ public abstract class AbstractDbUnitMojo extends AbstractMojo {
 	@Parameter(defaultValue = "${false}")
 	protected Boolean verbose = false;
 	
+	/**
+	 * Number of connections used to process independent tables at the same time. The
+	 * result is the same as the one of a sequential execution.
+	 */
+	@Parameter(defaultValue = "1")
+	protected int threads = 1;
+	
+	/**
+	 * Keep the schema metadata on disk and reuse it as long as the schema fingerprint does not change
+	 */
+	@Parameter(defaultValue = "${false}")
+	protected boolean metadataCache = false;
+	
+	/**
+	 * Directory of the schema metadata cache. Can be shared by all the modules of a build.
+	 */
+	@Parameter(defaultValue = "${project.build.directory}/dbunit/metadata-cache")
+	protected File metadataCacheDirectory;
+	
+	/**
+	 * Query whose result changes with the schema, e.g. on a migration table. When not given,
+	 * the Flyway or Liquibase tables are used if present, the catalog otherwise.
+	 */
+	@Parameter
+	protected String metadataFingerprintQuery;
+	
+	/**
+	 * Keep the connections opened for the next executions of the build on the same URL, user and schema.
+	 * They are closed at the end of the build.
+	 */
+	@Parameter(defaultValue = "${false}")
+	protected boolean reuseConnections = false;
+	
+	/**
+	 * Measure the time of each phase, the rows, the bytes and the JDBC round trips of each
+	 * table. The measures are written as JSON in the run report directory and summarized in
+	 * the log at the end of the execution. The tables are measured by the streaming export,
+	 * import and comparison, the other engines only report the phases of the whole run.
+	 */
+	@Parameter(defaultValue = "${false}")
+	protected boolean instrument = false;
+	
+	/**
+	 * Directory of the run reports, one file per goal execution
+	 */
+	@Parameter(defaultValue = "${project.build.directory}/dbunit/run-reports")
+	protected File runReportDirectory;
+	
+	/**
+	 * Maximum number of tables listed in the summary of the run report, the slowest first. 0 to list all the tables.
+	 */
+	@Parameter(defaultValue = "20")
+	protected int runReportTables = 20;
+	
+	/**
+	 * The current build session
+	 */
+	@Parameter(defaultValue = "${session}", readonly = true)
+	private MavenSession session;
+	
+	/**
+	 * The current goal execution
+	 */
+	@Parameter(defaultValue = "${mojoExecution}", readonly = true)
+	private MojoExecution mojoExecution;
+	
+	/**
+	 * Measures of the execution, null when not instrumented
+	 */
+	protected RunReport runReport;
+	
+	/**
+	 * Whether the reuse of a session connection was already reported by this execution
+	 */
+	private boolean reuseReported = false;
+	
 	////////////////////////////////////////////////////////////////////
 	@Override
 	public void execute()
 		throws MojoExecutionException, MojoFailureException {
 		loadUserInfoFromSettings();
+		
+		if (instrument) {
+			runReport = new RunReport(getGoal(), mojoExecution != null ? mojoExecution.getExecutionId() : "default");
+		}
+	}
+	
+	/**
+	 * Write the run report and summarize it in the log, when instrumented
+	 */
+	protected void writeRunReport() {
+		if (runReport == null) {
+			return;
+		}
+		
+		File file = new File(runReportDirectory, getGoal() + "-" + runReport.getExecution() + ".json");
+		try {
+			runReport.write(file);
+		}
+		catch (IOException e) {
+			getLog().warn("Unable to write the run report " + file, e);
+		}
+		
+		for (String line : runReport.summarize(runReportTables)) {
+			getLog().info(line);
+		}
+		getLog().info("Run report written to " + file);
+	}
+	
+	/**
+	 * @return The goal of the execution, the mojo class when run outside of a build
+	 */
+	private String getGoal() {
+		return mojoExecution != null ? mojoExecution.getGoal() : getClass().getSimpleName();
 	}
 
-	IDatabaseConnection createConnection()
+	@Override
+	public IDatabaseConnection createConnection()
 		throws Exception {
-
+		return createConnection(url, schema, username, password);
+	}
+	
+	/**
+	 * Create a connection configured like the main one to another database
+	 * 
+	 * @param url The JDBC URL of the database
+	 * @param schema The schema, can be null
+	 * @param username The database username
+	 * @param password The database password, can be null
+	 * @return The connection created
+	 * @throws Exception When the connection cannot be created
+	 */
+	protected IDatabaseConnection createConnection(String url, String schema, String username, String password)
+		throws Exception {
+		
+		if (!reuseConnections) {
+			long start = System.nanoTime();
+			IDatabaseConnection connection = new DatabaseConnection(openConnection(null, url, username, password), schema);
+			configure(connection.getConfig(), null);
+			if (runReport != null) {
+				runReport.addTime("connect", System.nanoTime() - start);
+			}
+			return connection;
+		}
+		
+		SessionConnectionRegistry registry = SessionConnectionRegistry.forSession(session);
+		String key = SessionConnectionRegistry.key(url, username, schema);
+		
+		Connection conn = registry.acquire(key);
+		boolean reused = conn != null;
+		
+		if (reused) {
+			if (!reuseReported) {
+				getLog().info("Reusing a connection of the build session: " + registry.getReuseCount() + " connections reused, ~" + registry.getSavedTime() + " ms of setup saved so far");
+				reuseReported = true;
+			}
+		}
+		else {
+			long start = System.currentTimeMillis();
+			conn = openConnection(registry, url, username, password);
+			registry.connectionOpened(key, System.currentTimeMillis() - start);
+			if (runReport != null) {
+				runReport.addTime("connect", (System.currentTimeMillis() - start) * 1000000L);
+			}
+		}
+		
+		IDatabaseConnection connection;
+		try {
+			// The schema was already validated when the connection was opened
+			connection = new SessionDatabaseConnection(conn, schema, !reused, registry, key);
+		}
+		catch (DatabaseUnitException e) {
+			conn.close();
+			throw e;
+		}
+		configure(connection.getConfig(), registry);
+		
+		return connection;
+	}
+	
+	/**
+	 * Open a physical connection to the database
+	 * 
+	 * @param registry The registry holding the driver instance, null to instantiate a new one
+	 * @param url The JDBC URL of the database
+	 * @param username The database username
+	 * @param password The database password, can be null
+	 * @return The connection
+	 * @throws Exception When the connection cannot be opened
+	 */
+	private Connection openConnection(SessionConnectionRegistry registry, String url, String username, String password) throws Exception {
 		// Instantiate JDBC driver
-		Class dc = Class.forName(driver);
-		Driver driverInstance = (Driver) dc.newInstance();
+		Driver driverInstance = (Driver) newComponent(driver, registry);
 		Properties info = new Properties();
 		info.put("user", username);
 
@@ -185,10 +391,19 @@ public abstract class AbstractDbUnitMojo extends AbstractMojo {
 			throw new SQLException("No suitable Driver for " + url);
 		}
 		conn.setAutoCommit(true);
-
-		IDatabaseConnection connection = new DatabaseConnection(conn, schema);
-		DatabaseConfig config = connection.getConfig();
-		config.setProperty(DatabaseConfig.FEATURE_BATCHED_STATEMENTS, supportBatchStatement);
+		
+		return conn;
+	}
+	
+	/**
+	 * Apply the plugin configuration to a DBUnit connection configuration
+	 * 
+	 * @param config The configuration
+	 * @param registry The registry holding the data type factory and metadata handler, null to instantiate new ones
+	 * @throws Exception When a component cannot be instantiated
+	 */
+	private void configure(DatabaseConfig config, SessionConnectionRegistry registry) throws Exception {
+		config.setProperty(DatabaseConfig.FEATURE_BATCHED_STATEMENTS, supportBatchStatement || batchSize != null);
 		config.setProperty(DatabaseConfig.FEATURE_QUALIFIED_TABLE_NAMES, useQualifiedTableNames);
 		config.setProperty(DatabaseConfig.FEATURE_DATATYPE_WARNING, datatypeWarning);
 		config.setProperty(DatabaseConfig.FEATURE_SKIP_ORACLE_RECYCLEBIN_TABLES, this.skipOracleRecycleBinTables);
@@ -196,16 +411,104 @@ public abstract class AbstractDbUnitMojo extends AbstractMojo {
 
 		config.setProperty(DatabaseConfig.PROPERTY_ESCAPE_PATTERN, escapePattern);
 		config.setProperty(DatabaseConfig.PROPERTY_RESULTSET_TABLE_FACTORY, new ForwardOnlyResultSetTableFactory());
+		
+		if (batchSize != null) {
+			config.setProperty(DatabaseConfig.PROPERTY_BATCH_SIZE, batchSize);
+		}
+		
+		if (fetchSize != null) {
+			config.setProperty(DatabaseConfig.PROPERTY_FETCH_SIZE, fetchSize);
+		}
 
 		// Setup data type factory
-		IDataTypeFactory dataTypeFactory = (IDataTypeFactory) Class.forName(dataTypeFactoryName).newInstance();
+		IDataTypeFactory dataTypeFactory = (IDataTypeFactory) newComponent(dataTypeFactoryName, registry);
 		config.setProperty(DatabaseConfig.PROPERTY_DATATYPE_FACTORY, dataTypeFactory);
 
 		// Setup metadata handler
-		IMetadataHandler metadataHandler = (IMetadataHandler) Class.forName(metadataHandlerName).newInstance();
+		IMetadataHandler metadataHandler = (IMetadataHandler) newComponent(metadataHandlerName, registry);
 		config.setProperty(DatabaseConfig.PROPERTY_METADATA_HANDLER, metadataHandler);
+	}
+	
+	/**
+	 * Instantiate a component by reflection, or take the one of the session
+	 * 
+	 * @param className The class of the component
+	 * @param registry The session registry, can be null
+	 * @return The component
+	 * @throws ReflectiveOperationException When the component cannot be instantiated
+	 */
+	private Object newComponent(String className, SessionConnectionRegistry registry) throws ReflectiveOperationException {
+		if (registry != null) {
+			return registry.getComponent(className);
+		}
+		else {
+			return Class.forName(className).getDeclaredConstructor().newInstance();
+		}
+	}
 
-		return connection;
+	/**
+	 * Load the tables of the database with their columns and keys
+	 * 
+	 * @param connection The connection
+	 * @param loadKeys False when only the tables and columns are needed
+	 * @return The schema metadata
+	 * @throws SQLException When the catalog cannot be read
+	 */
+	protected UnitSchema loadSchema(IDatabaseConnection connection, boolean loadKeys) throws SQLException {
+		return loadSchema(connection, loadKeys, url, schema);
+	}
+
+	/**
+	 * Load the tables of a database other than the main one with their columns and keys
+	 * 
+	 * @param connection The connection to the database
+	 * @param loadKeys False when only the tables and columns are needed
+	 * @param url The JDBC URL of the database, the key of the cached metadata
+	 * @param schema The schema of the database, can be null
+	 * @return The schema metadata
+	 * @throws SQLException When the catalog cannot be read
+	 */
+	protected UnitSchema loadSchema(IDatabaseConnection connection, boolean loadKeys, String url, String schema) throws SQLException {
+		long start = System.currentTimeMillis();
+		long startNanos = System.nanoTime();
+		
+		// Reuse the cached metadata when the schema did not change
+		MetadataCache cache = null;
+		String fingerprint = null;
+		if (metadataCache) {
+			cache = new MetadataCache(metadataCacheDirectory);
+			fingerprint = SchemaFingerprint.compute(connection.getConnection(), schema, metadataFingerprintQuery);
+			
+			UnitSchema unitSchema = cache.get(url, schema, fingerprint, loadKeys);
+			if (unitSchema != null) {
+				getLog().info("Schema metadata loaded from cache: " + unitSchema.getTableNames().size() + " tables in " + (System.currentTimeMillis() - start) + " ms");
+				if (runReport != null) {
+					runReport.addTime("schemaMetadata", System.nanoTime() - startNanos);
+				}
+				return unitSchema;
+			}
+		}
+		
+		MetadataLoader loader = new MetadataLoader(schema);
+		loader.setLoadKeys(loadKeys);
+		
+		UnitSchema unitSchema = loader.load(connection.getConnection());
+		
+		getLog().info("Schema metadata loaded: " + unitSchema.getTableNames().size() + " tables in " + loader.getLoadTime() + " ms");
+		if (runReport != null) {
+			runReport.addTime("schemaMetadata", System.nanoTime() - startNanos);
+		}
+		
+		if (cache != null) {
+			try {
+				cache.put(url, schema, fingerprint, loadKeys, unitSchema);
+			}
+			catch (IOException e) {
+				getLog().warn("Unable to store the schema metadata in the cache", e);
+			}
+		}
+		
+		return unitSchema;
 	}
 
 	/**
@@ -20,7 +20,16 @@ package com.lotaris.maven.plugin.dbunit;
  * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
  */
+import com.lotaris.maven.plugin.dbunit.compare.DiffReport;
+import com.lotaris.maven.plugin.dbunit.compare.ExtendedCompare;
+import com.lotaris.maven.plugin.dbunit.compare.RowDifference;
+import com.lotaris.maven.plugin.dbunit.compare.StreamingCompare;
+import com.lotaris.maven.plugin.dbunit.compare.TableComparison;
+import com.lotaris.maven.plugin.dbunit.database.ConnectionPool;
+import com.lotaris.maven.plugin.dbunit.operation.DataSetLoader;
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
@@ -42,7 +51,7 @@ import org.dbunit.database.IDatabaseConnection;
 @Mojo(name = "compare", requiresDependencyCollection = ResolutionScope.COMPILE)
 public class CompareMojo extends AbstractDbUnitMojo {
 	/**
-	 * DataSet file
+	 * DataSet file, decompressed while it is read when compressed with gzip or deflate
 	 */
 	@Parameter(required = true)
 	protected File src;
@@ -70,6 +79,32 @@ public class CompareMojo extends AbstractDbUnitMojo {
 	 */
 	@Parameter
 	protected Query[] queries;
+	
+	/**
+	 * Compare the tables with a sorted merge of the expected file and of the database rows ordered by
+	 * primary key instead of loading both in memory. All the differences are reported instead of the
+	 * first one, sort is implied.
+	 */
+	@Parameter(defaultValue = "${false}")
+	protected boolean streaming = false;
+	
+	/**
+	 * Stop the streaming comparison after this number of differences, 0 to compare everything
+	 */
+	@Parameter(defaultValue = "0")
+	protected int maxDifferences = 0;
+	
+	/**
+	 * Number of rows sorted in memory by the streaming comparison before using temporary files
+	 */
+	@Parameter(defaultValue = "100000")
+	protected int sortBufferSize = 100000;
+	
+	/**
+	 * JSON report of the streaming comparison with the counts, timings and differences of each table
+	 */
+	@Parameter(defaultValue = "${project.build.directory}/dbunit/compare-report.json")
+	protected File report;
 
 	@Override
 	public void execute()
@@ -81,22 +116,36 @@ public class CompareMojo extends AbstractDbUnitMojo {
 
 		super.execute();
 
+		List<TableComparison> failures = null;
 		try {
 			IDatabaseConnection connection = createConnection();
 			try {
-				Compare dbUnitCompare = new Compare();
-				dbUnitCompare.setSrc(src);
-				dbUnitCompare.setFormat(format);
-				dbUnitCompare.setSort(sort);
-
-				for (int i = 0; queries != null && i < queries.length; ++i) {
-					dbUnitCompare.addQuery((Query) queries[i]);
-				}
-				for (int i = 0; tables != null && i < tables.length; ++i) {
-					dbUnitCompare.addTable((Table) tables[i]);
+				if (streaming) {
+					failures = compareStreaming(connection);
 				}
+				else {
+					if (threads > 1) {
+						getLog().warn("The tables are only compared concurrently by the streaming comparison");
+					}
+					
+					Compare dbUnitCompare = new ExtendedCompare();
+					dbUnitCompare.setSrc(src);
+					dbUnitCompare.setFormat(format);
+					dbUnitCompare.setSort(sort);
 
-				dbUnitCompare.execute(connection);
+					for (int i = 0; queries != null && i < queries.length; ++i) {
+						dbUnitCompare.addQuery((Query) queries[i]);
+					}
+					for (int i = 0; tables != null && i < tables.length; ++i) {
+						dbUnitCompare.addTable((Table) tables[i]);
+					}
+
+					long compareStart = System.nanoTime();
+					dbUnitCompare.execute(connection);
+					if (runReport != null) {
+						runReport.addTime("compare", System.nanoTime() - compareStart);
+					}
+				}
 			} 
 			finally {
 				connection.close();
@@ -105,5 +154,81 @@ public class CompareMojo extends AbstractDbUnitMojo {
 		catch (Exception e) {
 			throw new MojoExecutionException("Error executing DbUnit comparison.", e);
 		}
+		finally {
+			writeRunReport();
+		}
+
+		if (failures != null && !failures.isEmpty()) {
+			throw new MojoFailureException(failures.size() + " tables differ from " + src);
+		}
+	}
+	
+	/**
+	 * Compare the tables with the streaming engine and report the differences
+	 * 
+	 * @param connection The connection
+	 * @return The tables that differ
+	 * @throws Exception When the comparison cannot be done
+	 */
+	private List<TableComparison> compareStreaming(IDatabaseConnection connection) throws Exception {
+		List<Query> steps = new ArrayList<>();
+		for (int i = 0; queries != null && i < queries.length; ++i) {
+			steps.add(queries[i]);
+		}
+		for (int i = 0; tables != null && i < tables.length; ++i) {
+			Query query = new Query();
+			query.setName(tables[i].getName());
+			steps.add(query);
+		}
+		
+		long start = System.currentTimeMillis();
+		
+		List<TableComparison> results;
+		StreamingCompare compare;
+		if (threads > 1) {
+			try (ConnectionPool pool = new ConnectionPool(this, threads)) {
+				compare = new StreamingCompare(connection, loadSchema(connection, true), steps, maxDifferences, sortBufferSize, pool);
+				compare.setReport(runReport);
+				results = compare.compare(DataSetLoader.produce(src, format));
+			}
+		}
+		else {
+			compare = new StreamingCompare(connection, loadSchema(connection, true), steps, maxDifferences, sortBufferSize);
+			compare.setReport(runReport);
+			results = compare.compare(DataSetLoader.produce(src, format));
+		}
+
+		
+		if (report != null) {
+			new DiffReport(src, Math.max(1, threads), System.currentTimeMillis() - start, compare.isStopped(), results).write(report);
+			getLog().info("Comparison report written to " + report);
+		}
+		
+		List<TableComparison> failures = new ArrayList<>();
+		for (TableComparison result : results) {
+			if (result.isSuccess()) {
+				if (verbose) {
+					getLog().info(result.toString());
+				}
+				continue;
+			}
+			
+			failures.add(result);
+			getLog().error(result.toString());
+			for (RowDifference difference : result.getDifferences()) {
+				getLog().error("  " + difference);
+			}
+			
+			long notShown = result.getDifferenceCount() - result.getDifferences().size();
+			if (notShown > 0) {
+				getLog().error("  ... and " + notShown + " more differences");
+			}
+		}
+		
+		if (compare.isStopped()) {
+			getLog().warn("The comparison stopped after " + maxDifferences + " differences, the remaining tables were not compared");
+		}
+		
+		return failures;
 	}
 }
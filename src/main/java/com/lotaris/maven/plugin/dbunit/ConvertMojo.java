@@ -0,0 +1,97 @@
+package com.lotaris.maven.plugin.dbunit;
+
+import com.lotaris.maven.plugin.dbunit.export.StreamingExport;
+import com.lotaris.maven.plugin.dbunit.operation.DataSetLoader;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.dbunit.dataset.stream.IDataSetProducer;
+
+/**
+ * Convert a data set file from one format to another without a database, for
+ * example a flat XML data set to the binary format and back. The rows are
+ * converted one by one, whatever the size of the data set.
+ *
+ * @author Laurent Prévost <laurent.prevost@lotaris.com>
+ */
+@Mojo(name = "convert", requiresProject = false)
+public class ConvertMojo extends AbstractMojo {
+	/**
+	 * Data set file to convert
+	 */
+	@Parameter(property = "dbunit.src", required = true)
+	protected File src;
+
+	/**
+	 * Format of the data set file to convert: flat, xml, csv, dtd, xls or binary
+	 */
+	@Parameter(property = "dbunit.srcFormat", defaultValue = "flat")
+	protected String srcFormat = "flat";
+
+	/**
+	 * Converted data set file
+	 */
+	@Parameter(property = "dbunit.dest", required = true)
+	protected File dest;
+
+	/**
+	 * Format of the converted data set: flat, xml or binary
+	 */
+	@Parameter(property = "dbunit.format", defaultValue = "binary")
+	protected String format = "binary";
+
+	/**
+	 * Encoding of the converted XML data sets
+	 */
+	@Parameter(defaultValue = "${project.build.sourceEncoding}")
+	protected String encoding;
+
+	/**
+	 * Doctype of the converted XML data sets
+	 */
+	@Parameter
+	protected String doctype;
+
+	/**
+	 * Skip the execution when true
+	 */
+	@Parameter(defaultValue = "${false}")
+	protected boolean skip = false;
+
+	@Override
+	public void execute() throws MojoExecutionException, MojoFailureException {
+		if (skip) {
+			getLog().info("Skip data set conversion");
+			return;
+		}
+
+		if (!StreamingExport.isSupportedFormat(format)) {
+			throw new MojoExecutionException("The data sets can only be converted to the flat, xml and binary formats, not: " + format);
+		}
+
+		long start = System.currentTimeMillis();
+
+		try {
+			if (dest.getParentFile() != null) {
+				dest.getParentFile().mkdirs();
+			}
+
+			try (OutputStream out = new BufferedOutputStream(new FileOutputStream(dest), StreamingExport.DEFAULT_BUFFER_SIZE)) {
+				IDataSetProducer producer = DataSetLoader.produce(src, srcFormat);
+				producer.setConsumer(StreamingExport.createWriter(out, format, encoding, doctype));
+				producer.produce();
+			}
+		}
+		catch (Exception e) {
+			throw new MojoExecutionException("Error converting " + src + " to " + format, e);
+		}
+
+		getLog().info("Converted " + src + " (" + src.length() + " bytes) to " + dest + " (" + dest.length() + " bytes) in " + (System.currentTimeMillis() - start) + " ms");
+	}
+}
@@ -25,13 +25,40 @@ package com.lotaris.maven.plugin.dbunit;
  * SOFTWARE.
 */
 
+import com.lotaris.maven.plugin.dbunit.binary.BinaryFormat;
+import com.lotaris.maven.plugin.dbunit.database.ConnectionPool;
+import com.lotaris.maven.plugin.dbunit.database.Dialect;
+import com.lotaris.maven.plugin.dbunit.database.EmptyTableChecker;
+import com.lotaris.maven.plugin.dbunit.database.TableFingerprint;
+import com.lotaris.maven.plugin.dbunit.export.ChunkedExport;
+import com.lotaris.maven.plugin.dbunit.export.ExportFingerprints;
+import com.lotaris.maven.plugin.dbunit.export.IncrementalExport;
+import com.lotaris.maven.plugin.dbunit.export.KeyRangeReader;
+import com.lotaris.maven.plugin.dbunit.export.ParallelExport;
+import com.lotaris.maven.plugin.dbunit.export.StreamingExport;
+import com.lotaris.maven.plugin.dbunit.export.SubsetExport;
+import com.lotaris.maven.plugin.dbunit.export.SubsetSeed;
+import com.lotaris.maven.plugin.dbunit.export.TableExtraction;
+import com.lotaris.maven.plugin.dbunit.model.UnitColumn;
+import com.lotaris.maven.plugin.dbunit.model.UnitSchema;
 import com.lotaris.maven.plugin.dbunit.model.UnitTable;
+import com.lotaris.maven.plugin.dbunit.operation.DataSetLoader;
+import com.lotaris.maven.plugin.dbunit.util.Compression;
 import java.io.File;
 import java.sql.Connection;
-import java.sql.DatabaseMetaData;
-import java.sql.ResultSet;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.Deflater;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.Mojo;
@@ -41,6 +68,7 @@ import org.dbunit.ant.Export;
 import org.dbunit.ant.Query;
 import org.dbunit.ant.Table;
 import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.IDataSet;
 
 /**
  * Execute DbUnit Export operation
@@ -59,7 +87,8 @@ public class ExportMojo extends AbstractDbUnitMojo {
 	protected File dest;
 	
 	/**
-	 * DataSet file format
+	 * DataSet file format: flat, xml, csv, dtd, xls or binary. The binary format is always
+	 * written by the streaming export.
 	 */
 	@Parameter(defaultValue = "xml")
 	protected String format;
@@ -106,6 +135,121 @@ public class ExportMojo extends AbstractDbUnitMojo {
 	@Parameter(defaultValue = "${false}")
 	private Boolean excludeEmptyTables = false;
 	
+	/**
+	 * How empty tables are detected when excludeEmptyTables is enabled: firstRow reads at
+	 * most one row per table, count counts all the rows, estimate trusts the catalog row
+	 * estimates when they are positive. A class name implementing EmptyTableStrategy can
+	 * be given for a custom strategy. Tables are checked concurrently when threads is greater than 1.
+	 */
+	@Parameter(defaultValue = EmptyTableChecker.FIRST_ROW)
+	protected String emptyTableStrategy = EmptyTableChecker.FIRST_ROW;
+	
+	/**
+	 * Write one file per table in a directory named after dest instead of a single dest file.
+	 */
+	@Parameter(defaultValue = "${false}")
+	protected boolean splitTables = false;
+	
+	/**
+	 * Write the rows while they are read from the database instead of going through the
+	 * DB Unit export, so memory usage does not depend on the size of the tables. Only
+	 * the flat, xml and binary formats are supported.
+	 */
+	@Parameter(defaultValue = "${false}")
+	protected boolean streaming = false;
+	
+	/**
+	 * Size in bytes of the output buffer of the streaming export and of the compression buffer.
+	 */
+	@Parameter(defaultValue = "65536")
+	protected int bufferSize = StreamingExport.DEFAULT_BUFFER_SIZE;
+	
+	/**
+	 * Store a fingerprint of each table next to dest and take the tables whose fingerprint did not
+	 * change from the previous export instead of reading them again. Applies to the tables of the
+	 * schema, with the split tables or a single flat or xml file (read in memory).
+	 */
+	@Parameter(defaultValue = "${false}")
+	protected boolean incremental = false;
+	
+	/**
+	 * Compress the exported files while they are written: none, gzip or deflate (zlib). Applies to
+	 * the flat, xml and binary formats, which are then written by the streaming export. The
+	 * compressed files are recognized when they are read whatever their name.
+	 */
+	@Parameter(defaultValue = Compression.NONE)
+	protected String compression = Compression.NONE;
+	
+	/**
+	 * Compression level from 0 (fastest) to 9 (smallest), -1 for the default level
+	 */
+	@Parameter(defaultValue = "-1")
+	protected int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+	
+	/**
+	 * Read the tables of the schema by chunks of at most this number of rows, in primary key
+	 * order, and store the progress in a checkpoint next to dest after each chunk. When the export
+	 * fails, running it again with the same settings resumes from the checkpoint. The tables
+	 * without primary key and the configured tables and queries are read at once. Applies to a
+	 * single flat, xml or binary file, 0 to disable.
+	 */
+	@Parameter(defaultValue = "0")
+	protected int chunkSize = 0;
+	
+	/**
+	 * Split each large table of the schema into this number of primary key ranges read at the same
+	 * time on threads connections, then written in key order. Applies to the tables with a single
+	 * integer primary key, the ranges being computed from the minimum and maximum of the key. The
+	 * tables are written by the streaming export in a single flat, xml or binary file, 0 to disable.
+	 */
+	@Parameter(defaultValue = "0")
+	protected int keyRanges = 0;
+	
+	/**
+	 * Minimum span of the primary key values (maximum - minimum + 1) for a table to be split in keyRanges
+	 */
+	@Parameter(defaultValue = "100000")
+	protected long keyRangeMinSpan = 100000;
+	
+	/**
+	 * Columns and rows extracted from the tables of the schema. The first extraction whose name
+	 * pattern matches a table applies: the columns are chosen by the includeColumns and
+	 * excludeColumns patterns, the primary key columns being always extracted, the rows by the
+	 * where condition and their number by maxRows. The settings are pushed into the queries of
+	 * the tables, so the columns and rows left out are not read from the database.
+	 */
+	@Parameter
+	protected TableExtraction[] extractions;
+	
+	/**
+	 * Maximum number of rows extracted from each table of the schema, 0 to extract all the rows.
+	 * The tables whose number of rows is limited are not read by chunks or key ranges.
+	 */
+	@Parameter(defaultValue = "0")
+	protected long maxRowsPerTable = 0;
+	
+	/**
+	 * Seed rows of a referentially closed subset of the tables of the schema. Each seed selects
+	 * the rows of the tables matching its name pattern with a where condition, a sampleRate and
+	 * maxRows. The parent rows referenced by the rows of the subset are added, and the child rows
+	 * of the seed rows when subsetChildren is set. Only the subset is written in dest, in the
+	 * flat, xml or binary format.
+	 */
+	@Parameter
+	protected SubsetSeed[] subset;
+	
+	/**
+	 * Add the child rows of the seed rows to the subset, and their own child rows
+	 */
+	@Parameter(defaultValue = "${true}")
+	protected boolean subsetChildren = true;
+	
+	/**
+	 * Maximum number of keys looked up by each query of the subset export
+	 */
+	@Parameter(defaultValue = "500")
+	protected int subsetBatchSize = SubsetExport.DEFAULT_BATCH_SIZE;
+	
 	@Override
 	public void execute() throws MojoExecutionException, MojoFailureException {
 		if (skip) {
@@ -115,6 +259,38 @@ public class ExportMojo extends AbstractDbUnitMojo {
 
 		super.execute();
 
+		if (streaming && !StreamingExport.isSupportedFormat(format)) {
+			throw new MojoExecutionException("The streaming export supports only the flat, xml and binary formats, not: " + format);
+		}
+		
+		if (!Compression.isSupported(compression)) {
+			throw new MojoExecutionException("Unknown compression '" + compression + "', use none, gzip or deflate");
+		}
+		
+		if (Compression.isEnabled(compression) && !StreamingExport.isSupportedFormat(format)) {
+			throw new MojoExecutionException("Only the flat, xml and binary formats can be compressed, not: " + format);
+		}
+		
+		if (chunkSize < 0) {
+			throw new MojoExecutionException("The chunk size cannot be negative: " + chunkSize);
+		}
+		
+		if (chunkSize > 0 && !StreamingExport.isSupportedFormat(format)) {
+			throw new MojoExecutionException("The chunked export supports only the flat, xml and binary formats, not: " + format);
+		}
+		
+		if (keyRanges > 1 && !StreamingExport.isSupportedFormat(format)) {
+			throw new MojoExecutionException("The key ranges are only read by the streaming export, which supports the flat, xml and binary formats, not: " + format);
+		}
+		
+		if (isSubset() && !StreamingExport.isSupportedFormat(format)) {
+			throw new MojoExecutionException("The subset export supports only the flat, xml and binary formats, not: " + format);
+		}
+		
+		if (maxRowsPerTable < 0) {
+			throw new MojoExecutionException("The maximum number of rows per table cannot be negative: " + maxRowsPerTable);
+		}
+
 		try {
 			//dbunit require dest directory is ready
 			dest.getParentFile().mkdirs();
@@ -123,66 +299,70 @@ public class ExportMojo extends AbstractDbUnitMojo {
 			try {
 				// Check if the standard behavior of the DBUnit plugin could be overrided or not
 				List<UnitTable> tablesToExtract = null;
+				UnitSchema unitSchema = null;
+				UnitSchema fullSchema = null;
+				boolean restricted = (extractions != null && extractions.length > 0) || maxRowsPerTable > 0;
 				if ((tables == null || tables.length == 0) && (queries == null || queries.length == 0)) {
-					Connection con = connection.getConnection();
-					DatabaseMetaData meta = con.getMetaData();
+					// The chunks and key ranges are read in primary key order, the primary key is always extracted
+					unitSchema = loadSchema(connection, chunkSize > 0 || keyRanges > 1 || restricted || isSubset());
+					fullSchema = unitSchema;
 
 					// Create the list of tables to extract
-					tablesToExtract = new ArrayList<>();
-					try (ResultSet rs = meta.getTables(null, null, "%", new String[] {"TABLE"})) {
-						while (rs.next()) {
-							String tName = rs.getString("TABLE_NAME");
-							
-							// Flag for exclusion
-							boolean excluded = false;
-							
-							// Check if exclusion rules are configured
-							if (excludes != null) {
-								// Iterate the exclusion rules
-								for (String exclude : excludes) {
-									// Check for exclusion
-									if (tName.matches(exclude)) {
-										excluded = true;
-										break;
-									}
-								}
-							}
+					List<String> tableNames = new ArrayList<>();
+					for (String tName : unitSchema.getTableNames()) {
+						// Flag for exclusion
+						boolean excluded = false;
 
-							// Check if empty tables must be excluded
-							if (!excluded && excludeEmptyTables) {
-								try (ResultSet cntRs = con.createStatement().executeQuery("SELECT COUNT(*) AS CNT FROM " + tName  + ";")) {
-									while (cntRs.next()) {
-										if (cntRs.getInt("CNT") == 0) {
-											excluded = true;
-										}
-									}
-								}
-							}
-							
-							if (!excluded) {
-								// Create the table information
-								UnitTable ut = new UnitTable(tName);
-
-								// Add the table to the list of table to extract
-								tablesToExtract.add(ut);
-								try (ResultSet rst = meta.getColumns(null, null, ut.getTableName(), null)) {
-									while (rst.next()) {
-										// Get the column name
-										ut.addColumn(rst.getString("COLUMN_NAME"));
-									}
-								}
-								
-								// Logging
-								if (verbose) {
-									getLog().info(ut.toString());
+						// Check if exclusion rules are configured
+						if (excludes != null) {
+							// Iterate the exclusion rules
+							for (String exclude : excludes) {
+								// Check for exclusion
+								if (tName.matches(exclude)) {
+									excluded = true;
+									break;
 								}
 							}
 						}
+
+						if (!excluded) {
+							tableNames.add(tName);
+						}
+					}
+					
+					// Check if empty tables must be excluded
+					if (excludeEmptyTables) {
+						tableNames.removeAll(findEmptyTables(connection.getConnection(), tableNames));
+					}
+					
+					// The restricted tables replace the tables of the schema for the chunks and key ranges
+					Dialect dialect = restricted ? Dialect.of(connection.getConnection()) : null;
+					UnitSchema extractSchema = new UnitSchema();
+					
+					tablesToExtract = new ArrayList<>();
+					for (String tName : tableNames) {
+						UnitTable ut = unitSchema.getTable(tName);
+						if (restricted) {
+							ut = restrict(ut, dialect);
+							extractSchema.addTable(ut);
+						}
+						tablesToExtract.add(ut);
+
+						// Logging
+						if (verbose) {
+							getLog().info(ut.toString());
+						}
+					}
+					
+					if (restricted) {
+						unitSchema = extractSchema;
 					}
 				}
+				else if (restricted) {
+					getLog().warn("The extractions and the maximum number of rows per table only apply to the tables of the schema, the configured tables and queries are fully exported");
+				}
 					
-				Export export = new Export();
-				export.setOrdered(ordered);
+				List<Query> steps = new ArrayList<>();
 
 				// Custom behavior (extract only tables that are wanted with the warranty that the 
 				// columns are ordered alphabetically
@@ -192,27 +372,84 @@ public class ExportMojo extends AbstractDbUnitMojo {
 						if (verbose) {
 							getLog().info(q.getName() + " : " + q.getSql());
 						}
-						export.addQuery(q);
+						steps.add(q);
 					}
 				}
 				
 				// Standard behavior
 				else {
 					for (int i = 0; queries != null && i < queries.length; ++i) {
-						export.addQuery((Query) queries[i]);
+						steps.add(queries[i]);
 					}
 					for (int i = 0; tables != null && i < tables.length; ++i) {
-						export.addTable((Table) tables[i]);
+						// A query without SQL is exported as the whole table by DB Unit
+						Query q = new Query();
+						q.setName(tables[i].getName());
+						steps.add(q);
 					}
 				}
-					
-				// Standard options from dbunit plugin
-				export.setDest(dest);
-				export.setDoctype(doctype);
-				export.setFormat(format);
-				export.setEncoding(encoding);
-
-				export.execute(connection);
+				
+				// Find the tables unchanged since the previous export
+				ExportFingerprints exportFingerprints = null;
+				Map<String, String> fingerprints = null;
+				Set<String> unchanged = Collections.emptySet();
+				if (incremental && !isSubset()) {
+					if (tablesToExtract == null) {
+						getLog().warn("The incremental export only applies to the tables of the schema, the configured tables and queries are fully exported");
+					}
+					else {
+						exportFingerprints = new ExportFingerprints(dest, format + "|" + encoding + "|" + doctype + "|" + ordered + "|" + splitTables + "|" + streaming + "|" + compression + "|" + chunkSize + "|" + keyRanges);
+						fingerprints = computeFingerprints(connection.getConnection(), tablesToExtract);
+						unchanged = ExportFingerprints.findUnchanged(exportFingerprints.load(), fingerprints);
+						exportFingerprints.delete();
+					}
+				}
+				
+				long exportStart = System.nanoTime();
+				
+				if (isSubset()) {
+					exportSubset(tablesToExtract, fullSchema, connection);
+				}
+				else if (splitTables) {
+					if (chunkSize > 0 || keyRanges > 1) {
+						getLog().warn("The chunked export and the key ranges do not apply to the split tables, each table is exported at once");
+					}
+					exportSplit(steps, unchanged);
+				}
+				else if (chunkSize > 0) {
+					if (keyRanges > 1) {
+						getLog().warn("The key ranges do not apply to the chunked export, the chunks are read one by one");
+					}
+					exportChunked(steps, unitSchema, connection);
+				}
+				else if (keyRanges > 1) {
+					exportKeyRanges(steps, unitSchema, connection);
+				}
+				else if (!unchanged.isEmpty() && !isStreamed() && dest.isFile() && ("flat".equalsIgnoreCase(format) || "xml".equalsIgnoreCase(format))) {
+					exportIncremental(steps, unchanged, connection);
+				}
+				else if (isStreamed()) {
+					if (threads > 1) {
+						getLog().warn("The streaming export reads the tables one by one, threads is only used with splitTables");
+					}
+					exportStreaming(dest, steps, connection);
+				}
+				else if (threads > 1) {
+					try (ConnectionPool pool = new ConnectionPool(this, threads)) {
+						exportSingle(new ParallelExport(pool), steps, connection);
+					}
+				}
+				else {
+					exportSingle(new Export(), steps, connection);
+				}
+				
+				if (runReport != null) {
+					runReport.addTime("export", System.nanoTime() - exportStart);
+				}
+				
+				if (exportFingerprints != null) {
+					exportFingerprints.store(fingerprints);
+				}
 			} 
 			finally {
 				connection.close();
@@ -221,5 +458,431 @@ public class ExportMojo extends AbstractDbUnitMojo {
 		catch (Exception e) {
 			throw new MojoExecutionException("Error executing export", e);
 		}
+		finally {
+			writeRunReport();
+		}
+	}
+
+	/**
+	 * Restrict a table to the columns and rows of the first matching extraction
+	 * 
+	 * @param table The table of the schema
+	 * @param dialect The dialect of the row limit
+	 * @return The restricted copy of the table
+	 * @throws MojoExecutionException When no column of the table is extracted
+	 */
+	private UnitTable restrict(UnitTable table, Dialect dialect) throws MojoExecutionException {
+		TableExtraction extraction = null;
+		for (int i = 0; extractions != null && i < extractions.length && extraction == null; i++) {
+			if (extractions[i].matches(table.getTableName())) {
+				extraction = extractions[i];
+			}
+		}
+		
+		if (extraction == null) {
+			return table.restrict(table.getColumns(), null, maxRowsPerTable, dialect);
+		}
+		
+		// The primary key identifies the rows for the chunks and the operations
+		List<UnitColumn> columns = new ArrayList<>();
+		for (UnitColumn column : table.getColumns()) {
+			if (column.isPrimaryKey() || extraction.isExtracted(column.getColumnName())) {
+				columns.add(column);
+			}
+		}
+		
+		if (columns.isEmpty()) {
+			throw new MojoExecutionException("No column of the table " + table.getTableName() + " is extracted");
+		}
+		
+		long maxRows = extraction.getMaxRows() != null ? extraction.getMaxRows() : maxRowsPerTable;
+		
+		return table.restrict(columns, extraction.getWhere(), maxRows, dialect);
+	}
+	
+	/**
+	 * Find the empty tables with the configured strategy
+	 * 
+	 * @param con The main connection
+	 * @param tableNames The tables to check
+	 * @return The empty tables
+	 * @throws Exception When the tables cannot be checked
+	 */
+	private Set<String> findEmptyTables(Connection con, List<String> tableNames) throws Exception {
+		long start = System.currentTimeMillis();
+
+		EmptyTableChecker checker = new EmptyTableChecker(EmptyTableChecker.createStrategy(emptyTableStrategy));
+		
+		Set<String> emptyTables;
+		if (threads > 1) {
+			try (ConnectionPool pool = new ConnectionPool(this, threads)) {
+				emptyTables = checker.findEmptyTables(pool, tableNames);
+			}
+		}
+		else {
+			emptyTables = checker.findEmptyTables(con, tableNames);
+		}
+		
+		if (verbose) {
+			getLog().info(emptyTables.size() + " empty tables found among " + tableNames.size() + " in " + (System.currentTimeMillis() - start) + " ms");
+		}
+		
+		return emptyTables;
+	}
+	
+	/**
+	 * Compute the content fingerprints of the tables
+	 * 
+	 * @param con The main connection
+	 * @param tablesToExtract The tables
+	 * @return The fingerprints by table name
+	 * @throws Exception When a table cannot be read
+	 */
+	private Map<String, String> computeFingerprints(Connection con, List<UnitTable> tablesToExtract) throws Exception {
+		long start = System.currentTimeMillis();
+		
+		TableFingerprint tableFingerprint = new TableFingerprint(Dialect.of(con));
+		
+		Map<String, String> fingerprints;
+		if (threads > 1) {
+			try (ConnectionPool pool = new ConnectionPool(this, threads)) {
+				fingerprints = tableFingerprint.computeAll(pool, tablesToExtract);
+			}
+		}
+		else {
+			fingerprints = tableFingerprint.computeAll(con, tablesToExtract);
+		}
+		
+		if (verbose) {
+			getLog().info(fingerprints.size() + " table fingerprints computed in " + (System.currentTimeMillis() - start) + " ms");
+		}
+		
+		return fingerprints;
+	}
+	
+	/**
+	 * Export all the tables in the dest file, taking the unchanged tables from the previous dest file
+	 * 
+	 * @param steps The queries and tables to export
+	 * @param unchanged The tables unchanged since the previous export
+	 * @param connection The connection to use
+	 * @throws Exception When the export fails
+	 */
+	private void exportIncremental(List<Query> steps, Set<String> unchanged, IDatabaseConnection connection) throws Exception {
+		IDataSet previous = DataSetLoader.load(dest, format, false);
+		
+		// Empty tables are not written in the flat format, they are read again
+		Set<String> previousTables = new HashSet<>();
+		for (String tableName : previous.getTableNames()) {
+			previousTables.add(tableName.toUpperCase());
+		}
+		
+		Set<String> reused = new HashSet<>();
+		for (String tableName : unchanged) {
+			if (previousTables.contains(tableName.toUpperCase())) {
+				reused.add(tableName);
+			}
+		}
+		
+		getLog().info(reused.size() + " of " + steps.size() + " tables unchanged since the previous export");
+		
+		if (threads > 1) {
+			try (ConnectionPool pool = new ConnectionPool(this, threads)) {
+				exportSingle(new IncrementalExport(previous, reused, pool), steps, connection);
+			}
+		}
+		else {
+			exportSingle(new IncrementalExport(previous, reused, null), steps, connection);
+		}
+	}
+	
+	/**
+	 * Export all the tables in the dest file
+	 * 
+	 * @param export The export to run
+	 * @param steps The queries and tables to export
+	 * @param connection The connection to use
+	 * @throws Exception When the export fails
+	 */
+	private void exportSingle(Export export, List<Query> steps, IDatabaseConnection connection) throws Exception {
+		export.setOrdered(ordered);
+		
+		for (Query step : steps) {
+			export.addQuery(step);
+		}
+		
+		// Standard options from dbunit plugin
+		export.setDest(dest);
+		export.setDoctype(doctype);
+		export.setFormat(format);
+		export.setEncoding(encoding);
+
+		export.execute(connection);
+	}
+
+	/**
+	 * Export each table in its own file, in a directory named after the dest file
+	 * 
+	 * @param steps The queries and tables to export
+	 * @param unchanged The tables unchanged since the previous export, whose file is kept if present
+	 * @throws Exception When the export of any table fails
+	 */
+	private void exportSplit(List<Query> steps, Set<String> unchanged) throws Exception {
+		String destName = dest.getName();
+		int extensionIndex = destName.lastIndexOf('.');
+		
+		final File destDir = new File(dest.getParentFile(), extensionIndex > 0 ? destName.substring(0, extensionIndex) : destName);
+		final String extension = extensionIndex > 0 ? destName.substring(extensionIndex) : "";
+		destDir.mkdirs();
+		
+		List<Query> changed = new ArrayList<>();
+		for (Query step : steps) {
+			if (!unchanged.contains(step.getName()) || !new File(destDir, step.getName() + extension).isFile()) {
+				changed.add(step);
+			}
+		}
+		
+		if (!unchanged.isEmpty()) {
+			getLog().info((steps.size() - changed.size()) + " of " + steps.size() + " tables unchanged since the previous export");
+		}
+		
+		int poolSize = Math.max(1, threads);
+		try (ConnectionPool pool = new ConnectionPool(this, poolSize)) {
+			ExecutorService executor = Executors.newFixedThreadPool(poolSize);
+			try {
+				List<Future<Void>> futures = new ArrayList<>();
+				for (Query step : changed) {
+					futures.add(executor.submit(new SplitTask(pool, step, destDir, extension)));
+				}
+
+				for (Future<Void> future : futures) {
+					try {
+						future.get();
+					}
+					catch (ExecutionException e) {
+						if (e.getCause() instanceof Error) {
+							throw (Error) e.getCause();
+						}
+						throw (Exception) e.getCause();
+					}
+				}
+			}
+			finally {
+				executor.shutdownNow();
+			}
+		}
+	}
+	
+	/**
+	 * @return True if the rows are written by the streaming export
+	 */
+	private boolean isStreamed() {
+		return streaming || BinaryFormat.isBinary(format) || Compression.isEnabled(compression);
+	}
+	
+	/**
+	 * Export the tables with the streaming export
+	 * 
+	 * @param file The file to write
+	 * @param steps The queries and tables to export
+	 * @param connection The connection to use
+	 * @throws Exception When the export fails
+	 */
+	private void exportStreaming(File file, List<Query> steps, IDatabaseConnection connection) throws Exception {
+		createStreamingExport(file).execute(connection, steps);
+	}
+	
+	/**
+	 * @param file The file to write
+	 * @return The streaming export configured with the export settings
+	 */
+	private StreamingExport createStreamingExport(File file) {
+		StreamingExport export = new StreamingExport();
+		export.setDest(file);
+		export.setFormat(format);
+		export.setEncoding(encoding);
+		export.setDoctype(doctype);
+		export.setBufferSize(bufferSize);
+		export.setOrdered(ordered);
+		export.setCompression(compression);
+		export.setCompressionLevel(compressionLevel);
+		export.setReport(runReport);
+		
+		return export;
+	}
+	
+	/**
+	 * Export the tables with the streaming export, the large tables being read as
+	 * primary key ranges at the same time
+	 * 
+	 * @param steps The queries and tables to export
+	 * @param unitSchema The schema with the primary keys, null when the tables and queries are configured
+	 * @param connection The connection to use
+	 * @throws Exception When the export fails
+	 */
+	private void exportKeyRanges(List<Query> steps, UnitSchema unitSchema, IDatabaseConnection connection) throws Exception {
+		if (unitSchema == null) {
+			getLog().warn("The key ranges only apply to the tables of the schema, the configured tables and queries are exported at once");
+			exportStreaming(dest, steps, connection);
+			return;
+		}
+		
+		if (threads <= 1) {
+			getLog().warn("The key ranges are read one at a time, set threads to read them at the same time");
+		}
+		
+		File workDir = new File(dest.getPath() + ".ranges");
+		int poolSize = Math.max(1, threads);
+		try (ConnectionPool pool = new ConnectionPool(this, poolSize)) {
+			ExecutorService executor = Executors.newFixedThreadPool(poolSize);
+			try {
+				KeyRangeReader reader = new KeyRangeReader(pool, executor, keyRanges, keyRangeMinSpan, workDir);
+				reader.setBufferSize(bufferSize);
+				
+				StreamingExport export = createStreamingExport(dest);
+				export.setKeyRanges(reader, unitSchema);
+				export.execute(connection, steps);
+				
+				if (verbose) {
+					getLog().info(reader.getSplitTables() + " of " + steps.size() + " tables read in " + keyRanges + " key ranges");
+				}
+			}
+			finally {
+				executor.shutdownNow();
+				workDir.delete();
+			}
+		}
+	}
+	
+	/**
+	 * @return True if only a subset of the rows is exported
+	 */
+	private boolean isSubset() {
+		return subset != null && subset.length > 0;
+	}
+	
+	/**
+	 * Export the referentially closed subset of the tables collected from the seed rows
+	 * 
+	 * @param tablesToExtract The tables that can be part of the subset, null when the tables and queries are configured
+	 * @param unitSchema The schema with the primary and foreign keys
+	 * @param connection The connection to use
+	 * @throws Exception When the export fails
+	 */
+	private void exportSubset(List<UnitTable> tablesToExtract, UnitSchema unitSchema, IDatabaseConnection connection) throws Exception {
+		if (tablesToExtract == null) {
+			throw new MojoExecutionException("The subset export only applies to the tables of the schema, not to the configured tables and queries");
+		}
+		
+		if (splitTables || chunkSize > 0 || keyRanges > 1 || incremental || (extractions != null && extractions.length > 0) || maxRowsPerTable > 0) {
+			getLog().warn("The split tables, chunks, key ranges, incremental export and extractions do not apply to the subset export");
+		}
+		
+		long start = System.currentTimeMillis();
+		
+		List<String> tableNames = new ArrayList<>();
+		for (UnitTable table : tablesToExtract) {
+			tableNames.add(table.getTableName());
+		}
+		
+		SubsetExport export = new SubsetExport(unitSchema, tableNames);
+		export.setDest(dest);
+		export.setFormat(format);
+		export.setEncoding(encoding);
+		export.setDoctype(doctype);
+		export.setBufferSize(bufferSize);
+		export.setCompression(compression);
+		export.setCompressionLevel(compressionLevel);
+		export.setBatchSize(subsetBatchSize);
+		export.setChildren(subsetChildren);
+		
+		export.execute(connection, Arrays.asList(subset));
+		
+		if (verbose) {
+			for (Map.Entry<String, Integer> entry : export.getTableRows().entrySet()) {
+				getLog().info(entry.getKey() + " : " + entry.getValue() + " rows");
+			}
+		}
+		
+		getLog().info(export.getRows() + " rows of " + export.getTableRows().size() + " tables exported in the subset with " + export.getQueries() + " queries in " + (System.currentTimeMillis() - start) + " ms");
+	}
+	
+	/**
+	 * Export the tables chunk by chunk, resuming from the checkpoint of a failed run
+	 * 
+	 * @param steps The queries and tables to export
+	 * @param unitSchema The schema with the primary keys, null when the tables and queries are configured
+	 * @param connection The connection to use
+	 * @throws Exception When the export fails
+	 */
+	private void exportChunked(List<Query> steps, UnitSchema unitSchema, IDatabaseConnection connection) throws Exception {
+		long start = System.currentTimeMillis();
+		
+		if (unitSchema == null) {
+			getLog().warn("The configured tables and queries are exported at once, only the tables of the schema are read by chunks");
+		}
+		
+		ChunkedExport export = new ChunkedExport(chunkSize);
+		export.setDest(dest);
+		export.setFormat(format);
+		export.setEncoding(encoding);
+		export.setDoctype(doctype);
+		export.setBufferSize(bufferSize);
+		export.setOrdered(ordered);
+		export.setCompression(compression);
+		export.setCompressionLevel(compressionLevel);
+		
+		export.execute(connection, steps, unitSchema);
+		
+		if (export.getResumedChunks() > 0) {
+			getLog().info("Export resumed from the checkpoint after " + export.getResumedChunks() + " chunks");
+		}
+		
+		if (verbose) {
+			getLog().info(export.getRows() + " rows exported in " + export.getChunks() + " chunks in " + (System.currentTimeMillis() - start) + " ms");
+		}
+	}
+	
+	/**
+	 * Export a single query in its own file
+	 */
+	private class SplitTask implements Callable<Void> {
+		private final ConnectionPool pool;
+		private final Query step;
+		private final File destDir;
+		private final String extension;
+
+		public SplitTask(ConnectionPool pool, Query step, File destDir, String extension) {
+			this.pool = pool;
+			this.step = step;
+			this.destDir = destDir;
+			this.extension = extension;
+		}
+		
+		@Override
+		public Void call() throws Exception {
+			File file = new File(destDir, step.getName() + extension);
+			
+			IDatabaseConnection connection = pool.acquire();
+			try {
+				if (isStreamed()) {
+					exportStreaming(file, Collections.singletonList(step), connection);
+				}
+				else {
+					Export export = new Export();
+					export.addQuery(step);
+					export.setDest(file);
+					export.setDoctype(doctype);
+					export.setFormat(format);
+					export.setEncoding(encoding);
+					export.execute(connection);
+				}
+			}
+			finally {
+				pool.release(connection);
+			}
+			
+			return null;
+		}
 	}
 }
@@ -0,0 +1,282 @@
+package com.lotaris.maven.plugin.dbunit;
+
+import com.lotaris.maven.plugin.dbunit.export.StreamingExport;
+import com.lotaris.maven.plugin.dbunit.generate.ColumnGeneration;
+import com.lotaris.maven.plugin.dbunit.generate.DataSetGenerator;
+import com.lotaris.maven.plugin.dbunit.generate.TableGeneration;
+import com.lotaris.maven.plugin.dbunit.model.UnitSchema;
+import com.lotaris.maven.plugin.dbunit.operation.StreamingImport;
+import com.lotaris.maven.plugin.dbunit.operation.TableCleaner;
+import com.lotaris.maven.plugin.dbunit.util.Compression;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.dbunit.ant.AbstractStep;
+import org.dbunit.database.DatabaseConfig;
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.csv.CsvDataSetWriter;
+import org.dbunit.dataset.datatype.IDataTypeFactory;
+
+/**
+ * Generate a synthetic data set following the schema of the database, to measure
+ * how the imports, exports and comparisons scale with the number of rows. The
+ * foreign keys reference generated rows, the tables are filled parents first and
+ * the same seed always generates the same rows.
+ *
+ * The rows are inserted in the database while they are generated, in JDBC
+ * batches of batchSize rows, or written to the dest file when it is set.
+ *
+ * @author Laurent Prévost <laurent.prevost@lotaris.com>
+ */
+@Mojo(name = "generate", requiresDependencyCollection = ResolutionScope.COMPILE)
+public class GenerateMojo extends AbstractDbUnitMojo {
+	/**
+	 * Number of rows of the tables without generation settings
+	 */
+	@Parameter(defaultValue = "1000")
+	protected long rows = 1000;
+
+	/**
+	 * Seed of the generated values, the same seed generates the same rows
+	 */
+	@Parameter(defaultValue = "1")
+	protected long seed = 1;
+
+	/**
+	 * Regular expressions of the tables to generate, all the tables when not set
+	 */
+	@Parameter
+	protected String[] includes;
+
+	/**
+	 * Regular expressions of the tables not to generate
+	 */
+	@Parameter
+	protected String[] excludes;
+
+	/**
+	 * Settings of the tables: the number of rows or the number of rows per parent
+	 * row, and the distribution of the references to the parent rows (uniform,
+	 * normal, skewed, sequence or constant). The first settings matching a table apply.
+	 */
+	@Parameter
+	protected TableGeneration[] tables;
+
+	/**
+	 * Settings of the columns: the distribution of the values (uniform, normal,
+	 * skewed, sequence or constant), their bounds, the values to pick from and the
+	 * ratio of null values. The first settings matching a column apply.
+	 */
+	@Parameter
+	protected ColumnGeneration[] columns;
+
+	/**
+	 * Data set file to write instead of inserting the rows in the database, a
+	 * directory for the csv format
+	 */
+	@Parameter
+	protected File dest;
+
+	/**
+	 * Format of the data set file: flat, xml, binary or csv
+	 */
+	@Parameter(defaultValue = "flat")
+	protected String format = "flat";
+
+	/**
+	 * Encoding of the XML data set files
+	 */
+	@Parameter(defaultValue = "${project.build.sourceEncoding}")
+	protected String encoding;
+
+	/**
+	 * Compression of the data set file: none, gzip or deflate. Not supported by the csv format.
+	 */
+	@Parameter(defaultValue = Compression.NONE)
+	protected String compression = Compression.NONE;
+
+	/**
+	 * Compression level from 1 (fastest) to 9 (smallest), -1 for the default level
+	 */
+	@Parameter(defaultValue = "-1")
+	protected int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+
+	/**
+	 * Size in bytes of the output buffer and of the compression buffer
+	 */
+	@Parameter(defaultValue = "65536")
+	protected int bufferSize = StreamingExport.DEFAULT_BUFFER_SIZE;
+
+	/**
+	 * Empty the generated tables before inserting the rows
+	 */
+	@Parameter(defaultValue = "${false}")
+	protected boolean clean = false;
+
+	/**
+	 * Number of rows inserted per transaction, 0 to commit according to the transaction parameter
+	 */
+	@Parameter(defaultValue = "0")
+	protected int commitInterval = 0;
+
+	/**
+	 * When true, insert all the rows in one transaction
+	 */
+	@Parameter(defaultValue = "${false}")
+	protected boolean transaction = false;
+
+	@Override
+	public void execute() throws MojoExecutionException, MojoFailureException {
+		if (skip) {
+			getLog().info("Skip data set generation");
+			return;
+		}
+
+		super.execute();
+
+		boolean csv = AbstractStep.FORMAT_CSV.equalsIgnoreCase(format);
+		if (dest != null && !csv && !StreamingExport.isSupportedFormat(format)) {
+			throw new MojoExecutionException("The generated data sets can only be written in the flat, xml, binary and csv formats, not: " + format);
+		}
+
+		if (dest != null && csv && Compression.isEnabled(compression)) {
+			throw new MojoExecutionException("The csv data sets cannot be compressed");
+		}
+
+		if (!Compression.isSupported(compression)) {
+			throw new MojoExecutionException("Unsupported compression " + compression + ", use none, gzip or deflate");
+		}
+
+		try {
+			IDatabaseConnection connection = createConnection();
+
+			try {
+				UnitSchema unitSchema = loadSchema(connection, true);
+
+				DataSetGenerator generator = new DataSetGenerator(unitSchema, selectTables(unitSchema),
+					(IDataTypeFactory) connection.getConfig().getProperty(DatabaseConfig.PROPERTY_DATATYPE_FACTORY), seed);
+				generator.setDefaultRows(rows);
+				generator.setTableGenerations(tables);
+				generator.setColumnGenerations(columns);
+
+				for (String warning : generator.getWarnings()) {
+					getLog().warn(warning);
+				}
+
+				long start = System.currentTimeMillis();
+				long startNanos = System.nanoTime();
+
+				if (dest != null) {
+					write(generator, csv);
+				}
+				else {
+					insert(connection, unitSchema, generator);
+				}
+
+				if (runReport != null) {
+					runReport.addTime("generate", System.nanoTime() - startNanos);
+				}
+
+				getLog().info(generator.getRows() + " rows generated in " + generator.getTableNames().size() + " tables with the seed " + seed
+					+ " in " + (System.currentTimeMillis() - start) + " ms" + (dest != null ? ", written to " + dest : ""));
+			}
+			finally {
+				connection.close();
+			}
+		}
+		catch (Exception e) {
+			throw new MojoExecutionException("Error generating the data set", e);
+		}
+		finally {
+			writeRunReport();
+		}
+	}
+
+	/**
+	 * @param unitSchema The schema
+	 * @return The tables included and not excluded
+	 */
+	private List<String> selectTables(UnitSchema unitSchema) {
+		List<String> tableNames = new ArrayList<>();
+		for (String tableName : unitSchema.getTableNames()) {
+			if (matches(tableName, includes, true) && !matches(tableName, excludes, false)) {
+				tableNames.add(tableName);
+			}
+		}
+		return tableNames;
+	}
+
+	private static boolean matches(String tableName, String[] patterns, boolean matchesWhenEmpty) {
+		if (patterns == null || patterns.length == 0) {
+			return matchesWhenEmpty;
+		}
+
+		for (String pattern : patterns) {
+			if (tableName.matches(pattern)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Write the generated rows to the dest file
+	 *
+	 * @param generator The generator
+	 * @param csv True to write a csv file per table in the dest directory
+	 * @throws Exception When the data set cannot be written
+	 */
+	private void write(DataSetGenerator generator, boolean csv) throws Exception {
+		if (csv) {
+			generator.setConsumer(new CsvDataSetWriter(dest));
+			generator.produce();
+			return;
+		}
+
+		if (dest.getParentFile() != null && !dest.getParentFile().isDirectory() && !dest.getParentFile().mkdirs()) {
+			throw new MojoExecutionException("Unable to create the directory of " + dest);
+		}
+
+		try (OutputStream out = new BufferedOutputStream(Compression.compress(new FileOutputStream(dest), compression, compressionLevel, bufferSize), bufferSize)) {
+			generator.setConsumer(StreamingExport.createWriter(out, format, encoding, null));
+			generator.produce();
+		}
+	}
+
+	/**
+	 * Insert the generated rows in the database, parents first
+	 *
+	 * @param connection The connection
+	 * @param unitSchema The schema
+	 * @param generator The generator
+	 * @throws Exception When the rows cannot be inserted
+	 */
+	private void insert(IDatabaseConnection connection, UnitSchema unitSchema, DataSetGenerator generator) throws Exception {
+		if (clean) {
+			long start = System.nanoTime();
+			new TableCleaner(unitSchema).clear(connection, null, generator.getTableNames());
+			if (runReport != null) {
+				runReport.addTime("clear", System.nanoTime() - start);
+			}
+		}
+
+		StreamingImport streamingImport = new StreamingImport(connection, "INSERT");
+		streamingImport.setCommitInterval(commitInterval);
+		streamingImport.setTransaction(transaction);
+		streamingImport.setReport(runReport);
+		streamingImport.execute(generator);
+
+		if (verbose) {
+			getLog().info(streamingImport.getRows() + " rows inserted by " + streamingImport.getBatches() + " batches of at most " + streamingImport.getBatchSize() + " rows");
+		}
+	}
+}
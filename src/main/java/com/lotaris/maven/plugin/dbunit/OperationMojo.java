@@ -25,14 +25,31 @@ package com.lotaris.maven.plugin.dbunit;
  * SOFTWARE.
 */
 
+import com.lotaris.maven.plugin.dbunit.binary.BinaryFormat;
+import com.lotaris.maven.plugin.dbunit.database.ConnectionPool;
+import com.lotaris.maven.plugin.dbunit.database.ConnectionProvider;
+import com.lotaris.maven.plugin.dbunit.database.DatabaseTarget;
+import com.lotaris.maven.plugin.dbunit.database.Dialect;
+import com.lotaris.maven.plugin.dbunit.model.UnitSchema;
+import com.lotaris.maven.plugin.dbunit.operation.BulkLoader;
+import com.lotaris.maven.plugin.dbunit.operation.ChunkedOperation;
+import com.lotaris.maven.plugin.dbunit.operation.DataSetCache;
+import com.lotaris.maven.plugin.dbunit.operation.DataSetLoader;
+import com.lotaris.maven.plugin.dbunit.operation.ExtendedOperation;
+import com.lotaris.maven.plugin.dbunit.operation.ImportOperation;
+import com.lotaris.maven.plugin.dbunit.operation.ParallelImport;
+import com.lotaris.maven.plugin.dbunit.operation.StreamingImport;
+import com.lotaris.maven.plugin.dbunit.operation.TableCleaner;
 import java.io.File;
-import java.sql.Connection;
-import java.sql.DatabaseMetaData;
-import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
@@ -41,6 +58,7 @@ import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.plugins.annotations.ResolutionScope;
 import org.dbunit.ant.Operation;
 import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.IDataSet;
 
 /**
  * Execute DbUnit's Database Operation with an external dataset file.
@@ -72,13 +90,13 @@ public class OperationMojo extends AbstractDbUnitMojo {
 	protected File src;
     
 	/**
-	 * DataSet files.
+	 * DataSet files. The files compressed with gzip or deflate are decompressed while they are read.
 	 */
 	@Parameter
 	protected File[] sources;
 
 	/**
-	 * Dataset file format type. Valid types are: flat, xml, csv, and dtd
+	 * Dataset file format type. Valid types are: flat, xml, csv, dtd and binary
 	 */
 	@Parameter(required = true, defaultValue = "xml")
 	protected String format = "xml"; 
@@ -88,6 +106,71 @@ public class OperationMojo extends AbstractDbUnitMojo {
 	 */
 	@Parameter(defaultValue = "${false}")
 	protected Boolean clearAllTables = false;
+	
+	/**
+	 * Number of rows applied per transaction, table by table. 0 applies each source according to
+	 * the transaction parameter.
+	 */
+	@Parameter(defaultValue = "0")
+	protected int commitInterval = 0;
+	
+	/**
+	 * Adjust the number of rows per transaction to the throughput measured on the first chunks,
+	 * starting from commitInterval (or 1000 when not set)
+	 */
+	@Parameter(defaultValue = "${false}")
+	protected boolean autoTune = false;
+	
+	/**
+	 * Parse each source once and keep its binary form on disk, keyed by the content of the file, the
+	 * format and the data type factory. The next executions memory map the binary form instead of
+	 * parsing the file again.
+	 */
+	@Parameter(defaultValue = "${false}")
+	protected boolean dataSetCache = false;
+	
+	/**
+	 * Insert the rows while they are read from the sources, in JDBC batches of batchSize rows, so
+	 * memory usage does not depend on the size of the files. Only the INSERT, CLEAN_INSERT,
+	 * DELETE_ALL and NONE types are supported, the sources are applied one after the other.
+	 */
+	@Parameter(defaultValue = "${false}")
+	protected boolean streaming = false;
+	
+	/**
+	 * Directory of the parsed data set cache. Can be shared by all the modules of a build, for
+	 * example under the local repository.
+	 */
+	@Parameter(defaultValue = "${project.build.directory}/dbunit/dataset-cache")
+	protected File dataSetCacheDirectory;
+	
+	/**
+	 * Databases to apply the sources to instead of the main one, like the database or schema
+	 * of each fork of a test run. The url, schema, username and password that are not set are
+	 * taken from the main configuration. The schema of a target is made the default schema of
+	 * its connections, which SQL Server does not support. The sources are parsed once into the
+	 * data set cache directory and applied to all the targets at the same time, each on its own
+	 * connections.
+	 */
+	@Parameter
+	protected DatabaseTarget[] targets;
+	
+	/**
+	 * Load the rows with the native bulk loader of the database: each table is written in a CSV
+	 * file loaded by COPY on PostgreSQL, LOAD DATA LOCAL INFILE on MySQL, CSVREAD on H2 or a
+	 * text table on the HSQLDB file databases. The rows are read like the streaming import, so
+	 * the same operation types are supported, and the tables that cannot be bulk loaded are
+	 * inserted by batches.
+	 */
+	@Parameter(defaultValue = "${false}")
+	protected boolean bulkLoad = false;
+	
+	/**
+	 * Bulk loader: auto for the loader of the database, or the class name of a custom
+	 * implementation of com.lotaris.maven.plugin.dbunit.operation.BulkLoader
+	 */
+	@Parameter(defaultValue = BulkLoader.AUTO)
+	protected String bulkLoader = BulkLoader.AUTO;
 
 	@Override
 	@SuppressWarnings("unchecked")
@@ -99,6 +182,10 @@ public class OperationMojo extends AbstractDbUnitMojo {
 		}
 
 		super.execute();
+		
+		if (isStreaming() && !StreamingImport.isSupported(type.toUpperCase())) {
+			throw new MojoExecutionException("The streaming import and the bulk load only support the INSERT, CLEAN_INSERT, DELETE_ALL and NONE types, not: " + type);
+		}
 
 		List concatenatedSources = new ArrayList();
 		CollectionUtils.addIgnoreNull(concatenatedSources, src);
@@ -107,38 +194,356 @@ public class OperationMojo extends AbstractDbUnitMojo {
 		}
 
 		try {
-			IDatabaseConnection connection = createConnection();
+			boolean fanOut = targets != null && targets.length > 0;
+			
+			// Format of each source, the binary format for the sources taken from the cache
+			List<String> formats = new ArrayList<>();
+			if (dataSetCache || fanOut) {
+				long cacheStart = System.nanoTime();
+				concatenatedSources = resolveCachedSources(concatenatedSources, formats);
+				if (runReport != null) {
+					runReport.addTime("dataSetCache", System.nanoTime() - cacheStart);
+				}
+			}
+			else {
+				for (int i = 0; i < concatenatedSources.size(); i++) {
+					formats.add(format);
+				}
+			}
+			
+			if (fanOut) {
+				applyToTargets(concatenatedSources, formats);
+			}
+			else {
+				apply(this, url, schema, concatenatedSources, formats);
+			}
+		} catch (Exception e) {
+			throw new MojoExecutionException("Error executing database operation: " + type, e);
+		} finally {
+			writeRunReport();
+		}
+	}
+
+	/**
+	 * Apply the sources to a database
+	 * 
+	 * @param provider The provider of the connections to the database
+	 * @param url The JDBC URL of the database
+	 * @param schema The schema of the database, can be null
+	 * @param sources The data set files
+	 * @param formats The format of each file
+	 * @throws Exception When the operation fails
+	 */
+	private void apply(ConnectionProvider provider, String url, String schema, List<File> sources, List<String> formats) throws Exception {
+		IDatabaseConnection connection = provider.createConnection();
+		
+		// Worker connections shared by the clearing and the import
+		ConnectionPool pool = null;
+		
+		try {
+			if (threads > 1) {
+				pool = new ConnectionPool(provider, threads);
+			}
+			
+			ChunkedOperation chunkedOperation = null;
+			if (!isStreaming() && (commitInterval > 0 || autoTune) && ImportOperation.isSupported(type.toUpperCase())) {
+				chunkedOperation = new ChunkedOperation(commitInterval, autoTune);
 				
+				if (transaction) {
+					getLog().warn("The rows are committed every " + chunkedOperation.getChunkSize() + " rows, the transaction parameter is ignored");
+				}
+			}
+			
+			boolean parallel = !isStreaming() && threads > 1 && ParallelImport.isSupported(type.toUpperCase());
+			
+			// The tables are committed one by one in parallel, which would break the single transaction of each source
+			if (parallel && transaction && chunkedOperation == null) {
+				getLog().warn("The transaction parameter applies each source in one transaction, the sources are not applied in parallel");
+				parallel = false;
+			}
+			UnitSchema unitSchema = clearAllTables || parallel ? loadSchema(connection, true, url, schema) : null;
+			
 			// Force the database table to be empty before importing data
 			if (clearAllTables) {
-				Connection con = connection.getConnection();
-				DatabaseMetaData meta = con.getMetaData();
-				try (ResultSet rs = meta.getTables(null, null, "%", new String[] {"TABLE"})) {
-					while (rs.next()) {
-						String tName = rs.getString("TABLE_NAME");
-
-						// Truncate the data
-						con.createStatement().execute("TRUNCATE " + tName + ";");
-					}
+				long clearStart = System.nanoTime();
+				clearTables(connection, pool, unitSchema);
+				if (runReport != null) {
+					runReport.addTime("clear", System.nanoTime() - clearStart);
 				}
-			}			
+			}
 			
-			try {
-				for (Iterator i = concatenatedSources.iterator(); i.hasNext();) {
-					File source = (File) i.next();
-					Operation op = new Operation();
-					op.setFormat(format);
-					op.setSrc(source);
+			long operationStart = System.nanoTime();
+			
+			boolean applied = parallel && executeParallel(pool, unitSchema, sources, formats, chunkedOperation);
+			
+			if (isStreaming()) {
+				executeStreaming(connection, sources, formats);
+			}
+			else if (!applied && chunkedOperation != null) {
+				executeChunked(connection, chunkedOperation, sources, formats);
+			}
+			else if (!applied) {
+				for (int i = 0; i < sources.size(); i++) {
+					Operation op = new ExtendedOperation();
+					op.setFormat(formats.get(i));
+					op.setSrc(sources.get(i));
 					op.setTransaction(transaction);
 					op.setType(type);
 					op.execute(connection);
 				}
-			} finally {
-				connection.close();
 			}
-		} catch (Exception e) {
-			throw new MojoExecutionException("Error executing database operation: " + type, e);
+			
+			if (runReport != null) {
+				runReport.addTime("operation", System.nanoTime() - operationStart);
+			}
+		} finally {
+			if (pool != null) {
+				pool.close();
+			}
+			connection.close();
 		}
 	}
-}
+	
+	/**
+	 * Apply the sources to all the targets at the same time. The sources were parsed
+	 * once into their binary form, which each target memory maps.
+	 * 
+	 * @param sources The binary form of the data set files
+	 * @param formats The format of each file
+	 * @throws Exception When the operation fails on a target, after all the targets were applied
+	 */
+	private void applyToTargets(final List<File> sources, final List<String> formats) throws Exception {
+		long start = System.currentTimeMillis();
+		
+		ExecutorService executor = Executors.newFixedThreadPool(targets.length);
+		List<Future<Long>> futures = new ArrayList<>();
+		try {
+			for (DatabaseTarget target : targets) {
+				final String targetUrl = target.getUrl() != null ? target.getUrl() : url;
+				final String targetSchema = target.getSchema() != null ? target.getSchema() : schema;
+				final String targetUsername = target.getUsername() != null ? target.getUsername() : username;
+				final String targetPassword = target.getPassword() != null ? target.getPassword() : password;
+				final boolean useSchema = target.getSchema() != null;
+				
+				futures.add(executor.submit(new Callable<Long>() {
+					@Override
+					public Long call() throws Exception {
+						long targetStart = System.currentTimeMillis();
+						apply(new ConnectionProvider() {
+							@Override
+							public IDatabaseConnection createConnection() throws Exception {
+								IDatabaseConnection connection = OperationMojo.this.createConnection(targetUrl, targetSchema, targetUsername, targetPassword);
+								
+								// The statements use unqualified table names, resolved in the default schema of the connection
+								if (useSchema) {
+									try {
+										Dialect.of(connection.getConnection()).useSchema(connection.getConnection(), targetSchema);
+									}
+									catch (SQLException e) {
+										connection.close();
+										throw new MojoExecutionException("The schema " + targetSchema + " of the target cannot be made the default one of its connections, set the url or username of the target instead", e);
+									}
+								}
+								
+								return connection;
+							}
+						}, targetUrl, targetSchema, sources, formats);
+						return System.currentTimeMillis() - targetStart;
+					}
+				}));
+			}
+			
+			// Each target gets its own result, a failure does not stop the other targets
+			List<String> failures = new ArrayList<>();
+			Exception firstFailure = null;
+			for (int i = 0; i < targets.length; i++) {
+				try {
+					getLog().info("Target " + targets[i] + ": " + type + " applied in " + futures.get(i).get() + " ms");
+				}
+				catch (ExecutionException e) {
+					Exception cause = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+					getLog().error("Target " + targets[i] + ": " + type + " failed: " + cause.getMessage());
+					failures.add(targets[i].toString());
+					if (firstFailure == null) {
+						firstFailure = cause;
+					}
+				}
+			}
+			
+			if (firstFailure != null) {
+				throw new MojoExecutionException("The " + type + " operation failed on " + failures.size() + " of " + targets.length + " targets: " + failures, firstFailure);
+			}
+		}
+		finally {
+			executor.shutdownNow();
+		}
+		
+		getLog().info(sources.size() + " sources applied to " + targets.length + " targets in " + (System.currentTimeMillis() - start) + " ms");
+	}
+	
+	/**
+	 * Replace the sources by their binary form from the parsed data set cache
+	 * 
+	 * @param sources The data set files
+	 * @param formats Filled with the format of each file returned
+	 * @return The files to apply
+	 * @throws Exception When a source cannot be parsed or cached
+	 */
+	private List<File> resolveCachedSources(List<File> sources, List<String> formats) throws Exception {
+		long start = System.currentTimeMillis();
+		
+		DataSetCache cache = new DataSetCache(dataSetCacheDirectory, dataTypeFactoryName);
+		
+		List<File> resolved = new ArrayList<>();
+		for (File source : sources) {
+			File file = cache.get(source, format);
+			resolved.add(file);
+			formats.add(file.equals(source) ? format : BinaryFormat.FORMAT);
+		}
+		
+		if (verbose) {
+			getLog().info(cache.getHits() + " sources taken from the data set cache, " + cache.getMisses() + " parsed and cached in " + (System.currentTimeMillis() - start) + " ms");
+		}
+		
+		return resolved;
+	}
+	
+	/**
+	 * Empty all the tables of the schema
+	 * 
+	 * @param connection The main connection
+	 * @param pool The worker connections, null to use the main connection only
+	 * @param unitSchema The schema
+	 * @throws Exception When a table cannot be emptied
+	 */
+	private void clearTables(IDatabaseConnection connection, ConnectionPool pool, UnitSchema unitSchema) throws Exception {
+		long start = System.currentTimeMillis();
+		
+		new TableCleaner(unitSchema).clear(connection, pool, unitSchema.getTableNames());
+		
+		if (verbose) {
+			getLog().info(unitSchema.getTableNames().size() + " tables cleared in " + (System.currentTimeMillis() - start) + " ms");
+		}
+	}
+	
+	/**
+	 * Apply all the sources table by table on several connections, following the
+	 * foreign key dependencies
+	 * 
+	 * @param pool The worker connections
+	 * @param unitSchema The schema with the foreign keys
+	 * @param sources The data set files
+	 * @param formats The format of each file
+	 * @param chunkedOperation Commits the rows by chunks when set
+	 * @return False if the sources cannot be applied in parallel
+	 * @throws Exception When the operation fails
+	 */
+	private boolean executeParallel(ConnectionPool pool, UnitSchema unitSchema, List<File> sources, List<String> formats, ChunkedOperation chunkedOperation) throws Exception {
+		List<IDataSet> dataSets = new ArrayList<>();
+		for (int i = 0; i < sources.size(); i++) {
+			dataSets.add(DataSetLoader.load(sources.get(i), formats.get(i), false));
+		}
+		
+		ParallelImport parallelImport = new ParallelImport(pool, unitSchema, type.toUpperCase());
+		parallelImport.setChunkedOperation(chunkedOperation);
+
+		if (!parallelImport.canSchedule(dataSets)) {
+			getLog().warn("Some tables are present in several sources, the " + type + " operation is applied source by source");
+			return false;
+		}
+
+		long start = System.currentTimeMillis();
+		int levels = parallelImport.execute(dataSets);
 
+		if (verbose) {
+			getLog().info(sources.size() + " sources applied in " + levels + " dependency levels in " + (System.currentTimeMillis() - start) + " ms");
+			logChunkSize(chunkedOperation);
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Apply the sources one after the other, committing the rows by chunks
+	 * 
+	 * @param connection The connection
+	 * @param chunkedOperation The chunked operation
+	 * @param sources The data set files
+	 * @param formats The format of each file
+	 * @throws Exception When the operation fails
+	 */
+	private void executeChunked(IDatabaseConnection connection, ChunkedOperation chunkedOperation, List<File> sources, List<String> formats) throws Exception {
+		ImportOperation operation = new ImportOperation(type.toUpperCase());
+		
+		long start = System.currentTimeMillis();
+		for (int i = 0; i < sources.size(); i++) {
+			chunkedOperation.execute(connection, operation, DataSetLoader.load(sources.get(i), formats.get(i), false));
+		}
+		
+		if (verbose) {
+			getLog().info(sources.size() + " sources applied in " + (System.currentTimeMillis() - start) + " ms");
+			logChunkSize(chunkedOperation);
+		}
+	}
+	
+	/**
+	 * Apply the sources one after the other while their rows are read
+	 * 
+	 * @param connection The connection
+	 * @param sources The data set files
+	 * @param formats The format of each file
+	 * @throws Exception When the operation fails
+	 */
+	private void executeStreaming(IDatabaseConnection connection, List<File> sources, List<String> formats) throws Exception {
+		if (threads > 1) {
+			getLog().warn("The streaming import applies the sources one by one, threads is only used to clear the tables");
+		}
+		
+		if (autoTune) {
+			getLog().warn("The streaming import commits every commitInterval rows, autoTune is ignored");
+		}
+		
+		StreamingImport streamingImport = new StreamingImport(connection, type.toUpperCase());
+		streamingImport.setCommitInterval(commitInterval);
+		streamingImport.setTransaction(transaction);
+		streamingImport.setReport(runReport);
+		
+		if (bulkLoad) {
+			Dialect dialect = Dialect.of(connection.getConnection());
+			BulkLoader bulkLoader = BulkLoader.create(this.bulkLoader, dialect);
+			if (bulkLoader == null) {
+				getLog().warn("No bulk loader for the " + dialect + " databases, the rows are inserted by batches");
+			}
+			streamingImport.setBulkLoader(bulkLoader);
+		}
+		
+		long start = System.currentTimeMillis();
+		for (int i = 0; i < sources.size(); i++) {
+			streamingImport.execute(sources.get(i), formats.get(i));
+		}
+		
+		if (verbose) {
+			getLog().info(streamingImport.getRows() + " rows inserted in " + streamingImport.getTables() + " tables by " + streamingImport.getBatches() 
+				+ " batches of at most " + streamingImport.getBatchSize() + " rows in " + (System.currentTimeMillis() - start) + " ms"
+				+ (bulkLoad ? ", " + streamingImport.getBulkTables() + " tables bulk loaded" : ""));
+		}
+	}
+	
+	/**
+	 * @return True if the rows are applied while they are read
+	 */
+	private boolean isStreaming() {
+		return streaming || bulkLoad;
+	}
+	
+	/**
+	 * Report the number of rows per transaction, which can differ from the configured one when auto tuned
+	 * 
+	 * @param chunkedOperation The chunked operation, can be null
+	 */
+	private void logChunkSize(ChunkedOperation chunkedOperation) {
+		if (chunkedOperation != null) {
+			getLog().info("Rows committed by chunks of " + chunkedOperation.getChunkSize() + (autoTune ? " (auto tuned)" : ""));
+		}
+	}
+}
@@ -0,0 +1,321 @@
+package com.lotaris.maven.plugin.dbunit.binary;
+
+import com.lotaris.maven.plugin.dbunit.util.Compression;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.DefaultTableMetaData;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.datatype.DataType;
+import org.dbunit.dataset.datatype.DataTypeException;
+import org.dbunit.dataset.stream.IDataSetConsumer;
+import org.dbunit.dataset.stream.IDataSetProducer;
+
+/**
+ * Read a data set in the binary columnar format. The headers and the blocks
+ * are memory mapped one by one and decoded column by column, so only one block
+ * is held in memory whatever the size of the file. A compressed file is read
+ * block by block while it is decompressed.
+ *
+ * @author Laurent Prévost <laurent.prevost@lotaris.com>
+ */
+public class BinaryDataSetProducer implements IDataSetProducer {
+	private final File src;
+
+	private IDataSetConsumer consumer;
+
+	//<editor-fold defaultstate="collapsed" desc="Constructors">
+	/**
+	 * Constructor
+	 *
+	 * @param src The binary data set file
+	 */
+	public BinaryDataSetProducer(File src) {
+		this.src = src;
+	}
+	//</editor-fold>
+
+	//<editor-fold defaultstate="collapsed" desc="Overrides">
+	@Override
+	public void setConsumer(IDataSetConsumer consumer) throws DataSetException {
+		this.consumer = consumer;
+	}
+
+	@Override
+	public void produce() throws DataSetException {
+		try {
+			// A compressed file cannot be mapped, its blocks are read while it is decompressed
+			if (Compression.isCompressed(src)) {
+				try (InputStream in = Compression.open(src)) {
+					produce(new StreamInput(in));
+				}
+			}
+			else {
+				try (FileChannel channel = FileChannel.open(src.toPath(), StandardOpenOption.READ)) {
+					produce(new MappedInput(channel));
+				}
+			}
+		}
+		catch (IOException e) {
+			throw new DataSetException("Unable to read the binary data set " + src, e);
+		}
+	}
+	//</editor-fold>
+
+	/**
+	 * Read the tables and send their rows to the consumer
+	 *
+	 * @param input The content of the file
+	 * @throws IOException When the file cannot be read
+	 * @throws DataSetException When the file is not a binary data set or the consumer fails
+	 */
+	private void produce(Input input) throws IOException, DataSetException {
+		ByteBuffer prefix = input.read(BinaryFormat.MAGIC.length + 1);
+		byte[] magic = new byte[BinaryFormat.MAGIC.length];
+		prefix.get(magic);
+		if (!Arrays.equals(magic, BinaryFormat.MAGIC)) {
+			throw new DataSetException(src + " is not a binary data set");
+		}
+		byte version = prefix.get();
+		if (version != BinaryFormat.VERSION && version != BinaryFormat.VERSION_WITHOUT_FLOAT && version != BinaryFormat.VERSION_WITHOUT_NO_VALUE) {
+			throw new DataSetException("Unsupported version of the binary data set " + src);
+		}
+
+		Column[] columns = null;
+
+		consumer.startDataSet();
+
+		for (boolean end = false; !end;) {
+			byte tag = input.read(1).get();
+
+			switch (tag) {
+				case BinaryFormat.TABLE:
+					ByteBuffer header = input.map(input.read(4).getInt());
+
+					String tableName = readString(header);
+					columns = new Column[header.getInt()];
+					for (int i = 0; i < columns.length; i++) {
+						columns[i] = new Column(readString(header), toDataType(header.getInt()));
+					}
+
+					consumer.startTable(new DefaultTableMetaData(tableName, columns));
+					break;
+
+				case BinaryFormat.BLOCK:
+					ByteBuffer blockHeader = input.read(8);
+					int rowCount = blockHeader.getInt();
+					produceBlock(input.map(blockHeader.getInt()), columns, rowCount);
+					break;
+
+				case BinaryFormat.END_TABLE:
+					consumer.endTable();
+					break;
+
+				case BinaryFormat.END_DATASET:
+					end = true;
+					break;
+
+				default:
+					throw new DataSetException("Corrupted binary data set " + src);
+			}
+		}
+
+		consumer.endDataSet();
+	}
+
+	/**
+	 * Decode the columns of a block and send its rows to the consumer
+	 *
+	 * @param data The data of the block
+	 * @param columns The columns of the table
+	 * @param rowCount The number of rows in the block
+	 * @throws DataSetException When the consumer fails
+	 */
+	private void produceBlock(ByteBuffer data, Column[] columns, int rowCount) throws DataSetException {
+		Object[][] values = new Object[columns.length][];
+		for (int i = 0; i < columns.length; i++) {
+			values[i] = readColumn(data, rowCount);
+		}
+
+		for (int row = 0; row < rowCount; row++) {
+			Object[] rowValues = new Object[columns.length];
+			for (int i = 0; i < columns.length; i++) {
+				rowValues[i] = values[i][row];
+			}
+			consumer.row(rowValues);
+		}
+	}
+
+	/**
+	 * Decode the values of a column
+	 *
+	 * @param data The data of the block, positioned on the column
+	 * @param rowCount The number of rows in the block
+	 * @return The values of the rows
+	 */
+	private static Object[] readColumn(ByteBuffer data, int rowCount) {
+		byte encoding = data.get();
+
+		byte[] nulls = new byte[(rowCount + 7) / 8];
+		data.get(nulls);
+
+		Object[] values = new Object[rowCount];
+
+		if ((encoding & BinaryFormat.NO_VALUE_FLAG) != 0) {
+			encoding &= ~BinaryFormat.NO_VALUE_FLAG;
+			
+			byte[] noValues = new byte[nulls.length];
+			data.get(noValues);
+			for (int row = 0; row < rowCount; row++) {
+				if ((noValues[row / 8] & (1 << (row % 8))) != 0) {
+					values[row] = ITable.NO_VALUE;
+				}
+			}
+		}
+
+		String[] dictionary = null;
+		if (encoding == BinaryFormat.ENCODING_DICTIONARY) {
+			dictionary = new String[data.getInt()];
+			for (int i = 0; i < dictionary.length; i++) {
+				dictionary[i] = readString(data);
+			}
+		}
+
+		for (int row = 0; row < rowCount; row++) {
+			if ((nulls[row / 8] & (1 << (row % 8))) != 0) {
+				continue;
+			}
+
+			switch (encoding) {
+				case BinaryFormat.ENCODING_INT:
+					values[row] = data.getInt();
+					break;
+				case BinaryFormat.ENCODING_LONG:
+					values[row] = data.getLong();
+					break;
+				case BinaryFormat.ENCODING_FLOAT:
+					values[row] = data.getFloat();
+					break;
+				case BinaryFormat.ENCODING_DOUBLE:
+					values[row] = data.getDouble();
+					break;
+				case BinaryFormat.ENCODING_BOOLEAN:
+					values[row] = data.get() != 0;
+					break;
+				case BinaryFormat.ENCODING_BYTES:
+					byte[] bytes = new byte[data.getInt()];
+					data.get(bytes);
+					values[row] = bytes;
+					break;
+				case BinaryFormat.ENCODING_DICTIONARY:
+					values[row] = dictionary[data.getInt()];
+					break;
+				default:
+					values[row] = readString(data);
+			}
+		}
+
+		return values;
+	}
+
+	private static String readString(ByteBuffer data) {
+		byte[] bytes = new byte[data.getInt()];
+		data.get(bytes);
+		return new String(bytes, BinaryFormat.CHARSET);
+	}
+
+	private static DataType toDataType(int sqlType) {
+		try {
+			return DataType.forSqlType(sqlType);
+		}
+		catch (DataTypeException e) {
+			return DataType.UNKNOWN;
+		}
+	}
+
+	/**
+	 * Sequential access to the content of the file
+	 */
+	private interface Input {
+		/**
+		 * Read a small region
+		 *
+		 * @param length The length of the region
+		 * @return The region ready to be read
+		 * @throws IOException When the file ends before the region
+		 */
+		ByteBuffer read(int length) throws IOException;
+
+		/**
+		 * Access a large region, mapped when possible
+		 *
+		 * @param length The length of the region
+		 * @return The region ready to be read
+		 * @throws IOException When the region cannot be read
+		 */
+		ByteBuffer map(int length) throws IOException;
+	}
+
+	/**
+	 * Memory mapped access to an uncompressed file
+	 */
+	private class MappedInput implements Input {
+		private final FileChannel channel;
+		private long position = 0;
+
+		public MappedInput(FileChannel channel) {
+			this.channel = channel;
+		}
+
+		@Override
+		public ByteBuffer read(int length) throws IOException {
+			ByteBuffer buffer = ByteBuffer.allocate(length);
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer, position + buffer.position()) < 0) {
+					throw new EOFException("Unexpected end of the binary data set " + src);
+				}
+			}
+			position += length;
+			buffer.flip();
+			return buffer;
+		}
+
+		@Override
+		public ByteBuffer map(int length) throws IOException {
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+			position += length;
+			return buffer;
+		}
+	}
+
+	/**
+	 * Access to a file decompressed while it is read
+	 */
+	private static class StreamInput implements Input {
+		private final DataInputStream in;
+
+		public StreamInput(InputStream in) {
+			this.in = new DataInputStream(in);
+		}
+
+		@Override
+		public ByteBuffer read(int length) throws IOException {
+			byte[] bytes = new byte[length];
+			in.readFully(bytes);
+			return ByteBuffer.wrap(bytes);
+		}
+
+		@Override
+		public ByteBuffer map(int length) throws IOException {
+			return read(length);
+		}
+	}
+}
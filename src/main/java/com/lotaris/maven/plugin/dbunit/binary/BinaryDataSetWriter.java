@@ -0,0 +1,360 @@
+package com.lotaris.maven.plugin.dbunit.binary;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.ITableMetaData;
+import org.dbunit.dataset.datatype.DataType;
+import org.dbunit.dataset.datatype.TypeCastException;
+import org.dbunit.dataset.stream.IDataSetConsumer;
+
+/**
+ * Write a data set in the binary columnar format. The rows are buffered by
+ * blocks of a fixed number of rows, each block being written column by column
+ * once full, so memory usage is bounded by the block size.
+ *
+ * @author Laurent Prévost <laurent.prevost@lotaris.com>
+ */
+public class BinaryDataSetWriter implements IDataSetConsumer {
+	/**
+	 * Default number of rows per block
+	 */
+	public static final int DEFAULT_BLOCK_ROWS = 8192;
+
+	/**
+	 * Approximate size of the buffered values after which a block is written before being full
+	 */
+	private static final long MAX_BLOCK_BYTES = 16 * 1024 * 1024;
+
+	private final DataOutputStream out;
+
+	private final int blockRows;
+
+	private final List<Object[]> rows = new ArrayList<>();
+
+	private long blockBytes = 0;
+
+	private int columnCount;
+
+	//<editor-fold defaultstate="collapsed" desc="Constructors">
+	/**
+	 * Constructor
+	 *
+	 * @param out The stream to write to, should be buffered
+	 */
+	public BinaryDataSetWriter(OutputStream out) {
+		this(out, DEFAULT_BLOCK_ROWS);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param out The stream to write to, should be buffered
+	 * @param blockRows The number of rows per block
+	 */
+	public BinaryDataSetWriter(OutputStream out, int blockRows) {
+		this.out = new DataOutputStream(out);
+		this.blockRows = Math.max(1, blockRows);
+	}
+	//</editor-fold>
+
+	//<editor-fold defaultstate="collapsed" desc="Overrides">
+	@Override
+	public void startDataSet() throws DataSetException {
+		try {
+			out.write(BinaryFormat.MAGIC);
+			out.writeByte(BinaryFormat.VERSION);
+		}
+		catch (IOException e) {
+			throw new DataSetException(e);
+		}
+	}
+
+	@Override
+	public void endDataSet() throws DataSetException {
+		try {
+			out.writeByte(BinaryFormat.END_DATASET);
+			out.flush();
+		}
+		catch (IOException e) {
+			throw new DataSetException(e);
+		}
+	}
+
+	@Override
+	public void startTable(ITableMetaData metaData) throws DataSetException {
+		Column[] columns = metaData.getColumns();
+		columnCount = columns.length;
+
+		try {
+			ByteArrayOutputStream header = new ByteArrayOutputStream();
+			DataOutputStream headerOut = new DataOutputStream(header);
+
+			writeString(headerOut, metaData.getTableName());
+			headerOut.writeInt(columns.length);
+			for (Column column : columns) {
+				writeString(headerOut, column.getColumnName());
+				headerOut.writeInt(column.getDataType().getSqlType());
+			}
+
+			out.writeByte(BinaryFormat.TABLE);
+			out.writeInt(header.size());
+			header.writeTo(out);
+		}
+		catch (IOException e) {
+			throw new DataSetException(e);
+		}
+	}
+
+	@Override
+	public void endTable() throws DataSetException {
+		try {
+			writeBlock();
+			out.writeByte(BinaryFormat.END_TABLE);
+		}
+		catch (IOException e) {
+			throw new DataSetException(e);
+		}
+	}
+
+	@Override
+	public void row(Object[] values) throws DataSetException {
+		// The producers may reuse the row array
+		rows.add(values.clone());
+
+		for (Object value : values) {
+			if (value instanceof byte[]) {
+				blockBytes += ((byte[]) value).length;
+			}
+			else if (value instanceof String) {
+				blockBytes += ((String) value).length();
+			}
+		}
+
+		if (rows.size() >= blockRows || blockBytes >= MAX_BLOCK_BYTES) {
+			try {
+				writeBlock();
+			}
+			catch (IOException e) {
+				throw new DataSetException(e);
+			}
+		}
+	}
+	//</editor-fold>
+
+	/**
+	 * Write the buffered rows column by column
+	 *
+	 * @throws IOException When the block cannot be written
+	 * @throws DataSetException When a value cannot be converted
+	 */
+	private void writeBlock() throws IOException, DataSetException {
+		if (rows.isEmpty()) {
+			return;
+		}
+
+		ByteArrayOutputStream data = new ByteArrayOutputStream();
+		DataOutputStream dataOut = new DataOutputStream(data);
+
+		for (int i = 0; i < columnCount; i++) {
+			writeColumn(dataOut, i);
+		}
+
+		out.writeByte(BinaryFormat.BLOCK);
+		out.writeInt(rows.size());
+		out.writeInt(data.size());
+		data.writeTo(out);
+
+		rows.clear();
+		blockBytes = 0;
+	}
+
+	/**
+	 * Write the values of a column with the most compact encoding that fits them all
+	 *
+	 * @param dataOut The output of the block
+	 * @param column The column index
+	 * @throws IOException When the column cannot be written
+	 * @throws DataSetException When a value cannot be converted
+	 */
+	private void writeColumn(DataOutputStream dataOut, int column) throws IOException, DataSetException {
+		byte encoding = chooseEncoding(column);
+
+		// Null bitmap, the values not present in the data set are nulls also recorded in their own bitmap
+		byte[] nulls = new byte[(rows.size() + 7) / 8];
+		byte[] noValues = null;
+		for (int row = 0; row < rows.size(); row++) {
+			Object value = rows.get(row)[column];
+			if (isNull(value)) {
+				nulls[row / 8] |= 1 << (row % 8);
+			}
+			if (value == ITable.NO_VALUE) {
+				if (noValues == null) {
+					noValues = new byte[nulls.length];
+				}
+				noValues[row / 8] |= 1 << (row % 8);
+			}
+		}
+
+		dataOut.writeByte(noValues != null ? encoding | BinaryFormat.NO_VALUE_FLAG : encoding);
+		dataOut.write(nulls);
+		if (noValues != null) {
+			dataOut.write(noValues);
+		}
+
+		if (encoding == BinaryFormat.ENCODING_DICTIONARY) {
+			writeDictionary(dataOut, column);
+			return;
+		}
+
+		for (Object[] row : rows) {
+			Object value = row[column];
+			if (isNull(value)) {
+				continue;
+			}
+
+			switch (encoding) {
+				case BinaryFormat.ENCODING_INT:
+					dataOut.writeInt(((Number) value).intValue());
+					break;
+				case BinaryFormat.ENCODING_LONG:
+					dataOut.writeLong(((Number) value).longValue());
+					break;
+				case BinaryFormat.ENCODING_FLOAT:
+					dataOut.writeFloat((Float) value);
+					break;
+				case BinaryFormat.ENCODING_DOUBLE:
+					dataOut.writeDouble((Double) value);
+					break;
+				case BinaryFormat.ENCODING_BOOLEAN:
+					dataOut.writeBoolean((Boolean) value);
+					break;
+				case BinaryFormat.ENCODING_BYTES:
+					dataOut.writeInt(((byte[]) value).length);
+					dataOut.write((byte[]) value);
+					break;
+				default:
+					writeString(dataOut, asString(value));
+			}
+		}
+	}
+
+	/**
+	 * Write the distinct values of a string column once, followed by the index of the value of each row
+	 */
+	private void writeDictionary(DataOutputStream dataOut, int column) throws IOException, DataSetException {
+		Map<String, Integer> dictionary = new HashMap<>();
+		List<String> values = new ArrayList<>();
+		int[] indexes = new int[rows.size()];
+		int count = 0;
+
+		for (Object[] row : rows) {
+			if (isNull(row[column])) {
+				continue;
+			}
+
+			String value = asString(row[column]);
+			Integer index = dictionary.get(value);
+			if (index == null) {
+				index = values.size();
+				dictionary.put(value, index);
+				values.add(value);
+			}
+			indexes[count++] = index;
+		}
+
+		dataOut.writeInt(values.size());
+		for (String value : values) {
+			writeString(dataOut, value);
+		}
+
+		for (int i = 0; i < count; i++) {
+			dataOut.writeInt(indexes[i]);
+		}
+	}
+
+	/**
+	 * Find the encoding that fits all the values of a column in the block
+	 */
+	private byte chooseEncoding(int column) throws DataSetException {
+		boolean ints = true, longs = true, floats = true, doubles = true, booleans = true, bytes = true;
+		int nonNull = 0;
+
+		for (Object[] row : rows) {
+			Object value = row[column];
+			if (isNull(value)) {
+				continue;
+			}
+
+			nonNull++;
+			ints &= value instanceof Integer || value instanceof Short || value instanceof Byte;
+			longs &= value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte;
+			floats &= value instanceof Float;
+			doubles &= value instanceof Double;
+			booleans &= value instanceof Boolean;
+			bytes &= value instanceof byte[];
+		}
+
+		if (nonNull == 0) {
+			return BinaryFormat.ENCODING_STRING;
+		}
+		else if (ints) {
+			return BinaryFormat.ENCODING_INT;
+		}
+		else if (longs) {
+			return BinaryFormat.ENCODING_LONG;
+		}
+		else if (floats) {
+			return BinaryFormat.ENCODING_FLOAT;
+		}
+		else if (doubles) {
+			return BinaryFormat.ENCODING_DOUBLE;
+		}
+		else if (booleans) {
+			return BinaryFormat.ENCODING_BOOLEAN;
+		}
+		else if (bytes) {
+			return BinaryFormat.ENCODING_BYTES;
+		}
+
+		// A dictionary pays off when the values repeat at least once on average
+		Map<String, Boolean> distinct = new HashMap<>();
+		for (Object[] row : rows) {
+			if (!isNull(row[column])) {
+				distinct.put(asString(row[column]), Boolean.TRUE);
+				if (distinct.size() * 2 > nonNull) {
+					return BinaryFormat.ENCODING_STRING;
+				}
+			}
+		}
+
+		return BinaryFormat.ENCODING_DICTIONARY;
+	}
+
+	private static boolean isNull(Object value) {
+		return value == null || value == ITable.NO_VALUE;
+	}
+
+	private static String asString(Object value) throws DataSetException {
+		try {
+			return DataType.asString(value);
+		}
+		catch (TypeCastException e) {
+			throw new DataSetException("Unable to convert the value " + value + " to a string", e);
+		}
+	}
+
+	static void writeString(DataOutputStream out, String value) throws IOException {
+		byte[] bytes = value.getBytes(BinaryFormat.CHARSET);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+}
@@ -0,0 +1,82 @@
+package com.lotaris.maven.plugin.dbunit.binary;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Layout of the binary columnar data set files.
+ *
+ * <pre>
+ * file   := MAGIC VERSION table* END_DATASET
+ * table  := TABLE int(headerLength) header block* END_TABLE
+ * header := string(name) int(columnCount) (string(columnName) int(sqlType))*
+ * block  := BLOCK int(rowCount) int(dataLength) column*
+ * column := byte(encoding | NO_VALUE_FLAG?) nullBitmap noValueBitmap? values
+ * string := int(length) utf8Bytes
+ * </pre>
+ *
+ * Each block holds a fixed number of rows stored column by column. The values
+ * of a column are written with the most compact encoding that fits all of them
+ * in the block: integers, longs, floats, doubles, booleans, bytes, plain strings
+ * or strings through a dictionary when they repeat. The null values are only
+ * recorded in the bitmap. The values absent from the data set, like the
+ * {@code <none/>} values of the xml format, are nulls also recorded in a second
+ * bitmap, written only when the block has some. The lengths prefixing the headers and the blocks let
+ * the readers map each region of the file directly.
+ *
+ * @author Laurent Prévost <laurent.prevost@lotaris.com>
+ */
+public final class BinaryFormat {
+	/**
+	 * Name of the format in the format parameters
+	 */
+	public static final String FORMAT = "binary";
+
+	/**
+	 * Version of the layout, part of the keys of the files cached in this format
+	 */
+	public static final byte VERSION = 3;
+
+	/**
+	 * Version 2 files have no float encoding, their floats were written as doubles, and are read as is
+	 */
+	static final byte VERSION_WITHOUT_FLOAT = 2;
+
+	/**
+	 * Version 1 files have no value absent from the data set either
+	 */
+	static final byte VERSION_WITHOUT_NO_VALUE = 1;
+
+	static final byte[] MAGIC = { 'D', 'B', 'U', 'B' };
+
+	static final byte TABLE = 1;
+	static final byte BLOCK = 2;
+	static final byte END_TABLE = 3;
+	static final byte END_DATASET = 4;
+
+	static final byte ENCODING_INT = 1;
+	static final byte ENCODING_LONG = 2;
+	static final byte ENCODING_DOUBLE = 3;
+	static final byte ENCODING_BOOLEAN = 4;
+	static final byte ENCODING_BYTES = 5;
+	static final byte ENCODING_STRING = 6;
+	static final byte ENCODING_DICTIONARY = 7;
+	static final byte ENCODING_FLOAT = 8;
+
+	/**
+	 * Set on the encoding of a column followed by the bitmap of its absent values
+	 */
+	static final byte NO_VALUE_FLAG = (byte) 0x80;
+
+	static final Charset CHARSET = StandardCharsets.UTF_8;
+
+	private BinaryFormat() {}
+
+	/**
+	 * @param format The format to check
+	 * @return True if the format is the binary format
+	 */
+	public static boolean isBinary(String format) {
+		return FORMAT.equalsIgnoreCase(format);
+	}
+}
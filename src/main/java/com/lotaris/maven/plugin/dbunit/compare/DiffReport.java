@@ -0,0 +1,134 @@
+package com.lotaris.maven.plugin.dbunit.compare;
+
+import com.lotaris.maven.plugin.dbunit.util.JsonWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import org.dbunit.dataset.ITable;
+
+/**
+ * JSON report of a comparison with the counts, the timings and the kept
+ * differences of each table, for the tools that check the comparisons.
+ *
+ * @author Laurent Prévost <laurent.prevost@lotaris.com>
+ */
+public class DiffReport {
+	private final File src;
+
+	private final int threads;
+
+	private final long time;
+
+	private final boolean stopped;
+
+	private final List<TableComparison> results;
+
+	//<editor-fold defaultstate="collapsed" desc="Constructors">
+	/**
+	 * Constructor
+	 *
+	 * @param src The expected data set
+	 * @param threads The number of connections used
+	 * @param time The duration of the whole comparison in ms
+	 * @param stopped True if the comparison stopped at the maximum number of differences
+	 * @param results The results of the tables
+	 */
+	public DiffReport(File src, int threads, long time, boolean stopped, List<TableComparison> results) {
+		this.src = src;
+		this.threads = threads;
+		this.time = time;
+		this.stopped = stopped;
+		this.results = results;
+	}
+	//</editor-fold>
+
+	/**
+	 * Write the report, creating its directory if necessary
+	 *
+	 * @param file The report file
+	 * @throws IOException When the report cannot be written
+	 */
+	public void write(File file) throws IOException {
+		if (file.getParentFile() != null && !file.getParentFile().isDirectory() && !file.getParentFile().mkdirs()) {
+			throw new IOException("Unable to create the directory of " + file);
+		}
+
+		int failed = 0;
+		long differences = 0;
+		for (TableComparison result : results) {
+			if (!result.isSuccess()) {
+				failed++;
+			}
+			differences += result.getDifferenceCount();
+		}
+
+		try (JsonWriter json = new JsonWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+			json.beginObject()
+				.property("src", src.getPath())
+				.property("threads", threads)
+				.property("time", time)
+				.property("stopped", stopped)
+				.property("tables", results.size())
+				.property("failedTables", failed)
+				.property("differences", differences);
+
+			json.name("results").beginArray();
+			for (TableComparison result : results) {
+				writeResult(json, result);
+			}
+			json.endArray();
+
+			json.endObject();
+		}
+	}
+
+	private void writeResult(JsonWriter json, TableComparison result) throws IOException {
+		json.beginObject()
+			.property("table", result.getTableName())
+			.property("success", result.isSuccess())
+			.property("error", result.getError())
+			.property("expectedRows", result.getExpectedRows())
+			.property("actualRows", result.getActualRows())
+			.property("added", result.getAdded())
+			.property("removed", result.getRemoved())
+			.property("changed", result.getChanged())
+			.property("time", result.getTime());
+
+		json.name("differences").beginArray();
+		for (RowDifference difference : result.getDifferences()) {
+			json.beginObject()
+				.property("kind", difference.getKind().name())
+				.property("key", difference.getKey());
+
+			if (!difference.getColumns().isEmpty()) {
+				json.name("columns").beginArray();
+				for (int i = 0; i < difference.getColumns().size(); i++) {
+					json.beginObject()
+						.property("column", difference.getColumns().get(i))
+						.property("expected", toJson(difference.getExpectedValues().get(i)))
+						.property("actual", toJson(difference.getActualValues().get(i)))
+						.endObject();
+				}
+				json.endArray();
+			}
+
+			json.endObject();
+		}
+		json.endArray();
+
+		json.endObject();
+	}
+
+	/**
+	 * Values are written as strings since the JSON numbers cannot hold all the database types
+	 */
+	private static Object toJson(Object value) {
+		if (value == null || value == ITable.NO_VALUE) {
+			return null;
+		}
+		return value.toString();
+	}
+}
@@ -0,0 +1,32 @@
+package com.lotaris.maven.plugin.dbunit.compare;
+
+import com.lotaris.maven.plugin.dbunit.binary.BinaryFormat;
+import com.lotaris.maven.plugin.dbunit.operation.DataSetLoader;
+import java.io.File;
+import org.dbunit.DatabaseUnitException;
+import org.dbunit.ant.Compare;
+import org.dbunit.dataset.IDataSet;
+
+/**
+ * DB Unit comparison that also reads the data set formats added by the plugin
+ * and the compressed data set files
+ *
+ * @author Laurent Prévost <laurent.prevost@lotaris.com>
+ */
+public class ExtendedCompare extends Compare {
+	//<editor-fold defaultstate="collapsed" desc="Overrides">
+	@Override
+	public boolean isDataFormat(String format) {
+		return BinaryFormat.isBinary(format) || super.isDataFormat(format);
+	}
+
+	@Override
+	protected IDataSet getSrcDataSet(File src, String format, boolean forwardOnly) throws DatabaseUnitException {
+		if (BinaryFormat.isBinary(format) || DataSetLoader.isCompressed(src)) {
+			return DataSetLoader.load(src, format, forwardOnly);
+		}
+
+		return super.getSrcDataSet(src, format, forwardOnly);
+	}
+	//</editor-fold>
+}
@@ -0,0 +1,107 @@
+package com.lotaris.maven.plugin.dbunit.compare;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Difference found on a row between the expected data set and the database
+ * 
+ * @author Laurent Prévost <laurent.prevost@lotaris.com>
+ */
+public class RowDifference {
+	/**
+	 * Kinds of differences
+	 */
+	public enum Kind {
+		/**
+		 * The row is in the database but not in the expected data set
+		 */
+		ADDED,
+		
+		/**
+		 * The row is in the expected data set but not in the database
+		 */
+		REMOVED,
+		
+		/**
+		 * The row is in both but some values differ
+		 */
+		CHANGED
+	}
+	
+	private final Kind kind;
+	
+	private final String key;
+	
+	private final List<String> columns = new ArrayList<>();
+	
+	private final List<Object> expectedValues = new ArrayList<>();
+	
+	private final List<Object> actualValues = new ArrayList<>();
+
+	//<editor-fold defaultstate="collapsed" desc="Constructors">
+	/**
+	 * Constructor
+	 * 
+	 * @param kind The kind of difference
+	 * @param key The description of the row key
+	 */
+	public RowDifference(Kind kind, String key) {
+		this.kind = kind;
+		this.key = key;
+	}
+	//</editor-fold>
+	
+	/**
+	 * Add a column whose value differs
+	 * 
+	 * @param column The column name
+	 * @param expected The expected value
+	 * @param actual The value in the database
+	 */
+	public void addColumn(String column, Object expected, Object actual) {
+		columns.add(column);
+		expectedValues.add(expected);
+		actualValues.add(actual);
+	}
+
+	//<editor-fold defaultstate="collapsed" desc="Getters">
+	public Kind getKind() {
+		return kind;
+	}
+
+	public String getKey() {
+		return key;
+	}
+
+	/**
+	 * @return The columns whose value differs, empty when the whole row is added or removed
+	 */
+	public List<String> getColumns() {
+		return columns;
+	}
+
+	public List<Object> getExpectedValues() {
+		return expectedValues;
+	}
+
+	public List<Object> getActualValues() {
+		return actualValues;
+	}
+	//</editor-fold>
+
+	//<editor-fold defaultstate="collapsed" desc="Overrides">
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder(kind.name()).append(" [").append(key).append("]");
+		
+		for (int i = 0; i < columns.size(); i++) {
+			sb.append(i == 0 ? " " : ", ")
+				.append(columns.get(i)).append(": expected <").append(expectedValues.get(i))
+				.append("> but was <").append(actualValues.get(i)).append(">");
+		}
+		
+		return sb.toString();
+	}
+	//</editor-fold>
+}
@@ -0,0 +1,293 @@
+package com.lotaris.maven.plugin.dbunit.compare;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.datatype.DataType;
+import org.dbunit.dataset.datatype.TypeCastException;
+
+/**
+ * External merge sort of rows. Rows are sorted in memory by runs of a fixed
+ * size, each full run being written to a temporary file, and the runs are
+ * merged when the rows are iterated. Memory usage is bounded by the run size
+ * whatever the number of rows. The sorted rows can be iterated several times.
+ * The values of the drivers, which may not be serializable, are converted to
+ * the Java type of their column before they are written.
+ *
+ * @author Laurent Prévost <laurent.prevost@lotaris.com>
+ */
+public class RowSorter implements AutoCloseable {
+	/**
+	 * Serializable replacement of {@link ITable#NO_VALUE} in the run files
+	 */
+	private enum Marker {
+		NO_VALUE
+	}
+
+	/**
+	 * Number of rows after which the serialization stream is reset to release its references
+	 */
+	private static final int RESET_INTERVAL = 1000;
+
+	private final Comparator<Object[]> comparator;
+
+	private final DataType[] types;
+
+	private final int runSize;
+
+	private final List<Object[]> buffer = new ArrayList<>();
+
+	private final List<File> runs = new ArrayList<>();
+
+	private boolean sorted = false;
+
+	private long size = 0;
+
+	//<editor-fold defaultstate="collapsed" desc="Constructors">
+	/**
+	 * Constructor
+	 *
+	 * @param comparator The order of the rows
+	 * @param types The data types of the columns
+	 * @param runSize The maximum number of rows kept in memory
+	 */
+	public RowSorter(Comparator<Object[]> comparator, DataType[] types, int runSize) {
+		this.comparator = comparator;
+		this.types = types;
+		this.runSize = Math.max(1, runSize);
+	}
+	//</editor-fold>
+
+	/**
+	 * Add a row
+	 *
+	 * @param row The row
+	 * @throws IOException When a run cannot be written
+	 */
+	public void add(Object[] row) throws IOException {
+		if (sorted) {
+			throw new IllegalStateException("Rows cannot be added once iterated");
+		}
+
+		buffer.add(row);
+		size++;
+
+		if (buffer.size() >= runSize) {
+			spill();
+		}
+	}
+
+	/**
+	 * @return The number of rows added
+	 */
+	public long size() {
+		return size;
+	}
+
+	/**
+	 * Iterate the rows in order. No rows can be added afterwards.
+	 *
+	 * @return The iterator
+	 * @throws IOException When the runs cannot be read
+	 */
+	public Iterator<Object[]> iterator() throws IOException {
+		if (!sorted) {
+			if (!runs.isEmpty() && !buffer.isEmpty()) {
+				spill();
+			}
+			else {
+				Collections.sort(buffer, comparator);
+			}
+			sorted = true;
+		}
+
+		if (runs.isEmpty()) {
+			return buffer.iterator();
+		}
+
+		return new MergeIterator();
+	}
+
+	/**
+	 * Delete the temporary files
+	 */
+	@Override
+	public void close() {
+		for (File run : runs) {
+			run.delete();
+		}
+		runs.clear();
+		buffer.clear();
+	}
+
+	/**
+	 * Sort the buffer and write it to a new run file
+	 *
+	 * @throws IOException When the run cannot be written
+	 */
+	private void spill() throws IOException {
+		Collections.sort(buffer, comparator);
+
+		File run = File.createTempFile("dbunit-sort-", ".run");
+		run.deleteOnExit();
+		runs.add(run);
+
+		try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(run)))) {
+			int count = 0;
+			for (Object[] row : buffer) {
+				Object[] values = new Object[row.length];
+				for (int i = 0; i < row.length; i++) {
+					values[i] = row[i] == ITable.NO_VALUE ? Marker.NO_VALUE : toSerializable(i, row[i]);
+				}
+				out.writeObject(values);
+
+				if (++count % RESET_INTERVAL == 0) {
+					out.reset();
+				}
+			}
+		}
+
+		buffer.clear();
+	}
+
+	/**
+	 * Convert a value to the Java type of its column, or to a string when the type
+	 * gives no serializable value. The comparisons cast the values to the column
+	 * type anyway, so the order and the equality of the rows are unchanged.
+	 *
+	 * @param column The column index
+	 * @param value The value
+	 * @return The serializable value
+	 * @throws IOException When the value cannot be converted
+	 */
+	private Object toSerializable(int column, Object value) throws IOException {
+		if (value == null || isPortable(value)) {
+			return value;
+		}
+
+		try {
+			Object converted = types[column].typeCast(value);
+			return converted == null || isPortable(converted) ? converted : DataType.asString(value);
+		}
+		catch (TypeCastException e) {
+			throw new IOException("Unable to convert a value of the column " + column + " to a serializable value", e);
+		}
+	}
+
+	/**
+	 * @param value The value
+	 * @return True if the value is a serializable value of the JDK, not one of a driver
+	 */
+	private static boolean isPortable(Object value) {
+		return value instanceof byte[] || value instanceof Serializable && value.getClass().getName().startsWith("java.");
+	}
+
+	/**
+	 * Merge of the sorted runs
+	 */
+	private class MergeIterator implements Iterator<Object[]> {
+		private final PriorityQueue<RunReader> heads;
+
+		public MergeIterator() throws IOException {
+			heads = new PriorityQueue<>(runs.size(), new Comparator<RunReader>() {
+				@Override
+				public int compare(RunReader o1, RunReader o2) {
+					return comparator.compare(o1.current, o2.current);
+				}
+			});
+
+			for (File run : runs) {
+				RunReader reader = new RunReader(run);
+				if (reader.advance()) {
+					heads.add(reader);
+				}
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			return !heads.isEmpty();
+		}
+
+		@Override
+		public Object[] next() {
+			RunReader reader = heads.poll();
+			if (reader == null) {
+				throw new NoSuchElementException();
+			}
+
+			Object[] row = reader.current;
+
+			try {
+				if (reader.advance()) {
+					heads.add(reader);
+				}
+			}
+			catch (IOException e) {
+				throw new IllegalStateException("Unable to read a sorted run", e);
+			}
+
+			return row;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	/**
+	 * Sequential reader of a run file
+	 */
+	private static class RunReader {
+		private final ObjectInputStream in;
+		private Object[] current;
+
+		public RunReader(File run) throws IOException {
+			in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(run)));
+		}
+
+		/**
+		 * Read the next row of the run, closing it at the end
+		 *
+		 * @return False when the run is exhausted
+		 * @throws IOException When the run cannot be read
+		 */
+		public boolean advance() throws IOException {
+			try {
+				Object[] values = (Object[]) in.readObject();
+				for (int i = 0; i < values.length; i++) {
+					if (values[i] == Marker.NO_VALUE) {
+						values[i] = ITable.NO_VALUE;
+					}
+				}
+				current = values;
+				return true;
+			}
+			catch (EOFException e) {
+				in.close();
+				current = null;
+				return false;
+			}
+			catch (ClassNotFoundException e) {
+				in.close();
+				throw new IOException("Unable to read a sorted run", e);
+			}
+		}
+	}
+}
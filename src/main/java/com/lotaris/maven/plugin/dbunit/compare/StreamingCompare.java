@@ -0,0 +1,824 @@
+package com.lotaris.maven.plugin.dbunit.compare;
+
+import com.lotaris.maven.plugin.dbunit.database.ConnectionPool;
+import com.lotaris.maven.plugin.dbunit.export.DatabaseDataSetProducer;
+import com.lotaris.maven.plugin.dbunit.model.UnitColumn;
+import com.lotaris.maven.plugin.dbunit.model.UnitSchema;
+import com.lotaris.maven.plugin.dbunit.model.UnitTable;
+import com.lotaris.maven.plugin.dbunit.util.RunReport;
+import com.lotaris.maven.plugin.dbunit.util.TableStats;
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import org.dbunit.ant.Query;
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.database.IResultSetTable;
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.ITableMetaData;
+import org.dbunit.dataset.NoSuchColumnException;
+import org.dbunit.dataset.RowOutOfBoundsException;
+import org.dbunit.dataset.datatype.DataType;
+import org.dbunit.dataset.datatype.TypeCastException;
+import org.dbunit.dataset.stream.IDataSetConsumer;
+import org.dbunit.dataset.stream.IDataSetProducer;
+
+/**
+ * Compare an expected data set with the database with a sorted merge. The rows
+ * of each expected table are sorted by key with an external sort, the database
+ * rows are read through a cursor ordered by primary key, and both are merged row
+ * by row. Memory usage is bounded by the sort buffer whatever the size of the
+ * tables.
+ *
+ * The key is the primary key when all its columns are in the expected data set,
+ * all the expected columns otherwise. Only the expected columns are compared,
+ * like the DB Unit comparison. When the database orders the keys differently
+ * (e.g. collations), or for the configured queries, the database rows are
+ * sorted on the client side as well.
+ *
+ * With a pool of connections, each table is compared on its own connection
+ * while the next tables are read from the expected data set. The number of
+ * tables in progress, and therefore the memory used, is bounded by the size of
+ * the pool.
+ *
+ * @author Laurent Prévost <laurent.prevost@lotaris.com>
+ */
+public class StreamingCompare implements IDataSetConsumer {
+	/**
+	 * Maximum number of differences kept per table for the report
+	 */
+	public static final int MAX_KEPT_DIFFERENCES = 100;
+
+	private final IDatabaseConnection connection;
+
+	private final UnitSchema schema;
+
+	/**
+	 * Configured steps by upper case name, empty to compare all the expected tables
+	 */
+	private final Map<String, Query> steps = new LinkedHashMap<>();
+
+	private final int maxDifferences;
+
+	private final int sortBufferSize;
+
+	private final ConnectionPool pool;
+
+	private final List<TableComparison> results = new ArrayList<>();
+
+	private final List<Future<?>> tasks = new ArrayList<>();
+
+	private final AtomicLong differenceCount = new AtomicLong();
+
+	private volatile boolean stopped = false;
+
+	private ExecutorService executor;
+
+	private TableState current;
+
+	private RunReport report;
+
+	/**
+	 * Time of the last measure in ns, the time since then is spent by the producer
+	 */
+	private long mark;
+
+	//<editor-fold defaultstate="collapsed" desc="Constructors">
+	/**
+	 * Constructor
+	 *
+	 * @param connection The connection to the database
+	 * @param schema The schema with the primary keys
+	 * @param steps The tables and queries to compare, empty to compare all the expected tables
+	 * @param maxDifferences The number of differences after which the comparison stops, 0 for no limit
+	 * @param sortBufferSize The number of rows sorted in memory
+	 */
+	public StreamingCompare(IDatabaseConnection connection, UnitSchema schema, List<Query> steps, int maxDifferences, int sortBufferSize) {
+		this(connection, schema, steps, maxDifferences, sortBufferSize, null);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param connection The connection to the database, used when there is no pool
+	 * @param schema The schema with the primary keys
+	 * @param steps The tables and queries to compare, empty to compare all the expected tables
+	 * @param maxDifferences The number of differences after which the comparison stops, 0 for no limit
+	 * @param sortBufferSize The number of rows sorted in memory for each table
+	 * @param pool The pool of connections to compare the tables concurrently, null to compare them one by one
+	 */
+	public StreamingCompare(IDatabaseConnection connection, UnitSchema schema, List<Query> steps, int maxDifferences, int sortBufferSize, ConnectionPool pool) {
+		this.connection = connection;
+		this.pool = pool;
+		this.schema = schema;
+		this.maxDifferences = maxDifferences;
+		this.sortBufferSize = sortBufferSize;
+
+		for (Query step : steps) {
+			this.steps.put(step.getName().toUpperCase(), step);
+		}
+	}
+	//</editor-fold>
+
+	/**
+	 * @param report The report receiving the parse, query, sort and compare time of each table, null to not measure them
+	 */
+	public void setReport(RunReport report) {
+		this.report = report;
+	}
+
+	/**
+	 * Compare the data set produced with the database
+	 *
+	 * @param producer The producer of the expected data set
+	 * @return The results of the tables compared, in data set order
+	 * @throws DataSetException When the data set or the database cannot be read
+	 */
+	public List<TableComparison> compare(IDataSetProducer producer) throws DataSetException {
+		producer.setConsumer(this);
+
+		if (pool != null) {
+			executor = Executors.newFixedThreadPool(pool.size());
+		}
+
+		try {
+			producer.produce();
+		}
+		catch (DataSetException e) {
+			// The producers may wrap the exception stopping the comparison
+			if (!stopped) {
+				throw e;
+			}
+		}
+		finally {
+			if (current != null) {
+				current.close();
+				current = null;
+			}
+
+			awaitTasks();
+		}
+
+		// Configured tables not found in the expected data set
+		if (!stopped) {
+			for (Query step : steps.values()) {
+				boolean found = false;
+				for (TableComparison result : results) {
+					if (result.getTableName().equalsIgnoreCase(step.getName())) {
+						found = true;
+						break;
+					}
+				}
+
+				if (!found) {
+					TableComparison result = new TableComparison(step.getName(), 0);
+					result.setError("Did not find the table in the expected data set");
+					results.add(result);
+				}
+			}
+		}
+
+		return results;
+	}
+
+	/**
+	 * @return True if the comparison stopped because the maximum number of differences was reached
+	 */
+	public boolean isStopped() {
+		return stopped;
+	}
+
+	/**
+	 * Wait for the comparisons in progress on the pool
+	 *
+	 * @throws DataSetException When interrupted
+	 */
+	private void awaitTasks() throws DataSetException {
+		if (executor == null) {
+			return;
+		}
+
+		try {
+			for (Future<?> task : tasks) {
+				task.get();
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new DataSetException("Interrupted while waiting for the table comparisons", e);
+		}
+		catch (ExecutionException e) {
+			throw new DataSetException("Unable to compare a table", e.getCause());
+		}
+		finally {
+			executor.shutdownNow();
+			executor = null;
+			tasks.clear();
+		}
+	}
+
+	//<editor-fold defaultstate="collapsed" desc="Overrides">
+	@Override
+	public void startDataSet() throws DataSetException {
+		mark = System.nanoTime();
+	}
+
+	@Override
+	public void endDataSet() throws DataSetException {
+	}
+
+	@Override
+	public void startTable(ITableMetaData metaData) throws DataSetException {
+		Query step;
+		if (steps.isEmpty()) {
+			step = new Query();
+			step.setName(metaData.getTableName());
+		}
+		else {
+			step = steps.get(metaData.getTableName().toUpperCase());
+		}
+
+		if (step == null) {
+			return;
+		}
+
+		if (stopped) {
+			throw new DataSetException("The comparison stopped after " + differenceCount.get() + " differences");
+		}
+
+		long parsed = 0;
+		if (report != null) {
+			long now = System.nanoTime();
+			parsed = now - mark;
+			mark = now;
+		}
+
+		// Waits for a table in progress to finish when all the connections are used
+		IDatabaseConnection tableConnection = connection;
+		if (pool != null) {
+			try {
+				tableConnection = pool.acquire();
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new DataSetException("Interrupted while waiting for a connection", e);
+			}
+		}
+
+		long acquired = report != null ? System.nanoTime() : 0;
+		current = new TableState(step, metaData.getColumns(), tableConnection);
+
+		// The query and its metadata are measured by the table
+		if (report != null) {
+			current.stats.addTime("parse", parsed);
+			if (pool != null) {
+				current.stats.addTime("wait", acquired - mark);
+			}
+			mark = System.nanoTime();
+		}
+	}
+
+	@Override
+	public void row(Object[] values) throws DataSetException {
+		if (current != null) {
+			if (current.stats != null) {
+				long now = System.nanoTime();
+				current.parseTime += now - mark;
+				mark = now;
+			}
+			
+			current.add(values);
+			
+			if (current.stats != null) {
+				long now = System.nanoTime();
+				current.sortTime += now - mark;
+				mark = now;
+			}
+		}
+	}
+
+	@Override
+	public void endTable() throws DataSetException {
+		if (current == null) {
+			return;
+		}
+
+		final TableState state = current;
+		current = null;
+
+		if (state.stats != null) {
+			long now = System.nanoTime();
+			state.stats.addTime("parse", state.parseTime + now - mark);
+			state.stats.addTime("sort", state.sortTime);
+			mark = now;
+		}
+
+		if (executor != null) {
+			tasks.add(executor.submit(new Runnable() {
+				@Override
+				public void run() {
+					state.compareAndClose();
+				}
+			}));
+		}
+		else {
+			state.compareAndClose();
+		}
+
+		if (stopped) {
+			throw new DataSetException("The comparison stopped after " + differenceCount.get() + " differences");
+		}
+	}
+	//</editor-fold>
+
+	/**
+	 * Comparison of the table being read from the expected data set
+	 */
+	private class TableState {
+		private final IDatabaseConnection connection;
+		private final Query step;
+		private final String[] columns;
+		private final TableComparison result;
+		private final long start = System.currentTimeMillis();
+
+		private DataType[] types;
+		private int[] keys;
+		private Comparator<Object[]> comparator;
+		private RowSorter sorter;
+		private ITable orderedTable;
+		private boolean released = false;
+		private final TableStats stats;
+		private long parseTime;
+		private long sortTime;
+		private int queries;
+
+		/**
+		 * Differences of the pass checking the order, added to the shared count once the pass completes
+		 */
+		private long pendingDifferences;
+		private boolean deferCount;
+
+		public TableState(Query step, Column[] expectedColumns, IDatabaseConnection connection) {
+			this.connection = connection;
+			this.step = step;
+			this.result = new TableComparison(step.getName(), maxDifferences > 0 ? Math.min(maxDifferences, MAX_KEPT_DIFFERENCES) : MAX_KEPT_DIFFERENCES);
+			this.stats = report != null ? report.table(step.getName()) : null;
+
+			columns = new String[expectedColumns.length];
+			for (int i = 0; i < columns.length; i++) {
+				columns[i] = expectedColumns[i].getColumnName();
+			}
+
+			results.add(result);
+
+			try {
+				open();
+			}
+			catch (NoSuchColumnException e) {
+				result.setError("Column missing in the database: " + e.getMessage());
+			}
+			catch (DataSetException | SQLException e) {
+				result.setError("Unable to read the table: " + e.getMessage());
+			}
+		}
+
+		/**
+		 * Open the database cursor, ordered by key when possible, and prepare the sort of the expected rows
+		 */
+		private void open() throws DataSetException, SQLException {
+			// An expected table without columns only declares an empty table
+			if (columns.length == 0) {
+				return;
+			}
+			
+			UnitTable table = step.getSql() == null && schema != null ? schema.getTable(step.getName()) : null;
+
+			// The primary key is the row key when all its columns are expected
+			List<Integer> keyIndexes = new ArrayList<>();
+			if (table != null) {
+				for (UnitColumn uc : table.getPrimaryKeyColumns()) {
+					int index = indexOf(uc.getColumnName());
+					if (index < 0) {
+						keyIndexes.clear();
+						break;
+					}
+					keyIndexes.add(index);
+				}
+			}
+
+			if (keyIndexes.isEmpty()) {
+				for (int i = 0; i < columns.length; i++) {
+					keyIndexes.add(i);
+				}
+			}
+
+			keys = new int[keyIndexes.size()];
+			for (int i = 0; i < keys.length; i++) {
+				keys[i] = keyIndexes.get(i);
+			}
+
+			// Tables are read ordered by key, queries are sorted on the client side
+			ITable actual;
+			if (step.getSql() == null) {
+				try {
+					actual = createQueryTable(buildSelect(true));
+					orderedTable = actual;
+				}
+				catch (SQLException | DataSetException e) {
+					// Some column types cannot be ordered by the database
+					actual = createQueryTable(buildSelect(false));
+					close(actual);
+				}
+			}
+			else {
+				actual = createQueryTable(step.getSql());
+				close(actual);
+			}
+
+			ITableMetaData metaData = actual.getTableMetaData();
+			types = new DataType[columns.length];
+			for (int i = 0; i < columns.length; i++) {
+				types[i] = metaData.getColumns()[metaData.getColumnIndex(columns[i])].getDataType();
+			}
+
+			comparator = new KeyComparator();
+			sorter = new RowSorter(comparator, types, sortBufferSize);
+		}
+
+		public void add(Object[] values) throws DataSetException {
+			if (sorter == null) {
+				return;
+			}
+
+			try {
+				sorter.add(values);
+			}
+			catch (IOException e) {
+				throw new DataSetException("Unable to sort the rows of " + step.getName(), e);
+			}
+		}
+
+		/**
+		 * Compare the table and release its resources
+		 */
+		public void compareAndClose() {
+			long start = System.nanoTime();
+			try {
+				compare();
+			}
+			catch (DataSetException e) {
+				result.setError("Unable to compare the table: " + e.getMessage());
+			}
+			finally {
+				close();
+				
+				if (stats != null) {
+					stats.addTime("compare", System.nanoTime() - start);
+					stats.addRows(result.getActualRows());
+					stats.addRoundTrips(queries + result.getActualRows() / DatabaseDataSetProducer.getFetchSize(connection));
+				}
+			}
+		}
+
+		/**
+		 * Run a query on the connection of the table, measuring the query and its metadata when instrumented
+		 */
+		private ITable createQueryTable(String sql) throws SQLException, DataSetException {
+			queries++;
+			if (stats != null) {
+				return DatabaseDataSetProducer.createTable(connection, step.getName(), sql, stats);
+			}
+			return connection.createQueryTable(step.getName(), sql);
+		}
+
+		/**
+		 * Merge the expected rows with the database rows
+		 */
+		private void compare() throws DataSetException {
+			if (columns.length == 0 && result.getError() == null) {
+				compareEmpty();
+				return;
+			}
+			
+			if (sorter == null) {
+				return;
+			}
+
+			result.setExpectedRows(sorter.size());
+
+			try {
+				if (orderedTable != null) {
+					try {
+						merge(new TableRowIterator(orderedTable), true);
+						return;
+					}
+					catch (OrderViolationException e) {
+						close(orderedTable);
+						orderedTable = null;
+						result.reset();
+						result.setExpectedRows(sorter.size());
+					}
+				}
+
+				try (RowSorter actualSorter = new RowSorter(comparator, types, sortBufferSize)) {
+					ITable actual = createQueryTable(step.getSql() != null ? step.getSql() : buildSelect(false));
+					try {
+						for (TableRowIterator it = new TableRowIterator(actual); it.hasNext();) {
+							actualSorter.add(it.next());
+						}
+					}
+					finally {
+						close(actual);
+					}
+
+					merge(actualSorter.iterator(), false);
+				}
+			}
+			catch (IOException | SQLException | DataSetException | RuntimeException e) {
+				if (e instanceof StopException) {
+					return;
+				}
+				result.setError("Unable to compare the table: " + e.getMessage());
+			}
+			finally {
+				result.setTime(System.currentTimeMillis() - start);
+			}
+		}
+
+		/**
+		 * Check that a table declared empty has no rows in the database
+		 */
+		private void compareEmpty() {
+			String from = step.getSql() == null ? step.getName() : "(" + step.getSql() + ") q";
+			
+			queries++;
+			try (Statement st = connection.getConnection().createStatement(); ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM " + from)) {
+				rs.next();
+				long count = rs.getLong(1);
+				for (long i = 1; i <= count; i++) {
+					result.incrementActualRows();
+					difference(new RowDifference(RowDifference.Kind.ADDED, "row " + i));
+				}
+			}
+			catch (SQLException e) {
+				result.setError("Unable to count the rows: " + e.getMessage());
+			}
+			catch (StopException e) {
+				// The maximum number of differences is reached
+			}
+			finally {
+				result.setTime(System.currentTimeMillis() - start);
+			}
+		}
+		
+		/**
+		 * Merge two sorted row streams
+		 *
+		 * @param actual The database rows
+		 * @param checkOrder True to check that the database rows are ordered like the expected ones
+		 */
+		private void merge(Iterator<Object[]> actual, boolean checkOrder) throws IOException, DataSetException {
+			// The differences of a pass interrupted by an order violation are found again by the sorted pass
+			deferCount = checkOrder;
+			pendingDifferences = 0;
+			
+			try {
+				mergeRows(actual, checkOrder);
+			}
+			catch (OrderViolationException ove) {
+				deferCount = false;
+				throw ove;
+			}
+			finally {
+				if (deferCount) {
+					differenceCount.addAndGet(pendingDifferences);
+					deferCount = false;
+				}
+			}
+		}
+		
+		private void mergeRows(Iterator<Object[]> actual, boolean checkOrder) throws IOException, DataSetException {
+			Iterator<Object[]> expected = sorter.iterator();
+
+			Object[] e = expected.hasNext() ? expected.next() : null;
+			Object[] a = actual.hasNext() ? actual.next() : null;
+			Object[] previous = null;
+
+			while (e != null || a != null) {
+				if (checkOrder && a != null && previous != null && comparator.compare(previous, a) > 0) {
+					throw new OrderViolationException();
+				}
+
+				int c = e == null ? 1 : a == null ? -1 : comparator.compare(e, a);
+
+				if (c < 0) {
+					difference(new RowDifference(RowDifference.Kind.REMOVED, describeKey(e)));
+					e = expected.hasNext() ? expected.next() : null;
+				}
+				else if (c > 0) {
+					result.incrementActualRows();
+					difference(new RowDifference(RowDifference.Kind.ADDED, describeKey(a)));
+					previous = a;
+					a = actual.hasNext() ? actual.next() : null;
+				}
+				else {
+					result.incrementActualRows();
+
+					RowDifference difference = new RowDifference(RowDifference.Kind.CHANGED, describeKey(e));
+					for (int i = 0; i < columns.length; i++) {
+						if (e[i] != ITable.NO_VALUE && !equal(types[i], e[i], a[i])) {
+							difference.addColumn(columns[i], e[i], a[i]);
+						}
+					}
+
+					if (!difference.getColumns().isEmpty()) {
+						difference(difference);
+					}
+
+					previous = a;
+					e = expected.hasNext() ? expected.next() : null;
+					a = actual.hasNext() ? actual.next() : null;
+				}
+			}
+		}
+
+		private void difference(RowDifference difference) {
+			result.addDifference(difference);
+
+			long count = deferCount ? differenceCount.get() + ++pendingDifferences : differenceCount.incrementAndGet();
+			if (maxDifferences > 0 && count >= maxDifferences) {
+				stopped = true;
+				throw new StopException();
+			}
+		}
+
+		private String buildSelect(boolean ordered) {
+			StringBuilder sb = new StringBuilder("SELECT ");
+			for (int i = 0; i < columns.length; i++) {
+				sb.append(i > 0 ? ", " : "").append(columns[i]);
+			}
+			sb.append(" FROM ").append(step.getName());
+
+			if (ordered) {
+				sb.append(" ORDER BY ");
+				for (int i = 0; i < keys.length; i++) {
+					sb.append(i > 0 ? ", " : "").append(columns[keys[i]]);
+				}
+			}
+
+			return sb.toString();
+		}
+
+		private String describeKey(Object[] row) {
+			StringBuilder sb = new StringBuilder();
+			for (int i = 0; i < keys.length; i++) {
+				sb.append(i > 0 ? ", " : "").append(columns[keys[i]]).append("=").append(row[keys[i]]);
+			}
+			return sb.toString();
+		}
+
+		private int indexOf(String column) {
+			for (int i = 0; i < columns.length; i++) {
+				if (columns[i].equalsIgnoreCase(column)) {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		public void close() {
+			if (orderedTable != null) {
+				close(orderedTable);
+				orderedTable = null;
+			}
+
+			if (sorter != null) {
+				sorter.close();
+				sorter = null;
+			}
+
+			if (pool != null && !released) {
+				released = true;
+				pool.release(connection);
+			}
+		}
+
+		private void close(ITable table) {
+			if (table instanceof IResultSetTable) {
+				try {
+					((IResultSetTable) table).close();
+				}
+				catch (DataSetException e) {
+					// The cursor is discarded anyway
+				}
+			}
+		}
+
+		/**
+		 * Order of the rows by key, values converted with the database column types
+		 */
+		private class KeyComparator implements Comparator<Object[]> {
+			@Override
+			public int compare(Object[] o1, Object[] o2) {
+				for (int key : keys) {
+					try {
+						int c = types[key].compare(o1[key], o2[key]);
+						if (c != 0) {
+							return c;
+						}
+					}
+					catch (TypeCastException e) {
+						throw new IllegalArgumentException("Unable to compare the values of " + columns[key], e);
+					}
+				}
+				return 0;
+			}
+		}
+
+		/**
+		 * Rows of a table read with increasing row indexes, compatible with the forward only tables
+		 */
+		private class TableRowIterator implements Iterator<Object[]> {
+			private final ITable table;
+			private int row = 0;
+			private Object[] next;
+
+			public TableRowIterator(ITable table) throws DataSetException {
+				this.table = table;
+				advance();
+			}
+
+			private void advance() throws DataSetException {
+				try {
+					Object[] values = new Object[columns.length];
+					for (int i = 0; i < columns.length; i++) {
+						values[i] = table.getValue(row, columns[i]);
+					}
+					next = values;
+					row++;
+				}
+				catch (RowOutOfBoundsException e) {
+					next = null;
+				}
+			}
+
+			@Override
+			public boolean hasNext() {
+				return next != null;
+			}
+
+			@Override
+			public Object[] next() {
+				Object[] current = next;
+				try {
+					advance();
+				}
+				catch (DataSetException e) {
+					throw new IllegalStateException("Unable to read the rows of " + step.getName(), e);
+				}
+				return current;
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		}
+	}
+
+	private static boolean equal(DataType type, Object expected, Object actual) {
+		try {
+			return type.compare(expected, actual) == 0;
+		}
+		catch (TypeCastException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Thrown when the database rows are not in the expected order
+	 */
+	private static class OrderViolationException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+	}
+
+	/**
+	 * Thrown when the maximum number of differences is reached
+	 */
+	private static class StopException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+	}
+}
@@ -0,0 +1,158 @@
+package com.lotaris.maven.plugin.dbunit.compare;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Result of the comparison of a table. The counts cover all the rows compared,
+ * only the first differences are kept.
+ * 
+ * @author Laurent Prévost <laurent.prevost@lotaris.com>
+ */
+public class TableComparison {
+	private final String tableName;
+	
+	private final int maxDifferences;
+	
+	private final List<RowDifference> differences = new ArrayList<>();
+	
+	private long expectedRows;
+	
+	private long actualRows;
+	
+	private long added;
+	
+	private long removed;
+	
+	private long changed;
+	
+	private long time;
+	
+	private String error;
+
+	//<editor-fold defaultstate="collapsed" desc="Constructors">
+	/**
+	 * Constructor
+	 * 
+	 * @param tableName The table name
+	 * @param maxDifferences The maximum number of differences kept
+	 */
+	public TableComparison(String tableName, int maxDifferences) {
+		this.tableName = tableName;
+		this.maxDifferences = maxDifferences;
+	}
+	//</editor-fold>
+	
+	/**
+	 * Count a difference and keep it if the maximum is not reached
+	 * 
+	 * @param difference The difference
+	 */
+	void addDifference(RowDifference difference) {
+		switch (difference.getKind()) {
+			case ADDED:
+				added++;
+				break;
+			case REMOVED:
+				removed++;
+				break;
+			default:
+				changed++;
+		}
+		
+		if (differences.size() < maxDifferences) {
+			differences.add(difference);
+		}
+	}
+	
+	/**
+	 * Forget the rows and differences counted so far, to compare the table again
+	 */
+	void reset() {
+		differences.clear();
+		expectedRows = actualRows = added = removed = changed = 0;
+	}
+	
+	/**
+	 * @return The total number of differences
+	 */
+	public long getDifferenceCount() {
+		return added + removed + changed;
+	}
+	
+	/**
+	 * @return True if the table matches the expected data set
+	 */
+	public boolean isSuccess() {
+		return error == null && getDifferenceCount() == 0;
+	}
+
+	//<editor-fold defaultstate="collapsed" desc="Getters & Setters">
+	public String getTableName() {
+		return tableName;
+	}
+
+	public List<RowDifference> getDifferences() {
+		return differences;
+	}
+
+	public long getExpectedRows() {
+		return expectedRows;
+	}
+
+	void setExpectedRows(long expectedRows) {
+		this.expectedRows = expectedRows;
+	}
+
+	public long getActualRows() {
+		return actualRows;
+	}
+
+	void incrementActualRows() {
+		actualRows++;
+	}
+
+	public long getAdded() {
+		return added;
+	}
+
+	public long getRemoved() {
+		return removed;
+	}
+
+	public long getChanged() {
+		return changed;
+	}
+
+	public long getTime() {
+		return time;
+	}
+
+	void setTime(long time) {
+		this.time = time;
+	}
+
+	/**
+	 * @return The reason why the table could not be compared, null if it was compared
+	 */
+	public String getError() {
+		return error;
+	}
+
+	void setError(String error) {
+		this.error = error;
+	}
+	//</editor-fold>
+	
+	//<editor-fold defaultstate="collapsed" desc="Overrides">
+	@Override
+	public String toString() {
+		if (error != null) {
+			return tableName + ": " + error;
+		}
+		
+		return tableName + ": " + expectedRows + " expected rows, " + actualRows + " actual rows, " 
+			+ added + " added, " + removed + " removed, " + changed + " changed in " + time + " ms";
+	}
+	//</editor-fold>
+}
@@ -0,0 +1,99 @@
+package com.lotaris.maven.plugin.dbunit.database;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import org.dbunit.database.IDatabaseConnection;
+
+/**
+ * Fixed size pool of connections shared by the workers of a parallel
+ * operation. Each worker borrows a connection for one unit of work and gives
+ * it back once done, so a connection is never used by two threads at the same
+ * time.
+ * 
+ * @author Laurent Prévost <laurent.prevost@lotaris.com>
+ */
+public class ConnectionPool implements AutoCloseable {
+	private final List<IDatabaseConnection> connections = new ArrayList<>();
+	
+	private final BlockingQueue<IDatabaseConnection> available = new LinkedBlockingQueue<>();
+	
+	//<editor-fold defaultstate="collapsed" desc="Constructors">
+	/**
+	 * Constructor
+	 * 
+	 * @param provider The provider to create the connections
+	 * @param size The number of connections to open
+	 * @throws Exception When a connection cannot be created
+	 */
+	public ConnectionPool(ConnectionProvider provider, int size) throws Exception {
+		try {
+			for (int i = 0; i < size; i++) {
+				IDatabaseConnection connection = provider.createConnection();
+				connections.add(connection);
+				available.add(connection);
+			}
+		}
+		catch (Exception e) {
+			close();
+			throw e;
+		}
+	}
+	//</editor-fold>
+	
+	/**
+	 * @return The number of connections managed by the pool
+	 */
+	public int size() {
+		return connections.size();
+	}
+	
+	/**
+	 * Borrow a connection, waiting for one to be available if necessary
+	 * 
+	 * @return The connection borrowed
+	 * @throws InterruptedException When interrupted while waiting
+	 */
+	public IDatabaseConnection acquire() throws InterruptedException {
+		return available.take();
+	}
+	
+	/**
+	 * Give back a connection borrowed through {@link #acquire()}
+	 * 
+	 * @param connection The connection to give back
+	 */
+	public void release(IDatabaseConnection connection) {
+		available.add(connection);
+	}
+
+	/**
+	 * Close all the connections of the pool
+	 * 
+	 * @throws SQLException When at least one connection failed to close
+	 */
+	@Override
+	public void close() throws SQLException {
+		SQLException failure = null;
+		
+		for (IDatabaseConnection connection : connections) {
+			try {
+				connection.close();
+			}
+			catch (SQLException e) {
+				if (failure == null) {
+					failure = e;
+				}
+			}
+		}
+		
+		connections.clear();
+		available.clear();
+		
+		if (failure != null) {
+			throw failure;
+		}
+	}
+}
@@ -0,0 +1,19 @@
+package com.lotaris.maven.plugin.dbunit.database;
+
+import org.dbunit.database.IDatabaseConnection;
+
+/**
+ * Provide fully configured DB Unit connections to the workers that need
+ * their own connection to the database.
+ * 
+ * @author Laurent Prévost <laurent.prevost@lotaris.com>
+ */
+public interface ConnectionProvider {
+	/**
+	 * Create a new connection configured the same way as the main one
+	 * 
+	 * @return The connection created
+	 * @throws Exception When the connection cannot be created
+	 */
+	IDatabaseConnection createConnection() throws Exception;
+}
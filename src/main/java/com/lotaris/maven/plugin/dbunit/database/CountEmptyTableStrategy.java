@@ -0,0 +1,21 @@
+package com.lotaris.maven.plugin.dbunit.database;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Count all the rows of the table. Exact but scans the whole table on most
+ * databases.
+ * 
+ * @author Laurent Prévost <laurent.prevost@lotaris.com>
+ */
+public class CountEmptyTableStrategy implements EmptyTableStrategy {
+	@Override
+	public boolean isEmpty(Connection connection, String tableName) throws SQLException {
+		try (Statement st = connection.createStatement(); ResultSet rs = st.executeQuery("SELECT COUNT(*) AS CNT FROM " + tableName + ";")) {
+			return rs.next() && rs.getInt("CNT") == 0;
+		}
+	}
+}
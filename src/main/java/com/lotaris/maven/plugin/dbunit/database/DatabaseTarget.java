@@ -0,0 +1,59 @@
+package com.lotaris.maven.plugin.dbunit.database;
+
+/**
+ * Database to which a goal is applied in addition to the others, like the
+ * database or schema of each fork of a test run. The settings that are not set
+ * are taken from the main configuration of the goal.
+ *
+ * @author Laurent Prévost <laurent.prevost@lotaris.com>
+ */
+public class DatabaseTarget {
+	private String url;
+
+	private String schema;
+
+	private String username;
+
+	private String password;
+
+	//<editor-fold defaultstate="collapsed" desc="Getters & Setters">
+	public String getUrl() {
+		return url;
+	}
+
+	public void setUrl(String url) {
+		this.url = url;
+	}
+
+	public String getSchema() {
+		return schema;
+	}
+
+	public void setSchema(String schema) {
+		this.schema = schema;
+	}
+
+	public String getUsername() {
+		return username;
+	}
+
+	public void setUsername(String username) {
+		this.username = username;
+	}
+
+	public String getPassword() {
+		return password;
+	}
+
+	public void setPassword(String password) {
+		this.password = password;
+	}
+	//</editor-fold>
+
+	//<editor-fold defaultstate="collapsed" desc="Overrides">
+	@Override
+	public String toString() {
+		return url + (schema != null ? " (" + schema + ")" : "");
+	}
+	//</editor-fold>
+}
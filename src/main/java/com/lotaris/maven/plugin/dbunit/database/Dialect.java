@@ -0,0 +1,130 @@
+package com.lotaris.maven.plugin.dbunit.database;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+
+/**
+ * Database families for which a faster or more accurate SQL than the portable
+ * one is used
+ * 
+ * @author Laurent Prévost <laurent.prevost@lotaris.com>
+ */
+public enum Dialect {
+	POSTGRESQL,
+	MYSQL,
+	ORACLE,
+	MSSQL,
+	H2,
+	HSQLDB,
+	GENERIC;
+	
+	/**
+	 * @param connection The connection
+	 * @return The dialect of the database
+	 * @throws SQLException When the database product cannot be read
+	 */
+	public static Dialect of(Connection connection) throws SQLException {
+		return forProductName(connection.getMetaData().getDatabaseProductName());
+	}
+	
+	/**
+	 * @param productName The database product name
+	 * @return The dialect of the product
+	 */
+	public static Dialect forProductName(String productName) {
+		String product = productName.toLowerCase();
+		
+		if (product.contains("postgresql")) {
+			return POSTGRESQL;
+		}
+		else if (product.contains("mysql") || product.contains("mariadb")) {
+			return MYSQL;
+		}
+		else if (product.contains("oracle")) {
+			return ORACLE;
+		}
+		else if (product.contains("microsoft")) {
+			return MSSQL;
+		}
+		else if (product.equals("h2")) {
+			return H2;
+		}
+		else if (product.contains("hsql")) {
+			return HSQLDB;
+		}
+		
+		return GENERIC;
+	}
+	
+	/**
+	 * @param select A select statement without order by clause
+	 * @param rows The maximum number of rows
+	 * @return The select statement returning at most the given number of rows
+	 */
+	public String limit(String select, long rows) {
+		switch (this) {
+			case POSTGRESQL:
+			case MYSQL:
+			case H2:
+				return select + " LIMIT " + rows;
+				
+			case HSQLDB:
+			case MSSQL:
+				return "SELECT TOP " + rows + select.substring("SELECT".length());
+				
+			case ORACLE:
+				return "SELECT * FROM (" + select + ") WHERE ROWNUM <= " + rows;
+				
+			default:
+				return select + " FETCH FIRST " + rows + " ROWS ONLY";
+		}
+	}
+	
+	/**
+	 * Make the schema the default one of the connection, so the unqualified table
+	 * names of the statements resolve in it
+	 * 
+	 * @param connection The connection
+	 * @param schema The schema
+	 * @throws SQLException When the default schema cannot be changed
+	 */
+	public void useSchema(Connection connection, String schema) throws SQLException {
+		switch (this) {
+			case MYSQL:
+				connection.setCatalog(schema);
+				return;
+				
+			case MSSQL:
+				throw new SQLFeatureNotSupportedException("The default schema of a SQL Server connection cannot be changed, qualify the schema in the URL or the user");
+				
+			case POSTGRESQL:
+				execute(connection, "SET search_path TO " + schema);
+				return;
+				
+			case ORACLE:
+				execute(connection, "ALTER SESSION SET CURRENT_SCHEMA = " + schema);
+				return;
+				
+			case H2:
+			case HSQLDB:
+				execute(connection, "SET SCHEMA " + schema);
+				return;
+				
+			default:
+				try {
+					connection.setSchema(schema);
+				}
+				catch (AbstractMethodError e) {
+					throw new SQLFeatureNotSupportedException("The driver does not support the change of the default schema", e);
+				}
+		}
+	}
+	
+	private static void execute(Connection connection, String sql) throws SQLException {
+		try (Statement statement = connection.createStatement()) {
+			statement.execute(sql);
+		}
+	}
+}
@@ -0,0 +1,141 @@
+package com.lotaris.maven.plugin.dbunit.database;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.dbunit.database.IDatabaseConnection;
+
+/**
+ * Find the empty tables among a list of tables with a configurable strategy,
+ * sequentially or concurrently on the connections of a pool.
+ * 
+ * @author Laurent Prévost <laurent.prevost@lotaris.com>
+ */
+public class EmptyTableChecker {
+	/**
+	 * Strategy that counts all the rows
+	 */
+	public static final String COUNT = "count";
+	
+	/**
+	 * Strategy that stops at the first row
+	 */
+	public static final String FIRST_ROW = "firstRow";
+
+	/**
+	 * Strategy that uses the catalog estimates
+	 */
+	public static final String ESTIMATE = "estimate";
+	
+	private final EmptyTableStrategy strategy;
+
+	//<editor-fold defaultstate="collapsed" desc="Constructors">
+	/**
+	 * Constructor
+	 * 
+	 * @param strategy The strategy to check the tables
+	 */
+	public EmptyTableChecker(EmptyTableStrategy strategy) {
+		this.strategy = strategy;
+	}
+	//</editor-fold>
+	
+	/**
+	 * Create a strategy from its name or from the class name of a custom implementation
+	 * 
+	 * @param name The name of the strategy
+	 * @return The strategy created
+	 * @throws Exception When a custom strategy cannot be instantiated
+	 */
+	public static EmptyTableStrategy createStrategy(String name) throws Exception {
+		if (name == null || FIRST_ROW.equals(name)) {
+			return new FirstRowEmptyTableStrategy();
+		}
+		else if (COUNT.equals(name)) {
+			return new CountEmptyTableStrategy();
+		}
+		else if (ESTIMATE.equals(name)) {
+			return new EstimateEmptyTableStrategy();
+		}
+		else {
+			return (EmptyTableStrategy) Class.forName(name).getDeclaredConstructor().newInstance();
+		}
+	}
+	
+	/**
+	 * Check the tables one after the other
+	 * 
+	 * @param connection The connection to use
+	 * @param tableNames The tables to check
+	 * @return The empty tables
+	 * @throws SQLException When a check fails
+	 */
+	public Set<String> findEmptyTables(Connection connection, List<String> tableNames) throws SQLException {
+		Set<String> emptyTables = new HashSet<>();
+		
+		for (String tableName : tableNames) {
+			if (strategy.isEmpty(connection, tableName)) {
+				emptyTables.add(tableName);
+			}
+		}
+		
+		return emptyTables;
+	}
+	
+	/**
+	 * Check the tables concurrently, one check per connection of the pool at a time
+	 * 
+	 * @param pool The pool of connections
+	 * @param tableNames The tables to check
+	 * @return The empty tables
+	 * @throws Exception When a check fails
+	 */
+	public Set<String> findEmptyTables(final ConnectionPool pool, List<String> tableNames) throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(pool.size());
+		try {
+			List<Future<Boolean>> futures = new ArrayList<>();
+			for (final String tableName : tableNames) {
+				futures.add(executor.submit(new Callable<Boolean>() {
+					@Override
+					public Boolean call() throws Exception {
+						IDatabaseConnection connection = pool.acquire();
+						try {
+							return strategy.isEmpty(connection.getConnection(), tableName);
+						}
+						finally {
+							pool.release(connection);
+						}
+					}
+				}));
+			}
+			
+			Set<String> emptyTables = new HashSet<>();
+			for (int i = 0; i < futures.size(); i++) {
+				try {
+					if (futures.get(i).get()) {
+						emptyTables.add(tableNames.get(i));
+					}
+				}
+				catch (ExecutionException e) {
+					if (e.getCause() instanceof Error) {
+						throw (Error) e.getCause();
+					}
+					throw (Exception) e.getCause();
+				}
+			}
+			
+			return emptyTables;
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+}
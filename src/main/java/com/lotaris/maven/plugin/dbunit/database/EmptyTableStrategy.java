@@ -0,0 +1,20 @@
+package com.lotaris.maven.plugin.dbunit.database;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Strategy to decide if a table contains rows. Implementations must be safe to
+ * use from several threads, each one with its own connection.
+ * 
+ * @author Laurent Prévost <laurent.prevost@lotaris.com>
+ */
+public interface EmptyTableStrategy {
+	/**
+	 * @param connection The connection to use
+	 * @param tableName The table to check
+	 * @return True if the table does not contain any row
+	 * @throws SQLException When the check fails
+	 */
+	boolean isEmpty(Connection connection, String tableName) throws SQLException;
+}
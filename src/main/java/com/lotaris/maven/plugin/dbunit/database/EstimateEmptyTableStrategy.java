@@ -0,0 +1,76 @@
+package com.lotaris.maven.plugin.dbunit.database;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Use the row estimates maintained by the database catalog, read once for all
+ * the tables. As estimates can be stale, only a positive estimate is trusted, the
+ * other tables are checked with a first row probe.
+ * 
+ * Estimates are available for PostgreSQL, MySQL/MariaDB and Oracle. Other
+ * databases always fall back to the probe.
+ * 
+ * @author Laurent Prévost <laurent.prevost@lotaris.com>
+ */
+public class EstimateEmptyTableStrategy implements EmptyTableStrategy {
+	private final EmptyTableStrategy fallback = new FirstRowEmptyTableStrategy();
+	
+	private Map<String, Long> estimates;
+	
+	@Override
+	public boolean isEmpty(Connection connection, String tableName) throws SQLException {
+		Long estimate = getEstimates(connection).get(tableName.toUpperCase());
+		
+		if (estimate != null && estimate > 0) {
+			return false;
+		}
+		
+		return fallback.isEmpty(connection, tableName);
+	}
+	
+	/**
+	 * Load the estimates of all the tables on first use
+	 * 
+	 * @param connection The connection
+	 * @return The estimates by upper case table name
+	 * @throws SQLException When the catalog cannot be read
+	 */
+	private synchronized Map<String, Long> getEstimates(Connection connection) throws SQLException {
+		if (estimates == null) {
+			estimates = new HashMap<>();
+			
+			String sql = estimatesQuery(Dialect.of(connection));
+			if (sql != null) {
+				try (Statement st = connection.createStatement(); ResultSet rs = st.executeQuery(sql)) {
+					while (rs.next()) {
+						estimates.put(rs.getString(1).toUpperCase(), rs.getLong(2));
+					}
+				}
+			}
+		}
+		
+		return estimates;
+	}
+	
+	/**
+	 * @param dialect The dialect of the database
+	 * @return The query that returns the table names and their estimated row counts, null if not supported
+	 */
+	private static String estimatesQuery(Dialect dialect) {
+		switch (dialect) {
+			case POSTGRESQL:
+				return "SELECT relname, reltuples FROM pg_class WHERE relkind = 'r'";
+			case MYSQL:
+				return "SELECT TABLE_NAME, TABLE_ROWS FROM information_schema.TABLES WHERE TABLE_SCHEMA = DATABASE()";
+			case ORACLE:
+				return "SELECT TABLE_NAME, NUM_ROWS FROM USER_TABLES WHERE NUM_ROWS IS NOT NULL";
+			default:
+				return null;
+		}
+	}
+}
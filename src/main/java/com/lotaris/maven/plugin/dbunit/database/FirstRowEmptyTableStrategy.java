@@ -0,0 +1,27 @@
+package com.lotaris.maven.plugin.dbunit.database;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Ask the database for the first row of the table only. The statement is limited
+ * to one row so the database stops as soon as a row is found, whatever the size
+ * of the table.
+ * 
+ * @author Laurent Prévost <laurent.prevost@lotaris.com>
+ */
+public class FirstRowEmptyTableStrategy implements EmptyTableStrategy {
+	@Override
+	public boolean isEmpty(Connection connection, String tableName) throws SQLException {
+		try (Statement st = connection.createStatement()) {
+			st.setMaxRows(1);
+			st.setFetchSize(1);
+			
+			try (ResultSet rs = st.executeQuery("SELECT 1 FROM " + tableName)) {
+				return !rs.next();
+			}
+		}
+	}
+}
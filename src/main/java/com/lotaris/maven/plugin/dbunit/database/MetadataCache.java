@@ -0,0 +1,121 @@
+package com.lotaris.maven.plugin.dbunit.database;
+
+import com.lotaris.maven.plugin.dbunit.model.UnitSchema;
+import com.lotaris.maven.plugin.dbunit.util.Digests;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * On disk cache of the schema metadata. There is one entry per JDBC URL and
+ * schema, an entry is valid as long as the fingerprint of the schema does not
+ * change.
+ * 
+ * @author Laurent Prévost <laurent.prevost@lotaris.com>
+ */
+public class MetadataCache {
+	private final File directory;
+
+	//<editor-fold defaultstate="collapsed" desc="Constructors">
+	/**
+	 * Constructor
+	 * 
+	 * @param directory The directory where the entries are stored
+	 */
+	public MetadataCache(File directory) {
+		this.directory = directory;
+	}
+	//</editor-fold>
+	
+	/**
+	 * Get the cached schema
+	 * 
+	 * @param url The JDBC URL
+	 * @param schema The schema, can be null
+	 * @param fingerprint The current fingerprint of the schema
+	 * @param withKeys True if the primary and foreign keys are required
+	 * @return The cached schema, null if there is no valid entry
+	 */
+	public UnitSchema get(String url, String schema, String fingerprint, boolean withKeys) {
+		File file = getFile(url, schema);
+		if (!file.isFile()) {
+			return null;
+		}
+		
+		try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			Entry entry = (Entry) in.readObject();
+			
+			if (entry.fingerprint.equals(fingerprint) && (entry.withKeys || !withKeys)) {
+				return entry.schema;
+			}
+		}
+		catch (IOException | ClassNotFoundException | ClassCastException e) {
+			// Unreadable entries, for instance written by another version, are ignored
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Store a schema in the cache
+	 * 
+	 * @param url The JDBC URL
+	 * @param schema The schema, can be null
+	 * @param fingerprint The fingerprint of the schema
+	 * @param withKeys True if the primary and foreign keys were loaded
+	 * @param unitSchema The schema metadata
+	 * @throws IOException When the entry cannot be written
+	 */
+	public void put(String url, String schema, String fingerprint, boolean withKeys, UnitSchema unitSchema) throws IOException {
+		directory.mkdirs();
+		
+		// Write in a temporary file first to never leave a partial entry, even
+		// when several modules of a build share the directory
+		File file = getFile(url, schema);
+		File tmp = File.createTempFile(file.getName(), ".tmp", directory);
+		try {
+			try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+				out.writeObject(new Entry(fingerprint, withKeys, unitSchema));
+			}
+			
+			Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		finally {
+			tmp.delete();
+		}
+	}
+	
+	/**
+	 * @param url The JDBC URL
+	 * @param schema The schema
+	 * @return The file of the entry
+	 */
+	private File getFile(String url, String schema) {
+		return new File(directory, Digests.sha1Hex(url + "|" + schema) + ".ser");
+	}
+	
+	/**
+	 * Content of a cache entry
+	 */
+	private static class Entry implements Serializable {
+		private static final long serialVersionUID = 1L;
+		
+		private final String fingerprint;
+		private final boolean withKeys;
+		private final UnitSchema schema;
+
+		public Entry(String fingerprint, boolean withKeys, UnitSchema schema) {
+			this.fingerprint = fingerprint;
+			this.withKeys = withKeys;
+			this.schema = schema;
+		}
+	}
+}
@@ -0,0 +1,219 @@
+package com.lotaris.maven.plugin.dbunit.database;
+
+import com.lotaris.maven.plugin.dbunit.model.UnitColumn;
+import com.lotaris.maven.plugin.dbunit.model.UnitForeignKey;
+import com.lotaris.maven.plugin.dbunit.model.UnitSchema;
+import com.lotaris.maven.plugin.dbunit.model.UnitTable;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Load the tables, columns, primary keys and foreign keys of a schema with one
+ * catalog query per kind of information instead of one per table.
+ * 
+ * The JDBC specification requires a table name for the primary and foreign keys.
+ * Most drivers accept none and return the keys of all the tables, the others
+ * return nothing or fail, in which case the keys are loaded table by table.
+ * 
+ * @author Laurent Prévost <laurent.prevost@lotaris.com>
+ */
+public class MetadataLoader {
+	private static final String[] TABLE_TYPES = new String[] {"TABLE"};
+	
+	private final String schema;
+	
+	private boolean loadKeys = true;
+	
+	/**
+	 * Duration of the last load in milliseconds
+	 */
+	private long loadTime;
+
+	//<editor-fold defaultstate="collapsed" desc="Constructors">
+	/**
+	 * Constructor
+	 * 
+	 * @param schema The schema pattern, null for all the schemas
+	 */
+	public MetadataLoader(String schema) {
+		this.schema = schema;
+	}
+	//</editor-fold>
+
+	//<editor-fold defaultstate="collapsed" desc="Getters & Setters">
+	/**
+	 * @param loadKeys False to skip the primary and foreign keys when only the columns are needed
+	 */
+	public void setLoadKeys(boolean loadKeys) {
+		this.loadKeys = loadKeys;
+	}
+
+	public long getLoadTime() {
+		return loadTime;
+	}
+	//</editor-fold>
+	
+	/**
+	 * Load the metadata of the schema
+	 * 
+	 * @param connection The connection
+	 * @return The schema loaded
+	 * @throws SQLException When the catalog cannot be read
+	 */
+	public UnitSchema load(Connection connection) throws SQLException {
+		long start = System.currentTimeMillis();
+		
+		DatabaseMetaData meta = connection.getMetaData();
+		UnitSchema unitSchema = new UnitSchema();
+		
+		try (ResultSet rs = meta.getTables(null, schema, "%", TABLE_TYPES)) {
+			while (rs.next()) {
+				unitSchema.addTable(new UnitTable(rs.getString("TABLE_NAME")));
+			}
+		}
+		
+		try (ResultSet rs = meta.getColumns(null, schema, "%", "%")) {
+			while (rs.next()) {
+				UnitTable table = unitSchema.getTable(rs.getString("TABLE_NAME"));
+				
+				// Columns of views and other objects are ignored
+				if (table != null) {
+					table.addColumn(new UnitColumn(
+						rs.getString("COLUMN_NAME"),
+						rs.getInt("DATA_TYPE"),
+						rs.getString("TYPE_NAME"),
+						rs.getInt("COLUMN_SIZE"),
+						rs.getInt("NULLABLE") != DatabaseMetaData.columnNoNulls,
+						rs.getInt("ORDINAL_POSITION")
+					));
+				}
+			}
+		}
+
+		if (loadKeys && !unitSchema.getTableNames().isEmpty()) {
+			loadPrimaryKeys(meta, unitSchema);
+			loadForeignKeys(meta, unitSchema);
+		}
+		
+		loadTime = System.currentTimeMillis() - start;
+		
+		return unitSchema;
+	}
+	
+	/**
+	 * Load the primary keys, in bulk when the driver supports it
+	 * 
+	 * @param meta The database metadata
+	 * @param unitSchema The schema to complete
+	 * @throws SQLException When the catalog cannot be read
+	 */
+	private void loadPrimaryKeys(DatabaseMetaData meta, UnitSchema unitSchema) throws SQLException {
+		boolean found = false;
+		
+		try (ResultSet rs = meta.getPrimaryKeys(null, schema, null)) {
+			found = readPrimaryKeys(rs, unitSchema);
+		}
+		catch (SQLException e) {
+			// The driver requires a table name
+		}
+		
+		if (!found) {
+			for (String tableName : unitSchema.getTableNames()) {
+				try (ResultSet rs = meta.getPrimaryKeys(null, schema, tableName)) {
+					readPrimaryKeys(rs, unitSchema);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param rs The primary keys result set
+	 * @param unitSchema The schema to complete
+	 * @return True if at least one key column was read
+	 * @throws SQLException When the result set cannot be read
+	 */
+	private boolean readPrimaryKeys(ResultSet rs, UnitSchema unitSchema) throws SQLException {
+		boolean found = false;
+		
+		while (rs.next()) {
+			found = true;
+			
+			UnitTable table = unitSchema.getTable(rs.getString("TABLE_NAME"));
+			if (table != null) {
+				UnitColumn column = table.getColumn(rs.getString("COLUMN_NAME"));
+				if (column != null) {
+					column.setPrimaryKeySequence(rs.getInt("KEY_SEQ"));
+				}
+			}
+		}
+		
+		return found;
+	}
+	
+	/**
+	 * Load the foreign keys, in bulk when the driver supports it
+	 * 
+	 * @param meta The database metadata
+	 * @param unitSchema The schema to complete
+	 * @throws SQLException When the catalog cannot be read
+	 */
+	private void loadForeignKeys(DatabaseMetaData meta, UnitSchema unitSchema) throws SQLException {
+		boolean found = false;
+		
+		try (ResultSet rs = meta.getImportedKeys(null, schema, null)) {
+			found = readForeignKeys(rs, unitSchema);
+		}
+		catch (SQLException e) {
+			// The driver requires a table name
+		}
+		
+		if (!found) {
+			for (String tableName : unitSchema.getTableNames()) {
+				try (ResultSet rs = meta.getImportedKeys(null, schema, tableName)) {
+					readForeignKeys(rs, unitSchema);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param rs The imported keys result set
+	 * @param unitSchema The schema to complete
+	 * @return True if at least one key column was read
+	 * @throws SQLException When the result set cannot be read
+	 */
+	private boolean readForeignKeys(ResultSet rs, UnitSchema unitSchema) throws SQLException {
+		boolean found = false;
+		
+		// Keys by table and name, unnamed keys start again at the first column
+		Map<String, UnitForeignKey> keys = new HashMap<>();
+		
+		while (rs.next()) {
+			found = true;
+			
+			UnitTable table = unitSchema.getTable(rs.getString("FKTABLE_NAME"));
+			if (table == null) {
+				continue;
+			}
+			
+			String fkName = rs.getString("FK_NAME");
+			String referencedTableName = rs.getString("PKTABLE_NAME");
+			String id = table.getTableName() + "." + (fkName != null ? fkName : referencedTableName);
+			
+			UnitForeignKey fk = keys.get(id);
+			if (fk == null || (fkName == null && rs.getInt("KEY_SEQ") == 1)) {
+				fk = new UnitForeignKey(fkName, table.getTableName(), referencedTableName);
+				keys.put(id, fk);
+				table.addForeignKey(fk);
+			}
+			
+			fk.addColumn(rs.getString("FKCOLUMN_NAME"), rs.getString("PKCOLUMN_NAME"));
+		}
+		
+		return found;
+	}
+}
@@ -0,0 +1,164 @@
+package com.lotaris.maven.plugin.dbunit.database;
+
+import com.lotaris.maven.plugin.dbunit.util.Digests;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Compute a cheap fingerprint of a schema that changes when its structure
+ * changes. In order of preference, the fingerprint is the result of:
+ * <ul>
+ * <li>the configured query, when one is given</li>
+ * <li>the Flyway schema history table</li>
+ * <li>the Liquibase change log table</li>
+ * <li>a checksum or the last DDL time of the catalog tables, on PostgreSQL,
+ * MySQL, Oracle and SQL Server</li>
+ * <li>the table and column names and types of the catalog</li>
+ * </ul>
+ * The last fallback reads the columns of all the tables through the JDBC
+ * metadata, which is as slow as loading the schema on large catalogs. A
+ * fingerprint query or a migration table should be used on such databases
+ * when the dialect has no catalog query.
+ * 
+ * @author Laurent Prévost <laurent.prevost@lotaris.com>
+ */
+public class SchemaFingerprint {
+	private static final String[] MIGRATION_QUERIES = new String[] {
+		"SELECT COUNT(*), MAX(installed_rank) FROM flyway_schema_history",
+		"SELECT COUNT(*), MAX(installed_rank) FROM schema_version",
+		"SELECT COUNT(*), MAX(ORDEREXECUTED) FROM DATABASECHANGELOG"
+	};
+	
+	private SchemaFingerprint() {}
+	
+	/**
+	 * Compute the fingerprint of a schema
+	 * 
+	 * @param connection The connection, in auto commit mode so a failed probe does not abort a transaction
+	 * @param schema The schema pattern, null for all the schemas
+	 * @param query The fingerprint query, null to detect the migration tables
+	 * @return The fingerprint as an hexadecimal digest
+	 * @throws SQLException When the fingerprint cannot be computed
+	 */
+	public static String compute(Connection connection, String schema, String query) throws SQLException {
+		MessageDigest digest = Digests.sha1();
+		
+		if (query != null) {
+			digestQuery(connection, query, digest);
+			return Digests.toHex(digest.digest());
+		}
+		
+		for (String migrationQuery : MIGRATION_QUERIES) {
+			try {
+				digest.update(migrationQuery.getBytes(StandardCharsets.UTF_8));
+				digestQuery(connection, migrationQuery, digest);
+				return Digests.toHex(digest.digest());
+			}
+			catch (SQLException e) {
+				// No such migration table
+				digest.reset();
+			}
+		}
+		
+		String catalogQuery = catalogQuery(Dialect.of(connection), schema);
+		if (catalogQuery != null) {
+			try (PreparedStatement st = connection.prepareStatement(catalogQuery)) {
+				if (schema != null) {
+					st.setString(1, schema);
+				}
+				
+				try (ResultSet rs = st.executeQuery()) {
+					while (rs.next()) {
+						update(digest, rs.getString(1));
+						update(digest, rs.getString(2));
+					}
+				}
+				return Digests.toHex(digest.digest());
+			}
+			catch (SQLException e) {
+				// The catalog views are not readable, fall back to the JDBC metadata
+				digest.reset();
+			}
+		}
+		
+		DatabaseMetaData meta = connection.getMetaData();
+		try (ResultSet rs = meta.getColumns(null, schema, "%", "%")) {
+			while (rs.next()) {
+				update(digest, rs.getString("TABLE_NAME"));
+				update(digest, rs.getString("COLUMN_NAME"));
+				update(digest, rs.getString("TYPE_NAME"));
+				update(digest, rs.getString("COLUMN_SIZE"));
+				update(digest, rs.getString("NULLABLE"));
+			}
+		}
+		
+		return Digests.toHex(digest.digest());
+	}
+	
+	/**
+	 * Single row query returning a count and a checksum or a modification time
+	 * of the tables of a schema, read from the catalog views of the dialect
+	 * 
+	 * @param dialect The dialect
+	 * @param schema The schema, a parameter of the query when set, the current or all the user schemas otherwise
+	 * @return The query, null when the dialect has none
+	 */
+	private static String catalogQuery(Dialect dialect, String schema) {
+		switch (dialect) {
+			case POSTGRESQL:
+				return 
+					"SELECT COUNT(*), SUM(hashtext(c.relname || '.' || a.attname || ':' || format_type(a.atttypid, a.atttypmod) || ':' || a.attnotnull::text)) " +
+					"FROM pg_class c JOIN pg_namespace n ON n.oid = c.relnamespace JOIN pg_attribute a ON a.attrelid = c.oid " +
+					"WHERE c.relkind IN ('r', 'p') AND a.attnum > 0 AND NOT a.attisdropped AND " +
+					(schema != null ? "n.nspname = ?" : "n.nspname NOT IN ('pg_catalog', 'information_schema') AND n.nspname NOT LIKE 'pg_toast%'");
+				
+			case MYSQL:
+				return 
+					"SELECT COUNT(*), SUM(CRC32(CONCAT_WS(':', TABLE_NAME, COLUMN_NAME, COLUMN_TYPE, IS_NULLABLE))) " +
+					"FROM information_schema.COLUMNS WHERE TABLE_SCHEMA = " + (schema != null ? "?" : "DATABASE()");
+				
+			case ORACLE:
+				return schema != null ? 
+					"SELECT COUNT(*), TO_CHAR(MAX(last_ddl_time), 'YYYYMMDDHH24MISS') FROM all_objects WHERE object_type = 'TABLE' AND owner = ?" : 
+					"SELECT COUNT(*), TO_CHAR(MAX(last_ddl_time), 'YYYYMMDDHH24MISS') FROM user_objects WHERE object_type = 'TABLE'";
+				
+			case MSSQL:
+				return 
+					"SELECT COUNT(*), CONVERT(VARCHAR(23), MAX(modify_date), 121) FROM sys.objects WHERE type = 'U'" + 
+					(schema != null ? " AND SCHEMA_NAME(schema_id) = ?" : "");
+				
+			default:
+				return null;
+		}
+	}
+	
+	/**
+	 * Add all the values returned by a query to the digest
+	 * 
+	 * @param connection The connection
+	 * @param query The query
+	 * @param digest The digest
+	 * @throws SQLException When the query fails
+	 */
+	private static void digestQuery(Connection connection, String query, MessageDigest digest) throws SQLException {
+		try (Statement st = connection.createStatement(); ResultSet rs = st.executeQuery(query)) {
+			int columnCount = rs.getMetaData().getColumnCount();
+			while (rs.next()) {
+				for (int i = 1; i <= columnCount; i++) {
+					update(digest, rs.getString(i));
+				}
+			}
+		}
+	}
+	
+	private static void update(MessageDigest digest, String value) {
+		digest.update(String.valueOf(value).getBytes(StandardCharsets.UTF_8));
+		digest.update((byte) 0);
+	}
+}
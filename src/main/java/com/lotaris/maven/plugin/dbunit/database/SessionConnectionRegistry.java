@@ -0,0 +1,233 @@
+package com.lotaris.maven.plugin.dbunit.database;
+
+import java.lang.ref.WeakReference;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps the physical connections opened by the mojos of a Maven session so the
+ * later executions of the same build reuse them instead of connecting again.
+ * Connections are grouped by key (URL, user and schema) and handed to one
+ * execution at a time. The components instantiated by reflection (driver, data
+ * type factory, metadata handler) are kept as well.
+ *
+ * The registry is bound to one session. When a new session starts in the same
+ * JVM (e.g. with a build daemon), the connections of the previous one are
+ * closed. The remaining ones are closed when the JVM stops.
+ *
+ * @author Laurent Prévost <laurent.prevost@lotaris.com>
+ */
+public final class SessionConnectionRegistry {
+	/**
+	 * Timeout in seconds to check that an idle connection is still alive
+	 */
+	private static final int VALIDATION_TIMEOUT = 5;
+
+	private static SessionConnectionRegistry current;
+
+	private static boolean shutdownHookRegistered = false;
+
+	private final WeakReference<Object> session;
+
+	private final Map<String, Deque<Connection>> idleConnections = new HashMap<>();
+
+	private final Map<String, Object> components = new HashMap<>();
+
+	private final Map<String, Long> setupTimes = new HashMap<>();
+
+	private int reuseCount = 0;
+
+	private long savedTime = 0;
+
+	private boolean closed = false;
+
+	//<editor-fold defaultstate="collapsed" desc="Constructors">
+	private SessionConnectionRegistry(Object session) {
+		this.session = new WeakReference<>(session);
+	}
+	//</editor-fold>
+
+	/**
+	 * Retrieve the registry of a session, closing the one of the previous session if any
+	 *
+	 * @param session The current session
+	 * @return The registry of the session
+	 */
+	public static synchronized SessionConnectionRegistry forSession(Object session) {
+		if (current != null && current.session.get() != session) {
+			current.close();
+			current = null;
+		}
+
+		if (current == null) {
+			current = new SessionConnectionRegistry(session);
+		}
+
+		if (!shutdownHookRegistered) {
+			Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+				@Override
+				public void run() {
+					synchronized (SessionConnectionRegistry.class) {
+						if (current != null) {
+							current.close();
+						}
+					}
+				}
+			}, "dbunit-session-connections"));
+			shutdownHookRegistered = true;
+		}
+
+		return current;
+	}
+
+	/**
+	 * Build the key of the connections to a database
+	 *
+	 * @param url The JDBC URL
+	 * @param username The user
+	 * @param schema The schema, can be null
+	 * @return The key
+	 */
+	public static String key(String url, String username, String schema) {
+		return url + "|" + username + "|" + (schema == null ? "" : schema);
+	}
+
+	/**
+	 * Take an idle connection opened by a previous execution. Connections that
+	 * are no longer valid are closed and discarded.
+	 *
+	 * @param key The connection key
+	 * @return The connection, null if none is available
+	 */
+	public synchronized Connection acquire(String key) {
+		Deque<Connection> idle = idleConnections.get(key);
+
+		while (idle != null && !idle.isEmpty()) {
+			Connection connection = idle.pop();
+
+			try {
+				if (connection.isValid(VALIDATION_TIMEOUT)) {
+					reuseCount++;
+					if (setupTimes.containsKey(key)) {
+						savedTime += setupTimes.get(key);
+					}
+					return connection;
+				}
+			}
+			catch (SQLException | AbstractMethodError e) {
+				// Drivers not supporting the validation are considered valid
+				reuseCount++;
+				return connection;
+			}
+
+			closeQuietly(connection);
+		}
+
+		return null;
+	}
+
+	/**
+	 * Give back a connection for the next executions. The connection is closed
+	 * if the registry is already closed or if its state cannot be reset.
+	 *
+	 * @param key The connection key
+	 * @param connection The connection
+	 */
+	public synchronized void release(String key, Connection connection) {
+		if (closed) {
+			closeQuietly(connection);
+			return;
+		}
+
+		try {
+			if (connection.isClosed()) {
+				return;
+			}
+
+			if (!connection.getAutoCommit()) {
+				connection.rollback();
+				connection.setAutoCommit(true);
+			}
+		}
+		catch (SQLException e) {
+			closeQuietly(connection);
+			return;
+		}
+
+		if (!idleConnections.containsKey(key)) {
+			idleConnections.put(key, new ArrayDeque<Connection>());
+		}
+		idleConnections.get(key).push(connection);
+	}
+
+	/**
+	 * Record the time taken to open a new connection, used to estimate the time
+	 * saved by the next reuses
+	 *
+	 * @param key The connection key
+	 * @param setupTime The setup time in ms
+	 */
+	public synchronized void connectionOpened(String key, long setupTime) {
+		Long previous = setupTimes.get(key);
+		setupTimes.put(key, previous == null ? setupTime : (previous + setupTime) / 2);
+	}
+
+	/**
+	 * Retrieve a component instantiated by reflection, creating it on the first call
+	 *
+	 * @param className The class of the component
+	 * @return The component
+	 * @throws ReflectiveOperationException When the component cannot be instantiated
+	 */
+	public synchronized Object getComponent(String className) throws ReflectiveOperationException {
+		Object component = components.get(className);
+
+		if (component == null) {
+			component = Class.forName(className).getDeclaredConstructor().newInstance();
+			components.put(className, component);
+		}
+
+		return component;
+	}
+
+	/**
+	 * @return The number of connections reused since the start of the session
+	 */
+	public synchronized int getReuseCount() {
+		return reuseCount;
+	}
+
+	/**
+	 * @return The estimated connection setup time in ms saved since the start of the session
+	 */
+	public synchronized long getSavedTime() {
+		return savedTime;
+	}
+
+	/**
+	 * Close all the idle connections. Connections given back later are closed directly.
+	 */
+	public synchronized void close() {
+		closed = true;
+
+		for (Deque<Connection> idle : idleConnections.values()) {
+			for (Connection connection : idle) {
+				closeQuietly(connection);
+			}
+		}
+		idleConnections.clear();
+	}
+
+	private static void closeQuietly(Connection connection) {
+		try {
+			connection.close();
+		}
+		catch (SQLException e) {
+			// Nothing to do, the connection is discarded anyway
+		}
+	}
+}
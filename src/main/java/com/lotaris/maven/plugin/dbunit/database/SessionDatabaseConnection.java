@@ -0,0 +1,47 @@
+package com.lotaris.maven.plugin.dbunit.database;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import org.dbunit.DatabaseUnitException;
+import org.dbunit.database.DatabaseConnection;
+
+/**
+ * DBUnit connection on a physical connection owned by a {@link SessionConnectionRegistry}.
+ * Closing it gives the physical connection back to the registry instead of
+ * closing it.
+ *
+ * @author Laurent Prévost <laurent.prevost@lotaris.com>
+ */
+public class SessionDatabaseConnection extends DatabaseConnection {
+	private final SessionConnectionRegistry registry;
+
+	private final String key;
+
+	private boolean released = false;
+
+	//<editor-fold defaultstate="collapsed" desc="Constructors">
+	/**
+	 * Constructor
+	 *
+	 * @param connection The physical connection
+	 * @param schema The schema, can be null
+	 * @param validate True to check that the schema exists
+	 * @param registry The registry owning the physical connection
+	 * @param key The connection key in the registry
+	 * @throws DatabaseUnitException When the schema is not valid
+	 */
+	public SessionDatabaseConnection(Connection connection, String schema, boolean validate, SessionConnectionRegistry registry, String key) throws DatabaseUnitException {
+		super(connection, schema, validate);
+		this.registry = registry;
+		this.key = key;
+	}
+	//</editor-fold>
+
+	@Override
+	public void close() throws SQLException {
+		if (!released) {
+			released = true;
+			registry.release(key, getConnection());
+		}
+	}
+}
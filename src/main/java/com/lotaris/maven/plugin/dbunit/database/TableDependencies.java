@@ -0,0 +1,86 @@
+package com.lotaris.maven.plugin.dbunit.database;
+
+import com.lotaris.maven.plugin.dbunit.model.UnitForeignKey;
+import com.lotaris.maven.plugin.dbunit.model.UnitSchema;
+import com.lotaris.maven.plugin.dbunit.model.UnitTable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Group tables in dependency levels according to the foreign keys of a schema.
+ * The tables of a level only reference tables of the previous levels, so the
+ * tables of a level can be filled at the same time once the previous levels are
+ * done, and emptied at the same time before the previous levels.
+ * 
+ * @author Laurent Prévost <laurent.prevost@lotaris.com>
+ */
+public final class TableDependencies {
+	private TableDependencies() {}
+	
+	/**
+	 * Compute the dependency levels of the given tables. Only the foreign keys between
+	 * the given tables are considered and self references are ignored. The tables of
+	 * a reference cycle cannot be ordered, each one is placed alone in its own level
+	 * after all the others, in the given order.
+	 * 
+	 * @param schema The schema with the foreign keys
+	 * @param tableNames The tables to order
+	 * @return The levels, parents first, each level keeping the given order of its tables
+	 */
+	public static List<List<String>> levels(UnitSchema schema, Collection<String> tableNames) {
+		// Parents of each table within the given tables
+		Map<String, Set<String>> parents = new LinkedHashMap<>();
+		Map<String, String> namesIgnoreCase = new LinkedHashMap<>();
+		for (String tableName : tableNames) {
+			namesIgnoreCase.put(tableName.toUpperCase(), tableName);
+		}
+		
+		for (String tableName : tableNames) {
+			Set<String> tableParents = new HashSet<>();
+			UnitTable table = schema.getTable(tableName);
+			if (table != null) {
+				for (UnitForeignKey fk : table.getForeignKeys()) {
+					String parent = namesIgnoreCase.get(fk.getReferencedTableName().toUpperCase());
+					if (parent != null && !parent.equals(tableName)) {
+						tableParents.add(parent);
+					}
+				}
+			}
+			parents.put(tableName, tableParents);
+		}
+		
+		List<List<String>> levels = new ArrayList<>();
+		Set<String> done = new HashSet<>();
+		
+		while (done.size() < parents.size()) {
+			List<String> level = new ArrayList<>();
+			for (Map.Entry<String, Set<String>> entry : parents.entrySet()) {
+				if (!done.contains(entry.getKey()) && done.containsAll(entry.getValue())) {
+					level.add(entry.getKey());
+				}
+			}
+			
+			if (level.isEmpty()) {
+				// Only reference cycles remain
+				for (String tableName : parents.keySet()) {
+					if (!done.contains(tableName)) {
+						List<String> single = new ArrayList<>();
+						single.add(tableName);
+						levels.add(single);
+					}
+				}
+				break;
+			}
+			
+			done.addAll(level);
+			levels.add(level);
+		}
+		
+		return levels;
+	}
+}
@@ -0,0 +1,290 @@
+package com.lotaris.maven.plugin.dbunit.database;
+
+import com.lotaris.maven.plugin.dbunit.model.UnitColumn;
+import com.lotaris.maven.plugin.dbunit.model.UnitTable;
+import com.lotaris.maven.plugin.dbunit.util.Digests;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.dbunit.database.IDatabaseConnection;
+
+/**
+ * Compute a fingerprint of the content of a table that changes when a row is
+ * added, removed or modified, or when the columns change. The row count and an
+ * order independent sum of the row hashes are computed by the database when
+ * the dialect has one (PostgreSQL, MySQL, Oracle, SQL Server). Otherwise, or
+ * when the aggregate query fails (e.g. on LOB columns), the rows are read and
+ * hashed on the client side.
+ *
+ * @author Laurent Prévost <laurent.prevost@lotaris.com>
+ */
+public class TableFingerprint {
+	private final Dialect dialect;
+
+	//<editor-fold defaultstate="collapsed" desc="Constructors">
+	/**
+	 * Constructor
+	 *
+	 * @param dialect The dialect of the database
+	 */
+	public TableFingerprint(Dialect dialect) {
+		this.dialect = dialect;
+	}
+	//</editor-fold>
+
+	/**
+	 * Compute the fingerprint of a table
+	 *
+	 * @param connection The connection, in auto commit mode so a failed aggregate does not abort a transaction
+	 * @param table The table with its columns
+	 * @return The fingerprint as an hexadecimal digest
+	 * @throws SQLException When the table cannot be read
+	 */
+	public String compute(Connection connection, UnitTable table) throws SQLException {
+		MessageDigest digest = Digests.sha1();
+		update(digest, table.toString());
+
+		String sql = buildAggregateQuery(table);
+		if (sql != null) {
+			try (Statement st = connection.createStatement(); ResultSet rs = st.executeQuery(sql)) {
+				rs.next();
+				int columnCount = rs.getMetaData().getColumnCount();
+				for (int i = 1; i <= columnCount; i++) {
+					update(digest, rs.getString(i));
+				}
+				return Digests.toHex(digest.digest());
+			}
+			catch (SQLException e) {
+				// Fallback to the client side hash
+			}
+		}
+
+		digestRows(connection, table, digest);
+		return Digests.toHex(digest.digest());
+	}
+
+	/**
+	 * Compute the fingerprints of tables one after the other
+	 *
+	 * @param connection The connection
+	 * @param tables The tables
+	 * @return The fingerprints by table name, in table order
+	 * @throws SQLException When a table cannot be read
+	 */
+	public Map<String, String> computeAll(Connection connection, List<UnitTable> tables) throws SQLException {
+		Map<String, String> fingerprints = new LinkedHashMap<>();
+		for (UnitTable table : tables) {
+			fingerprints.put(table.getTableName(), compute(connection, table));
+		}
+		return fingerprints;
+	}
+
+	/**
+	 * Compute the fingerprints of tables concurrently on the connections of a pool
+	 *
+	 * @param pool The pool of connections
+	 * @param tables The tables
+	 * @return The fingerprints by table name, in table order
+	 * @throws Exception When a table cannot be read
+	 */
+	public Map<String, String> computeAll(final ConnectionPool pool, List<UnitTable> tables) throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(pool.size());
+		try {
+			List<Future<String>> futures = new ArrayList<>();
+			for (final UnitTable table : tables) {
+				futures.add(executor.submit(new Callable<String>() {
+					@Override
+					public String call() throws Exception {
+						IDatabaseConnection connection = pool.acquire();
+						try {
+							return compute(connection.getConnection(), table);
+						}
+						finally {
+							pool.release(connection);
+						}
+					}
+				}));
+			}
+
+			Map<String, String> fingerprints = new LinkedHashMap<>();
+			for (int i = 0; i < futures.size(); i++) {
+				try {
+					fingerprints.put(tables.get(i).getTableName(), futures.get(i).get());
+				}
+				catch (ExecutionException e) {
+					if (e.getCause() instanceof Error) {
+						throw (Error) e.getCause();
+					}
+					throw (Exception) e.getCause();
+				}
+			}
+
+			return fingerprints;
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Build the query computing the row count and a hash aggregate of the rows
+	 *
+	 * @param table The table
+	 * @return The query, null when the dialect has no hash aggregate
+	 */
+	private String buildAggregateQuery(UnitTable table) {
+		List<String> columns = new ArrayList<>();
+		for (UnitColumn uc : table.getColumns()) {
+			columns.add(uc.getColumnName());
+		}
+
+		switch (dialect) {
+			case POSTGRESQL:
+				// The bigint sums are numeric and cannot overflow
+				return "SELECT COUNT(*), SUM(('x' || substr(h, 1, 16))::bit(64)::bigint), SUM(('x' || substr(h, 17, 16))::bit(64)::bigint) FROM (SELECT md5(ROW(" + join(columns, ", ") + ")::text) AS h FROM " + table.getTableName() + ") t";
+
+			case MYSQL:
+				List<String> values = new ArrayList<>();
+				for (String column : columns) {
+					values.add(column);
+					values.add("ISNULL(" + column + ")");
+				}
+				String row = "MD5(CONCAT_WS('|', " + join(values, ", ") + "))";
+				return "SELECT COUNT(*), SUM(CAST(CONV(SUBSTRING(" + row + ", 1, 15), 16, 10) AS UNSIGNED)), SUM(CAST(CONV(SUBSTRING(" + row + ", 16, 15), 16, 10) AS UNSIGNED)) FROM " + table.getTableName();
+
+			case ORACLE:
+				String concatenation = join(columns, " || '|' || ");
+				return "SELECT COUNT(*), SUM(ORA_HASH(" + concatenation + ", 4294967295, 1)), SUM(ORA_HASH(" + concatenation + ", 4294967295, 2)) FROM " + table.getTableName();
+
+			case MSSQL:
+				return buildSqlServerAggregateQuery(table);
+
+			default:
+				return null;
+		}
+	}
+
+	/**
+	 * BINARY_CHECKSUM ignores the text, ntext, image and xml columns and collides
+	 * easily, so the rows are hashed with HASHBYTES over the concatenation of the
+	 * columns. The binary and large object columns cannot be concatenated, the
+	 * tables having some are hashed on the client side, like the rows over the
+	 * HASHBYTES input limit of the versions before SQL Server 2016.
+	 *
+	 * @param table The table
+	 * @return The query, null when the table has binary or large object columns
+	 */
+	private String buildSqlServerAggregateQuery(UnitTable table) {
+		List<String> values = new ArrayList<>();
+		for (UnitColumn uc : table.getColumns()) {
+			String column = uc.getColumnName();
+			
+			switch (uc.getSqlType()) {
+				case Types.BINARY:
+				case Types.VARBINARY:
+				case Types.LONGVARBINARY:
+				case Types.LONGVARCHAR:
+				case Types.LONGNVARCHAR:
+				case Types.BLOB:
+				case Types.CLOB:
+				case Types.NCLOB:
+				case Types.SQLXML:
+					return null;
+				
+				case Types.DATE:
+				case Types.TIME:
+				case Types.TIMESTAMP:
+				case -155: // datetimeoffset
+					values.add("ISNULL(CONVERT(NVARCHAR(40), " + column + ", 121), N'')");
+					break;
+					
+				case Types.REAL:
+				case Types.FLOAT:
+				case Types.DOUBLE:
+					values.add("ISNULL(CONVERT(NVARCHAR(40), " + column + ", 2), N'')");
+					break;
+					
+				default:
+					String typeName = uc.getTypeName() != null ? uc.getTypeName().toLowerCase() : "";
+					if (typeName.equals("text") || typeName.equals("ntext") || typeName.equals("image") || typeName.equals("xml")) {
+						return null;
+					}
+					values.add("ISNULL(CONVERT(NVARCHAR(MAX), " + column + "), N'')");
+			}
+			
+			values.add("CASE WHEN " + column + " IS NULL THEN N'1' ELSE N'0' END");
+		}
+		
+		// The 32 bits parts of the hash summed as BIGINT cannot overflow
+		return "SELECT COUNT_BIG(*), SUM(CAST(CAST(SUBSTRING(h, 1, 4) AS INT) AS BIGINT)), SUM(CAST(CAST(SUBSTRING(h, 5, 4) AS INT) AS BIGINT)), SUM(CAST(CAST(SUBSTRING(h, 9, 4) AS INT) AS BIGINT)) " + 
+			"FROM (SELECT HASHBYTES('MD5', " + join(values, " + N'|' + ") + ") AS h FROM " + table.getTableName() + ") t";
+	}
+
+	/**
+	 * Hash all the rows on the client side. The row hashes are summed so the
+	 * result does not depend on the order of the rows.
+	 *
+	 * @param connection The connection
+	 * @param table The table
+	 * @param digest The digest to update
+	 * @throws SQLException When the table cannot be read
+	 */
+	private void digestRows(Connection connection, UnitTable table, MessageDigest digest) throws SQLException {
+		MessageDigest rowDigest = Digests.sha1();
+		long count = 0;
+		long sum = 0;
+
+		String sql = table.buildExtractQuery().getSql();
+		try (Statement st = connection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+			try (ResultSet rs = st.executeQuery(sql.substring(0, sql.length() - 1))) {
+				int columnCount = rs.getMetaData().getColumnCount();
+				while (rs.next()) {
+					for (int i = 1; i <= columnCount; i++) {
+						update(rowDigest, rs.getString(i));
+					}
+
+					byte[] hash = rowDigest.digest();
+					long value = 0;
+					for (int i = 0; i < 8; i++) {
+						value = (value << 8) | (hash[i] & 0xFF);
+					}
+
+					sum += value;
+					count++;
+				}
+			}
+		}
+
+		update(digest, Long.toString(count));
+		update(digest, Long.toString(sum));
+	}
+
+	private static String join(List<String> values, String separator) {
+		StringBuilder sb = new StringBuilder();
+		for (String value : values) {
+			if (sb.length() > 0) {
+				sb.append(separator);
+			}
+			sb.append(value);
+		}
+		return sb.toString();
+	}
+
+	private static void update(MessageDigest digest, String value) {
+		digest.update(String.valueOf(value).getBytes(StandardCharsets.UTF_8));
+		digest.update((byte) 0);
+	}
+}
@@ -0,0 +1,252 @@
+package com.lotaris.maven.plugin.dbunit.export;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.stream.IDataSetConsumer;
+
+/**
+ * Base of the data set writers that write each row as soon as it is consumed.
+ * Nothing is kept in memory except what the underlying output stream buffers.
+ *
+ * The values are escaped like the DB Unit XML writer does: the tabs, line feeds
+ * and carriage returns of the attributes are written as character references,
+ * since the XML parsers replace them by spaces, as the carriage returns of the
+ * text which the parsers turn into line feeds. The characters the encoding of
+ * the document cannot represent are written as character references, and the
+ * characters that XML does not allow are rejected.
+ *
+ * @author Laurent Prévost <laurent.prevost@lotaris.com>
+ */
+public abstract class AbstractStreamingXmlWriter implements IDataSetConsumer {
+	protected static final String DATASET = "dataset";
+
+	private final Writer writer;
+
+	private final String encoding;
+
+	private final CharsetEncoder encoder;
+
+	private final Deque<String> elements = new ArrayDeque<>();
+
+	/**
+	 * True while the attributes of the last element can still be written
+	 */
+	private boolean tagOpened;
+
+	/**
+	 * True if the element whose tag is opened has no content
+	 */
+	private boolean tagEmpty;
+
+	private String doctype;
+
+	//<editor-fold defaultstate="collapsed" desc="Constructors">
+	/**
+	 * Constructor
+	 *
+	 * @param out The stream to write to, should be buffered
+	 * @param encoding The encoding of the document
+	 */
+	public AbstractStreamingXmlWriter(OutputStream out, String encoding) {
+		Charset charset = Charset.forName(encoding);
+		this.encoding = encoding;
+		this.encoder = charset.newEncoder();
+		this.writer = new OutputStreamWriter(out, charset);
+	}
+	//</editor-fold>
+
+	//<editor-fold defaultstate="collapsed" desc="Getters & Setters">
+	public void setDocType(String doctype) {
+		this.doctype = doctype;
+	}
+	//</editor-fold>
+
+	//<editor-fold defaultstate="collapsed" desc="Overrides">
+	@Override
+	public void startDataSet() throws DataSetException {
+		try {
+			writer.write("<?xml version=\"1.0\" encoding=\"" + encoding + "\"?>");
+			newLine(0);
+			if (doctype != null) {
+				writer.write("<!DOCTYPE " + DATASET + " SYSTEM \"" + doctype + "\">");
+				newLine(0);
+			}
+			writeStartElement(DATASET);
+		}
+		catch (IOException e) {
+			throw new DataSetException(e);
+		}
+	}
+
+	@Override
+	public void endDataSet() throws DataSetException {
+		try {
+			newLine(0);
+			writeEndElement();
+			newLine(0);
+			writer.flush();
+		}
+		catch (IOException e) {
+			throw new DataSetException(e);
+		}
+	}
+	//</editor-fold>
+
+	/**
+	 * Start an element with content
+	 *
+	 * @param name The name of the element
+	 * @throws IOException When the writer fails
+	 */
+	protected void writeStartElement(String name) throws IOException {
+		closeTag();
+		writer.write('<');
+		writer.write(name);
+		elements.push(name);
+		tagOpened = true;
+		tagEmpty = false;
+	}
+
+	/**
+	 * Start an element without content, closed by the next write
+	 *
+	 * @param name The name of the element
+	 * @throws IOException When the writer fails
+	 */
+	protected void writeEmptyElement(String name) throws IOException {
+		closeTag();
+		writer.write('<');
+		writer.write(name);
+		tagOpened = true;
+		tagEmpty = true;
+	}
+
+	/**
+	 * Write an attribute of the element just started
+	 *
+	 * @param name The name of the attribute
+	 * @param value The value of the attribute
+	 * @throws IOException When the writer fails
+	 * @throws DataSetException When the value has a character not allowed in XML
+	 */
+	protected void writeAttribute(String name, String value) throws IOException, DataSetException {
+		if (!tagOpened) {
+			throw new IllegalStateException("No element to write the attribute " + name + " on");
+		}
+		writer.write(' ');
+		writer.write(name);
+		writer.write("=\"");
+		writeEscaped(value, true);
+		writer.write('"');
+	}
+
+	/**
+	 * Write the text of the current element
+	 *
+	 * @param text The text
+	 * @throws IOException When the writer fails
+	 * @throws DataSetException When the text has a character not allowed in XML
+	 */
+	protected void writeCharacters(String text) throws IOException, DataSetException {
+		closeTag();
+		writeEscaped(text, false);
+	}
+
+	/**
+	 * End the last element started with content
+	 *
+	 * @throws IOException When the writer fails
+	 */
+	protected void writeEndElement() throws IOException {
+		closeTag();
+		writer.write("</");
+		writer.write(elements.pop());
+		writer.write('>');
+	}
+
+	/**
+	 * Start a new line indented at the given level to keep the output readable
+	 *
+	 * @param level The indentation level
+	 * @throws IOException When the writer fails
+	 */
+	protected void newLine(int level) throws IOException {
+		closeTag();
+		writer.write('\n');
+		for (int i = 0; i < level; i++) {
+			writer.write("  ");
+		}
+	}
+
+	private void closeTag() throws IOException {
+		if (tagOpened) {
+			writer.write(tagEmpty ? "/>" : ">");
+			tagOpened = false;
+		}
+	}
+
+	/**
+	 * Write a value with its markup characters escaped
+	 *
+	 * @param value The value
+	 * @param attribute True for the value of an attribute, false for a text
+	 * @throws IOException When the writer fails
+	 * @throws DataSetException When the value has a character not allowed in XML
+	 */
+	private void writeEscaped(String value, boolean attribute) throws IOException, DataSetException {
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+
+			switch (c) {
+				case '<':
+					writer.write("&lt;");
+					break;
+				case '>':
+					writer.write("&gt;");
+					break;
+				case '&':
+					writer.write("&amp;");
+					break;
+				case '"':
+					writer.write(attribute ? "&quot;" : "\"");
+					break;
+				case '\t':
+					writer.write(attribute ? "&#09;" : "\t");
+					break;
+				case '\n':
+					writer.write(attribute ? "&#xA;" : "\n");
+					break;
+				case '\r':
+					writer.write("&#xD;");
+					break;
+				default:
+					if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+						String pair = value.substring(i, i + 2);
+						if (encoder.canEncode(pair)) {
+							writer.write(pair);
+						}
+						else {
+							writer.write("&#" + value.codePointAt(i) + ";");
+						}
+						i++;
+					}
+					else if (c < 0x20 || Character.isSurrogate(c) || c == 0xFFFE || c == 0xFFFF) {
+						throw new DataSetException("The character 0x" + Integer.toHexString(c) + " is not allowed in XML: " + value);
+					}
+					else if (encoder.canEncode(c)) {
+						writer.write(c);
+					}
+					else {
+						writer.write("&#" + (int) c + ";");
+					}
+			}
+		}
+	}
+}
@@ -0,0 +1,426 @@
+package com.lotaris.maven.plugin.dbunit.export;
+
+import com.lotaris.maven.plugin.dbunit.binary.BinaryDataSetProducer;
+import com.lotaris.maven.plugin.dbunit.binary.BinaryDataSetWriter;
+import com.lotaris.maven.plugin.dbunit.model.UnitColumn;
+import com.lotaris.maven.plugin.dbunit.model.UnitSchema;
+import com.lotaris.maven.plugin.dbunit.model.UnitTable;
+import com.lotaris.maven.plugin.dbunit.util.Compression;
+import com.lotaris.maven.plugin.dbunit.util.Digests;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.Deflater;
+import org.dbunit.ant.AbstractStep;
+import org.dbunit.ant.Query;
+import org.dbunit.database.DatabaseConfig;
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.database.ResultSetTableMetaData;
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.ITableMetaData;
+import org.dbunit.dataset.datatype.DataType;
+import org.dbunit.dataset.datatype.IDataTypeFactory;
+import org.dbunit.dataset.stream.IDataSetConsumer;
+
+/**
+ * Export engine that reads the tables chunk by chunk in primary key order, each
+ * chunk starting after the key of the last row of the previous one (keyset
+ * pagination). Every chunk is a short query, so no statement holds a snapshot
+ * or locks during the whole export, and the progress is stored in a checkpoint
+ * after each chunk. A run repeated after a failure resumes from the checkpoint
+ * instead of starting over.
+ *
+ * The chunks are written as binary part files in a work directory next to the
+ * dest file, then assembled in the dest file in the requested format once all
+ * the tables are exported. The tables without primary key and the custom queries
+ * are exported as a single chunk, like the tables whose number of rows is limited.
+ *
+ * @author Laurent Prévost <laurent.prevost@lotaris.com>
+ */
+public class ChunkedExport {
+	private final int chunkSize;
+
+	private File dest;
+
+	private String format = AbstractStep.FORMAT_FLAT;
+
+	private String encoding;
+
+	private String doctype;
+
+	private int bufferSize = StreamingExport.DEFAULT_BUFFER_SIZE;
+
+	private boolean ordered;
+
+	private String compression = Compression.NONE;
+
+	private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+
+	private int resumedChunks;
+
+	private int chunks;
+
+	private long rows;
+
+	//<editor-fold defaultstate="collapsed" desc="Constructors">
+	/**
+	 * Constructor
+	 *
+	 * @param chunkSize The maximum number of rows read by each query
+	 */
+	public ChunkedExport(int chunkSize) {
+		if (chunkSize <= 0) {
+			throw new IllegalArgumentException("The chunk size must be positive");
+		}
+		this.chunkSize = chunkSize;
+	}
+	//</editor-fold>
+
+	//<editor-fold defaultstate="collapsed" desc="Getters & Setters">
+	public void setDest(File dest) {
+		this.dest = dest;
+	}
+
+	public void setFormat(String format) {
+		this.format = format;
+	}
+
+	public void setEncoding(String encoding) {
+		this.encoding = encoding;
+	}
+
+	public void setDoctype(String doctype) {
+		this.doctype = doctype;
+	}
+
+	public void setBufferSize(int bufferSize) {
+		this.bufferSize = bufferSize;
+	}
+
+	public void setOrdered(boolean ordered) {
+		this.ordered = ordered;
+	}
+
+	public void setCompression(String compression) {
+		this.compression = compression;
+	}
+
+	public void setCompressionLevel(int compressionLevel) {
+		this.compressionLevel = compressionLevel;
+	}
+
+	/**
+	 * @return The number of chunks taken from the checkpoint of a previous run
+	 */
+	public int getResumedChunks() {
+		return resumedChunks;
+	}
+
+	/**
+	 * @return The number of chunks of the export, including the resumed ones
+	 */
+	public int getChunks() {
+		return chunks;
+	}
+
+	/**
+	 * @return The number of rows exported, including the resumed ones
+	 */
+	public long getRows() {
+		return rows;
+	}
+	//</editor-fold>
+
+	/**
+	 * Export the queries in the dest file, resuming a previous run with the same
+	 * settings when its checkpoint is found
+	 *
+	 * @param connection The connection to read the tables
+	 * @param queries The queries to export
+	 * @param schema The schema with the primary keys of the tables, null to export each query as a single chunk
+	 * @throws Exception When the export fails, the checkpoint is kept for the next run
+	 */
+	public void execute(IDatabaseConnection connection, List<Query> queries, UnitSchema schema) throws Exception {
+		if (!StreamingExport.isSupportedFormat(format)) {
+			throw new IllegalArgumentException("The format '" + format + "' is not supported by the chunked export.");
+		}
+
+		if (ordered) {
+			queries = DatabaseDataSetProducer.sortQueries(connection, queries);
+		}
+
+		File workDir = new File(dest.getPath() + ".chunks");
+		ExportCheckpoint checkpoint = new ExportCheckpoint(dest, buildSettings(queries));
+
+		if (checkpoint.load()) {
+			resumedChunks = checkpoint.getParts();
+		}
+		else {
+			deleteParts(workDir);
+		}
+
+		if (!workDir.isDirectory() && !workDir.mkdirs()) {
+			throw new IOException("Unable to create " + workDir);
+		}
+
+		for (int index = checkpoint.getTableIndex(); index < queries.size(); index++) {
+			Query query = queries.get(index);
+			UnitTable table = schema != null ? schema.getTable(query.getName()) : null;
+
+			if (isPaginated(query, table)) {
+				exportChunks(connection, table, query.getName(), index, checkpoint, workDir);
+			}
+			else {
+				exportWhole(connection, query, index, checkpoint, workDir);
+			}
+		}
+
+		assemble(workDir, checkpoint.getParts());
+
+		chunks = checkpoint.getParts();
+		rows = checkpoint.getRows();
+
+		deleteParts(workDir);
+		checkpoint.delete();
+	}
+
+	/**
+	 * @param query The query to export
+	 * @param table The table of the query, null if not in the schema
+	 * @return True if the query is the extract query of a table with a primary key and without row limit
+	 */
+	private static boolean isPaginated(Query query, UnitTable table) {
+		return table != null && !table.getPrimaryKeyColumns().isEmpty() && table.getMaxRows() == 0 && table.buildExtractQuery().getSql().equals(query.getSql());
+	}
+
+	/**
+	 * Export a table chunk by chunk, starting after the key of the checkpoint
+	 *
+	 * @param connection The connection
+	 * @param table The table with its primary key
+	 * @param name The name of the table in the data set
+	 * @param index The index of the table
+	 * @param checkpoint The checkpoint
+	 * @param workDir The directory of the chunk files
+	 * @throws Exception When a chunk cannot be exported
+	 */
+	private void exportChunks(IDatabaseConnection connection, UnitTable table, String name, int index, ExportCheckpoint checkpoint, File workDir) throws Exception {
+		List<UnitColumn> primaryKey = table.getPrimaryKeyColumns();
+
+		// The key values are bound with the types of the key columns, so the key
+		// read from the checkpoint as strings is converted the same way
+		IDataTypeFactory dataTypeFactory = (IDataTypeFactory) connection.getConfig().getProperty(DatabaseConfig.PROPERTY_DATATYPE_FACTORY);
+		DataType[] keyTypes = new DataType[primaryKey.size()];
+		for (int i = 0; i < keyTypes.length; i++) {
+			UnitColumn column = primaryKey.get(i);
+			keyTypes[i] = dataTypeFactory.createDataType(column.getSqlType(), column.getTypeName(), table.getTableName(), column.getColumnName());
+		}
+
+		boolean caseSensitive = DatabaseDataSetProducer.isCaseSensitive(connection);
+
+		Object[] key = checkpoint.getKey();
+		boolean first = key == null;
+
+		for (boolean done = false; !done;) {
+			File part = getPartFile(workDir, checkpoint.getParts());
+			int count = 0;
+			String[] lastKey = null;
+
+			try (PreparedStatement statement = connection.getConnection().prepareStatement(table.buildChunkQuery(key == null))) {
+				statement.setMaxRows(chunkSize);
+				statement.setFetchSize(Math.min(chunkSize, 1000));
+
+				// (k1 > ?) OR (k1 = ? AND k2 > ?) OR ...
+				int parameter = 1;
+				for (int i = 0; key != null && i < key.length; i++) {
+					for (int j = 0; j <= i; j++) {
+						keyTypes[j].setSqlValue(key[j], parameter++, statement);
+					}
+				}
+
+				try (ResultSet rs = statement.executeQuery(); OutputStream out = new BufferedOutputStream(new FileOutputStream(part), bufferSize)) {
+					ITableMetaData metaData = new ResultSetTableMetaData(name, rs, connection, caseSensitive);
+					Column[] columns = metaData.getColumns();
+
+					int[] keyIndexes = new int[primaryKey.size()];
+					for (int i = 0; i < keyIndexes.length; i++) {
+						keyIndexes[i] = metaData.getColumnIndex(primaryKey.get(i).getColumnName());
+					}
+
+					IDataSetConsumer writer = new BinaryDataSetWriter(out);
+					writer.startDataSet();
+					writer.startTable(metaData);
+
+					Object[] values = null;
+					while (rs.next()) {
+						values = new Object[columns.length];
+						for (int i = 0; i < columns.length; i++) {
+							values[i] = columns[i].getDataType().getSqlValue(i + 1, rs);
+						}
+						writer.row(values);
+						count++;
+					}
+
+					writer.endTable();
+					writer.endDataSet();
+
+					if (values != null) {
+						lastKey = new String[keyIndexes.length];
+						for (int i = 0; i < keyIndexes.length; i++) {
+							lastKey[i] = DataType.asString(values[keyIndexes[i]]);
+						}
+					}
+				}
+			}
+
+			// A short chunk is the last one, an empty table still gets its chunk
+			done = count < chunkSize;
+			boolean written = count > 0 || first;
+			if (!written && !part.delete()) {
+				throw new IOException("Unable to delete " + part);
+			}
+
+			checkpoint.save(name, done ? index + 1 : index, done ? null : lastKey, count, written);
+
+			key = lastKey;
+			first = false;
+		}
+	}
+
+	/**
+	 * Export a query as a single chunk
+	 *
+	 * @param connection The connection
+	 * @param query The query
+	 * @param index The index of the query
+	 * @param checkpoint The checkpoint
+	 * @param workDir The directory of the chunk files
+	 * @throws Exception When the query cannot be exported
+	 */
+	private void exportWhole(IDatabaseConnection connection, Query query, int index, ExportCheckpoint checkpoint, File workDir) throws Exception {
+		CountingConsumer counter;
+		try (OutputStream out = new BufferedOutputStream(new FileOutputStream(getPartFile(workDir, checkpoint.getParts())), bufferSize)) {
+			counter = new CountingConsumer(new BinaryDataSetWriter(out));
+			DatabaseDataSetProducer producer = new DatabaseDataSetProducer(connection, Collections.singletonList(query));
+			producer.setConsumer(counter);
+			producer.produce();
+		}
+
+		checkpoint.save(query.getName(), index + 1, null, counter.getCount(), true);
+	}
+
+	/**
+	 * Write the chunks in the dest file, the consecutive chunks of a table being
+	 * written as one table
+	 *
+	 * @param workDir The directory of the chunk files
+	 * @param parts The number of chunk files
+	 * @throws Exception When the dest file cannot be written
+	 */
+	private void assemble(File workDir, int parts) throws Exception {
+		try (OutputStream out = new BufferedOutputStream(Compression.compress(new FileOutputStream(dest), compression, compressionLevel, bufferSize), bufferSize)) {
+			IDataSetConsumer writer = StreamingExport.createWriter(out, format, encoding, doctype);
+			MergingConsumer merger = new MergingConsumer(writer);
+
+			writer.startDataSet();
+			for (int part = 0; part < parts; part++) {
+				BinaryDataSetProducer producer = new BinaryDataSetProducer(getPartFile(workDir, part));
+				producer.setConsumer(merger);
+				producer.produce();
+			}
+			merger.finish();
+			writer.endDataSet();
+		}
+	}
+
+	/**
+	 * @param queries The queries to export
+	 * @return The settings identifying the export, including the tables and their queries
+	 */
+	private String buildSettings(List<Query> queries) {
+		StringBuilder sb = new StringBuilder();
+		for (Query query : queries) {
+			sb.append(query.getName()).append('=').append(query.getSql()).append('\n');
+		}
+
+		return format + "|" + encoding + "|" + doctype + "|" + ordered + "|" + compression + "|" + chunkSize + "|" + Digests.sha1Hex(sb.toString());
+	}
+
+	private static File getPartFile(File workDir, int part) {
+		return new File(workDir, String.format(Locale.ROOT, "part-%06d.bin", part));
+	}
+
+	/**
+	 * Delete the work directory and its chunk files
+	 *
+	 * @param workDir The directory of the chunk files
+	 * @throws IOException When a file cannot be deleted
+	 */
+	private static void deleteParts(File workDir) throws IOException {
+		File[] files = workDir.listFiles();
+		if (files == null) {
+			return;
+		}
+
+		for (File file : files) {
+			if (!file.delete()) {
+				throw new IOException("Unable to delete " + file);
+			}
+		}
+
+		if (!workDir.delete()) {
+			throw new IOException("Unable to delete " + workDir);
+		}
+	}
+
+	/**
+	 * Consumer counting the rows sent to another consumer
+	 */
+	private static class CountingConsumer implements IDataSetConsumer {
+		private final IDataSetConsumer consumer;
+
+		private int count;
+
+		public CountingConsumer(IDataSetConsumer consumer) {
+			this.consumer = consumer;
+		}
+
+		public int getCount() {
+			return count;
+		}
+
+		@Override
+		public void startDataSet() throws DataSetException {
+			consumer.startDataSet();
+		}
+
+		@Override
+		public void endDataSet() throws DataSetException {
+			consumer.endDataSet();
+		}
+
+		@Override
+		public void startTable(ITableMetaData metaData) throws DataSetException {
+			consumer.startTable(metaData);
+		}
+
+		@Override
+		public void endTable() throws DataSetException {
+			consumer.endTable();
+		}
+
+		@Override
+		public void row(Object[] values) throws DataSetException {
+			consumer.row(values);
+			count++;
+		}
+	}
+}
@@ -0,0 +1,365 @@
+package com.lotaris.maven.plugin.dbunit.export;
+
+import com.lotaris.maven.plugin.dbunit.model.UnitSchema;
+import com.lotaris.maven.plugin.dbunit.model.UnitTable;
+import com.lotaris.maven.plugin.dbunit.util.CountingOutputStream;
+import com.lotaris.maven.plugin.dbunit.util.RunReport;
+import com.lotaris.maven.plugin.dbunit.util.TableStats;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import org.dbunit.ant.Query;
+import org.dbunit.database.DatabaseConfig;
+import org.dbunit.database.DatabaseSequenceFilter;
+import org.dbunit.database.ForwardOnlyResultSetTable;
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.database.IResultSetTable;
+import org.dbunit.database.IResultSetTableFactory;
+import org.dbunit.database.ResultSetTableMetaData;
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.DefaultDataSet;
+import org.dbunit.dataset.DefaultTable;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.ITableMetaData;
+import org.dbunit.dataset.RowOutOfBoundsException;
+import org.dbunit.dataset.stream.IDataSetConsumer;
+import org.dbunit.dataset.stream.IDataSetProducer;
+import org.dbunit.util.QualifiedTableName;
+
+/**
+ * Produce the rows of a list of queries one by one to a consumer. Combined with
+ * a forward only result set table factory, only the current row of the current
+ * table is held in memory.
+ * 
+ * @author Laurent Prévost <laurent.prevost@lotaris.com>
+ */
+public class DatabaseDataSetProducer implements IDataSetProducer {
+	private final IDatabaseConnection connection;
+	
+	private final List<Query> queries;
+	
+	private IDataSetConsumer consumer;
+	
+	private KeyRangeReader keyRangeReader;
+	
+	private UnitSchema schema;
+	
+	private RunReport report;
+	
+	private CountingOutputStream output;
+
+	//<editor-fold defaultstate="collapsed" desc="Constructors">
+	/**
+	 * Constructor
+	 * 
+	 * @param connection The connection to read the tables
+	 * @param queries The queries to run, a query without SQL extracts the whole table
+	 */
+	public DatabaseDataSetProducer(IDatabaseConnection connection, List<Query> queries) {
+		this.connection = connection;
+		this.queries = queries;
+	}
+	//</editor-fold>
+
+	//<editor-fold defaultstate="collapsed" desc="Getters & Setters">
+	/**
+	 * Read the large tables of the schema as primary key ranges at the same time
+	 * 
+	 * @param keyRangeReader The reader of the ranges
+	 * @param schema The schema with the primary keys of the tables
+	 */
+	public void setKeyRanges(KeyRangeReader keyRangeReader, UnitSchema schema) {
+		this.keyRangeReader = keyRangeReader;
+		this.schema = schema;
+	}
+	
+	/**
+	 * Measure the metadata, query, fetch and write time of each table. The
+	 * tables are then read forward only, whatever the result set table factory.
+	 * 
+	 * @param report The report receiving the measures
+	 * @param output The stream counting the bytes written by the consumer, null to not count them.
+	 * The bytes of a table are approximate when the consumer buffers its output.
+	 */
+	public void setReport(RunReport report, CountingOutputStream output) {
+		this.report = report;
+		this.output = output;
+	}
+	//</editor-fold>
+
+	//<editor-fold defaultstate="collapsed" desc="Overrides">
+	@Override
+	public void setConsumer(IDataSetConsumer consumer) throws DataSetException {
+		this.consumer = consumer;
+	}
+
+	@Override
+	public void produce() throws DataSetException {
+		consumer.startDataSet();
+		
+		for (Query query : queries) {
+			TableStats stats = report != null ? report.table(query.getName()) : null;
+			long bytes = output != null ? output.getCount() : 0;
+			
+			if (keyRangeReader != null && produceRanges(query, stats)) {
+				if (output != null) {
+					stats.addBytes(output.getCount() - bytes);
+				}
+				continue;
+			}
+			
+			ITable table;
+			try {
+				table = stats != null ? createMeasuredTable(query, stats) : createTable(connection, query);
+			}
+			catch (DataSetException e) {
+				throw e;
+			}
+			catch (Exception e) {
+				throw new DataSetException(e);
+			}
+
+			try {
+				ITableMetaData metaData = table.getTableMetaData();
+				Column[] columns = metaData.getColumns();
+
+				long fetchTime = 0;
+				long writeTime = 0;
+				long rows = 0;
+				long mark = stats != null ? System.nanoTime() : 0;
+				
+				consumer.startTable(metaData);
+				for (int row = 0; ; row++) {
+					if (stats != null) {
+						long now = System.nanoTime();
+						writeTime += now - mark;
+						mark = now;
+					}
+					
+					Object[] values = new Object[columns.length];
+					try {
+						for (int i = 0; i < columns.length; i++) {
+							values[i] = table.getValue(row, columns[i].getColumnName());
+						}
+					}
+					catch (RowOutOfBoundsException e) {
+						break;
+					}
+					
+					if (stats != null) {
+						long now = System.nanoTime();
+						fetchTime += now - mark;
+						mark = now;
+						rows++;
+					}
+					consumer.row(values);
+				}
+				
+				if (stats != null) {
+					long now = System.nanoTime();
+					fetchTime += now - mark;
+					mark = now;
+				}
+				consumer.endTable();
+				
+				if (stats != null) {
+					stats.addTime("fetch", fetchTime);
+					stats.addTime("write", writeTime + System.nanoTime() - mark);
+					stats.addRows(rows);
+					stats.addRoundTrips(1 + rows / getFetchSize(connection));
+					if (output != null) {
+						stats.addBytes(output.getCount() - bytes);
+					}
+				}
+			}
+			finally {
+				if (table instanceof IResultSetTable) {
+					((IResultSetTable) table).close();
+				}
+			}
+		}
+		
+		consumer.endDataSet();
+	}
+	//</editor-fold>
+	
+	/**
+	 * Produce a table by key ranges when it is large enough to be split
+	 * 
+	 * @param query The query of the table
+	 * @param stats The measures of the table, null when not instrumented
+	 * @return True if the table was produced, false when it is not split
+	 * @throws DataSetException When the table cannot be produced
+	 */
+	private boolean produceRanges(Query query, TableStats stats) throws DataSetException {
+		UnitTable table = schema.getTable(query.getName());
+		
+		long start = System.nanoTime();
+		long[] bounds;
+		try {
+			bounds = keyRangeReader.split(connection, query, table);
+		}
+		catch (SQLException e) {
+			throw new DataSetException("Unable to split " + query.getName() + " in key ranges", e);
+		}
+		
+		if (bounds == null) {
+			if (stats != null) {
+				stats.addTime("split", System.nanoTime() - start);
+			}
+			return false;
+		}
+		
+		long rows = keyRangeReader.produce(table, query.getName(), bounds, consumer);
+		
+		// The ranges are read and written concurrently, only their total time is known
+		if (stats != null) {
+			stats.addTime("ranges", System.nanoTime() - start);
+			stats.addRows(rows);
+			stats.addRoundTrips(2 + bounds.length + rows / getFetchSize(connection));
+		}
+		return true;
+	}
+	
+	/**
+	 * Run the query of a table, measuring the execution of the query and the
+	 * creation of the metadata from the result set
+	 * 
+	 * @param query The query, a query without SQL extracts the whole table
+	 * @param stats The measures of the table
+	 * @return The table, read forward only
+	 * @throws SQLException When the query fails
+	 * @throws DataSetException When the metadata cannot be created
+	 */
+	private ITable createMeasuredTable(Query query, TableStats stats) throws SQLException, DataSetException {
+		String sql = query.getSql();
+		if (sql == null) {
+			sql = "select * from " + new QualifiedTableName(query.getName(), connection.getSchema()).getQualifiedName();
+		}
+		
+		return createTable(connection, query.getName(), sql, stats);
+	}
+	
+	/**
+	 * Create a forward only table from a query, measuring the execution of the
+	 * query and the creation of the metadata from the result set
+	 * 
+	 * @param connection The connection
+	 * @param tableName The name of the table
+	 * @param sql The query
+	 * @param stats The measures of the table
+	 * @return The table, its statement is closed with the table
+	 * @throws SQLException When the query fails
+	 * @throws DataSetException When the metadata cannot be created
+	 */
+	public static ITable createTable(IDatabaseConnection connection, String tableName, String sql, TableStats stats) throws SQLException, DataSetException {
+		long start = System.nanoTime();
+		
+		Statement statement = connection.getConnection().createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+		try {
+			statement.setFetchSize(getFetchSize(connection));
+			ResultSet rs = statement.executeQuery(sql);
+			
+			long executed = System.nanoTime();
+			stats.addTime("query", executed - start);
+			
+			boolean caseSensitive = isCaseSensitive(connection);
+			ITableMetaData metaData = new ResultSetTableMetaData(tableName, rs, connection, caseSensitive);
+			stats.addTime("metadata", System.nanoTime() - executed);
+			
+			final Statement owner = statement;
+			statement = null;
+			
+			// The statement is closed with the table, like the DB Unit tables do
+			return new ForwardOnlyResultSetTable(metaData, rs) {
+				@Override
+				public void close() throws DataSetException {
+					try {
+						super.close();
+					}
+					finally {
+						try {
+							owner.close();
+						}
+						catch (SQLException e) {
+							throw new DataSetException(e);
+						}
+					}
+				}
+			};
+		}
+		finally {
+			if (statement != null) {
+				statement.close();
+			}
+		}
+	}
+	
+	/**
+	 * @param connection The connection
+	 * @return The number of rows fetched per round trip, as configured on the connection
+	 */
+	public static int getFetchSize(IDatabaseConnection connection) {
+		Integer fetchSize = (Integer) connection.getConfig().getProperty(DatabaseConfig.PROPERTY_FETCH_SIZE);
+		return fetchSize != null && fetchSize > 0 ? fetchSize : 100;
+	}
+	
+	/**
+	 * @param connection The connection
+	 * @return True if the table names are case sensitive, as configured on the connection
+	 */
+	public static boolean isCaseSensitive(IDatabaseConnection connection) {
+		return Boolean.TRUE.equals(connection.getConfig().getProperty(DatabaseConfig.FEATURE_CASE_SENSITIVE_TABLE_NAMES));
+	}
+	
+	/**
+	 * Create the table of a query the same way the DB Unit query data set does, 
+	 * using the result set table factory configured on the connection.
+	 * 
+	 * @param connection The connection
+	 * @param query The query, a query without SQL extracts the whole table
+	 * @return The table created
+	 * @throws Exception When the table cannot be created
+	 */
+	public static ITable createTable(IDatabaseConnection connection, Query query) throws Exception {
+		if (query.getSql() == null) {
+			return connection.createTable(query.getName());
+		}
+		else {
+			IResultSetTableFactory factory = (IResultSetTableFactory) connection.getConfig().getProperty(DatabaseConfig.PROPERTY_RESULTSET_TABLE_FACTORY);
+			return factory.createTable(query.getName(), query.getSql(), connection);
+		}
+	}
+	
+	/**
+	 * Sort the queries according to the integrity constraints defined in the
+	 * database, without running them.
+	 * 
+	 * @param connection The connection
+	 * @param queries The queries to sort
+	 * @return The sorted queries
+	 * @throws DataSetException When the tables cannot be sorted
+	 * @throws SQLException When the constraints cannot be read
+	 */
+	public static List<Query> sortQueries(IDatabaseConnection connection, List<Query> queries) throws DataSetException, SQLException {
+		// Empty tables are enough for the filter to match the names
+		DefaultDataSet names = new DefaultDataSet();
+		for (Query query : queries) {
+			names.addTable(new DefaultTable(query.getName()));
+		}
+		
+		List<Query> sorted = new ArrayList<>();
+		for (String tableName : new DatabaseSequenceFilter(connection).getTableNames(names)) {
+			for (Query query : queries) {
+				if (query.getName().equalsIgnoreCase(tableName)) {
+					sorted.add(query);
+					break;
+				}
+			}
+		}
+		return sorted;
+	}
+}
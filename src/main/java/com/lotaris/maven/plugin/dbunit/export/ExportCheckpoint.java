@@ -0,0 +1,185 @@
+package com.lotaris.maven.plugin.dbunit.export;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * Progress of a chunked export, stored in a properties file next to the exported
+ * data set after each chunk. The checkpoint is only valid for the export settings
+ * it was stored with, a run with other settings starts over.
+ *
+ * @author Laurent Prévost <laurent.prevost@lotaris.com>
+ */
+class ExportCheckpoint {
+	/**
+	 * Key of the export settings
+	 */
+	private static final String SETTINGS_KEY = "@settings";
+
+	private static final String PARTS_KEY = "parts";
+	private static final String TABLE_INDEX_KEY = "tableIndex";
+	private static final String TABLE_KEY = "table";
+	private static final String ROWS_KEY = "rows";
+	private static final String KEY_PREFIX = "key.";
+
+	private final File file;
+
+	private final String settings;
+
+	private int parts;
+
+	private int tableIndex;
+
+	private String table;
+
+	private long rows;
+
+	private String[] key;
+
+	//<editor-fold defaultstate="collapsed" desc="Constructors">
+	/**
+	 * Constructor
+	 *
+	 * @param dest The exported file
+	 * @param settings The export settings and tables that change the output
+	 */
+	public ExportCheckpoint(File dest, String settings) {
+		this.file = new File(dest.getPath() + ".checkpoint");
+		this.settings = settings;
+	}
+	//</editor-fold>
+
+	//<editor-fold defaultstate="collapsed" desc="Getters & Setters">
+	/**
+	 * @return The number of chunk files written
+	 */
+	public int getParts() {
+		return parts;
+	}
+
+	/**
+	 * @return The index of the table being exported
+	 */
+	public int getTableIndex() {
+		return tableIndex;
+	}
+
+	/**
+	 * @return The name of the table being exported, null before the first chunk
+	 */
+	public String getTable() {
+		return table;
+	}
+
+	/**
+	 * @return The number of rows exported in total
+	 */
+	public long getRows() {
+		return rows;
+	}
+
+	/**
+	 * @return The primary key of the last row exported from the current table, null
+	 * when the next chunk is the first of the table
+	 */
+	public String[] getKey() {
+		return key;
+	}
+	//</editor-fold>
+
+	/**
+	 * Read the checkpoint of a previous run
+	 *
+	 * @return True if the export is resumed from the checkpoint, false when there
+	 * is no checkpoint or when it was stored with other settings
+	 * @throws IOException When the file cannot be read
+	 */
+	public boolean load() throws IOException {
+		if (!file.isFile()) {
+			return false;
+		}
+
+		Properties properties = new Properties();
+		try (InputStream in = new FileInputStream(file)) {
+			properties.load(in);
+		}
+
+		if (!settings.equals(properties.getProperty(SETTINGS_KEY))) {
+			return false;
+		}
+
+		parts = Integer.parseInt(properties.getProperty(PARTS_KEY));
+		tableIndex = Integer.parseInt(properties.getProperty(TABLE_INDEX_KEY));
+		table = properties.getProperty(TABLE_KEY);
+		rows = Long.parseLong(properties.getProperty(ROWS_KEY));
+
+		key = null;
+		if (properties.getProperty(KEY_PREFIX + 0) != null) {
+			int length = 0;
+			while (properties.containsKey(KEY_PREFIX + length)) {
+				length++;
+			}
+			key = new String[length];
+			for (int i = 0; i < length; i++) {
+				key[i] = properties.getProperty(KEY_PREFIX + i);
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Record a chunk written and store the checkpoint. The file is replaced at once,
+	 * so a run interrupted while it is written leaves the previous checkpoint.
+	 *
+	 * @param table The table of the chunk
+	 * @param tableIndex The index of the table to export next
+	 * @param key The primary key of the last row of the chunk, null when the table is done
+	 * @param chunkRows The number of rows of the chunk
+	 * @param written True if a chunk file was written
+	 * @throws IOException When the file cannot be written
+	 */
+	public void save(String table, int tableIndex, String[] key, int chunkRows, boolean written) throws IOException {
+		this.table = table;
+		this.tableIndex = tableIndex;
+		this.key = key;
+		this.rows += chunkRows;
+		if (written) {
+			parts++;
+		}
+
+		Properties properties = new Properties();
+		properties.setProperty(SETTINGS_KEY, settings);
+		properties.setProperty(PARTS_KEY, String.valueOf(parts));
+		properties.setProperty(TABLE_INDEX_KEY, String.valueOf(tableIndex));
+		properties.setProperty(TABLE_KEY, table);
+		properties.setProperty(ROWS_KEY, String.valueOf(rows));
+		for (int i = 0; key != null && i < key.length; i++) {
+			properties.setProperty(KEY_PREFIX + i, key[i]);
+		}
+
+		File tmp = new File(file.getPath() + ".tmp");
+		try (OutputStream out = new FileOutputStream(tmp)) {
+			properties.store(out, "Checkpoint of the chunked export");
+		}
+		Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Remove the checkpoint once the export is complete
+	 *
+	 * @throws IOException When the file cannot be deleted
+	 */
+	public void delete() throws IOException {
+		if (file.exists() && !file.delete()) {
+			throw new IOException("Unable to delete " + file);
+		}
+	}
+}
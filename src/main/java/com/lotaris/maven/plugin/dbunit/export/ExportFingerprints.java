@@ -0,0 +1,123 @@
+package com.lotaris.maven.plugin.dbunit.export;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Table fingerprints of an export, stored in a properties file next to the
+ * exported data set. The fingerprints are only valid for the export settings
+ * they were stored with, since the same content is written differently with
+ * other settings.
+ *
+ * @author Laurent Prévost <laurent.prevost@lotaris.com>
+ */
+public class ExportFingerprints {
+	/**
+	 * Key of the export settings, cannot clash with a table name
+	 */
+	private static final String SETTINGS_KEY = "@settings";
+
+	private final File file;
+
+	private final String settings;
+
+	//<editor-fold defaultstate="collapsed" desc="Constructors">
+	/**
+	 * Constructor
+	 *
+	 * @param dest The exported file or directory
+	 * @param settings The export settings that change the output
+	 */
+	public ExportFingerprints(File dest, String settings) {
+		this.file = new File(dest.getPath() + ".fingerprints");
+		this.settings = settings;
+	}
+	//</editor-fold>
+
+	/**
+	 * Read the fingerprints of the previous export
+	 *
+	 * @return The fingerprints by upper case table name, empty when there is no
+	 * previous export or when it was done with other settings
+	 * @throws IOException When the file cannot be read
+	 */
+	public Map<String, String> load() throws IOException {
+		Map<String, String> fingerprints = new HashMap<>();
+
+		if (!file.isFile()) {
+			return fingerprints;
+		}
+
+		Properties properties = new Properties();
+		try (InputStream in = new FileInputStream(file)) {
+			properties.load(in);
+		}
+
+		if (!settings.equals(properties.getProperty(SETTINGS_KEY))) {
+			return fingerprints;
+		}
+
+		for (String name : properties.stringPropertyNames()) {
+			if (!SETTINGS_KEY.equals(name)) {
+				fingerprints.put(name.toUpperCase(), properties.getProperty(name));
+			}
+		}
+
+		return fingerprints;
+	}
+
+	/**
+	 * Store the fingerprints of the current export
+	 *
+	 * @param fingerprints The fingerprints by table name
+	 * @throws IOException When the file cannot be written
+	 */
+	public void store(Map<String, String> fingerprints) throws IOException {
+		Properties properties = new Properties();
+		properties.putAll(fingerprints);
+		properties.setProperty(SETTINGS_KEY, settings);
+
+		try (OutputStream out = new FileOutputStream(file)) {
+			properties.store(out, "Table fingerprints of the export");
+		}
+	}
+
+	/**
+	 * Remove the fingerprints, so an export failing half way is fully done next time
+	 *
+	 * @throws IOException When the file cannot be deleted
+	 */
+	public void delete() throws IOException {
+		if (file.exists() && !file.delete()) {
+			throw new IOException("Unable to delete " + file);
+		}
+	}
+
+	/**
+	 * Find the tables whose content did not change since the previous export
+	 *
+	 * @param previous The fingerprints of the previous export
+	 * @param current The fingerprints of the current export
+	 * @return The names of the unchanged tables
+	 */
+	public static Set<String> findUnchanged(Map<String, String> previous, Map<String, String> current) {
+		Set<String> unchanged = new HashSet<>();
+
+		for (Map.Entry<String, String> fingerprint : current.entrySet()) {
+			if (fingerprint.getValue().equals(previous.get(fingerprint.getKey().toUpperCase()))) {
+				unchanged.add(fingerprint.getKey());
+			}
+		}
+
+		return unchanged;
+	}
+}
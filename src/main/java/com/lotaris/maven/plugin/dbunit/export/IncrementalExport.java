@@ -0,0 +1,209 @@
+package com.lotaris.maven.plugin.dbunit.export;
+
+import com.lotaris.maven.plugin.dbunit.database.ConnectionPool;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.dbunit.DatabaseUnitException;
+import org.dbunit.ant.Export;
+import org.dbunit.ant.Query;
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.AbstractDataSet;
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.CompositeTable;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.DefaultTableMetaData;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.ITableIterator;
+import org.dbunit.dataset.ITableMetaData;
+
+/**
+ * DB Unit export that takes the unchanged tables from the previous export
+ * instead of reading them from the database. The other tables are read one
+ * after the other, or concurrently when a pool is given. The tables are written
+ * in the same order as a full export.
+ *
+ * @author Laurent Prévost <laurent.prevost@lotaris.com>
+ */
+public class IncrementalExport extends Export {
+	private final IDataSet previous;
+
+	private final Set<String> unchanged = new HashSet<>();
+
+	private final ConnectionPool pool;
+
+	private ExecutorService executor;
+
+	//<editor-fold defaultstate="collapsed" desc="Constructors">
+	/**
+	 * Constructor
+	 *
+	 * @param previous The data set of the previous export
+	 * @param unchanged The tables to take from the previous export
+	 * @param pool The pool of connections used to read the changed tables, null to read them on the export connection
+	 */
+	public IncrementalExport(IDataSet previous, Set<String> unchanged, ConnectionPool pool) {
+		this.previous = previous;
+		this.pool = pool;
+
+		for (String tableName : unchanged) {
+			this.unchanged.add(tableName.toUpperCase());
+		}
+	}
+	//</editor-fold>
+
+	//<editor-fold defaultstate="collapsed" desc="Overrides">
+	@Override
+	public void execute(IDatabaseConnection connection) throws DatabaseUnitException {
+		if (pool != null) {
+			executor = Executors.newFixedThreadPool(pool.size());
+		}
+
+		try {
+			super.execute(connection);
+		}
+		finally {
+			if (executor != null) {
+				executor.shutdownNow();
+			}
+		}
+	}
+
+	@Override
+	protected IDataSet getExportDataSet(IDatabaseConnection connection) throws DatabaseUnitException, SQLException {
+		List<Query> queries = ParallelExport.toQueries(getTables());
+
+		// Query sets cannot be matched with the previous export
+		if (queries == null) {
+			return super.getExportDataSet(connection);
+		}
+
+		// Apply the integrity constraints order before the tables are fetched
+		if (isOrdered()) {
+			queries = DatabaseDataSetProducer.sortQueries(connection, queries);
+		}
+
+		List<Query> changed = new ArrayList<>();
+		for (Query query : queries) {
+			if (!unchanged.contains(query.getName().toUpperCase())) {
+				changed.add(query);
+			}
+		}
+
+		return new MergedDataSet(queries, connection, pool != null ? new ParallelQueryDataSet(changed, pool, executor) : null);
+	}
+	//</editor-fold>
+
+	/**
+	 * Data set iterating the tables in query order, taking each one from the
+	 * previous export or from the database
+	 */
+	private class MergedDataSet extends AbstractDataSet {
+		private final List<Query> queries;
+		private final IDatabaseConnection connection;
+		private final IDataSet changed;
+
+		/**
+		 * @param queries All the queries in export order
+		 * @param connection The connection to read the changed tables when there is no changed data set
+		 * @param changed The data set of the changed tables in export order, can be null
+		 */
+		public MergedDataSet(List<Query> queries, IDatabaseConnection connection, IDataSet changed) {
+			this.queries = queries;
+			this.connection = connection;
+			this.changed = changed;
+		}
+
+		@Override
+		protected ITableIterator createIterator(boolean reversed) throws DataSetException {
+			if (reversed) {
+				throw new UnsupportedOperationException("The incremental export data set can only be iterated forward");
+			}
+
+			final ITableIterator changedIterator = changed != null ? changed.iterator() : null;
+
+			return new ITableIterator() {
+				private int index = -1;
+				private ITable table;
+
+				@Override
+				public boolean next() throws DataSetException {
+					if (++index >= queries.size()) {
+						return false;
+					}
+
+					Query query = queries.get(index);
+					if (unchanged.contains(query.getName().toUpperCase())) {
+						table = previousTable(query.getName());
+					}
+					else if (changedIterator != null) {
+						changedIterator.next();
+						table = changedIterator.getTable();
+					}
+					else {
+						try {
+							table = DatabaseDataSetProducer.createTable(connection, query);
+						}
+						catch (DataSetException e) {
+							throw e;
+						}
+						catch (Exception e) {
+							throw new DataSetException("Unable to read the table " + query.getName(), e);
+						}
+					}
+
+					return true;
+				}
+
+				@Override
+				public ITableMetaData getTableMetaData() throws DataSetException {
+					return table.getTableMetaData();
+				}
+
+				@Override
+				public ITable getTable() throws DataSetException {
+					return table;
+				}
+			};
+		}
+
+		/**
+		 * Take a table from the previous export with its columns in alphabetical order
+		 * like the extract queries, since the columns of a flat data set are read in
+		 * order of appearance
+		 * 
+		 * @param tableName The table name
+		 * @return The table
+		 * @throws DataSetException When the table cannot be read
+		 */
+		private ITable previousTable(String tableName) throws DataSetException {
+			ITable table = previous.getTable(tableName);
+			
+			Column[] columns = table.getTableMetaData().getColumns().clone();
+			Arrays.sort(columns, new Comparator<Column>() {
+				@Override
+				public int compare(Column o1, Column o2) {
+					return o1.getColumnName().compareTo(o2.getColumnName());
+				}
+			});
+			
+			return new CompositeTable(new DefaultTableMetaData(tableName, columns), table);
+		}
+
+		@Override
+		public String[] getTableNames() throws DataSetException {
+			String[] names = new String[queries.size()];
+			for (int i = 0; i < names.length; i++) {
+				names[i] = queries.get(i).getName();
+			}
+			return names;
+		}
+	}
+}
@@ -0,0 +1,302 @@
+package com.lotaris.maven.plugin.dbunit.export;
+
+import com.lotaris.maven.plugin.dbunit.binary.BinaryDataSetProducer;
+import com.lotaris.maven.plugin.dbunit.binary.BinaryDataSetWriter;
+import com.lotaris.maven.plugin.dbunit.database.ConnectionPool;
+import com.lotaris.maven.plugin.dbunit.model.UnitColumn;
+import com.lotaris.maven.plugin.dbunit.model.UnitTable;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import org.dbunit.ant.Query;
+import org.dbunit.database.DatabaseConfig;
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.database.ResultSetTableMetaData;
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.ITableMetaData;
+import org.dbunit.dataset.stream.IDataSetConsumer;
+
+/**
+ * Read a large table as several primary key ranges at the same time, each range
+ * on a connection borrowed from a pool. The ranges are computed from the minimum
+ * and maximum of the key, so only the tables with a single integer primary key
+ * are split. Each range is written to a binary part file while it is read, and
+ * the parts are sent to the consumer in key order as soon as they are complete,
+ * so the rows are produced as one table sorted by its primary key.
+ *
+ * @author Laurent Prévost <laurent.prevost@lotaris.com>
+ */
+public class KeyRangeReader {
+	private final ConnectionPool pool;
+
+	private final ExecutorService executor;
+
+	private final int ranges;
+
+	private final long minSpan;
+
+	private final File workDir;
+
+	private int bufferSize = StreamingExport.DEFAULT_BUFFER_SIZE;
+
+	private int splitTables;
+
+	//<editor-fold defaultstate="collapsed" desc="Constructors">
+	/**
+	 * Constructor
+	 *
+	 * @param pool The pool of connections used to read the ranges
+	 * @param executor The executor that reads the ranges
+	 * @param ranges The number of ranges a table is split into
+	 * @param minSpan The minimum span of the key values (max - min + 1) for a table to be split
+	 * @param workDir The directory of the part files
+	 */
+	public KeyRangeReader(ConnectionPool pool, ExecutorService executor, int ranges, long minSpan, File workDir) {
+		this.pool = pool;
+		this.executor = executor;
+		this.ranges = ranges;
+		this.minSpan = minSpan;
+		this.workDir = workDir;
+	}
+	//</editor-fold>
+
+	//<editor-fold defaultstate="collapsed" desc="Getters & Setters">
+	public void setBufferSize(int bufferSize) {
+		this.bufferSize = bufferSize;
+	}
+
+	/**
+	 * @return The number of tables read as key ranges
+	 */
+	public int getSplitTables() {
+		return splitTables;
+	}
+	//</editor-fold>
+
+	/**
+	 * Compute the bounds of the ranges of a table
+	 *
+	 * @param connection The connection to read the minimum and maximum of the key
+	 * @param query The query of the table
+	 * @param table The table, null if not in the schema
+	 * @return The bounds between the ranges in increasing order, null when the
+	 * table is not split: custom query, limited number of rows, no single integer
+	 * primary key, empty table or key span below the minimum
+	 * @throws SQLException When the key cannot be read
+	 */
+	public long[] split(IDatabaseConnection connection, Query query, UnitTable table) throws SQLException {
+		if (ranges < 2 || table == null || table.getMaxRows() > 0 || !table.buildExtractQuery().getSql().equals(query.getSql())) {
+			return null;
+		}
+
+		List<UnitColumn> primaryKey = table.getPrimaryKeyColumns();
+		if (primaryKey.size() != 1 || !isInteger(primaryKey.get(0).getSqlType())) {
+			return null;
+		}
+
+		BigDecimal min;
+		BigDecimal max;
+		String key = primaryKey.get(0).getColumnName();
+		try (Statement statement = connection.getConnection().createStatement();
+			ResultSet rs = statement.executeQuery("SELECT MIN(" + key + "), MAX(" + key + ") FROM " + table.getTableName()
+				+ (table.getRowFilter() != null ? " WHERE (" + table.getRowFilter() + ")" : ""))) {
+			rs.next();
+			min = rs.getBigDecimal(1);
+			max = rs.getBigDecimal(2);
+		}
+
+		if (min == null || max == null) {
+			return null;
+		}
+
+		// Keys with decimals or out of the long range are not split
+		long low;
+		try {
+			low = min.longValueExact();
+			max.longValueExact();
+		}
+		catch (ArithmeticException e) {
+			return null;
+		}
+
+		BigDecimal span = max.subtract(min).add(BigDecimal.ONE);
+		if (span.compareTo(BigDecimal.valueOf(Math.max(minSpan, ranges))) < 0) {
+			return null;
+		}
+
+		long[] bounds = new long[ranges - 1];
+		for (int i = 1; i < ranges; i++) {
+			bounds[i - 1] = low + span.multiply(BigDecimal.valueOf(i)).divideToIntegralValue(BigDecimal.valueOf(ranges)).longValue();
+		}
+		return bounds;
+	}
+
+	/**
+	 * Read the ranges of a table concurrently and send the rows to the consumer in key order
+	 *
+	 * @param table The table
+	 * @param name The name of the table in the data set
+	 * @param bounds The bounds between the ranges
+	 * @param consumer The consumer of the table, the data set is already started
+	 * @return The number of rows produced
+	 * @throws DataSetException When a range cannot be read or written
+	 */
+	public long produce(UnitTable table, String name, long[] bounds, IDataSetConsumer consumer) throws DataSetException {
+		if (!workDir.isDirectory() && !workDir.mkdirs()) {
+			throw new DataSetException("Unable to create " + workDir);
+		}
+
+		List<RangeTask> tasks = new ArrayList<>();
+		List<Future<Void>> futures = new ArrayList<>();
+		for (int i = 0; i <= bounds.length; i++) {
+			RangeTask task = new RangeTask(table, name, i > 0 ? bounds[i - 1] : null, i < bounds.length ? bounds[i] : null, new File(workDir, name + "-" + i + ".bin"));
+			tasks.add(task);
+			futures.add(executor.submit(task));
+		}
+
+		boolean completed = false;
+		try {
+			MergingConsumer merger = new MergingConsumer(consumer);
+
+			for (int i = 0; i < futures.size(); i++) {
+				try {
+					futures.get(i).get();
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new DataSetException(e);
+				}
+				catch (ExecutionException e) {
+					throw new DataSetException("Unable to read a key range of " + name, e.getCause());
+				}
+
+				BinaryDataSetProducer producer = new BinaryDataSetProducer(tasks.get(i).part);
+				producer.setConsumer(merger);
+				producer.produce();
+				tasks.get(i).part.delete();
+			}
+
+			merger.finish();
+			splitTables++;
+			completed = true;
+
+			return merger.getRows();
+		}
+		finally {
+			if (!completed) {
+				// Stop the ranges not started yet and wait for the others before removing their parts
+				for (RangeTask task : tasks) {
+					task.cancelled = true;
+				}
+				for (Future<Void> future : futures) {
+					try {
+						future.get();
+					}
+					catch (InterruptedException | ExecutionException e) {
+						// Already reported by the failed range
+					}
+				}
+				for (RangeTask task : tasks) {
+					task.part.delete();
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param sqlType The SQL type of the key
+	 * @return True if the type holds integer values, the numeric types being checked on their values
+	 */
+	private static boolean isInteger(int sqlType) {
+		switch (sqlType) {
+			case Types.TINYINT:
+			case Types.SMALLINT:
+			case Types.INTEGER:
+			case Types.BIGINT:
+			case Types.NUMERIC:
+			case Types.DECIMAL:
+				return true;
+			default:
+				return false;
+		}
+	}
+
+	/**
+	 * Read a range of a table to a binary part file
+	 */
+	private class RangeTask implements Callable<Void> {
+		private final UnitTable table;
+		private final String name;
+		private final Long lower;
+		private final Long upper;
+		private final File part;
+		private volatile boolean cancelled;
+
+		public RangeTask(UnitTable table, String name, Long lower, Long upper, File part) {
+			this.table = table;
+			this.name = name;
+			this.lower = lower;
+			this.upper = upper;
+			this.part = part;
+		}
+
+		@Override
+		public Void call() throws Exception {
+			if (cancelled) {
+				return null;
+			}
+
+			IDatabaseConnection connection = pool.acquire();
+			try (PreparedStatement statement = connection.getConnection().prepareStatement(table.buildRangeQuery(lower != null, upper != null))) {
+				statement.setFetchSize((Integer) connection.getConfig().getProperty(DatabaseConfig.PROPERTY_FETCH_SIZE));
+
+				int parameter = 1;
+				if (lower != null) {
+					statement.setLong(parameter++, lower);
+				}
+				if (upper != null) {
+					statement.setLong(parameter, upper);
+				}
+
+				boolean caseSensitive = DatabaseDataSetProducer.isCaseSensitive(connection);
+
+				try (ResultSet rs = statement.executeQuery(); OutputStream out = new BufferedOutputStream(new FileOutputStream(part), bufferSize)) {
+					ITableMetaData metaData = new ResultSetTableMetaData(name, rs, connection, caseSensitive);
+					Column[] columns = metaData.getColumns();
+
+					IDataSetConsumer writer = new BinaryDataSetWriter(out);
+					writer.startDataSet();
+					writer.startTable(metaData);
+					while (rs.next() && !cancelled) {
+						Object[] values = new Object[columns.length];
+						for (int i = 0; i < columns.length; i++) {
+							values[i] = columns[i].getDataType().getSqlValue(i + 1, rs);
+						}
+						writer.row(values);
+					}
+					writer.endTable();
+					writer.endDataSet();
+				}
+			}
+			finally {
+				pool.release(connection);
+			}
+
+			return null;
+		}
+	}
+}
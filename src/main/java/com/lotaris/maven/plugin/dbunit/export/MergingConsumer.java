@@ -0,0 +1,76 @@
+package com.lotaris.maven.plugin.dbunit.export;
+
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.ITableMetaData;
+import org.dbunit.dataset.stream.IDataSetConsumer;
+
+/**
+ * Consumer writing the tables of several data sets as one data set, the
+ * consecutive tables with the same name being merged into one table. The
+ * data set is started and ended on the target consumer by the caller.
+ *
+ * @author Laurent Prévost <laurent.prevost@lotaris.com>
+ */
+class MergingConsumer implements IDataSetConsumer {
+	private final IDataSetConsumer consumer;
+
+	private String tableName;
+
+	private long rows;
+
+	//<editor-fold defaultstate="collapsed" desc="Constructors">
+	/**
+	 * Constructor
+	 *
+	 * @param consumer The consumer receiving the merged tables
+	 */
+	public MergingConsumer(IDataSetConsumer consumer) {
+		this.consumer = consumer;
+	}
+	//</editor-fold>
+
+	/**
+	 * @return The number of rows sent to the consumer
+	 */
+	public long getRows() {
+		return rows;
+	}
+
+	/**
+	 * End the last table
+	 *
+	 * @throws DataSetException When the table cannot be ended
+	 */
+	public void finish() throws DataSetException {
+		if (tableName != null) {
+			consumer.endTable();
+			tableName = null;
+		}
+	}
+
+	//<editor-fold defaultstate="collapsed" desc="Overrides">
+	@Override
+	public void startDataSet() throws DataSetException {}
+
+	@Override
+	public void endDataSet() throws DataSetException {}
+
+	@Override
+	public void startTable(ITableMetaData metaData) throws DataSetException {
+		if (!metaData.getTableName().equals(tableName)) {
+			finish();
+			consumer.startTable(metaData);
+			tableName = metaData.getTableName();
+		}
+	}
+
+	@Override
+	public void endTable() throws DataSetException {}
+
+	@Override
+	public void row(Object[] values) throws DataSetException {
+		consumer.row(values);
+		rows++;
+	}
+	//</editor-fold>
+}
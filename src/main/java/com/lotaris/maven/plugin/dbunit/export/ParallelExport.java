@@ -0,0 +1,92 @@
+package com.lotaris.maven.plugin.dbunit.export;
+
+import com.lotaris.maven.plugin.dbunit.database.ConnectionPool;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.dbunit.DatabaseUnitException;
+import org.dbunit.ant.Export;
+import org.dbunit.ant.Query;
+import org.dbunit.ant.Table;
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.IDataSet;
+
+/**
+ * DB Unit export that reads the tables concurrently on the connections of a
+ * pool. The data set is still written by the DB Unit export with the tables in
+ * the same order, so the output is identical to a sequential export.
+ * 
+ * @author Laurent Prévost <laurent.prevost@lotaris.com>
+ */
+public class ParallelExport extends Export {
+	private final ConnectionPool pool;
+	
+	private ExecutorService executor;
+
+	//<editor-fold defaultstate="collapsed" desc="Constructors">
+	/**
+	 * Constructor
+	 * 
+	 * @param pool The pool of connections used to read the tables
+	 */
+	public ParallelExport(ConnectionPool pool) {
+		this.pool = pool;
+	}
+	//</editor-fold>
+
+	//<editor-fold defaultstate="collapsed" desc="Overrides">
+	@Override
+	public void execute(IDatabaseConnection connection) throws DatabaseUnitException {
+		executor = Executors.newFixedThreadPool(pool.size());
+		try {
+			super.execute(connection);
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+	
+	@Override
+	protected IDataSet getExportDataSet(IDatabaseConnection connection) throws DatabaseUnitException, SQLException {
+		List<Query> queries = toQueries(getTables());
+		
+		// Query sets are not split, let DB Unit handle the whole export
+		if (queries == null) {
+			return super.getExportDataSet(connection);
+		}
+
+		// Apply the integrity constraints order before the tables are fetched
+		if (isOrdered()) {
+			queries = DatabaseDataSetProducer.sortQueries(connection, queries);
+		}
+		
+		return new ParallelQueryDataSet(queries, pool, executor);
+	}
+	//</editor-fold>
+	
+	/**
+	 * Convert the steps of an export to queries, a table becoming a query without SQL
+	 * 
+	 * @param steps The tables, queries and query sets of the export
+	 * @return The queries, null if there is a query set
+	 */
+	static List<Query> toQueries(List<?> steps) {
+		List<Query> queries = new ArrayList<>();
+		for (Object step : steps) {
+			if (step instanceof Query) {
+				queries.add((Query) step);
+			}
+			else if (step instanceof Table) {
+				Query query = new Query();
+				query.setName(((Table) step).getName());
+				queries.add(query);
+			}
+			else {
+				return null;
+			}
+		}
+		return queries;
+	}
+}
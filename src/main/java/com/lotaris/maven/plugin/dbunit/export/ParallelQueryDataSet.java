@@ -0,0 +1,371 @@
+package com.lotaris.maven.plugin.dbunit.export;
+
+import com.lotaris.maven.plugin.dbunit.binary.BinaryDataSetProducer;
+import com.lotaris.maven.plugin.dbunit.binary.BinaryDataSetWriter;
+import com.lotaris.maven.plugin.dbunit.database.ConnectionPool;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import org.dbunit.ant.Query;
+import org.dbunit.database.CachedResultSetTable;
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.database.IResultSetTable;
+import org.dbunit.dataset.AbstractDataSet;
+import org.dbunit.dataset.CachedDataSet;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.ITableIterator;
+import org.dbunit.dataset.ITableMetaData;
+import org.dbunit.dataset.NoSuchTableException;
+import org.dbunit.dataset.datatype.DataType;
+import org.dbunit.dataset.datatype.TypeCastException;
+import org.dbunit.dataset.stream.StreamingIterator;
+
+/**
+ * Data set that fetches its tables concurrently, each table being read on a
+ * connection borrowed from a pool. The tables are always iterated in the order
+ * of the queries, whatever the order in which they are fetched, so that writing
+ * this data set produces the same output as a sequential query data set.
+ * 
+ * Each table is written to a binary temporary file while it is fetched, then
+ * iterated from that file, so the memory used does not depend on the size of
+ * the tables. At most as many tables as connections in the pool are fetched
+ * ahead of the table currently iterated, which bounds the disk space used. The
+ * tables iterated keep the metadata of their query, and the values the binary
+ * format stores as text are cast back with the data types of their columns, so
+ * the writers get the same values as from the database.
+ * 
+ * The tables accessed by name are read in memory, since they can be accessed
+ * in any order; the export only iterates the tables.
+ * 
+ * @author Laurent Prévost <laurent.prevost@lotaris.com>
+ */
+public class ParallelQueryDataSet extends AbstractDataSet {
+	private final List<Query> queries;
+	
+	private final ConnectionPool pool;
+	
+	private final ExecutorService executor;
+
+	//<editor-fold defaultstate="collapsed" desc="Constructors">
+	/**
+	 * Constructor
+	 * 
+	 * @param queries The queries to run, a query without SQL extracts the whole table
+	 * @param pool The pool of connections used to run the queries
+	 * @param executor The executor that runs the queries
+	 */
+	public ParallelQueryDataSet(List<Query> queries, ConnectionPool pool, ExecutorService executor) {
+		this.queries = queries;
+		this.pool = pool;
+		this.executor = executor;
+	}
+	//</editor-fold>
+
+	//<editor-fold defaultstate="collapsed" desc="Overrides">
+	@Override
+	protected ITableIterator createIterator(boolean reversed) throws DataSetException {
+		List<Query> ordered = new ArrayList<>(queries);
+		if (reversed) {
+			Collections.reverse(ordered);
+		}
+		return new ParallelTableIterator(ordered);
+	}
+
+	@Override
+	public String[] getTableNames() throws DataSetException {
+		String[] names = new String[queries.size()];
+		for (int i = 0; i < names.length; i++) {
+			names[i] = queries.get(i).getName();
+		}
+		return names;
+	}
+
+	@Override
+	public ITableMetaData getTableMetaData(String tableName) throws DataSetException {
+		for (Query query : queries) {
+			if (query.getName().equalsIgnoreCase(tableName)) {
+				try {
+					return fetchMetaData(query);
+				}
+				catch (DataSetException e) {
+					throw e;
+				}
+				catch (Exception e) {
+					throw new DataSetException(e);
+				}
+			}
+		}
+		throw new NoSuchTableException(tableName);
+	}
+
+	@Override
+	public ITable getTable(String tableName) throws DataSetException {
+		for (Query query : queries) {
+			if (query.getName().equalsIgnoreCase(tableName)) {
+				try {
+					return fetch(query);
+				}
+				catch (DataSetException e) {
+					throw e;
+				}
+				catch (Exception e) {
+					throw new DataSetException(e);
+				}
+			}
+		}
+		throw new NoSuchTableException(tableName);
+	}
+	//</editor-fold>
+
+	/**
+	 * Read a table entirely on a connection borrowed from the pool
+	 * 
+	 * @param query The query to run
+	 * @return The table read and cached in memory
+	 * @throws Exception When the table cannot be read
+	 */
+	private ITable fetch(Query query) throws Exception {
+		IDatabaseConnection connection = pool.acquire();
+		try {
+			ITable table = DatabaseDataSetProducer.createTable(connection, query);
+
+			// Read the whole result set while the connection is owned by this worker
+			if (table instanceof IResultSetTable) {
+				IResultSetTable resultSetTable = (IResultSetTable) table;
+				try {
+					return new CachedResultSetTable(resultSetTable);
+				}
+				finally {
+					resultSetTable.close();
+				}
+			}
+			
+			return table;
+		}
+		finally {
+			pool.release(connection);
+		}
+	}
+
+	/**
+	 * Read the metadata of a table without reading its rows
+	 * 
+	 * @param query The query to run
+	 * @return The metadata of the table
+	 * @throws Exception When the query fails
+	 */
+	private ITableMetaData fetchMetaData(Query query) throws Exception {
+		IDatabaseConnection connection = pool.acquire();
+		try {
+			ITable table = DatabaseDataSetProducer.createTable(connection, query);
+			try {
+				return table.getTableMetaData();
+			}
+			finally {
+				if (table instanceof IResultSetTable) {
+					((IResultSetTable) table).close();
+				}
+			}
+		}
+		finally {
+			pool.release(connection);
+		}
+	}
+	
+	/**
+	 * Write a table to a binary temporary file on a connection borrowed from the pool
+	 * 
+	 * @param query The query to run
+	 * @return The file of the table, to delete once read, with the metadata of the query
+	 * @throws Exception When the table cannot be read or written
+	 */
+	private SpooledTable spool(Query query) throws Exception {
+		final SpooledTable spooled = new SpooledTable(File.createTempFile("dbunit-table-", ".bin"));
+		spooled.file.deleteOnExit();
+		
+		boolean written = false;
+		IDatabaseConnection connection = pool.acquire();
+		try (OutputStream out = new BufferedOutputStream(new FileOutputStream(spooled.file), StreamingExport.DEFAULT_BUFFER_SIZE)) {
+			DatabaseDataSetProducer producer = new DatabaseDataSetProducer(connection, Collections.singletonList(query));
+			producer.setConsumer(new BinaryDataSetWriter(out) {
+				@Override
+				public void startTable(ITableMetaData metaData) throws DataSetException {
+					spooled.metaData = metaData;
+					super.startTable(metaData);
+				}
+			});
+			producer.produce();
+			written = true;
+		}
+		finally {
+			pool.release(connection);
+			if (!written) {
+				spooled.file.delete();
+			}
+		}
+		
+		return spooled;
+	}
+	
+	/**
+	 * Binary temporary file of a table and the metadata of its query
+	 */
+	private static class SpooledTable {
+		private final File file;
+		
+		private ITableMetaData metaData;
+
+		public SpooledTable(File file) {
+			this.file = file;
+		}
+	}
+	
+	/**
+	 * Table read from its binary file with the metadata of its query. The binary
+	 * format keeps the integers, the floating point numbers, the booleans and the
+	 * bytes as they are, the other values are read as text and cast back with the
+	 * data type of their column, like the decimals and the dates.
+	 * 
+	 * The rows are streamed from the file, unless the number of rows is asked,
+	 * as by the xls writer: the table is then read in memory like the tables of
+	 * a sequential export.
+	 */
+	private static class RestoredTable implements ITable {
+		private final File file;
+		
+		private final ITableMetaData metaData;
+		
+		private ITable table;
+		
+		private boolean cached;
+
+		public RestoredTable(SpooledTable spooled) throws DataSetException {
+			this.file = spooled.file;
+			this.metaData = spooled.metaData;
+			
+			ITableIterator tables = new StreamingIterator(new BinaryDataSetProducer(file));
+			if (!tables.next()) {
+				throw new DataSetException("No table in " + file);
+			}
+			table = tables.getTable();
+		}
+
+		@Override
+		public ITableMetaData getTableMetaData() {
+			return metaData;
+		}
+
+		@Override
+		public int getRowCount() {
+			if (!cached) {
+				try {
+					table = new CachedDataSet(new BinaryDataSetProducer(file)).getTables()[0];
+					cached = true;
+				}
+				catch (DataSetException e) {
+					throw new IllegalStateException("Unable to read the table from " + file, e);
+				}
+			}
+			return table.getRowCount();
+		}
+
+		@Override
+		public Object getValue(int row, String column) throws DataSetException {
+			Object value = table.getValue(row, column);
+			if (!(value instanceof String)) {
+				return value;
+			}
+			
+			DataType dataType = metaData.getColumns()[metaData.getColumnIndex(column)].getDataType();
+			try {
+				return dataType.typeCast(value);
+			}
+			catch (TypeCastException e) {
+				// The type of a custom column that cannot be cast from text, the text is written as is
+				return value;
+			}
+		}
+	}
+	
+	/**
+	 * Iterate the tables in order while keeping the next ones being fetched
+	 */
+	private class ParallelTableIterator implements ITableIterator {
+		private final Iterator<Query> pending;
+		
+		private final Deque<Future<SpooledTable>> fetching = new ArrayDeque<>();
+		
+		private ITable current;
+		
+		private SpooledTable currentPart;
+
+		public ParallelTableIterator(List<Query> queries) {
+			this.pending = queries.iterator();
+		}
+		
+		@Override
+		public boolean next() throws DataSetException {
+			// Keep the workers busy with the next tables
+			while (fetching.size() < pool.size() && pending.hasNext()) {
+				final Query query = pending.next();
+				fetching.add(executor.submit(new Callable<SpooledTable>() {
+					@Override
+					public SpooledTable call() throws Exception {
+						return spool(query);
+					}
+				}));
+			}
+			
+			// The previous table is fully read
+			if (currentPart != null) {
+				currentPart.file.delete();
+				currentPart = null;
+			}
+			
+			if (fetching.isEmpty()) {
+				current = null;
+				return false;
+			}
+			
+			try {
+				currentPart = fetching.poll().get();
+				
+				current = new RestoredTable(currentPart);
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new DataSetException(e);
+			}
+			catch (ExecutionException e) {
+				throw new DataSetException(e.getCause());
+			}
+			
+			return true;
+		}
+
+		@Override
+		public ITableMetaData getTableMetaData() throws DataSetException {
+			return getTable().getTableMetaData();
+		}
+
+		@Override
+		public ITable getTable() throws DataSetException {
+			if (current == null) {
+				throw new IllegalStateException("next() must be called and return true before accessing the table");
+			}
+			return current;
+		}
+	}
+}
@@ -0,0 +1,185 @@
+package com.lotaris.maven.plugin.dbunit.export;
+
+import com.lotaris.maven.plugin.dbunit.binary.BinaryDataSetWriter;
+import com.lotaris.maven.plugin.dbunit.binary.BinaryFormat;
+import com.lotaris.maven.plugin.dbunit.model.UnitSchema;
+import com.lotaris.maven.plugin.dbunit.util.Compression;
+import com.lotaris.maven.plugin.dbunit.util.CountingOutputStream;
+import com.lotaris.maven.plugin.dbunit.util.RunReport;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.zip.Deflater;
+import org.dbunit.ant.AbstractStep;
+import org.dbunit.ant.Query;
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.stream.IDataSetConsumer;
+
+/**
+ * Export engine that writes the rows to the dest file while they are read from
+ * the database. Heap usage stays the same whatever the number of rows, only the
+ * current row and the output buffer are held in memory. The output can be
+ * compressed on the fly.
+ * 
+ * @author Laurent Prévost <laurent.prevost@lotaris.com>
+ */
+public class StreamingExport {
+	/**
+	 * Default size of the output buffer
+	 */
+	public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+	
+	private File dest;
+	
+	private String format = AbstractStep.FORMAT_FLAT;
+	
+	private String encoding;
+	
+	private String doctype;
+	
+	private int bufferSize = DEFAULT_BUFFER_SIZE;
+	
+	private boolean ordered;
+	
+	private String compression = Compression.NONE;
+	
+	private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+	
+	private KeyRangeReader keyRangeReader;
+	
+	private UnitSchema schema;
+	
+	private RunReport report;
+	
+	//<editor-fold defaultstate="collapsed" desc="Getters & Setters">
+	public void setDest(File dest) {
+		this.dest = dest;
+	}
+
+	public void setFormat(String format) {
+		this.format = format;
+	}
+
+	public void setEncoding(String encoding) {
+		this.encoding = encoding;
+	}
+
+	public void setDoctype(String doctype) {
+		this.doctype = doctype;
+	}
+
+	public void setBufferSize(int bufferSize) {
+		this.bufferSize = bufferSize;
+	}
+
+	public void setOrdered(boolean ordered) {
+		this.ordered = ordered;
+	}
+
+	public void setCompression(String compression) {
+		this.compression = compression;
+	}
+
+	public void setCompressionLevel(int compressionLevel) {
+		this.compressionLevel = compressionLevel;
+	}
+
+	/**
+	 * Read the large tables of the schema as primary key ranges at the same time
+	 * 
+	 * @param keyRangeReader The reader of the ranges
+	 * @param schema The schema with the primary keys of the tables
+	 */
+	public void setKeyRanges(KeyRangeReader keyRangeReader, UnitSchema schema) {
+		this.keyRangeReader = keyRangeReader;
+		this.schema = schema;
+	}
+
+	/**
+	 * @param report The report receiving the measures of each table, null to not measure them
+	 */
+	public void setReport(RunReport report) {
+		this.report = report;
+	}
+	//</editor-fold>
+	
+	/**
+	 * @param format The format to check
+	 * @return True if the format can be written by the streaming export
+	 */
+	public static boolean isSupportedFormat(String format) {
+		return AbstractStep.FORMAT_FLAT.equalsIgnoreCase(format) || AbstractStep.FORMAT_XML.equalsIgnoreCase(format) || BinaryFormat.isBinary(format);
+	}
+	
+	/**
+	 * Create the writer of a format
+	 * 
+	 * @param out The stream to write to, should be buffered
+	 * @param format The format, one of the supported formats
+	 * @param encoding The encoding of the XML formats, UTF-8 when null
+	 * @param doctype The doctype of the XML formats, can be null
+	 * @return The writer
+	 */
+	public static IDataSetConsumer createWriter(OutputStream out, String format, String encoding, String doctype) {
+		if (BinaryFormat.isBinary(format)) {
+			return new BinaryDataSetWriter(out);
+		}
+		
+		String documentEncoding = encoding != null ? encoding : "UTF-8";
+		
+		AbstractStreamingXmlWriter writer;
+		if (AbstractStep.FORMAT_FLAT.equalsIgnoreCase(format)) {
+			writer = new StreamingFlatXmlWriter(out, documentEncoding);
+		}
+		else if (AbstractStep.FORMAT_XML.equalsIgnoreCase(format)) {
+			writer = new StreamingXmlWriter(out, documentEncoding);
+		}
+		else {
+			throw new IllegalArgumentException("The format '" + format + "' is not supported by the streaming export.");
+		}
+		writer.setDocType(doctype);
+		
+		return writer;
+	}
+	
+	/**
+	 * Export the queries in the dest file
+	 * 
+	 * @param connection The connection to read the tables, should use a forward only result set table factory
+	 * @param queries The queries to export
+	 * @throws Exception When the export fails
+	 */
+	public void execute(IDatabaseConnection connection, List<Query> queries) throws Exception {
+		if (!isSupportedFormat(format)) {
+			throw new IllegalArgumentException("The format '" + format + "' is not supported by the streaming export.");
+		}
+		
+		if (ordered) {
+			long start = System.nanoTime();
+			queries = DatabaseDataSetProducer.sortQueries(connection, queries);
+			if (report != null) {
+				report.addTime("sort", System.nanoTime() - start);
+			}
+		}
+		
+		try (OutputStream out = new BufferedOutputStream(Compression.compress(new FileOutputStream(dest), compression, compressionLevel, bufferSize), bufferSize)) {
+			DatabaseDataSetProducer producer = new DatabaseDataSetProducer(connection, queries);
+			if (keyRangeReader != null) {
+				producer.setKeyRanges(keyRangeReader, schema);
+			}
+			
+			if (report != null) {
+				// The bytes are counted before the compression
+				CountingOutputStream counter = new CountingOutputStream(out);
+				producer.setReport(report, counter);
+				producer.setConsumer(createWriter(counter, format, encoding, doctype));
+			}
+			else {
+				producer.setConsumer(createWriter(out, format, encoding, doctype));
+			}
+			producer.produce();
+		}
+	}
+}
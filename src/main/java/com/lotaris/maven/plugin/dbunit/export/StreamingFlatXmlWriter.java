@@ -0,0 +1,65 @@
+package com.lotaris.maven.plugin.dbunit.export;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.ITableMetaData;
+import org.dbunit.dataset.datatype.DataType;
+import org.dbunit.dataset.datatype.TypeCastException;
+
+/**
+ * Streaming writer of the flat XML format. As with the DB Unit flat XML writer,
+ * each row is an element named after its table with one attribute per non null
+ * column and empty tables are not written.
+ * 
+ * @author Laurent Prévost <laurent.prevost@lotaris.com>
+ */
+public class StreamingFlatXmlWriter extends AbstractStreamingXmlWriter {
+	private ITableMetaData metaData;
+	
+	private Column[] columns;
+	
+	//<editor-fold defaultstate="collapsed" desc="Constructors">
+	public StreamingFlatXmlWriter(OutputStream out, String encoding) {
+		super(out, encoding);
+	}
+	//</editor-fold>
+	
+	//<editor-fold defaultstate="collapsed" desc="Overrides">
+	@Override
+	public void startTable(ITableMetaData metaData) throws DataSetException {
+		this.metaData = metaData;
+		this.columns = metaData.getColumns();
+	}
+
+	@Override
+	public void endTable() throws DataSetException {
+		metaData = null;
+		columns = null;
+	}
+
+	@Override
+	public void row(Object[] values) throws DataSetException {
+		try {
+			newLine(1);
+			writeEmptyElement(metaData.getTableName());
+			
+			for (int i = 0; i < columns.length; i++) {
+				if (values[i] != null && values[i] != ITable.NO_VALUE) {
+					try {
+						writeAttribute(columns[i].getColumnName(), DataType.asString(values[i]));
+					}
+					catch (TypeCastException e) {
+						throw new DataSetException("table=" + metaData.getTableName() + ", column=" + columns[i].getColumnName() + ", value=" + values[i], e);
+					}
+				}
+			}
+		}
+		catch (IOException e) {
+			throw new DataSetException(e);
+		}
+	}
+	//</editor-fold>
+}
@@ -0,0 +1,100 @@
+package com.lotaris.maven.plugin.dbunit.export;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.ITableMetaData;
+import org.dbunit.dataset.datatype.DataType;
+import org.dbunit.dataset.datatype.TypeCastException;
+
+/**
+ * Streaming writer of the DB Unit XML format. Each table starts with its column
+ * names followed by its rows, null values are written as null elements.
+ * 
+ * @author Laurent Prévost <laurent.prevost@lotaris.com>
+ */
+public class StreamingXmlWriter extends AbstractStreamingXmlWriter {
+	private ITableMetaData metaData;
+	
+	private Column[] columns;
+	
+	//<editor-fold defaultstate="collapsed" desc="Constructors">
+	public StreamingXmlWriter(OutputStream out, String encoding) {
+		super(out, encoding);
+	}
+	//</editor-fold>
+	
+	//<editor-fold defaultstate="collapsed" desc="Overrides">
+	@Override
+	public void startTable(ITableMetaData metaData) throws DataSetException {
+		this.metaData = metaData;
+		this.columns = metaData.getColumns();
+		
+		try {
+			newLine(1);
+			writeStartElement("table");
+			writeAttribute("name", metaData.getTableName());
+			
+			for (Column column : columns) {
+				newLine(2);
+				writeStartElement("column");
+				writeCharacters(column.getColumnName());
+				writeEndElement();
+			}
+		}
+		catch (IOException e) {
+			throw new DataSetException(e);
+		}
+	}
+
+	@Override
+	public void endTable() throws DataSetException {
+		try {
+			newLine(1);
+			writeEndElement();
+		}
+		catch (IOException e) {
+			throw new DataSetException(e);
+		}
+		
+		metaData = null;
+		columns = null;
+	}
+
+	@Override
+	public void row(Object[] values) throws DataSetException {
+		try {
+			newLine(2);
+			writeStartElement("row");
+			
+			for (int i = 0; i < columns.length; i++) {
+				newLine(3);
+				if (values[i] == null) {
+					writeEmptyElement("null");
+				}
+				else if (values[i] == ITable.NO_VALUE) {
+					writeEmptyElement("none");
+				}
+				else {
+					try {
+						writeStartElement("value");
+						writeCharacters(DataType.asString(values[i]));
+						writeEndElement();
+					}
+					catch (TypeCastException e) {
+						throw new DataSetException("table=" + metaData.getTableName() + ", column=" + columns[i].getColumnName() + ", value=" + values[i], e);
+					}
+				}
+			}
+			
+			newLine(2);
+			writeEndElement();
+		}
+		catch (IOException e) {
+			throw new DataSetException(e);
+		}
+	}
+	//</editor-fold>
+}
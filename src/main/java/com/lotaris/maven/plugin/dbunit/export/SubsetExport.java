@@ -0,0 +1,752 @@
+package com.lotaris.maven.plugin.dbunit.export;
+
+import com.lotaris.maven.plugin.dbunit.binary.BinaryDataSetProducer;
+import com.lotaris.maven.plugin.dbunit.binary.BinaryDataSetWriter;
+import com.lotaris.maven.plugin.dbunit.database.Dialect;
+import com.lotaris.maven.plugin.dbunit.database.TableDependencies;
+import com.lotaris.maven.plugin.dbunit.model.UnitColumn;
+import com.lotaris.maven.plugin.dbunit.model.UnitForeignKey;
+import com.lotaris.maven.plugin.dbunit.model.UnitSchema;
+import com.lotaris.maven.plugin.dbunit.model.UnitTable;
+import com.lotaris.maven.plugin.dbunit.util.Compression;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.Deflater;
+import org.dbunit.ant.AbstractStep;
+import org.dbunit.database.DatabaseConfig;
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.database.ResultSetTableMetaData;
+import org.dbunit.dataset.CachedDataSet;
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.ITableMetaData;
+import org.dbunit.dataset.datatype.DataType;
+import org.dbunit.dataset.datatype.IDataTypeFactory;
+import org.dbunit.dataset.stream.IDataSetConsumer;
+
+/**
+ * Export engine that writes a referentially closed subset of the tables. The
+ * subset starts from the seed rows, then the foreign keys are followed: the
+ * parent rows referenced by the rows of the subset are added and, when the
+ * children are followed, the child rows referencing the seed rows and the child
+ * rows added that way. The parent rows added for the integrity do not bring
+ * their other children, so the subset does not grow to the whole database.
+ *
+ * The referenced rows are read by batches of keys with IN conditions, one query
+ * reading the rows referenced by many rows at once. They are written as binary
+ * part files in a work directory next to the dest file while they are read, then
+ * assembled in the dest file in the requested format, the parent tables first.
+ * The rows of a table that references itself are sorted in memory so each row
+ * comes after the row it references.
+ *
+ * @author Laurent Prévost <laurent.prevost@lotaris.com>
+ */
+public class SubsetExport {
+	/**
+	 * Default number of keys per lookup query
+	 */
+	public static final int DEFAULT_BATCH_SIZE = 500;
+
+	private final UnitSchema schema;
+
+	/**
+	 * Tables of the subset by upper case name
+	 */
+	private final Map<String, TableSubset> tables = new LinkedHashMap<>();
+
+	/**
+	 * Keys to look up, by table, columns and direction
+	 */
+	private final Map<String, Lookup> lookups = new LinkedHashMap<>();
+
+	private File dest;
+
+	private String format = AbstractStep.FORMAT_FLAT;
+
+	private String encoding;
+
+	private String doctype;
+
+	private int bufferSize = StreamingExport.DEFAULT_BUFFER_SIZE;
+
+	private String compression = Compression.NONE;
+
+	private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+
+	private int batchSize = DEFAULT_BATCH_SIZE;
+
+	private boolean children = true;
+
+	private IDatabaseConnection connection;
+
+	private IDataTypeFactory dataTypeFactory;
+
+	private File workDir;
+
+	private int parts;
+
+	private int queries;
+
+	private long rows;
+
+	//<editor-fold defaultstate="collapsed" desc="Constructors">
+	/**
+	 * Constructor
+	 *
+	 * @param schema The schema with the primary and foreign keys
+	 * @param tableNames The tables that can be part of the subset, the foreign keys to other tables are not followed
+	 */
+	public SubsetExport(UnitSchema schema, Collection<String> tableNames) {
+		this.schema = schema;
+
+		for (String tableName : tableNames) {
+			UnitTable table = schema.getTable(tableName);
+			if (table != null) {
+				tables.put(table.getTableName().toUpperCase(), new TableSubset(table, schema.getReferencingKeys(table.getTableName())));
+			}
+		}
+	}
+	//</editor-fold>
+
+	//<editor-fold defaultstate="collapsed" desc="Getters & Setters">
+	public void setDest(File dest) {
+		this.dest = dest;
+	}
+
+	public void setFormat(String format) {
+		this.format = format;
+	}
+
+	public void setEncoding(String encoding) {
+		this.encoding = encoding;
+	}
+
+	public void setDoctype(String doctype) {
+		this.doctype = doctype;
+	}
+
+	public void setBufferSize(int bufferSize) {
+		this.bufferSize = bufferSize;
+	}
+
+	public void setCompression(String compression) {
+		this.compression = compression;
+	}
+
+	public void setCompressionLevel(int compressionLevel) {
+		this.compressionLevel = compressionLevel;
+	}
+
+	/**
+	 * @param batchSize The maximum number of keys looked up by a query
+	 */
+	public void setBatchSize(int batchSize) {
+		if (batchSize <= 0) {
+			throw new IllegalArgumentException("The batch size must be positive");
+		}
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * @param children True to add the child rows of the seed rows, false to only add the parent rows
+	 */
+	public void setChildren(boolean children) {
+		this.children = children;
+	}
+
+	/**
+	 * @return The number of queries run to collect the subset
+	 */
+	public int getQueries() {
+		return queries;
+	}
+
+	/**
+	 * @return The number of rows of the subset
+	 */
+	public long getRows() {
+		return rows;
+	}
+
+	/**
+	 * @return The number of rows of each table of the subset, the tables without rows excluded
+	 */
+	public Map<String, Integer> getTableRows() {
+		Map<String, Integer> tableRows = new LinkedHashMap<>();
+		for (TableSubset table : tables.values()) {
+			if (!table.rows.isEmpty()) {
+				tableRows.put(table.table.getTableName(), table.rows.size());
+			}
+		}
+		return tableRows;
+	}
+	//</editor-fold>
+
+	/**
+	 * Collect the subset from the seed rows and write it in the dest file
+	 *
+	 * @param connection The connection to read the tables
+	 * @param seeds The seed rows
+	 * @throws Exception When the subset cannot be read or written
+	 */
+	public void execute(IDatabaseConnection connection, List<SubsetSeed> seeds) throws Exception {
+		if (!StreamingExport.isSupportedFormat(format)) {
+			throw new IllegalArgumentException("The format '" + format + "' is not supported by the subset export.");
+		}
+
+		this.connection = connection;
+		this.dataTypeFactory = (IDataTypeFactory) connection.getConfig().getProperty(DatabaseConfig.PROPERTY_DATATYPE_FACTORY);
+
+		workDir = new File(dest.getPath() + ".subset");
+		deleteParts(workDir);
+		if (!workDir.mkdirs()) {
+			throw new IOException("Unable to create " + workDir);
+		}
+
+		try {
+			Dialect dialect = Dialect.of(connection.getConnection());
+			for (TableSubset table : tables.values()) {
+				for (SubsetSeed seed : seeds) {
+					if (seed.matches(table.table.getTableName())) {
+						readSeeds(table, seed, dialect);
+					}
+				}
+			}
+
+			// Each lookup can add keys to the others, until the subset is closed
+			for (Lookup lookup = nextLookup(); lookup != null; lookup = nextLookup()) {
+				readLookup(lookup);
+			}
+
+			assemble();
+		}
+		finally {
+			deleteParts(workDir);
+		}
+	}
+
+	/**
+	 * Read the seed rows of a table. The sampled rows are limited while they are
+	 * read, the others by the query.
+	 *
+	 * @param table The table
+	 * @param seed The seed
+	 * @param dialect The dialect of the row limit
+	 * @throws Exception When the rows cannot be read
+	 */
+	private void readSeeds(TableSubset table, SubsetSeed seed, Dialect dialect) throws Exception {
+		String sql = table.select + (seed.getWhere() != null ? " WHERE (" + seed.getWhere() + ")" : "");
+
+		boolean sampled = seed.getSampleRate() < 1;
+		long maxRows = seed.getMaxRows() != null ? seed.getMaxRows() : 0;
+		if (maxRows > 0 && !sampled) {
+			sql = dialect.limit(sql, maxRows);
+		}
+
+		try (PreparedStatement statement = connection.getConnection().prepareStatement(sql)) {
+			read(table, statement, children, sampled ? seed.getSampleRate() : 1, maxRows);
+		}
+	}
+
+	/**
+	 * Read the rows of a batch of keys to look up
+	 *
+	 * @param lookup The lookup
+	 * @throws Exception When the rows cannot be read
+	 */
+	private void readLookup(Lookup lookup) throws Exception {
+		int size = Math.min(batchSize, lookup.pending.size());
+		List<List<Object>> batch = lookup.pending.subList(lookup.pending.size() - size, lookup.pending.size());
+
+		// c IN (?, ?, ...) or (c1 = ? AND c2 = ?) OR (c1 = ? AND c2 = ?) ...
+		StringBuilder sb = new StringBuilder(lookup.table.select).append(" WHERE ");
+		if (lookup.columnNames.size() == 1) {
+			sb.append(lookup.columnNames.get(0)).append(" IN (");
+			for (int i = 0; i < size; i++) {
+				sb.append(i > 0 ? ", ?" : "?");
+			}
+			sb.append(")");
+		}
+		else {
+			for (int i = 0; i < size; i++) {
+				sb.append(i > 0 ? " OR (" : "(");
+				for (int j = 0; j < lookup.columnNames.size(); j++) {
+					sb.append(j > 0 ? " AND " : "").append(lookup.columnNames.get(j)).append(" = ?");
+				}
+				sb.append(")");
+			}
+		}
+
+		try (PreparedStatement statement = connection.getConnection().prepareStatement(sb.toString())) {
+			int parameter = 1;
+			for (List<Object> values : batch) {
+				for (int j = 0; j < values.size(); j++) {
+					lookup.types[j].setSqlValue(values.get(j), parameter++, statement);
+				}
+			}
+
+			batch.clear();
+
+			read(lookup.table, statement, lookup.downward, 1, 0);
+		}
+	}
+
+	/**
+	 * Read the rows of a query to a part file, the rows already in the subset
+	 * being skipped, and follow the foreign keys of the new rows
+	 *
+	 * @param table The table
+	 * @param statement The query of the rows
+	 * @param downward True to follow the child rows of the rows read
+	 * @param sampleRate The fraction of the rows kept
+	 * @param maxRows The maximum number of rows added, 0 for all the rows
+	 * @throws Exception When the rows cannot be read or written
+	 */
+	private void read(TableSubset table, PreparedStatement statement, boolean downward, double sampleRate, long maxRows) throws Exception {
+		statement.setFetchSize((Integer) connection.getConfig().getProperty(DatabaseConfig.PROPERTY_FETCH_SIZE));
+		boolean caseSensitive = DatabaseDataSetProducer.isCaseSensitive(connection);
+
+		File part = new File(workDir, String.format(Locale.ROOT, "part-%06d.bin", parts));
+		int count = 0;
+
+		try (ResultSet rs = statement.executeQuery(); OutputStream out = new BufferedOutputStream(new FileOutputStream(part), bufferSize)) {
+			queries++;
+
+			ITableMetaData metaData = new ResultSetTableMetaData(table.table.getTableName(), rs, connection, caseSensitive);
+			Column[] columns = metaData.getColumns();
+			table.prepare(metaData);
+
+			IDataSetConsumer writer = new BinaryDataSetWriter(out);
+			writer.startDataSet();
+			writer.startTable(metaData);
+
+			while ((maxRows == 0 || count < maxRows) && rs.next()) {
+				Object[] values = new Object[columns.length];
+				for (int i = 0; i < columns.length; i++) {
+					values[i] = columns[i].getDataType().getSqlValue(i + 1, rs);
+				}
+
+				List<Object> key = table.getKey(values);
+				if (sampleRate < 1 && !isSampled(key, sampleRate)) {
+					continue;
+				}
+
+				Boolean followed = table.rows.get(key);
+				if (followed == null) {
+					writer.row(values);
+					count++;
+
+					table.rows.put(key, downward);
+					followParents(table, values);
+					if (downward) {
+						followChildren(table, values);
+					}
+				}
+				else if (downward && !followed) {
+					// A parent row reached again from its parent
+					table.rows.put(key, true);
+					followChildren(table, values);
+				}
+			}
+
+			writer.endTable();
+			writer.endDataSet();
+		}
+
+		if (count > 0) {
+			table.parts.add(part);
+			parts++;
+			rows += count;
+		}
+		else if (!part.delete()) {
+			throw new IOException("Unable to delete " + part);
+		}
+	}
+
+	/**
+	 * Look up the parent rows referenced by a row
+	 *
+	 * @param table The table of the row
+	 * @param values The values of the row
+	 * @throws DataSetException When a column is not found
+	 */
+	private void followParents(TableSubset table, Object[] values) throws DataSetException {
+		for (UnitForeignKey fk : table.table.getForeignKeys()) {
+			TableSubset parent = tables.get(fk.getReferencedTableName().toUpperCase());
+			if (parent != null) {
+				addLookup(parent, fk.getReferencedColumnNames(), false, table.getValues(values, fk.getColumnNames()));
+			}
+		}
+	}
+
+	/**
+	 * Look up the child rows referencing a row
+	 *
+	 * @param table The table of the row
+	 * @param values The values of the row
+	 * @throws DataSetException When a column is not found
+	 */
+	private void followChildren(TableSubset table, Object[] values) throws DataSetException {
+		for (UnitForeignKey fk : table.referencingKeys) {
+			TableSubset child = tables.get(fk.getTableName().toUpperCase());
+			if (child != null) {
+				addLookup(child, fk.getColumnNames(), true, table.getValues(values, fk.getReferencedColumnNames()));
+			}
+		}
+	}
+
+	/**
+	 * Add the values of a key to look up, unless they were already looked up
+	 *
+	 * @param table The table of the rows to look up
+	 * @param columnNames The columns of the key
+	 * @param downward True to follow the child rows of the rows found
+	 * @param values The values of the key, null when a value is null
+	 * @throws DataSetException When a column of the key is not found
+	 */
+	private void addLookup(TableSubset table, List<String> columnNames, boolean downward, List<Object> values) throws DataSetException {
+		if (values == null) {
+			return;
+		}
+
+		String name = table.table.getTableName() + columnNames + downward;
+		Lookup lookup = lookups.get(name);
+		if (lookup == null) {
+			lookup = new Lookup(table, columnNames, downward);
+			lookups.put(name, lookup);
+		}
+
+		if (lookup.requested.add(values)) {
+			lookup.pending.add(values);
+		}
+	}
+
+	/**
+	 * @return The first lookup with pending keys, null when the subset is closed
+	 */
+	private Lookup nextLookup() {
+		for (Lookup lookup : lookups.values()) {
+			if (!lookup.pending.isEmpty()) {
+				return lookup;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Write the part files in the dest file, the parent tables first
+	 *
+	 * @throws Exception When the dest file cannot be written
+	 */
+	private void assemble() throws Exception {
+		List<String> tableNames = new ArrayList<>();
+		for (TableSubset table : tables.values()) {
+			if (!table.parts.isEmpty()) {
+				tableNames.add(table.table.getTableName());
+			}
+		}
+
+		try (OutputStream out = new BufferedOutputStream(Compression.compress(new FileOutputStream(dest), compression, compressionLevel, bufferSize), bufferSize)) {
+			IDataSetConsumer writer = StreamingExport.createWriter(out, format, encoding, doctype);
+			MergingConsumer merger = new MergingConsumer(writer);
+
+			writer.startDataSet();
+			for (List<String> level : TableDependencies.levels(schema, tableNames)) {
+				for (String tableName : level) {
+					TableSubset table = tables.get(tableName.toUpperCase());
+					if (table.getSelfReferences().isEmpty()) {
+						for (File part : table.parts) {
+							BinaryDataSetProducer producer = new BinaryDataSetProducer(part);
+							producer.setConsumer(merger);
+							producer.produce();
+						}
+					}
+					else {
+						writeParentsFirst(table, merger);
+					}
+				}
+			}
+			merger.finish();
+			writer.endDataSet();
+		}
+	}
+
+	/**
+	 * Write the rows of a table that references itself, each row after the row
+	 * it references so the subset can be inserted row by row. The rows are read
+	 * in memory to be sorted, the rows of a reference cycle are written last.
+	 *
+	 * @param table The table
+	 * @param consumer The consumer
+	 * @throws Exception When the part files cannot be read
+	 */
+	private void writeParentsFirst(TableSubset table, IDataSetConsumer consumer) throws Exception {
+		Column[] columns = table.metaData.getColumns();
+		
+		List<Object[]> tableRows = new ArrayList<>();
+		for (File part : table.parts) {
+			ITable cached = new CachedDataSet(new BinaryDataSetProducer(part)).getTable(table.table.getTableName());
+			for (int row = 0; row < cached.getRowCount(); row++) {
+				Object[] values = new Object[columns.length];
+				for (int i = 0; i < columns.length; i++) {
+					values[i] = cached.getValue(row, columns[i].getColumnName());
+				}
+				tableRows.add(values);
+			}
+		}
+		
+		// The values are compared as text since the key and the reference can have different types
+		List<UnitForeignKey> selfReferences = table.getSelfReferences();
+		List<Map<String, Integer>> referenced = new ArrayList<>();
+		for (UnitForeignKey fk : selfReferences) {
+			Map<String, Integer> rowsByValues = new HashMap<>();
+			for (int i = 0; i < tableRows.size(); i++) {
+				List<Object> values = table.getValues(tableRows.get(i), fk.getReferencedColumnNames());
+				if (values != null) {
+					rowsByValues.put(values.toString(), i);
+				}
+			}
+			referenced.add(rowsByValues);
+		}
+		
+		int[] parentCounts = new int[tableRows.size()];
+		List<List<Integer>> childRows = new ArrayList<>();
+		for (int i = 0; i < tableRows.size(); i++) {
+			childRows.add(new ArrayList<Integer>());
+		}
+		for (int i = 0; i < tableRows.size(); i++) {
+			for (int k = 0; k < selfReferences.size(); k++) {
+				List<Object> values = table.getValues(tableRows.get(i), selfReferences.get(k).getColumnNames());
+				Integer parent = values != null ? referenced.get(k).get(values.toString()) : null;
+				if (parent != null && parent != i) {
+					parentCounts[i]++;
+					childRows.get(parent).add(i);
+				}
+			}
+		}
+		
+		// Topological order, the rows without parent in the subset first
+		List<Integer> order = new ArrayList<>();
+		for (int i = 0; i < tableRows.size(); i++) {
+			if (parentCounts[i] == 0) {
+				order.add(i);
+			}
+		}
+		for (int next = 0; next < order.size(); next++) {
+			for (int child : childRows.get(order.get(next))) {
+				if (--parentCounts[child] == 0) {
+					order.add(child);
+				}
+			}
+		}
+		for (int i = 0; i < tableRows.size(); i++) {
+			if (parentCounts[i] > 0) {
+				order.add(i);
+			}
+		}
+		
+		consumer.startTable(table.metaData);
+		for (int i : order) {
+			consumer.row(tableRows.get(i));
+		}
+		consumer.endTable();
+	}
+	
+	/**
+	 * Keep a fraction of the rows by a hash of their key, the same rows being
+	 * kept from one export to the other
+	 *
+	 * @param key The key of the row
+	 * @param sampleRate The fraction of the rows kept
+	 * @return True if the row is kept
+	 */
+	private static boolean isSampled(List<Object> key, double sampleRate) {
+		// Finalizer of MurmurHash3 to spread the consecutive keys
+		long hash = key.toString().hashCode();
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+
+		return (hash >>> 11) * 0x1.0p-53 < sampleRate;
+	}
+
+	/**
+	 * Delete the work directory and its part files
+	 *
+	 * @param workDir The directory of the part files
+	 * @throws IOException When a file cannot be deleted
+	 */
+	private static void deleteParts(File workDir) throws IOException {
+		File[] files = workDir.listFiles();
+		if (files == null) {
+			return;
+		}
+
+		for (File file : files) {
+			if (!file.delete()) {
+				throw new IOException("Unable to delete " + file);
+			}
+		}
+
+		if (!workDir.delete()) {
+			throw new IOException("Unable to delete " + workDir);
+		}
+	}
+
+	/**
+	 * Rows of a table in the subset
+	 */
+	private static class TableSubset {
+		private final UnitTable table;
+
+		/**
+		 * Foreign keys of the other tables that reference the table
+		 */
+		private final List<UnitForeignKey> referencingKeys;
+
+		/**
+		 * Select clause of the columns in alphabetical order and from clause
+		 */
+		private final String select;
+
+		/**
+		 * Keys of the rows of the subset, with true when their child rows are followed
+		 */
+		private final Map<List<Object>, Boolean> rows = new HashMap<>();
+
+		private final List<File> parts = new ArrayList<>();
+
+		private ITableMetaData metaData;
+
+		/**
+		 * Indexes of the primary key columns, or of all the columns without primary key
+		 */
+		private int[] keyIndexes;
+
+		public TableSubset(UnitTable table, List<UnitForeignKey> referencingKeys) {
+			this.table = table;
+			this.referencingKeys = referencingKeys;
+
+			StringBuilder sb = new StringBuilder("SELECT ");
+			for (UnitColumn column : table.getColumns()) {
+				sb.append(column).append(", ");
+			}
+			sb.setLength(sb.length() - 2);
+			this.select = sb.append(" FROM ").append(table.getTableName()).toString();
+		}
+
+		/**
+		 * @param metaData The metadata of the rows read, kept from the first query of the table
+		 * @throws DataSetException When a primary key column is not found
+		 */
+		public void prepare(ITableMetaData metaData) throws DataSetException {
+			if (this.metaData != null) {
+				return;
+			}
+			this.metaData = metaData;
+
+			List<UnitColumn> primaryKey = table.getPrimaryKeyColumns();
+			if (primaryKey.isEmpty()) {
+				keyIndexes = new int[metaData.getColumns().length];
+				for (int i = 0; i < keyIndexes.length; i++) {
+					keyIndexes[i] = i;
+				}
+			}
+			else {
+				keyIndexes = new int[primaryKey.size()];
+				for (int i = 0; i < keyIndexes.length; i++) {
+					keyIndexes[i] = metaData.getColumnIndex(primaryKey.get(i).getColumnName());
+				}
+			}
+		}
+
+		/**
+		 * @return The foreign keys of the table that reference the table itself
+		 */
+		public List<UnitForeignKey> getSelfReferences() {
+			List<UnitForeignKey> selfReferences = new ArrayList<>();
+			for (UnitForeignKey fk : table.getForeignKeys()) {
+				if (fk.getReferencedTableName().equalsIgnoreCase(table.getTableName())) {
+					selfReferences.add(fk);
+				}
+			}
+			return selfReferences;
+		}
+
+		/**
+		 * @param values The values of a row
+		 * @return The key identifying the row
+		 */
+		public List<Object> getKey(Object[] values) {
+			Object[] key = new Object[keyIndexes.length];
+			for (int i = 0; i < key.length; i++) {
+				key[i] = values[keyIndexes[i]];
+			}
+			return Arrays.asList(key);
+		}
+
+		/**
+		 * @param values The values of a row
+		 * @param columnNames The columns
+		 * @return The values of the columns, null when one of them is null
+		 * @throws DataSetException When a column is not found
+		 */
+		public List<Object> getValues(Object[] values, List<String> columnNames) throws DataSetException {
+			List<Object> columnValues = new ArrayList<>(columnNames.size());
+			for (String columnName : columnNames) {
+				Object value = values[metaData.getColumnIndex(columnName)];
+				if (value == null) {
+					return null;
+				}
+				columnValues.add(value);
+			}
+			return columnValues;
+		}
+	}
+
+	/**
+	 * Keys to look up in a table, on the columns of a foreign key
+	 */
+	private class Lookup {
+		private final TableSubset table;
+		private final List<String> columnNames;
+		private final DataType[] types;
+		private final boolean downward;
+		private final Set<List<Object>> requested = new HashSet<>();
+		private final List<List<Object>> pending = new ArrayList<>();
+
+		public Lookup(TableSubset table, List<String> columnNames, boolean downward) throws DataSetException {
+			this.table = table;
+			this.columnNames = columnNames;
+			this.downward = downward;
+
+			// The values are bound with the types of the columns looked up
+			types = new DataType[columnNames.size()];
+			for (int i = 0; i < types.length; i++) {
+				UnitColumn column = table.table.getColumn(columnNames.get(i));
+				if (column == null) {
+					throw new DataSetException("The column " + columnNames.get(i) + " of " + table.table.getTableName() + " is not found");
+				}
+				types[i] = dataTypeFactory.createDataType(column.getSqlType(), column.getTypeName(), table.table.getTableName(), column.getColumnName());
+			}
+		}
+	}
+}
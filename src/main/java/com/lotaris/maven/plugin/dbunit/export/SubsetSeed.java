@@ -0,0 +1,73 @@
+package com.lotaris.maven.plugin.dbunit.export;
+
+/**
+ * Seed rows of a subset export: the rows of the tables matching a name pattern
+ * that satisfy a condition, sampled at a rate and limited to a number of rows.
+ * The subset is completed from the seed rows by following the foreign keys.
+ *
+ * @author Laurent Prévost <laurent.prevost@lotaris.com>
+ */
+public class SubsetSeed {
+	/**
+	 * Regular expression matching the table names
+	 */
+	private String name;
+
+	/**
+	 * SQL condition of the seed rows, all the rows when not set
+	 */
+	private String where;
+
+	/**
+	 * Fraction of the rows kept, from 0 to 1. The rows are chosen by a hash of their key, so the
+	 * same rows are kept from one export to the other.
+	 */
+	private double sampleRate = 1;
+
+	/**
+	 * Maximum number of seed rows of each table, all the rows when not set
+	 */
+	private Long maxRows;
+
+	//<editor-fold defaultstate="collapsed" desc="Getters & Setters">
+	public String getName() {
+		return name;
+	}
+
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	public String getWhere() {
+		return where;
+	}
+
+	public void setWhere(String where) {
+		this.where = where;
+	}
+
+	public double getSampleRate() {
+		return sampleRate;
+	}
+
+	public void setSampleRate(double sampleRate) {
+		this.sampleRate = sampleRate;
+	}
+
+	public Long getMaxRows() {
+		return maxRows;
+	}
+
+	public void setMaxRows(Long maxRows) {
+		this.maxRows = maxRows;
+	}
+	//</editor-fold>
+
+	/**
+	 * @param tableName The table name
+	 * @return True if the seed applies to the table, ignoring the case
+	 */
+	public boolean matches(String tableName) {
+		return name != null && tableName.toUpperCase().matches(name.toUpperCase());
+	}
+}
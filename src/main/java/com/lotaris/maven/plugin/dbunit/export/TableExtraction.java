@@ -0,0 +1,105 @@
+package com.lotaris.maven.plugin.dbunit.export;
+
+/**
+ * Extraction settings of the tables matching a name pattern: the columns to
+ * read, the condition of the rows and their maximum number. The settings are
+ * pushed into the queries of the tables, so the columns and rows left out are
+ * not read from the database.
+ *
+ * @author Laurent Prévost <laurent.prevost@lotaris.com>
+ */
+public class TableExtraction {
+	/**
+	 * Regular expression matching the table names, all the tables when not set
+	 */
+	private String name;
+
+	/**
+	 * Regular expressions matching the columns to extract, all the columns when not set
+	 */
+	private String[] includeColumns;
+
+	/**
+	 * Regular expressions matching the columns not to extract
+	 */
+	private String[] excludeColumns;
+
+	/**
+	 * SQL condition of the rows to extract, all the rows when not set
+	 */
+	private String where;
+
+	/**
+	 * Maximum number of rows to extract, the maximum number of rows per table when not set
+	 */
+	private Long maxRows;
+
+	//<editor-fold defaultstate="collapsed" desc="Getters & Setters">
+	public String getName() {
+		return name;
+	}
+
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	public String[] getIncludeColumns() {
+		return includeColumns;
+	}
+
+	public void setIncludeColumns(String[] includeColumns) {
+		this.includeColumns = includeColumns;
+	}
+
+	public String[] getExcludeColumns() {
+		return excludeColumns;
+	}
+
+	public void setExcludeColumns(String[] excludeColumns) {
+		this.excludeColumns = excludeColumns;
+	}
+
+	public String getWhere() {
+		return where;
+	}
+
+	public void setWhere(String where) {
+		this.where = where;
+	}
+
+	public Long getMaxRows() {
+		return maxRows;
+	}
+
+	public void setMaxRows(Long maxRows) {
+		this.maxRows = maxRows;
+	}
+	//</editor-fold>
+
+	/**
+	 * @param tableName The table name
+	 * @return True if the settings apply to the table, ignoring the case
+	 */
+	public boolean matches(String tableName) {
+		return name == null || tableName.toUpperCase().matches(name.toUpperCase());
+	}
+
+	/**
+	 * @param columnName The column name
+	 * @return True if the column is included and not excluded, ignoring the case
+	 */
+	public boolean isExtracted(String columnName) {
+		return (includeColumns == null || includeColumns.length == 0 || matchesAny(columnName, includeColumns)) && !matchesAny(columnName, excludeColumns);
+	}
+
+	private static boolean matchesAny(String columnName, String[] patterns) {
+		if (patterns != null) {
+			for (String pattern : patterns) {
+				if (columnName.toUpperCase().matches(pattern.toUpperCase())) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+}
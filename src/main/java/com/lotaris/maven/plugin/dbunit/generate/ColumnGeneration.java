@@ -0,0 +1,141 @@
+package com.lotaris.maven.plugin.dbunit.generate;
+
+/**
+ * Generation settings of the columns matching a table and a column name
+ * pattern: the distribution of the values, their bounds or the values to pick
+ * from, and the ratio of null values.
+ *
+ * @author Laurent Prévost <laurent.prevost@lotaris.com>
+ */
+public class ColumnGeneration {
+	/**
+	 * Regular expression matching the table names, all the tables when not set
+	 */
+	private String table;
+
+	/**
+	 * Regular expression matching the column names
+	 */
+	private String name;
+
+	/**
+	 * Distribution of the values, see {@link Distribution}
+	 */
+	private String distribution = Distribution.UNIFORM.name();
+
+	/**
+	 * Lower bound of the values: a number, a date (yyyy-mm-dd) or a timestamp
+	 * (yyyy-mm-dd hh:mm:ss). For the text and binary columns, the lower bound of
+	 * the number from which the value is derived.
+	 */
+	private String min;
+
+	/**
+	 * Upper bound of the values, inclusive, in the format of the lower bound
+	 */
+	private String max;
+
+	/**
+	 * Comma separated values to pick from instead of generating them
+	 */
+	private String values;
+
+	/**
+	 * Ratio of null values between 0 and 1, ignored for the columns that are not nullable
+	 */
+	private double nullRatio;
+
+	/**
+	 * Length of the text and binary values, bounded by the column size
+	 */
+	private Integer length;
+
+	/**
+	 * Exponent of the skewed distribution
+	 */
+	private double skew = Distribution.DEFAULT_SKEW;
+
+	//<editor-fold defaultstate="collapsed" desc="Getters & Setters">
+	public String getTable() {
+		return table;
+	}
+
+	public void setTable(String table) {
+		this.table = table;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	public String getDistribution() {
+		return distribution;
+	}
+
+	public void setDistribution(String distribution) {
+		this.distribution = distribution;
+	}
+
+	public String getMin() {
+		return min;
+	}
+
+	public void setMin(String min) {
+		this.min = min;
+	}
+
+	public String getMax() {
+		return max;
+	}
+
+	public void setMax(String max) {
+		this.max = max;
+	}
+
+	public String getValues() {
+		return values;
+	}
+
+	public void setValues(String values) {
+		this.values = values;
+	}
+
+	public double getNullRatio() {
+		return nullRatio;
+	}
+
+	public void setNullRatio(double nullRatio) {
+		this.nullRatio = nullRatio;
+	}
+
+	public Integer getLength() {
+		return length;
+	}
+
+	public void setLength(Integer length) {
+		this.length = length;
+	}
+
+	public double getSkew() {
+		return skew;
+	}
+
+	public void setSkew(double skew) {
+		this.skew = skew;
+	}
+	//</editor-fold>
+
+	/**
+	 * @param tableName The table name
+	 * @param columnName The column name
+	 * @return True if the settings apply to the column, ignoring the case
+	 */
+	public boolean matches(String tableName, String columnName) {
+		return (table == null || tableName.toUpperCase().matches(table.toUpperCase()))
+			&& (name == null || columnName.toUpperCase().matches(name.toUpperCase()));
+	}
+}
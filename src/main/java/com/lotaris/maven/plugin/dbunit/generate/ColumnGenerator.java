@@ -0,0 +1,306 @@
+package com.lotaris.maven.plugin.dbunit.generate;
+
+import com.lotaris.maven.plugin.dbunit.model.UnitColumn;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Date;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Calendar;
+
+/**
+ * Generate the values of a column from its SQL type and its generation
+ * settings. Each value is a function of the row, see {@link Distribution}.
+ *
+ * @author Laurent Prévost <laurent.prevost@lotaris.com>
+ */
+class ColumnGenerator {
+	private static final String CHARACTERS = "abcdefghijklmnopqrstuvwxyz0123456789";
+
+	private static final int DEFAULT_LENGTH = 16;
+
+	private static final String DEFAULT_MIN_DATE = "2000-01-01 00:00:00";
+
+	private static final String DEFAULT_MAX_DATE = "2030-12-31 23:59:59";
+
+	private static final long DAY = 24 * 60 * 60 * 1000L;
+
+	/**
+	 * Kind of values, from the SQL type
+	 */
+	private enum Kind { BOOLEAN, INTEGER, DECIMAL, FLOAT, TEXT, DATE, TIME, TIMESTAMP, BINARY }
+
+	private final UnitColumn column;
+
+	private final Kind kind;
+
+	private final long seed;
+
+	private final long rows;
+
+	private final Distribution distribution;
+
+	private final double skew;
+
+	private final double nullRatio;
+
+	private final String[] values;
+
+	private final int length;
+
+	/**
+	 * Bounds of the values, in ms for the dates
+	 */
+	private final double min;
+
+	private final double max;
+
+	/**
+	 * First value of the sequence, the lower bound when configured
+	 */
+	private final double start;
+
+	//<editor-fold defaultstate="collapsed" desc="Constructors">
+	/**
+	 * Constructor
+	 *
+	 * @param column The column
+	 * @param seed The seed of the column
+	 * @param rows The number of rows of the table
+	 * @param settings The generation settings, null for the defaults
+	 * @throws IllegalArgumentException When the settings are not valid for the column
+	 */
+	ColumnGenerator(UnitColumn column, long seed, long rows, ColumnGeneration settings) {
+		this.column = column;
+		this.kind = kindOf(column.getSqlType());
+		this.seed = seed;
+		this.rows = rows;
+
+		if (settings != null) {
+			distribution = Distribution.parse(settings.getDistribution());
+			skew = settings.getSkew();
+			nullRatio = column.isNullable() ? settings.getNullRatio() : 0.0;
+			values = settings.getValues() != null ? settings.getValues().split("\\s*,\\s*") : null;
+		}
+		else {
+			distribution = Distribution.UNIFORM;
+			skew = Distribution.DEFAULT_SKEW;
+			nullRatio = 0.0;
+			values = null;
+		}
+
+		int maxLength = column.getSize() > 0 ? column.getSize() : Integer.MAX_VALUE;
+		length = Math.min(settings != null && settings.getLength() != null ? settings.getLength() : DEFAULT_LENGTH, maxLength);
+
+		String configuredMin = settings != null ? settings.getMin() : null;
+		String configuredMax = settings != null ? settings.getMax() : null;
+		try {
+			min = configuredMin != null ? parseBound(configuredMin) : defaultMin();
+			max = configuredMax != null ? parseBound(configuredMax) : defaultMax();
+		}
+		catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Invalid bounds for the column " + column.getColumnName() + ": " + e.getMessage(), e);
+		}
+
+		start = configuredMin != null || kind == Kind.DATE || kind == Kind.TIMESTAMP || kind == Kind.TIME ? min : 1;
+
+		if (max < min) {
+			throw new IllegalArgumentException("The upper bound of the column " + column.getColumnName() + " is lower than its lower bound");
+		}
+	}
+	//</editor-fold>
+
+	/**
+	 * @param row The row, starting at 0
+	 * @return The value of the column for the row
+	 */
+	Object generate(long row) {
+		if (nullRatio > 0 && Distribution.random(~seed, row) < nullRatio) {
+			return null;
+		}
+
+		if (distribution == Distribution.SEQUENCE && values == null) {
+			return sequence(row);
+		}
+
+		double position = distribution.position(seed, row, rows, skew);
+
+		if (values != null) {
+			return values[(int) (position * values.length)];
+		}
+
+		switch (kind) {
+			case BOOLEAN:
+				return position >= 0.5;
+			case DECIMAL:
+				return BigDecimal.valueOf(min + position * (max - min)).setScale(2, RoundingMode.HALF_UP);
+			case FLOAT:
+				return min + position * (max - min);
+			case DATE:
+				return toDate(Math.round(min) + (long) (position * ((max - min) / DAY + 1)) * DAY);
+			case TIME:
+				return toTime((long) (min + position * (max - min + 1)));
+			case TIMESTAMP:
+				return new Timestamp((Math.round(min) + (long) (position * ((max - min) / 1000 + 1)) * 1000));
+			default:
+				return derived(Math.min((long) max, (long) min + (long) (position * (max - min + 1))));
+		}
+	}
+
+	/**
+	 * Unique value of a row, for the keys and the columns generated in sequence
+	 *
+	 * @param row The row, starting at 0
+	 * @return The value of the column for the row
+	 */
+	Object sequence(long row) {
+		switch (kind) {
+			case BOOLEAN:
+				return row % 2 == 1;
+			case DECIMAL:
+				return BigDecimal.valueOf((long) start + row);
+			case FLOAT:
+				return start + row;
+			case DATE:
+				return toDate(Math.round(start) + row * DAY);
+			case TIME:
+				return toTime(Math.round(start) + row * 1000);
+			case TIMESTAMP:
+				return new Timestamp(Math.round(start) + row * 1000);
+			default:
+				return derived((long) start + row);
+		}
+	}
+
+	/**
+	 * @param number A number
+	 * @return The integer, text or binary value derived from the number
+	 */
+	private Object derived(long number) {
+		switch (kind) {
+			case INTEGER:
+				return number;
+			case BINARY:
+				byte[] bytes = new byte[Math.min(length, 8)];
+				for (int i = 0; i < bytes.length; i++) {
+					bytes[bytes.length - 1 - i] = (byte) (number >>> (8 * i));
+				}
+				return bytes;
+			default:
+				// The text starts with the number so the distinct numbers give distinct texts
+				StringBuilder text = new StringBuilder(Long.toString(number, CHARACTERS.length()));
+				long hash = Distribution.hash(seed, number);
+				while (text.length() < length) {
+					text.append(CHARACTERS.charAt((int) ((hash >>> 1) % CHARACTERS.length())));
+					hash = Distribution.hash(hash, number);
+				}
+				return text.length() > length ? text.substring(text.length() - length) : text.toString();
+		}
+	}
+
+	private double defaultMin() {
+		switch (kind) {
+			case DATE:
+			case TIMESTAMP:
+				return parseBound(DEFAULT_MIN_DATE);
+			default:
+				return 0;
+		}
+	}
+
+	private double defaultMax() {
+		switch (kind) {
+			case DATE:
+			case TIMESTAMP:
+				return parseBound(DEFAULT_MAX_DATE);
+			case TIME:
+				return DAY - 1000;
+			case INTEGER:
+				if (column.getSqlType() == Types.TINYINT) {
+					return Byte.MAX_VALUE;
+				}
+				else if (column.getSqlType() == Types.SMALLINT) {
+					return Short.MAX_VALUE;
+				}
+				return 1000000;
+			case DECIMAL:
+				// Keep two digits for the decimals of the columns with a small precision
+				return column.getSize() > 0 && column.getSize() < 9 ? Math.pow(10, Math.max(column.getSize() - 2, 1)) - 1 : 1000000;
+			default:
+				return 1000000;
+		}
+	}
+
+	/**
+	 * @param bound A bound of the values
+	 * @return The bound as a number, in ms for the dates
+	 */
+	private double parseBound(String bound) {
+		switch (kind) {
+			case DATE:
+			case TIMESTAMP:
+				return bound.trim().length() > 10 ? Timestamp.valueOf(bound.trim()).getTime() : Date.valueOf(bound.trim()).getTime();
+			case TIME:
+				return Time.valueOf(bound.trim()).getTime() - Time.valueOf("00:00:00").getTime();
+			default:
+				return Double.parseDouble(bound.trim());
+		}
+	}
+
+	/**
+	 * @param millis A time in ms, around midnight
+	 * @return The date of the time, at midnight
+	 */
+	private static Date toDate(long millis) {
+		Calendar calendar = Calendar.getInstance();
+		calendar.setTimeInMillis(millis + DAY / 2);
+		calendar.set(Calendar.HOUR_OF_DAY, 0);
+		calendar.set(Calendar.MINUTE, 0);
+		calendar.set(Calendar.SECOND, 0);
+		calendar.set(Calendar.MILLISECOND, 0);
+		return new Date(calendar.getTimeInMillis());
+	}
+
+	/**
+	 * @param millis A time of the day in ms
+	 * @return The time, to the second
+	 */
+	private static Time toTime(long millis) {
+		long seconds = (millis / 1000) % (DAY / 1000);
+		return Time.valueOf(String.format("%02d:%02d:%02d", seconds / 3600, (seconds / 60) % 60, seconds % 60));
+	}
+
+	private static Kind kindOf(int sqlType) {
+		switch (sqlType) {
+			case Types.BIT:
+			case Types.BOOLEAN:
+				return Kind.BOOLEAN;
+			case Types.TINYINT:
+			case Types.SMALLINT:
+			case Types.INTEGER:
+			case Types.BIGINT:
+				return Kind.INTEGER;
+			case Types.DECIMAL:
+			case Types.NUMERIC:
+				return Kind.DECIMAL;
+			case Types.FLOAT:
+			case Types.REAL:
+			case Types.DOUBLE:
+				return Kind.FLOAT;
+			case Types.DATE:
+				return Kind.DATE;
+			case Types.TIME:
+				return Kind.TIME;
+			case Types.TIMESTAMP:
+				return Kind.TIMESTAMP;
+			case Types.BINARY:
+			case Types.VARBINARY:
+			case Types.LONGVARBINARY:
+			case Types.BLOB:
+				return Kind.BINARY;
+			default:
+				return Kind.TEXT;
+		}
+	}
+}
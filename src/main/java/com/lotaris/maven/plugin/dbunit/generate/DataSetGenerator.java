@@ -0,0 +1,483 @@
+package com.lotaris.maven.plugin.dbunit.generate;
+
+import com.lotaris.maven.plugin.dbunit.database.TableDependencies;
+import com.lotaris.maven.plugin.dbunit.model.UnitColumn;
+import com.lotaris.maven.plugin.dbunit.model.UnitForeignKey;
+import com.lotaris.maven.plugin.dbunit.model.UnitSchema;
+import com.lotaris.maven.plugin.dbunit.model.UnitTable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.DefaultTableMetaData;
+import org.dbunit.dataset.ITableMetaData;
+import org.dbunit.dataset.datatype.DataTypeException;
+import org.dbunit.dataset.datatype.IDataTypeFactory;
+import org.dbunit.dataset.stream.DefaultConsumer;
+import org.dbunit.dataset.stream.IDataSetConsumer;
+import org.dbunit.dataset.stream.IDataSetProducer;
+
+/**
+ * Producer of a synthetic data set following the schema of a database. The
+ * tables are produced parents first and the foreign keys reference rows of the
+ * generated parent tables, so the data set can be inserted as it is produced.
+ *
+ * The primary key columns and the columns referenced by a foreign key get a
+ * sequence of unique values. When the primary key is made of foreign keys only,
+ * like in an association table, the rows go through the combinations of the
+ * parent rows and the number of rows is limited to the number of combinations.
+ * The other unique constraints are not known and not respected.
+ *
+ * The values are derived from the seed, the table, the column and the row only,
+ * see {@link Distribution}: the same seed and settings always produce the same
+ * data set and no row is kept in memory, whatever the number of rows.
+ *
+ * @author Laurent Prévost <laurent.prevost@lotaris.com>
+ */
+public class DataSetGenerator implements IDataSetProducer {
+	private static final IDataSetConsumer EMPTY_CONSUMER = new DefaultConsumer();
+
+	private final UnitSchema schema;
+
+	private final Collection<String> tableNames;
+
+	private final IDataTypeFactory dataTypeFactory;
+
+	private final long seed;
+
+	private long defaultRows = 1000;
+
+	private TableGeneration[] tableGenerations = new TableGeneration[0];
+
+	private ColumnGeneration[] columnGenerations = new ColumnGeneration[0];
+
+	private IDataSetConsumer consumer = EMPTY_CONSUMER;
+
+	/**
+	 * Tables to generate in the generation order, by upper case name
+	 */
+	private Map<String, TablePlan> plans;
+
+	private final List<String> warnings = new ArrayList<>();
+
+	private long rows;
+
+	//<editor-fold defaultstate="collapsed" desc="Constructors">
+	/**
+	 * Constructor
+	 *
+	 * @param schema The schema with the foreign keys
+	 * @param tableNames The tables to generate
+	 * @param dataTypeFactory The factory of the data types of the columns
+	 * @param seed The seed of the values
+	 */
+	public DataSetGenerator(UnitSchema schema, Collection<String> tableNames, IDataTypeFactory dataTypeFactory, long seed) {
+		this.schema = schema;
+		this.tableNames = tableNames;
+		this.dataTypeFactory = dataTypeFactory;
+		this.seed = seed;
+	}
+	//</editor-fold>
+
+	//<editor-fold defaultstate="collapsed" desc="Getters & Setters">
+	/**
+	 * @param defaultRows The number of rows of the tables without generation settings
+	 */
+	public void setDefaultRows(long defaultRows) {
+		this.defaultRows = defaultRows;
+	}
+
+	/**
+	 * @param tableGenerations The settings of the tables, the first matching a table applies
+	 */
+	public void setTableGenerations(TableGeneration[] tableGenerations) {
+		this.tableGenerations = tableGenerations != null ? tableGenerations : new TableGeneration[0];
+	}
+
+	/**
+	 * @param columnGenerations The settings of the columns, the first matching a column applies
+	 */
+	public void setColumnGenerations(ColumnGeneration[] columnGenerations) {
+		this.columnGenerations = columnGenerations != null ? columnGenerations : new ColumnGeneration[0];
+	}
+
+	/**
+	 * @return The number of rows produced
+	 */
+	public long getRows() {
+		return rows;
+	}
+
+	/**
+	 * @return The foreign keys that could not be followed and the row counts that were reduced
+	 * @throws DataSetException When the settings are not valid
+	 */
+	public List<String> getWarnings() throws DataSetException {
+		prepare();
+		return warnings;
+	}
+
+	/**
+	 * @return The tables in the generation order, parents first
+	 * @throws DataSetException When the settings are not valid
+	 */
+	public List<String> getTableNames() throws DataSetException {
+		prepare();
+		List<String> names = new ArrayList<>();
+		for (TablePlan plan : plans.values()) {
+			names.add(plan.table.getTableName());
+		}
+		return names;
+	}
+	//</editor-fold>
+
+	//<editor-fold defaultstate="collapsed" desc="Overrides">
+	@Override
+	public void setConsumer(IDataSetConsumer consumer) throws DataSetException {
+		this.consumer = consumer;
+	}
+
+	@Override
+	public void produce() throws DataSetException {
+		prepare();
+
+		consumer.startDataSet();
+		for (TablePlan plan : plans.values()) {
+			consumer.startTable(plan.metaData);
+			for (long row = 0; row < plan.rows; row++) {
+				Object[] values = new Object[plan.columns.size()];
+				for (int column = 0; column < values.length; column++) {
+					values[column] = value(plan, column, row);
+				}
+				consumer.row(values);
+			}
+			consumer.endTable();
+			rows += plan.rows;
+		}
+		consumer.endDataSet();
+	}
+	//</editor-fold>
+
+	/**
+	 * @param plan The table
+	 * @param column The index of the column
+	 * @param row The row, starting at 0
+	 * @return The value of the column for the row
+	 */
+	private Object value(TablePlan plan, int column, long row) {
+		Reference reference = plan.references[column];
+		if (reference != null) {
+			long parentRow = reference.link.parentRow(row);
+			return parentRow < 0 || reference.parentColumn < 0 ? null : value(reference.link.parent, reference.parentColumn, parentRow);
+		}
+		else if (plan.keys[column]) {
+			return plan.generators[column].sequence(row);
+		}
+		else {
+			return plan.generators[column].generate(row);
+		}
+	}
+
+	/**
+	 * Plan the generation of the tables, parents first
+	 *
+	 * @throws DataSetException When the settings are not valid
+	 */
+	private void prepare() throws DataSetException {
+		if (plans != null) {
+			return;
+		}
+
+		// The referenced columns need unique values
+		Set<String> referencedColumns = new HashSet<>();
+		for (String tableName : tableNames) {
+			for (UnitForeignKey fk : schema.getTable(tableName).getForeignKeys()) {
+				for (String columnName : fk.getReferencedColumnNames()) {
+					referencedColumns.add((fk.getReferencedTableName() + "." + columnName).toUpperCase());
+				}
+			}
+		}
+
+		plans = new LinkedHashMap<>();
+		for (List<String> level : TableDependencies.levels(schema, tableNames)) {
+			for (String tableName : level) {
+				try {
+					TablePlan plan = plan(schema.getTable(tableName), referencedColumns);
+					plans.put(tableName.toUpperCase(), plan);
+				}
+				catch (IllegalArgumentException | DataTypeException e) {
+					plans = null;
+					warnings.clear();
+					throw new DataSetException("Unable to plan the generation of " + tableName + ": " + e.getMessage(), e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param table The table
+	 * @param referencedColumns The referenced columns, as TABLE.COLUMN in upper case
+	 * @return The plan of the table
+	 * @throws DataTypeException When the data type of a column is not supported
+	 */
+	private TablePlan plan(UnitTable table, Set<String> referencedColumns) throws DataTypeException {
+		TablePlan plan = new TablePlan(table, Distribution.derive(seed, table.getTableName()));
+
+		TableGeneration settings = null;
+		for (TableGeneration tableGeneration : tableGenerations) {
+			if (tableGeneration.matches(table.getTableName())) {
+				settings = tableGeneration;
+				break;
+			}
+		}
+
+		Distribution references = settings != null ? Distribution.parse(settings.getReferences()) : Distribution.UNIFORM;
+		double skew = settings != null ? settings.getSkew() : Distribution.DEFAULT_SKEW;
+
+		// Links to the parent rows, the parents are planned first except in reference cycles
+		for (UnitForeignKey fk : table.getForeignKeys()) {
+			boolean self = fk.getReferencedTableName().equalsIgnoreCase(table.getTableName());
+			TablePlan parent = self ? plan : plans.get(fk.getReferencedTableName().toUpperCase());
+
+			boolean nullable = true;
+			for (String columnName : fk.getColumnNames()) {
+				UnitColumn column = table.getColumn(columnName);
+				nullable &= column == null || column.isNullable();
+			}
+
+			if (parent == null && !nullable) {
+				warnings.add("The foreign key " + describe(fk) + " does not reference generated rows, its values are generated like the other columns");
+				continue;
+			}
+			else if (parent == null) {
+				warnings.add("The foreign key " + describe(fk) + " does not reference generated rows, it is left null");
+			}
+
+			ColumnGeneration columnSettings = findColumnGeneration(table.getTableName(), fk.getColumnNames().get(0));
+			Link link = new Link(plan, parent, self, nullable, Distribution.derive(plan.seed, describe(fk)), references, skew,
+				nullable && columnSettings != null ? columnSettings.getNullRatio() : 0.0);
+
+			for (int i = 0; i < fk.getColumnNames().size(); i++) {
+				int index = plan.indexOf(fk.getColumnNames().get(i));
+				if (index >= 0 && plan.references[index] == null) {
+					plan.references[index] = new Reference(link, parent != null ? parent.indexOf(fk.getReferencedColumnNames().get(i)) : -1);
+				}
+			}
+		}
+
+		plan.rows = plannedRows(table, settings);
+
+		// A primary key made of references only goes through the combinations of the parent rows
+		List<UnitColumn> primaryKey = table.getPrimaryKeyColumns();
+		boolean referencesOnly = !primaryKey.isEmpty();
+		for (UnitColumn column : primaryKey) {
+			Reference reference = plan.references[plan.indexOf(column.getColumnName())];
+			referencesOnly &= reference != null && reference.link.parent != null && !reference.link.self;
+		}
+
+		if (referencesOnly) {
+			long combinations = 1;
+			List<Link> links = new ArrayList<>();
+			for (UnitColumn column : primaryKey) {
+				Link link = plan.references[plan.indexOf(column.getColumnName())].link;
+				if (!links.contains(link)) {
+					links.add(link);
+					link.divisor = combinations;
+					combinations = multiply(combinations, link.parent.rows);
+				}
+			}
+
+			if (plan.rows > combinations) {
+				warnings.add("The table " + table.getTableName() + " is limited to " + combinations + " rows, the combinations of the rows of its parents");
+				plan.rows = combinations;
+			}
+		}
+
+		Column[] columns = new Column[plan.columns.size()];
+		List<String> primaryKeyNames = new ArrayList<>();
+		for (int i = 0; i < columns.length; i++) {
+			UnitColumn column = plan.columns.get(i);
+			columns[i] = new Column(column.getColumnName(), dataTypeFactory.createDataType(column.getSqlType(), column.getTypeName()));
+
+			if (plan.references[i] == null) {
+				plan.keys[i] = column.isPrimaryKey() || referencedColumns.contains((table.getTableName() + "." + column.getColumnName()).toUpperCase());
+				plan.generators[i] = new ColumnGenerator(column, Distribution.derive(plan.seed, column.getColumnName()), plan.rows,
+					findColumnGeneration(table.getTableName(), column.getColumnName()));
+			}
+
+			if (column.isPrimaryKey()) {
+				primaryKeyNames.add(column.getColumnName());
+			}
+		}
+		plan.metaData = new DefaultTableMetaData(table.getTableName(), columns, primaryKeyNames.toArray(new String[primaryKeyNames.size()]));
+
+		return plan;
+	}
+
+	/**
+	 * @param table The table
+	 * @param settings The settings of the table, can be null
+	 * @return The number of rows to generate
+	 */
+	private long plannedRows(UnitTable table, TableGeneration settings) {
+		if (settings == null || settings.getRows() != null) {
+			return settings != null ? settings.getRows() : defaultRows;
+		}
+		else if (settings.getRowsPerParent() == null) {
+			return defaultRows;
+		}
+
+		for (UnitForeignKey fk : table.getForeignKeys()) {
+			TablePlan parent = plans.get(fk.getReferencedTableName().toUpperCase());
+			if (parent != null) {
+				return Math.round(settings.getRowsPerParent() * parent.rows);
+			}
+		}
+
+		warnings.add("The table " + table.getTableName() + " has no generated parent table, " + defaultRows + " rows are generated instead of rows per parent");
+		return defaultRows;
+	}
+
+	private ColumnGeneration findColumnGeneration(String tableName, String columnName) {
+		for (ColumnGeneration columnGeneration : columnGenerations) {
+			if (columnGeneration.matches(tableName, columnName)) {
+				return columnGeneration;
+			}
+		}
+		return null;
+	}
+
+	private static String describe(UnitForeignKey fk) {
+		return (fk.getName() != null ? fk.getName() + " " : "") + fk.getTableName() + fk.getColumnNames() + " -> " + fk.getReferencedTableName() + fk.getReferencedColumnNames();
+	}
+
+	private static long multiply(long a, long b) {
+		return b != 0 && a > Long.MAX_VALUE / b ? Long.MAX_VALUE : a * b;
+	}
+
+	/**
+	 * Generation plan of a table
+	 */
+	private static class TablePlan {
+		private final UnitTable table;
+
+		private final long seed;
+
+		private final List<UnitColumn> columns;
+
+		private final Reference[] references;
+
+		/**
+		 * Columns generated as a sequence of unique values
+		 */
+		private final boolean[] keys;
+
+		private final ColumnGenerator[] generators;
+
+		private long rows;
+
+		private ITableMetaData metaData;
+
+		public TablePlan(UnitTable table, long seed) {
+			this.table = table;
+			this.seed = seed;
+			this.columns = new ArrayList<>(table.getColumns());
+			this.references = new Reference[columns.size()];
+			this.keys = new boolean[columns.size()];
+			this.generators = new ColumnGenerator[columns.size()];
+		}
+
+		private int indexOf(String columnName) {
+			for (int i = 0; i < columns.size(); i++) {
+				if (columns.get(i).getColumnName().equalsIgnoreCase(columnName)) {
+					return i;
+				}
+			}
+			return -1;
+		}
+	}
+
+	/**
+	 * Column that takes its value from a parent row
+	 */
+	private static class Reference {
+		private final Link link;
+
+		private final int parentColumn;
+
+		public Reference(Link link, int parentColumn) {
+			this.link = link;
+			this.parentColumn = parentColumn;
+		}
+	}
+
+	/**
+	 * Foreign key choosing the parent row of each row
+	 */
+	private static class Link {
+		private final TablePlan child;
+
+		/**
+		 * The parent table, null when not generated: the foreign key is null
+		 */
+		private final TablePlan parent;
+
+		private final boolean self;
+
+		private final boolean nullable;
+
+		private final long seed;
+
+		private final Distribution distribution;
+
+		private final double skew;
+
+		private final double nullRatio;
+
+		/**
+		 * Product of the rows of the previous parents of a primary key made of
+		 * references, 0 when the parent rows are chosen with the distribution
+		 */
+		private long divisor;
+
+		public Link(TablePlan child, TablePlan parent, boolean self, boolean nullable, long seed, Distribution distribution, double skew, double nullRatio) {
+			this.child = child;
+			this.parent = parent;
+			this.self = self;
+			this.nullable = nullable;
+			this.seed = seed;
+			this.distribution = distribution;
+			this.skew = skew;
+			this.nullRatio = nullRatio;
+		}
+
+		/**
+		 * @param row The row, starting at 0
+		 * @return The parent row, -1 for a null reference
+		 */
+		private long parentRow(long row) {
+			if (parent == null) {
+				return -1;
+			}
+			else if (divisor > 0) {
+				return (row / divisor) % parent.rows;
+			}
+			else if (nullRatio > 0 && Distribution.random(~seed, row) < nullRatio) {
+				return -1;
+			}
+
+			// A row references itself or the previous rows of its own table
+			long candidates = self ? row : parent.rows;
+			if (candidates == 0) {
+				return self && !nullable ? 0 : -1;
+			}
+
+			return Math.min(candidates - 1, (long) (distribution.position(seed, row, child.rows, skew) * candidates));
+		}
+	}
+}
@@ -0,0 +1,117 @@
+package com.lotaris.maven.plugin.dbunit.generate;
+
+/**
+ * Distribution of the generated values and references. A distribution maps a
+ * row to a position between 0 (inclusive) and 1 (exclusive) in the range of the
+ * values, or in the rows of the referenced table.
+ *
+ * The positions are not drawn from a shared random generator but derived from
+ * a hash of the seed and the row, so the value of any row can be computed again
+ * without generating the previous rows: the references of a child table get the
+ * key of their parent rows without keeping them in memory, and the same seed
+ * always produces the same data set.
+ *
+ * @author Laurent Prévost <laurent.prevost@lotaris.com>
+ */
+public enum Distribution {
+	/**
+	 * All the positions have the same probability
+	 */
+	UNIFORM,
+
+	/**
+	 * Normal distribution centered in the range, 99.7% of the positions within it
+	 */
+	NORMAL,
+
+	/**
+	 * Power law favoring the start of the range, the higher the skew the more
+	 */
+	SKEWED,
+
+	/**
+	 * The positions follow the rows: the values increase with the rows and the
+	 * rows reference their parents in order, each parent the same number of times
+	 */
+	SEQUENCE,
+
+	/**
+	 * Always the start of the range
+	 */
+	CONSTANT;
+
+	public static final double DEFAULT_SKEW = 2.0;
+
+	private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+	/**
+	 * @param name The name of the distribution, ignoring the case
+	 * @return The distribution
+	 * @throws IllegalArgumentException When the distribution is unknown
+	 */
+	public static Distribution parse(String name) {
+		try {
+			return valueOf(name.trim().toUpperCase());
+		}
+		catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Unknown distribution " + name + ", use uniform, normal, skewed, sequence or constant", e);
+		}
+	}
+
+	/**
+	 * @param seed The seed of the column or reference
+	 * @param row The row, starting at 0
+	 * @param rows The number of rows of the table
+	 * @param skew The exponent of the skewed distribution
+	 * @return The position of the row, between 0 (inclusive) and 1 (exclusive)
+	 */
+	public double position(long seed, long row, long rows, double skew) {
+		switch (this) {
+			case NORMAL:
+				double u1 = 1.0 - random(seed, row);
+				double u2 = random(seed ^ GOLDEN_GAMMA, row);
+				double z = Math.sqrt(-2.0 * Math.log(u1)) * Math.cos(2.0 * Math.PI * u2);
+				return Math.max(0.0, Math.min(Math.nextAfter(1.0, 0.0), 0.5 + z / 6.0));
+			case SKEWED:
+				return Math.pow(random(seed, row), skew);
+			case SEQUENCE:
+				return rows > 0 ? (double) (row % rows) / rows : 0.0;
+			case CONSTANT:
+				return 0.0;
+			default:
+				return random(seed, row);
+		}
+	}
+
+	/**
+	 * @param seed The seed
+	 * @param index The index of the number in the sequence of the seed
+	 * @return A pseudo random number between 0 (inclusive) and 1 (exclusive)
+	 */
+	static double random(long seed, long index) {
+		return (hash(seed, index) >>> 11) * 0x1.0p-53;
+	}
+
+	/**
+	 * Hash of the SplitMix64 generator, well distributed even for consecutive indexes
+	 *
+	 * @param seed The seed
+	 * @param index The index of the number in the sequence of the seed
+	 * @return A pseudo random number
+	 */
+	static long hash(long seed, long index) {
+		long z = seed + (index + 1) * GOLDEN_GAMMA;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * @param seed The seed
+	 * @param name A table or column name
+	 * @return The seed of the table or column, independent of the other names
+	 */
+	static long derive(long seed, String name) {
+		return hash(seed, name.toUpperCase().hashCode());
+	}
+}
@@ -0,0 +1,84 @@
+package com.lotaris.maven.plugin.dbunit.generate;
+
+/**
+ * Generation settings of the tables matching a name pattern: the number of rows
+ * and how the rows reference the rows of their parent tables.
+ *
+ * @author Laurent Prévost <laurent.prevost@lotaris.com>
+ */
+public class TableGeneration {
+	/**
+	 * Regular expression matching the table names
+	 */
+	private String name;
+
+	/**
+	 * Number of rows, the default number of rows when not set
+	 */
+	private Long rows;
+
+	/**
+	 * Number of rows per row of the first parent table, used when rows is not set
+	 */
+	private Double rowsPerParent;
+
+	/**
+	 * How the parent rows are chosen, see {@link Distribution}
+	 */
+	private String references = Distribution.UNIFORM.name();
+
+	/**
+	 * Exponent of the skewed distribution of the references
+	 */
+	private double skew = Distribution.DEFAULT_SKEW;
+
+	//<editor-fold defaultstate="collapsed" desc="Getters & Setters">
+	public String getName() {
+		return name;
+	}
+
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	public Long getRows() {
+		return rows;
+	}
+
+	public void setRows(Long rows) {
+		this.rows = rows;
+	}
+
+	public Double getRowsPerParent() {
+		return rowsPerParent;
+	}
+
+	public void setRowsPerParent(Double rowsPerParent) {
+		this.rowsPerParent = rowsPerParent;
+	}
+
+	public String getReferences() {
+		return references;
+	}
+
+	public void setReferences(String references) {
+		this.references = references;
+	}
+
+	public double getSkew() {
+		return skew;
+	}
+
+	public void setSkew(double skew) {
+		this.skew = skew;
+	}
+	//</editor-fold>
+
+	/**
+	 * @param tableName The table name
+	 * @return True if the settings apply to the table, ignoring the case
+	 */
+	public boolean matches(String tableName) {
+		return name == null || tableName.toUpperCase().matches(name.toUpperCase());
+	}
+}
@@ -1,14 +1,38 @@
 package com.lotaris.maven.plugin.dbunit.model;
 
+import java.io.Serializable;
+
 /**
  * Represent a column information
  * 
  * @author Laurent Prévost <laurent.prevost@lotaris.com>
  */
-public class UnitColumn implements Comparable<UnitColumn> {
+public class UnitColumn implements Comparable<UnitColumn>, Serializable {
+	private static final long serialVersionUID = 1L;
 	
 	private String columnName;
 	
+	/**
+	 * SQL type from {@link java.sql.Types}
+	 */
+	private int sqlType;
+	
+	private String typeName;
+	
+	private int size;
+	
+	private boolean nullable = true;
+	
+	/**
+	 * Position of the column in the table, starting at 1
+	 */
+	private int position;
+	
+	/**
+	 * Position of the column in the primary key, starting at 1, 0 when not part of it
+	 */
+	private int primaryKeySequence;
+	
 	//<editor-fold defaultstate="collapsed" desc="Constructors">
 	/**
 	 * Constructor
@@ -17,6 +41,24 @@ public class UnitColumn implements Comparable<UnitColumn> {
 	public UnitColumn(String columName) {
 		this.columnName = columName;
 	}
+	
+	/**
+	 * Constructor
+	 * @param columnName The column name
+	 * @param sqlType The SQL type from {@link java.sql.Types}
+	 * @param typeName The database type name
+	 * @param size The column size
+	 * @param nullable True if the column accepts null values
+	 * @param position The position of the column in the table
+	 */
+	public UnitColumn(String columnName, int sqlType, String typeName, int size, boolean nullable, int position) {
+		this.columnName = columnName;
+		this.sqlType = sqlType;
+		this.typeName = typeName;
+		this.size = size;
+		this.nullable = nullable;
+		this.position = position;
+	}
 	//</editor-fold>
 
 	//<editor-fold defaultstate="collapsed" desc="Getters & Setters">
@@ -27,9 +69,62 @@ public class UnitColumn implements Comparable<UnitColumn> {
 	public void setColumnName(String columnName) {
 		this.columnName = columnName;
 	}
+
+	public int getSqlType() {
+		return sqlType;
+	}
+
+	public void setSqlType(int sqlType) {
+		this.sqlType = sqlType;
+	}
+
+	public String getTypeName() {
+		return typeName;
+	}
+
+	public void setTypeName(String typeName) {
+		this.typeName = typeName;
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	public void setSize(int size) {
+		this.size = size;
+	}
+
+	public boolean isNullable() {
+		return nullable;
+	}
+
+	public void setNullable(boolean nullable) {
+		this.nullable = nullable;
+	}
+
+	public int getPosition() {
+		return position;
+	}
+
+	public void setPosition(int position) {
+		this.position = position;
+	}
+
+	public int getPrimaryKeySequence() {
+		return primaryKeySequence;
+	}
+
+	public void setPrimaryKeySequence(int primaryKeySequence) {
+		this.primaryKeySequence = primaryKeySequence;
+	}
+	
+	public boolean isPrimaryKey() {
+		return primaryKeySequence > 0;
+	}
 	//</editor-fold>
 
 	//<editor-fold defaultstate="collapsed" desc="Overrides">
+	@Override
 	public int compareTo(UnitColumn o) {
 		return columnName.compareTo(o.columnName);
 	}
@@ -0,0 +1,78 @@
+package com.lotaris.maven.plugin.dbunit.model;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Represent a foreign key from a table to the table it references, with the
+ * columns in key order
+ * 
+ * @author Laurent Prévost <laurent.prevost@lotaris.com>
+ */
+public class UnitForeignKey implements Serializable {
+	private static final long serialVersionUID = 1L;
+	
+	private String name;
+	
+	private String tableName;
+	
+	private String referencedTableName;
+	
+	private List<String> columnNames = new ArrayList<>();
+	
+	private List<String> referencedColumnNames = new ArrayList<>();
+
+	//<editor-fold defaultstate="collapsed" desc="Constructors">
+	/**
+	 * Constructor
+	 * @param name The constraint name, can be null
+	 * @param tableName The table that holds the key
+	 * @param referencedTableName The table referenced by the key
+	 */
+	public UnitForeignKey(String name, String tableName, String referencedTableName) {
+		this.name = name;
+		this.tableName = tableName;
+		this.referencedTableName = referencedTableName;
+	}
+	//</editor-fold>
+
+	//<editor-fold defaultstate="collapsed" desc="Getters & Setters">
+	public String getName() {
+		return name;
+	}
+
+	public String getTableName() {
+		return tableName;
+	}
+
+	public String getReferencedTableName() {
+		return referencedTableName;
+	}
+
+	public List<String> getColumnNames() {
+		return columnNames;
+	}
+
+	public List<String> getReferencedColumnNames() {
+		return referencedColumnNames;
+	}
+	
+	/**
+	 * Add the next column pair of the key
+	 * @param columnName The column of the table
+	 * @param referencedColumnName The column of the referenced table
+	 */
+	public void addColumn(String columnName, String referencedColumnName) {
+		columnNames.add(columnName);
+		referencedColumnNames.add(referencedColumnName);
+	}
+	//</editor-fold>
+
+	//<editor-fold defaultstate="collapsed" desc="Overrides">
+	@Override
+	public String toString() {
+		return tableName + columnNames + " -> " + referencedTableName + referencedColumnNames;
+	}
+	//</editor-fold>
+}
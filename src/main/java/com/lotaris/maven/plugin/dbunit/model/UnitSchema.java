@@ -0,0 +1,78 @@
+package com.lotaris.maven.plugin.dbunit.model;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Represent the tables of a schema in catalog order, with their columns,
+ * primary keys and foreign keys
+ * 
+ * @author Laurent Prévost <laurent.prevost@lotaris.com>
+ */
+public class UnitSchema implements Serializable {
+	private static final long serialVersionUID = 1L;
+	
+	private Map<String, UnitTable> tables = new LinkedHashMap<>();
+	
+	/**
+	 * Index of the tables by upper case name for lookups that ignore the case
+	 */
+	private Map<String, UnitTable> tablesIgnoreCase = new HashMap<>();
+
+	//<editor-fold defaultstate="collapsed" desc="Getters & Setters">
+	public void addTable(UnitTable table) {
+		tables.put(table.getTableName(), table);
+		tablesIgnoreCase.put(table.getTableName().toUpperCase(), table);
+	}
+	
+	/**
+	 * @param tableName The table name, the exact case is preferred
+	 * @return The table, null if not found
+	 */
+	public UnitTable getTable(String tableName) {
+		UnitTable table = tables.get(tableName);
+		
+		if (table == null) {
+			table = tablesIgnoreCase.get(tableName.toUpperCase());
+		}
+		
+		return table;
+	}
+	
+	/**
+	 * @return The tables in catalog order
+	 */
+	public List<UnitTable> getTables() {
+		return new ArrayList<>(tables.values());
+	}
+	
+	/**
+	 * @return The table names in catalog order
+	 */
+	public List<String> getTableNames() {
+		return new ArrayList<>(tables.keySet());
+	}
+	//</editor-fold>
+	
+	/**
+	 * @param tableName The referenced table
+	 * @return The foreign keys of the other tables that reference the given table
+	 */
+	public List<UnitForeignKey> getReferencingKeys(String tableName) {
+		List<UnitForeignKey> keys = new ArrayList<>();
+		
+		for (UnitTable table : tables.values()) {
+			for (UnitForeignKey fk : table.getForeignKeys()) {
+				if (fk.getReferencedTableName().equalsIgnoreCase(tableName)) {
+					keys.add(fk);
+				}
+			}
+		}
+		
+		return keys;
+	}
+}
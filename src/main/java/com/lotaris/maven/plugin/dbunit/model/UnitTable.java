@@ -1,5 +1,12 @@
 package com.lotaris.maven.plugin.dbunit.model;
 
+import com.lotaris.maven.plugin.dbunit.database.Dialect;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
 import org.dbunit.ant.Query;
@@ -9,11 +16,30 @@ import org.dbunit.ant.Query;
  * 
  * @author Laurent Prevost <laurent.prevost@lotaris.com>
  */
-public class UnitTable {
+public class UnitTable implements Serializable {
+	private static final long serialVersionUID = 1L;
+	
 	private String tableName;
 	
 	private Set<UnitColumn> columns = new TreeSet<>(); 
 	
+	private List<UnitForeignKey> foreignKeys = new ArrayList<>();
+	
+	/**
+	 * Condition of the extracted rows, null to extract all the rows
+	 */
+	private String rowFilter;
+	
+	/**
+	 * Maximum number of extracted rows, 0 to extract all the rows
+	 */
+	private long maxRows;
+	
+	/**
+	 * Dialect of the row limit
+	 */
+	private Dialect dialect = Dialect.GENERIC;
+	
 	//<editor-fold defaultstate="collapsed" desc="Constructors">
 	public UnitTable(String tableName) {
 		this.tableName = tableName;
@@ -32,6 +58,76 @@ public class UnitTable {
 	public void addColumn(String columnName) {
 		columns.add(new UnitColumn(columnName));
 	}
+	
+	public void addColumn(UnitColumn column) {
+		columns.add(column);
+	}
+
+	/**
+	 * @return The columns ordered alphabetically
+	 */
+	public Set<UnitColumn> getColumns() {
+		return columns;
+	}
+	
+	/**
+	 * @param columnName The column name
+	 * @return The column, null if the table has no such column
+	 */
+	public UnitColumn getColumn(String columnName) {
+		for (UnitColumn uc : columns) {
+			if (uc.getColumnName().equals(columnName)) {
+				return uc;
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * @return The columns of the primary key in key order, empty when the table has no primary key
+	 */
+	public List<UnitColumn> getPrimaryKeyColumns() {
+		List<UnitColumn> primaryKey = new ArrayList<>();
+		for (UnitColumn uc : columns) {
+			if (uc.isPrimaryKey()) {
+				primaryKey.add(uc);
+			}
+		}
+		
+		Collections.sort(primaryKey, new Comparator<UnitColumn>() {
+			@Override
+			public int compare(UnitColumn o1, UnitColumn o2) {
+				return Integer.compare(o1.getPrimaryKeySequence(), o2.getPrimaryKeySequence());
+			}
+		});
+		
+		return primaryKey;
+	}
+
+	/**
+	 * @return The foreign keys held by this table
+	 */
+	public List<UnitForeignKey> getForeignKeys() {
+		return foreignKeys;
+	}
+	
+	public void addForeignKey(UnitForeignKey foreignKey) {
+		foreignKeys.add(foreignKey);
+	}
+	
+	/**
+	 * @return The condition of the extracted rows, null for all the rows
+	 */
+	public String getRowFilter() {
+		return rowFilter;
+	}
+	
+	/**
+	 * @return The maximum number of extracted rows, 0 for all the rows
+	 */
+	public long getMaxRows() {
+		return maxRows;
+	}
 	//</editor-fold>
 	
 	//<editor-fold defaultstate="collapsed" desc="Overrides">
@@ -43,16 +139,121 @@ public class UnitTable {
 			sb.append(uc).append(", ");
 		}
 		
-		return tableName + "[" + sb.toString().replaceAll(", $", "") + "]";
+		return tableName + "[" + sb.toString().replaceAll(", $", "") + "]"
+			+ (rowFilter != null ? " WHERE " + rowFilter : "") + (maxRows > 0 ? " LIMIT " + maxRows : "");
 	}
 	//</editor-fold>
 	
+	/**
+	 * Restrict the extraction of the table to some of its columns and rows. The
+	 * conditions are pushed into the queries built for the table, so the other
+	 * columns and rows are not read from the database.
+	 * 
+	 * @param columns The columns to extract, in any order
+	 * @param rowFilter The condition of the extracted rows, null for all the rows
+	 * @param maxRows The maximum number of extracted rows, 0 for all the rows
+	 * @param dialect The dialect of the row limit
+	 * @return A copy of the table restricted to the columns and rows
+	 */
+	public UnitTable restrict(Collection<UnitColumn> columns, String rowFilter, long maxRows, Dialect dialect) {
+		UnitTable table = new UnitTable(tableName);
+		table.columns.addAll(columns);
+		table.foreignKeys = foreignKeys;
+		table.rowFilter = rowFilter;
+		table.maxRows = maxRows;
+		table.dialect = dialect;
+		
+		return table;
+	}
+	
 	/**
 	 * Build the query to extract the data with the insurance
 	 * that the columns are always alphabetically ordered.
 	 * @return The query ready for DB Unit
 	 */
 	public Query buildExtractQuery() {
+		String sql = buildSelect().toString();
+		
+		if (maxRows > 0) {
+			sql = dialect.limit(sql, maxRows);
+		}
+		
+		Query query = new Query();
+		query.setName(tableName);
+		query.setSql(sql + ";");
+			
+		return query;
+	}
+	
+	/**
+	 * Build the query to extract the rows of a table chunk by chunk, in primary key
+	 * order. Each chunk starts after the key of the last row of the previous chunk,
+	 * so the database seeks directly to it through the primary key index. The key
+	 * values are bound in order for each alternative of the condition: k1, then k1
+	 * and k2, and so on. The columns are ordered alphabetically like the extract query.
+	 * 
+	 * @param first True for the first chunk, which has no key to start after
+	 * @return The SQL of the chunk query
+	 */
+	public String buildChunkQuery(boolean first) {
+		List<UnitColumn> primaryKey = getPrimaryKeyColumns();
+		
+		StringBuilder sb = buildSelect();
+		
+		// (k1 > ?) OR (k1 = ? AND k2 > ?) OR ...
+		if (!first) {
+			appendWhere(sb).append("(");
+			for (int i = 0; i < primaryKey.size(); i++) {
+				sb.append(i > 0 ? " OR (" : "(");
+				for (int j = 0; j < i; j++) {
+					sb.append(primaryKey.get(j)).append(" = ? AND ");
+				}
+				sb.append(primaryKey.get(i)).append(" > ?)");
+			}
+			sb.append(")");
+		}
+		
+		sb.append(" ORDER BY ");
+		for (int i = 0; i < primaryKey.size(); i++) {
+			sb.append(i > 0 ? ", " : "").append(primaryKey.get(i));
+		}
+		
+		return sb.toString();
+	}
+	
+	/**
+	 * Build the query to extract a range of the single column primary key of a
+	 * table, in key order. The bounds are bound in order, the lower bound being
+	 * inclusive and the upper bound exclusive, so consecutive ranges do not overlap.
+	 * 
+	 * @param lower True if the range has a lower bound, false for the first range
+	 * @param upper True if the range has an upper bound, false for the last range
+	 * @return The SQL of the range query
+	 */
+	public String buildRangeQuery(boolean lower, boolean upper) {
+		UnitColumn key = getPrimaryKeyColumns().get(0);
+		
+		StringBuilder sb = buildSelect();
+		
+		if (lower || upper) {
+			appendWhere(sb);
+			if (lower) {
+				sb.append(key).append(" >= ?");
+			}
+			if (upper) {
+				sb.append(lower ? " AND " : "").append(key).append(" < ?");
+			}
+		}
+		
+		sb.append(" ORDER BY ").append(key);
+		
+		return sb.toString();
+	}
+	
+	/**
+	 * @return The select clause of the columns in alphabetical order, the from clause and the row filter
+	 */
+	private StringBuilder buildSelect() {
 		StringBuilder sb = new StringBuilder("SELECT ");
 		
 		for (UnitColumn uc : columns) {
@@ -61,12 +262,20 @@ public class UnitTable {
 		int length = sb.length();
 		sb.delete(length - 2, length);
 		
-		sb.append(" FROM ").append(tableName).append(";");
+		sb.append(" FROM ").append(tableName);
 		
-		Query query = new Query();
-		query.setName(tableName);
-		query.setSql(sb.toString());
-			
-		return query;
+		if (rowFilter != null) {
+			sb.append(" WHERE (").append(rowFilter).append(")");
+		}
+		
+		return sb;
+	}
+	
+	/**
+	 * @param sb The select built by {@link #buildSelect()}
+	 * @return The select ready for a condition combined with the row filter
+	 */
+	private StringBuilder appendWhere(StringBuilder sb) {
+		return sb.append(rowFilter != null ? " AND " : " WHERE ");
 	}
 }
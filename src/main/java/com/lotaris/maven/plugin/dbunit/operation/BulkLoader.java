@@ -0,0 +1,145 @@
+package com.lotaris.maven.plugin.dbunit.operation;
+
+import com.lotaris.maven.plugin.dbunit.database.Dialect;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+import org.dbunit.dataset.Column;
+
+/**
+ * Native bulk load of the rows of a table with the fastest path of the database,
+ * instead of INSERT statements. The rows of a table are first written in a CSV
+ * file which the loader then hands over to the database:
+ * <ul>
+ * <li>one row per line, the lines end with \n</li>
+ * <li>the values are separated by a comma and written in UTF-8</li>
+ * <li>each value is enclosed in double quotes, the double quotes of the value are doubled</li>
+ * <li>the null values are written unquoted as the {@link #getNullText() null text}</li>
+ * </ul>
+ * The values are converted to the data types of the database columns before
+ * they are {@link #format(java.lang.Object) formatted}.
+ *
+ * Custom loaders extend this class and are configured by their class name.
+ *
+ * @author Laurent Prévost <laurent.prevost@lotaris.com>
+ */
+public abstract class BulkLoader {
+	/**
+	 * Loader chosen from the database dialect
+	 */
+	public static final String AUTO = "auto";
+
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	/**
+	 * Create a loader from its name or from the class name of a custom implementation
+	 *
+	 * @param name The name of the loader, {@link #AUTO} for the loader of the dialect
+	 * @param dialect The dialect of the database
+	 * @return The loader created, null when the dialect has no bulk loader
+	 * @throws Exception When a custom loader cannot be instantiated
+	 */
+	public static BulkLoader create(String name, Dialect dialect) throws Exception {
+		if (name != null && !AUTO.equals(name)) {
+			return (BulkLoader) Class.forName(name).getDeclaredConstructor().newInstance();
+		}
+
+		switch (dialect) {
+			case POSTGRESQL:
+				return new PostgreSqlBulkLoader();
+			case MYSQL:
+				return new MySqlBulkLoader();
+			case H2:
+				return new H2BulkLoader();
+			case HSQLDB:
+				return new HsqldbBulkLoader();
+			default:
+				return null;
+		}
+	}
+
+	/**
+	 * @param connection The connection
+	 * @return False if the rows cannot be bulk loaded through this connection, for
+	 * example when the database cannot read the files of the client
+	 * @throws SQLException When the connection cannot be inspected
+	 */
+	public abstract boolean supports(Connection connection) throws SQLException;
+
+	/**
+	 * Create the CSV file receiving the rows of a table, a temporary file by default
+	 *
+	 * @param connection The connection
+	 * @param tableName The table, qualified and escaped as configured
+	 * @return The file, deleted once the table is loaded
+	 * @throws SQLException When the connection cannot be inspected
+	 * @throws IOException When the file cannot be created
+	 */
+	public File createFile(Connection connection, String tableName) throws SQLException, IOException {
+		return File.createTempFile("dbunit-bulk-", ".csv");
+	}
+
+	/**
+	 * Load the rows of a table
+	 *
+	 * @param connection The connection
+	 * @param tableName The table, qualified and escaped as configured, to use as is in the statements
+	 * @param columns The columns of the CSV file, in the order of the values, their names escaped as configured
+	 * @param file The CSV file
+	 * @return The number of rows loaded, compared with the number of rows of the file
+	 * so the rows rejected by the database are not silently dropped
+	 * @throws SQLException When the rows cannot be loaded
+	 * @throws IOException When the file cannot be read
+	 */
+	public abstract long load(Connection connection, String tableName, Column[] columns, File file) throws SQLException, IOException;
+
+	/**
+	 * @return The unquoted text of the null values, empty by default
+	 */
+	public String getNullText() {
+		return "";
+	}
+
+	/**
+	 * @param value A value converted to the data type of its column, not null
+	 * @return The text of the value in the CSV file, before it is quoted
+	 */
+	public String format(Object value) {
+		if (value instanceof byte[]) {
+			return toHex((byte[]) value);
+		}
+		else if (value instanceof BigDecimal) {
+			return ((BigDecimal) value).toPlainString();
+		}
+		else {
+			return value.toString();
+		}
+	}
+
+	/**
+	 * @param columns The columns
+	 * @return The column names separated by commas
+	 */
+	protected static String joinColumnNames(Column[] columns) {
+		StringBuilder sb = new StringBuilder();
+		for (Column column : columns) {
+			sb.append(sb.length() > 0 ? ", " : "").append(column.getColumnName());
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * @param bytes The bytes
+	 * @return The bytes in lower case hexadecimal
+	 */
+	protected static String toHex(byte[] bytes) {
+		char[] chars = new char[bytes.length * 2];
+		for (int i = 0; i < bytes.length; i++) {
+			chars[2 * i] = HEX[(bytes[i] >> 4) & 0xF];
+			chars[2 * i + 1] = HEX[bytes[i] & 0xF];
+		}
+		return new String(chars);
+	}
+}
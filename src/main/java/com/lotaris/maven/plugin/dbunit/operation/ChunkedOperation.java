@@ -0,0 +1,198 @@
+package com.lotaris.maven.plugin.dbunit.operation;
+
+import java.sql.Connection;
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.DefaultDataSet;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.ITableIterator;
+import org.dbunit.dataset.ITableMetaData;
+import org.dbunit.dataset.RowOutOfBoundsException;
+import org.dbunit.operation.DatabaseOperation;
+
+/**
+ * Apply an operation to the rows of the tables by chunks, committing after
+ * each chunk. This bounds the size of the transactions without paying a commit
+ * per row.
+ *
+ * When auto tuning is enabled, the throughput of the first chunks is measured
+ * and the chunk size is doubled as long as the throughput improves by at least
+ * 10%, then kept at the best size measured.
+ *
+ * @author Laurent Prévost <laurent.prevost@lotaris.com>
+ */
+public class ChunkedOperation {
+	/**
+	 * Chunk size used when auto tuning without a commit interval
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 1000;
+
+	/**
+	 * Upper bound of the auto tuned chunk size
+	 */
+	private static final int MAX_CHUNK_SIZE = 100000;
+
+	/**
+	 * Minimum throughput gain to keep increasing the chunk size
+	 */
+	private static final double MIN_GAIN = 1.1;
+
+	private int chunkSize;
+
+	private boolean tuning;
+
+	private int bestChunkSize;
+
+	private double bestRate = 0;
+
+	//<editor-fold defaultstate="collapsed" desc="Constructors">
+	/**
+	 * Constructor
+	 *
+	 * @param commitInterval The number of rows per transaction, 0 for the default size
+	 * @param autoTune True to adjust the number of rows per transaction to the measured throughput
+	 */
+	public ChunkedOperation(int commitInterval, boolean autoTune) {
+		this.chunkSize = commitInterval > 0 ? commitInterval : DEFAULT_CHUNK_SIZE;
+		this.bestChunkSize = chunkSize;
+		this.tuning = autoTune;
+	}
+	//</editor-fold>
+
+	/**
+	 * @return The current number of rows per transaction
+	 */
+	public synchronized int getChunkSize() {
+		return chunkSize;
+	}
+
+	/**
+	 * Apply an operation type to a data set. Deletions are applied on the tables
+	 * in reverse order, writes in data set order.
+	 *
+	 * @param connection The connection
+	 * @param operation The operation
+	 * @param dataSet The data set
+	 * @throws Exception When the operation fails, the current chunk is rolled back
+	 */
+	public void execute(IDatabaseConnection connection, ImportOperation operation, IDataSet dataSet) throws Exception {
+		Connection con = connection.getConnection();
+		boolean autoCommit = con.getAutoCommit();
+
+		try {
+			con.setAutoCommit(false);
+
+			DatabaseOperation deleteOperation = operation.getDeleteOperation();
+			if (deleteOperation == DatabaseOperation.DELETE_ALL) {
+				deleteOperation.execute(connection, dataSet);
+				con.commit();
+			}
+			else if (deleteOperation != null) {
+				for (ITableIterator it = dataSet.reverseIterator(); it.next();) {
+					execute(connection, deleteOperation, it.getTable());
+				}
+			}
+
+			if (operation.getWriteOperation() != null) {
+				for (ITableIterator it = dataSet.iterator(); it.next();) {
+					execute(connection, operation.getWriteOperation(), it.getTable());
+				}
+			}
+		}
+		catch (Exception e) {
+			con.rollback();
+			throw e;
+		}
+		finally {
+			con.setAutoCommit(autoCommit);
+		}
+	}
+
+	/**
+	 * Apply an operation to a table chunk by chunk. The connection must not be in
+	 * auto commit mode.
+	 *
+	 * @param connection The connection
+	 * @param operation The operation
+	 * @param table The table
+	 * @throws Exception When the operation fails
+	 */
+	public void execute(IDatabaseConnection connection, DatabaseOperation operation, ITable table) throws Exception {
+		int rowCount = table.getRowCount();
+
+		int offset = 0;
+		do {
+			int size = Math.min(getChunkSize(), rowCount - offset);
+
+			long start = System.nanoTime();
+			operation.execute(connection, new DefaultDataSet(new RowRangeTable(table, offset, size)));
+			connection.getConnection().commit();
+			measure(size, System.nanoTime() - start);
+
+			offset += size;
+		}
+		while (offset < rowCount);
+	}
+
+	/**
+	 * Adjust the chunk size with the throughput of a chunk
+	 *
+	 * @param rows The number of rows of the chunk
+	 * @param time The time taken by the chunk in ns
+	 */
+	private synchronized void measure(int rows, long time) {
+		// Partial chunks are not representative
+		if (!tuning || rows < chunkSize || time <= 0) {
+			return;
+		}
+
+		double rate = rows * 1e9 / time;
+
+		if (rate >= bestRate * MIN_GAIN && chunkSize < MAX_CHUNK_SIZE) {
+			bestRate = rate;
+			bestChunkSize = chunkSize;
+			chunkSize = Math.min(chunkSize * 2, MAX_CHUNK_SIZE);
+		}
+		else {
+			if (rate >= bestRate) {
+				bestChunkSize = chunkSize;
+			}
+			chunkSize = bestChunkSize;
+			tuning = false;
+		}
+	}
+
+	/**
+	 * View on a range of rows of a table
+	 */
+	private static class RowRangeTable implements ITable {
+		private final ITable table;
+		private final int offset;
+		private final int size;
+
+		public RowRangeTable(ITable table, int offset, int size) {
+			this.table = table;
+			this.offset = offset;
+			this.size = size;
+		}
+
+		@Override
+		public ITableMetaData getTableMetaData() {
+			return table.getTableMetaData();
+		}
+
+		@Override
+		public int getRowCount() {
+			return size;
+		}
+
+		@Override
+		public Object getValue(int row, String column) throws DataSetException {
+			if (row < 0 || row >= size) {
+				throw new RowOutOfBoundsException(row + " > " + size);
+			}
+			return table.getValue(offset + row, column);
+		}
+	}
+}
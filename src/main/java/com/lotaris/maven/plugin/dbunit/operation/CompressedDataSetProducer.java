@@ -0,0 +1,91 @@
+package com.lotaris.maven.plugin.dbunit.operation;
+
+import com.lotaris.maven.plugin.dbunit.util.Compression;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import org.dbunit.ant.AbstractStep;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.excel.XlsDataSet;
+import org.dbunit.dataset.stream.DataSetProducerAdapter;
+import org.dbunit.dataset.stream.IDataSetConsumer;
+import org.dbunit.dataset.stream.IDataSetProducer;
+import org.dbunit.dataset.xml.FlatDtdProducer;
+import org.dbunit.dataset.xml.FlatXmlProducer;
+import org.dbunit.dataset.xml.XmlProducer;
+import org.xml.sax.InputSource;
+
+/**
+ * Read a compressed data set file with the DB Unit producers, decompressing it
+ * while it is parsed. The file is opened each time the data set is produced and
+ * closed once done. The producers are configured like the DB Unit steps do.
+ *
+ * @author Laurent Prévost <laurent.prevost@lotaris.com>
+ */
+public class CompressedDataSetProducer implements IDataSetProducer {
+	private final File src;
+
+	private final String format;
+
+	private IDataSetConsumer consumer;
+
+	//<editor-fold defaultstate="collapsed" desc="Constructors">
+	/**
+	 * Constructor
+	 *
+	 * @param src The compressed file
+	 * @param format The format of the file once decompressed: flat, xml, dtd or xls
+	 */
+	public CompressedDataSetProducer(File src, String format) {
+		this.src = src;
+		this.format = format;
+	}
+	//</editor-fold>
+
+	/**
+	 * @param format The format to check
+	 * @return True if a compressed file of this format can be read
+	 */
+	public static boolean isSupportedFormat(String format) {
+		return AbstractStep.FORMAT_FLAT.equalsIgnoreCase(format) || AbstractStep.FORMAT_XML.equalsIgnoreCase(format)
+			|| AbstractStep.FORMAT_DTD.equalsIgnoreCase(format) || AbstractStep.FORMAT_XLS.equalsIgnoreCase(format);
+	}
+
+	//<editor-fold defaultstate="collapsed" desc="Overrides">
+	@Override
+	public void setConsumer(IDataSetConsumer consumer) throws DataSetException {
+		this.consumer = consumer;
+	}
+
+	@Override
+	public void produce() throws DataSetException {
+		try (InputStream in = Compression.open(src)) {
+			IDataSetProducer producer = createProducer(in);
+			producer.setConsumer(consumer);
+			producer.produce();
+		}
+		catch (IOException e) {
+			throw new DataSetException("Unable to read the compressed data set " + src, e);
+		}
+	}
+	//</editor-fold>
+
+	private IDataSetProducer createProducer(InputStream in) throws IOException, DataSetException {
+		// The system id resolves the DTD relative to the file
+		InputSource source = new InputSource(in);
+		source.setSystemId(src.toURI().toString());
+
+		switch (format.toLowerCase()) {
+			case AbstractStep.FORMAT_FLAT:
+				return new FlatXmlProducer(source, true, true);
+			case AbstractStep.FORMAT_XML:
+				return new XmlProducer(source);
+			case AbstractStep.FORMAT_DTD:
+				return new FlatDtdProducer(source);
+			case AbstractStep.FORMAT_XLS:
+				return new DataSetProducerAdapter(new XlsDataSet(in));
+			default:
+				throw new IllegalArgumentException("The format '" + format + "' cannot be read from a compressed file");
+		}
+	}
+}
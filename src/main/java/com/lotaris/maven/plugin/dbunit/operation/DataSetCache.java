@@ -0,0 +1,132 @@
+package com.lotaris.maven.plugin.dbunit.operation;
+
+import com.lotaris.maven.plugin.dbunit.binary.BinaryDataSetWriter;
+import com.lotaris.maven.plugin.dbunit.binary.BinaryFormat;
+import com.lotaris.maven.plugin.dbunit.util.Digests;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import org.dbunit.DatabaseUnitException;
+import org.dbunit.dataset.stream.IDataSetProducer;
+
+/**
+ * On disk cache of the parsed data set files. The first time a file is applied,
+ * it is parsed once and stored in the binary format; the next times the binary
+ * form is memory mapped instead of parsing the file again. An entry is identified
+ * by the content of the file, its format, the data type factory and the version
+ * of the binary format, so a changed file gets a new entry and the stale ones are
+ * simply no longer used. The binary form keeps the values absent from the file,
+ * like the {@code <none/>} values of the xml format, so the operation leaves
+ * their columns out exactly as it does when the file is parsed.
+ *
+ * @author Laurent Prévost <laurent.prevost@lotaris.com>
+ */
+public class DataSetCache {
+	private final File directory;
+
+	private final String dataTypeFactoryName;
+
+	private int hits;
+
+	private int misses;
+
+	//<editor-fold defaultstate="collapsed" desc="Constructors">
+	/**
+	 * Constructor
+	 *
+	 * @param directory The directory where the entries are stored
+	 * @param dataTypeFactoryName The data type factory the data sets are applied with
+	 */
+	public DataSetCache(File directory, String dataTypeFactoryName) {
+		this.directory = directory;
+		this.dataTypeFactoryName = dataTypeFactoryName;
+	}
+	//</editor-fold>
+
+	//<editor-fold defaultstate="collapsed" desc="Getters & Setters">
+	/**
+	 * @return The number of files taken from the cache
+	 */
+	public int getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return The number of files parsed and stored in the cache
+	 */
+	public int getMisses() {
+		return misses;
+	}
+	//</editor-fold>
+
+	/**
+	 * Get the binary form of a data set file, parsing the file when it is not cached yet
+	 *
+	 * @param src The data set file
+	 * @param format The format of the file
+	 * @return The binary file of the cache entry, or the file itself when it is already
+	 * binary or when it is not a single file (csv directory)
+	 * @throws DatabaseUnitException When the file cannot be read or the entry cannot be written
+	 */
+	public File get(File src, String format) throws DatabaseUnitException {
+		if (BinaryFormat.isBinary(format) || !src.isFile()) {
+			return src;
+		}
+
+		File file;
+		try {
+			String key = Digests.sha1Hex(src) + "|" + format.toLowerCase() + "|" + dataTypeFactoryName + "|" + BinaryFormat.VERSION;
+			file = new File(directory, Digests.sha1Hex(key) + ".bin");
+		}
+		catch (IOException e) {
+			throw new DatabaseUnitException("Unable to read the data set " + src, e);
+		}
+
+		if (file.isFile()) {
+			hits++;
+			return file;
+		}
+
+		put(src, format, file);
+		misses++;
+		return file;
+	}
+
+	/**
+	 * Parse a data set file and store its binary form
+	 *
+	 * @param src The data set file
+	 * @param format The format of the file
+	 * @param file The file of the entry
+	 * @throws DatabaseUnitException When the file cannot be read or the entry cannot be written
+	 */
+	private void put(File src, String format, File file) throws DatabaseUnitException {
+		File tmp = null;
+		try {
+			directory.mkdirs();
+
+			// Write in a temporary file first to never leave a partial entry, even
+			// when several builds share the directory
+			tmp = File.createTempFile(file.getName(), ".tmp", directory);
+			try (OutputStream out = new BufferedOutputStream(new FileOutputStream(tmp), 64 * 1024)) {
+				IDataSetProducer producer = DataSetLoader.produce(src, format);
+				producer.setConsumer(new BinaryDataSetWriter(out));
+				producer.produce();
+			}
+
+			Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		catch (IOException e) {
+			throw new DatabaseUnitException("Unable to write the data set cache entry of " + src, e);
+		}
+		finally {
+			if (tmp != null) {
+				tmp.delete();
+			}
+		}
+	}
+}
@@ -0,0 +1,135 @@
+package com.lotaris.maven.plugin.dbunit.operation;
+
+import com.lotaris.maven.plugin.dbunit.binary.BinaryDataSetProducer;
+import com.lotaris.maven.plugin.dbunit.binary.BinaryFormat;
+import com.lotaris.maven.plugin.dbunit.util.Compression;
+import java.io.File;
+import java.io.IOException;
+import org.dbunit.DatabaseUnitException;
+import org.dbunit.dataset.CachedDataSet;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.csv.CsvProducer;
+import org.dbunit.dataset.excel.XlsDataSet;
+import org.dbunit.dataset.stream.DataSetProducerAdapter;
+import org.dbunit.dataset.stream.IDataSetProducer;
+import org.dbunit.dataset.stream.StreamingDataSet;
+import org.dbunit.dataset.xml.FlatDtdProducer;
+import org.dbunit.dataset.xml.FlatXmlProducer;
+import org.dbunit.dataset.xml.XmlProducer;
+import org.dbunit.util.FileHelper;
+
+/**
+ * Read the data set files exactly like the DB Unit operation does, for the
+ * import engines that apply the data sets themselves.
+ * 
+ * @author Laurent Prévost <laurent.prevost@lotaris.com>
+ */
+public final class DataSetLoader {
+	private DataSetLoader() {}
+	
+	/**
+	 * Read a data set file, decompressing it while it is read when it is compressed
+	 * 
+	 * @param src The file
+	 * @param format The format of the file
+	 * @param forwardOnly True to get a data set that can only be iterated once, row by row
+	 * @return The data set
+	 * @throws DatabaseUnitException When the file cannot be read
+	 */
+	public static IDataSet load(File src, String format, boolean forwardOnly) throws DatabaseUnitException {
+		if (BinaryFormat.isBinary(format)) {
+			BinaryDataSetProducer producer = new BinaryDataSetProducer(src);
+			return forwardOnly ? new StreamingDataSet(producer) : new CachedDataSet(producer);
+		}
+		
+		if (isCompressed(src)) {
+			if (!CompressedDataSetProducer.isSupportedFormat(format)) {
+				throw new DatabaseUnitException("The format '" + format + "' cannot be read from the compressed file " + src);
+			}
+			
+			CompressedDataSetProducer producer = new CompressedDataSetProducer(src, format);
+			return forwardOnly ? new StreamingDataSet(producer) : new CachedDataSet(producer);
+		}
+		
+		if ("xls".equalsIgnoreCase(format)) {
+			try {
+				return new CachedDataSet(new XlsDataSet(src));
+			}
+			catch (IOException e) {
+				throw new DatabaseUnitException("Unable to read the data set " + src, e);
+			}
+		}
+		
+		IDataSetProducer producer = createProducer(src, format);
+		return forwardOnly ? new StreamingDataSet(producer) : new CachedDataSet(producer);
+	}
+	
+	/**
+	 * Create a producer that reads a data set file row by row without keeping the
+	 * tables in memory
+	 * 
+	 * @param src The file
+	 * @param format The format of the file
+	 * @return The producer
+	 * @throws DatabaseUnitException When the file cannot be read
+	 */
+	public static IDataSetProducer produce(File src, String format) throws DatabaseUnitException {
+		switch (format.toLowerCase()) {
+			case "flat":
+				return new StaxFlatXmlProducer(src);
+			case BinaryFormat.FORMAT:
+				return new BinaryDataSetProducer(src);
+			case "xml":
+				if (isCompressed(src)) {
+					return new CompressedDataSetProducer(src, format);
+				}
+				
+				return createProducer(src, format);
+			default:
+				return new DataSetProducerAdapter(load(src, format, true));
+		}
+	}
+
+	/**
+	 * Create the DB Unit producer of a format, configured like the DB Unit
+	 * operation does
+	 * 
+	 * @param src The file
+	 * @param format The format of the file: flat, xml, csv or dtd
+	 * @return The producer
+	 * @throws DatabaseUnitException When the file cannot be read or the format is unknown
+	 */
+	private static IDataSetProducer createProducer(File src, String format) throws DatabaseUnitException {
+		try {
+			switch (format.toLowerCase()) {
+				case "flat":
+					return new FlatXmlProducer(FileHelper.createInputSource(src), true, true);
+				case "xml":
+					return new XmlProducer(FileHelper.createInputSource(src));
+				case "csv":
+					return new CsvProducer(src);
+				case "dtd":
+					return new FlatDtdProducer(FileHelper.createInputSource(src));
+				default:
+					throw new DatabaseUnitException("Type must be either 'flat'(default), 'xml', 'csv', 'xls', 'dtd' or 'binary' but was: " + format);
+			}
+		}
+		catch (IOException e) {
+			throw new DatabaseUnitException("Unable to read the data set " + src, e);
+		}
+	}
+	
+	/**
+	 * @param src The file to check
+	 * @return True if the file is compressed
+	 * @throws DatabaseUnitException When the file cannot be read
+	 */
+	public static boolean isCompressed(File src) throws DatabaseUnitException {
+		try {
+			return Compression.isCompressed(src);
+		}
+		catch (IOException e) {
+			throw new DatabaseUnitException("Unable to read the data set " + src, e);
+		}
+	}
+}
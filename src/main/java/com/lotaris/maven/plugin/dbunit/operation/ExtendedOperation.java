@@ -0,0 +1,31 @@
+package com.lotaris.maven.plugin.dbunit.operation;
+
+import com.lotaris.maven.plugin.dbunit.binary.BinaryFormat;
+import java.io.File;
+import org.dbunit.DatabaseUnitException;
+import org.dbunit.ant.Operation;
+import org.dbunit.dataset.IDataSet;
+
+/**
+ * DB Unit operation that also reads the data set formats added by the plugin
+ * and the compressed data set files
+ *
+ * @author Laurent Prévost <laurent.prevost@lotaris.com>
+ */
+public class ExtendedOperation extends Operation {
+	//<editor-fold defaultstate="collapsed" desc="Overrides">
+	@Override
+	public boolean isDataFormat(String format) {
+		return BinaryFormat.isBinary(format) || super.isDataFormat(format);
+	}
+
+	@Override
+	protected IDataSet getSrcDataSet(File src, String format, boolean forwardOnly) throws DatabaseUnitException {
+		if (BinaryFormat.isBinary(format) || DataSetLoader.isCompressed(src)) {
+			return DataSetLoader.load(src, format, forwardOnly);
+		}
+
+		return super.getSrcDataSet(src, format, forwardOnly);
+	}
+	//</editor-fold>
+}
@@ -0,0 +1,41 @@
+package com.lotaris.maven.plugin.dbunit.operation;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import org.dbunit.dataset.Column;
+
+/**
+ * Bulk load with the CSVREAD table function of H2, in a single INSERT ... SELECT
+ * statement. The file is read by the database, so only the embedded databases
+ * and the servers running on the same host are supported.
+ *
+ * @author Laurent Prévost <laurent.prevost@lotaris.com>
+ */
+public class H2BulkLoader extends BulkLoader {
+	@Override
+	public boolean supports(Connection connection) throws SQLException {
+		String url = connection.getMetaData().getURL().toLowerCase();
+		boolean remote = url.startsWith("jdbc:h2:tcp:") || url.startsWith("jdbc:h2:ssl:");
+		return !remote || url.contains("//localhost") || url.contains("//127.0.0.1");
+	}
+
+	@Override
+	public long load(Connection connection, String tableName, Column[] columns, File file) throws SQLException, IOException {
+		// Without header, the column names are given with the field separator, named by position
+		// since the values are inserted in the order of the columns and the escaped names can be quoted
+		StringBuilder header = new StringBuilder();
+		for (int i = 0; i < columns.length; i++) {
+			header.append(i > 0 ? "," : "").append("C").append(i);
+		}
+
+		String sql = "INSERT INTO " + tableName + " (" + joinColumnNames(columns) + ") SELECT * FROM CSVREAD('"
+			+ file.getAbsolutePath().replace("'", "''") + "', '" + header.toString().replace("'", "''") + "', 'charset=UTF-8')";
+
+		try (Statement statement = connection.createStatement()) {
+			return statement.executeUpdate(sql);
+		}
+	}
+}
@@ -0,0 +1,75 @@
+package com.lotaris.maven.plugin.dbunit.operation;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import org.dbunit.dataset.Column;
+
+/**
+ * Bulk load through a text table of HSQLDB: the file becomes the source of a
+ * temporary text table whose rows are copied in a single INSERT ... SELECT
+ * statement. The sources of the text tables must be in the directory of the
+ * database, so only the file databases opened in the same process are supported;
+ * the memory databases fall back to the batched inserts.
+ *
+ * @author Laurent Prévost <laurent.prevost@lotaris.com>
+ */
+public class HsqldbBulkLoader extends BulkLoader {
+	private static final String FILE_URL = "jdbc:hsqldb:file:";
+
+	@Override
+	public boolean supports(Connection connection) throws SQLException {
+		return getDatabaseDirectory(connection) != null;
+	}
+
+	@Override
+	public File createFile(Connection connection, String tableName) throws SQLException, IOException {
+		return File.createTempFile("dbunit-bulk-", ".csv", getDatabaseDirectory(connection));
+	}
+
+	@Override
+	public long load(Connection connection, String tableName, Column[] columns, File file) throws SQLException, IOException {
+		String textTable = "DBUNIT_BULK_" + tableName.replaceAll("\\W", "_");
+
+		// The values are converted by the insert, like from the parameters of a statement, the
+		// columns of the text table are named by position since the escaped names can be quoted
+		StringBuilder definition = new StringBuilder();
+		for (int i = 0; i < columns.length; i++) {
+			definition.append(i > 0 ? ", " : "").append("C").append(i).append(" LONGVARCHAR");
+		}
+
+		// The sources are quoted with single quotes since HSQLDB 2
+		String quote = connection.getMetaData().getDatabaseMajorVersion() >= 2 ? "'" : "\"";
+
+		try (Statement statement = connection.createStatement()) {
+			statement.execute("CREATE TEXT TABLE " + textTable + " (" + definition + ")");
+			try {
+				statement.execute("SET TABLE " + textTable + " SOURCE " + quote + file.getName() + ";fs=,;encoding=UTF-8" + quote);
+				return statement.executeUpdate("INSERT INTO " + tableName + " (" + joinColumnNames(columns) + ") SELECT * FROM " + textTable);
+			}
+			finally {
+				statement.execute("DROP TABLE " + textTable);
+			}
+		}
+	}
+
+	/**
+	 * @param connection The connection
+	 * @return The directory of the file database, null for the other databases
+	 * @throws SQLException When the URL cannot be read
+	 */
+	private static File getDatabaseDirectory(Connection connection) throws SQLException {
+		String url = connection.getMetaData().getURL();
+		if (url == null || !url.toLowerCase().startsWith(FILE_URL)) {
+			return null;
+		}
+
+		String path = url.substring(FILE_URL.length());
+		if (path.indexOf(';') >= 0) {
+			path = path.substring(0, path.indexOf(';'));
+		}
+		return new File(path).getAbsoluteFile().getParentFile();
+	}
+}
@@ -0,0 +1,107 @@
+package com.lotaris.maven.plugin.dbunit.operation;
+
+import org.dbunit.ext.mssql.InsertIdentityOperation;
+import org.dbunit.operation.DatabaseOperation;
+
+/**
+ * Operation type split into the operation deleting rows, applied children
+ * first, and the operation writing rows, applied parents first. This allows
+ * the import engines to apply an operation table by table.
+ *
+ * @author Laurent Prévost <laurent.prevost@lotaris.com>
+ */
+public class ImportOperation {
+	/**
+	 * Operation applied children first, can be null
+	 */
+	private DatabaseOperation deleteOperation;
+
+	/**
+	 * Operation applied parents first, can be null
+	 */
+	private DatabaseOperation writeOperation;
+
+	//<editor-fold defaultstate="collapsed" desc="Constructors">
+	/**
+	 * Constructor
+	 *
+	 * @param type The operation type, see {@link #isSupported(java.lang.String)}
+	 */
+	public ImportOperation(String type) {
+		switch (type) {
+			case "UPDATE":
+				writeOperation = DatabaseOperation.UPDATE;
+				break;
+			case "INSERT":
+				writeOperation = DatabaseOperation.INSERT;
+				break;
+			case "REFRESH":
+				writeOperation = DatabaseOperation.REFRESH;
+				break;
+			case "DELETE":
+				deleteOperation = DatabaseOperation.DELETE;
+				break;
+			case "DELETE_ALL":
+				deleteOperation = DatabaseOperation.DELETE_ALL;
+				break;
+			case "CLEAN_INSERT":
+				deleteOperation = DatabaseOperation.DELETE_ALL;
+				writeOperation = DatabaseOperation.INSERT;
+				break;
+			case "MSSQL_INSERT":
+				writeOperation = InsertIdentityOperation.INSERT;
+				break;
+			case "MSSQL_REFRESH":
+				writeOperation = InsertIdentityOperation.REFRESH;
+				break;
+			case "MSSQL_CLEAN_INSERT":
+				deleteOperation = DatabaseOperation.DELETE_ALL;
+				writeOperation = InsertIdentityOperation.INSERT;
+				break;
+			case "NONE":
+				break;
+			default:
+				throw new IllegalArgumentException("The operation type " + type + " cannot be applied table by table");
+		}
+	}
+	//</editor-fold>
+
+	/**
+	 * @param type The operation type
+	 * @return True if the operation type can be applied table by table
+	 */
+	public static boolean isSupported(String type) {
+		switch (type) {
+			case "UPDATE":
+			case "INSERT":
+			case "REFRESH":
+			case "DELETE":
+			case "DELETE_ALL":
+			case "CLEAN_INSERT":
+			case "MSSQL_INSERT":
+			case "MSSQL_REFRESH":
+			case "MSSQL_CLEAN_INSERT":
+			case "NONE":
+				return true;
+			default:
+				return false;
+		}
+	}
+
+	/**
+	 * @return True if all the rows of the tables are deleted before writing the new ones
+	 */
+	public boolean isClean() {
+		return deleteOperation == DatabaseOperation.DELETE_ALL && writeOperation != null;
+	}
+
+	//<editor-fold defaultstate="collapsed" desc="Getters">
+	public DatabaseOperation getDeleteOperation() {
+		return deleteOperation;
+	}
+
+	public DatabaseOperation getWriteOperation() {
+		return writeOperation;
+	}
+	//</editor-fold>
+}
@@ -0,0 +1,129 @@
+package com.lotaris.maven.plugin.dbunit.operation;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import org.dbunit.dataset.Column;
+
+/**
+ * Bulk load with the LOAD DATA LOCAL INFILE statement of MySQL, the file is
+ * sent to the server by the driver. The local files must be allowed by the
+ * server (local_infile) and by the driver (allowLoadLocalInfile=true in the URL),
+ * otherwise the rows are inserted.
+ *
+ * With a local file, MySQL skips the rows it rejects and truncates the values it
+ * cannot store with a warning only, the load fails on any warning instead.
+ *
+ * The binary values are loaded from their hexadecimal text through variables.
+ *
+ * @author Laurent Prévost <laurent.prevost@lotaris.com>
+ */
+public class MySqlBulkLoader extends BulkLoader {
+	@Override
+	public boolean supports(Connection connection) throws SQLException {
+		try (Statement statement = connection.createStatement(); ResultSet rs = statement.executeQuery("SELECT @@local_infile")) {
+			if (!rs.next() || !rs.getBoolean(1)) {
+				return false;
+			}
+		}
+
+		Boolean allowed = isAllowedByDriver(connection);
+		if (allowed == null) {
+			allowed = connection.getMetaData().getURL().toLowerCase().contains("allowloadlocalinfile=true");
+		}
+		return allowed;
+	}
+
+	@Override
+	public long load(Connection connection, String tableName, Column[] columns, File file) throws SQLException, IOException {
+		StringBuilder targets = new StringBuilder();
+		StringBuilder conversions = new StringBuilder();
+		for (int i = 0; i < columns.length; i++) {
+			targets.append(i > 0 ? ", " : "");
+			if (isBinary(columns[i])) {
+				targets.append("@v").append(i);
+				conversions.append(conversions.length() > 0 ? ", " : " SET ").append(columns[i].getColumnName()).append(" = UNHEX(@v").append(i).append(")");
+			}
+			else {
+				targets.append(columns[i].getColumnName());
+			}
+		}
+
+		String sql = "LOAD DATA LOCAL INFILE '" + file.getAbsolutePath().replace('\\', '/').replace("'", "''") + "' INTO TABLE " + tableName
+			+ " CHARACTER SET utf8 FIELDS TERMINATED BY ',' OPTIONALLY ENCLOSED BY '\"' ESCAPED BY '' LINES TERMINATED BY '\\n'"
+			+ " (" + targets + ")" + conversions;
+
+		try (Statement statement = connection.createStatement()) {
+			long loaded = statement.executeUpdate(sql);
+
+			try (ResultSet rs = statement.executeQuery("SHOW WARNINGS LIMIT 1")) {
+				if (rs.next()) {
+					throw new SQLException("The rows of " + tableName + " were not loaded as they are: " + rs.getString("Message"));
+				}
+			}
+
+			return loaded;
+		}
+	}
+
+	/**
+	 * Read the allowLoadLocalInfile property from the driver connection, with the
+	 * getter of Connector/J 5 or the property set of Connector/J 8
+	 *
+	 * @param connection The connection
+	 * @return True if the driver sends the local files, null when the property cannot be read
+	 */
+	private static Boolean isAllowedByDriver(Connection connection) {
+		try {
+			return (Boolean) connection.getClass().getMethod("getAllowLoadLocalInfile").invoke(connection);
+		}
+		catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException | ClassCastException e) {
+			// Not Connector/J 5
+		}
+
+		try {
+			Object propertySet = connection.getClass().getMethod("getPropertySet").invoke(connection);
+			Object property = propertySet.getClass().getMethod("getBooleanProperty", String.class).invoke(propertySet, "allowLoadLocalInfile");
+			return (Boolean) property.getClass().getMethod("getValue").invoke(property);
+		}
+		catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException | ClassCastException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * An unquoted NULL is read as a null value when the fields are enclosed, an
+	 * empty field would be read as an empty string or 0
+	 *
+	 * @return NULL
+	 */
+	@Override
+	public String getNullText() {
+		return "NULL";
+	}
+
+	@Override
+	public String format(Object value) {
+		if (value instanceof Boolean) {
+			return (Boolean) value ? "1" : "0";
+		}
+		return super.format(value);
+	}
+
+	private static boolean isBinary(Column column) {
+		switch (column.getDataType().getSqlType()) {
+			case Types.BINARY:
+			case Types.VARBINARY:
+			case Types.LONGVARBINARY:
+			case Types.BLOB:
+				return true;
+			default:
+				return false;
+		}
+	}
+}
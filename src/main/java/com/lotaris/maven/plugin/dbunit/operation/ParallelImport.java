@@ -0,0 +1,261 @@
+package com.lotaris.maven.plugin.dbunit.operation;
+
+import com.lotaris.maven.plugin.dbunit.database.ConnectionPool;
+import com.lotaris.maven.plugin.dbunit.database.TableDependencies;
+import com.lotaris.maven.plugin.dbunit.model.UnitSchema;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.DefaultDataSet;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.ITableIterator;
+import org.dbunit.operation.DatabaseOperation;
+
+/**
+ * Apply data sets table by table on the connections of a pool. Tables are
+ * grouped by foreign key dependency levels, the tables of a level are applied at
+ * the same time and each table is committed before the next level starts, so a
+ * parent is always committed before its children.
+ * 
+ * Operations that delete rows run children first, operations that write rows
+ * run parents first. A clean insert deletes all the tables before inserting any.
+ * The rows of a table found in several data sets are applied in data set order
+ * on the same connection.
+ * 
+ * @author Laurent Prévost <laurent.prevost@lotaris.com>
+ */
+public class ParallelImport {
+	private final ConnectionPool pool;
+	
+	private final UnitSchema schema;
+	
+	private final boolean clean;
+
+	/**
+	 * Operation applied children first, can be null
+	 */
+	private final DatabaseOperation deleteOperation;
+	
+	/**
+	 * Operation applied parents first, can be null
+	 */
+	private final DatabaseOperation writeOperation;
+	
+	/**
+	 * Commits the rows of a table by chunks when set
+	 */
+	private ChunkedOperation chunkedOperation;
+	
+	//<editor-fold defaultstate="collapsed" desc="Constructors">
+	/**
+	 * Constructor
+	 * 
+	 * @param pool The pool of connections
+	 * @param schema The schema with the foreign keys
+	 * @param type The operation type, see {@link #isSupported(java.lang.String)}
+	 */
+	public ParallelImport(ConnectionPool pool, UnitSchema schema, String type) {
+		this.pool = pool;
+		this.schema = schema;
+		
+		ImportOperation operation = new ImportOperation(type);
+		deleteOperation = operation.getDeleteOperation();
+		writeOperation = operation.getWriteOperation();
+		clean = operation.isClean();
+	}
+	//</editor-fold>
+
+	/**
+	 * @param type The operation type
+	 * @return True if the operation type can be scheduled in parallel
+	 */
+	public static boolean isSupported(String type) {
+		return ImportOperation.isSupported(type);
+	}
+	
+	/**
+	 * Commit the rows of each table by chunks instead of once per table
+	 * 
+	 * @param chunkedOperation The chunked operation, null to commit once per table
+	 */
+	public void setChunkedOperation(ChunkedOperation chunkedOperation) {
+		this.chunkedOperation = chunkedOperation;
+	}
+	
+	/**
+	 * A clean insert applied source by source empties again the tables found in
+	 * several data sets, which cannot be reproduced table by table.
+	 * 
+	 * @param dataSets The data sets
+	 * @return True if the data sets can be applied table by table with the same result
+	 * @throws Exception When the table names cannot be read
+	 */
+	public boolean canSchedule(List<IDataSet> dataSets) throws Exception {
+		if (!clean) {
+			return true;
+		}
+		
+		Set<String> seen = new HashSet<>();
+		for (IDataSet dataSet : dataSets) {
+			Set<String> tableNames = new HashSet<>();
+			for (String tableName : dataSet.getTableNames()) {
+				tableNames.add(tableName.toUpperCase());
+			}
+			
+			for (String tableName : tableNames) {
+				if (!seen.add(tableName)) {
+					return false;
+				}
+			}
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Apply the data sets
+	 * 
+	 * @param dataSets The data sets, in source order
+	 * @return The number of dependency levels
+	 * @throws Exception When the operation fails on a table
+	 */
+	public int execute(List<IDataSet> dataSets) throws Exception {
+		// Tables of all the data sets, in data set order
+		Map<String, List<ITable>> tables = new LinkedHashMap<>();
+		Map<String, String> tableNames = new LinkedHashMap<>();
+		for (IDataSet dataSet : dataSets) {
+			ITableIterator iterator = dataSet.iterator();
+			while (iterator.next()) {
+				ITable table = iterator.getTable();
+				String tableName = table.getTableMetaData().getTableName();
+				String key = tableName.toUpperCase();
+				
+				if (!tables.containsKey(key)) {
+					tables.put(key, new ArrayList<ITable>());
+					tableNames.put(key, tableName);
+				}
+				tables.get(key).add(table);
+			}
+		}
+		
+		List<List<String>> levels = TableDependencies.levels(schema, tableNames.values());
+		
+		ExecutorService executor = Executors.newFixedThreadPool(pool.size());
+		try {
+			if (deleteOperation != null) {
+				List<List<String>> reversed = new ArrayList<>(levels);
+				Collections.reverse(reversed);
+				for (List<String> level : reversed) {
+					runLevel(executor, level, tables, deleteOperation);
+				}
+			}
+			
+			if (writeOperation != null) {
+				for (List<String> level : levels) {
+					runLevel(executor, level, tables, writeOperation);
+				}
+			}
+		}
+		finally {
+			executor.shutdownNow();
+		}
+		
+		return levels.size();
+	}
+	
+	/**
+	 * Apply the operation to all the tables of a level and wait for all of them
+	 * 
+	 * @param executor The executor
+	 * @param level The tables of the level
+	 * @param tables The tables of the data sets by upper case name
+	 * @param operation The operation
+	 * @throws Exception When the operation fails on a table
+	 */
+	private void runLevel(ExecutorService executor, List<String> level, Map<String, List<ITable>> tables, DatabaseOperation operation) throws Exception {
+		List<Future<Void>> futures = new ArrayList<>();
+		for (String tableName : level) {
+			futures.add(executor.submit(new TableTask(tables.get(tableName.toUpperCase()), operation)));
+		}
+		
+		Exception failure = null;
+		for (Future<Void> future : futures) {
+			try {
+				future.get();
+			}
+			catch (ExecutionException e) {
+				if (e.getCause() instanceof Error) {
+					throw (Error) e.getCause();
+				}
+				else if (failure == null) {
+					failure = (Exception) e.getCause();
+				}
+			}
+		}
+		
+		if (failure != null) {
+			throw failure;
+		}
+	}
+	
+	/**
+	 * Apply an operation to the rows of a table in one transaction, or chunk by chunk
+	 */
+	private class TableTask implements Callable<Void> {
+		private final List<ITable> tables;
+		private final DatabaseOperation operation;
+
+		public TableTask(List<ITable> tables, DatabaseOperation operation) {
+			this.tables = tables;
+			this.operation = operation;
+		}
+
+		@Override
+		public Void call() throws Exception {
+			IDatabaseConnection connection = pool.acquire();
+			Connection con = connection.getConnection();
+			try {
+				con.setAutoCommit(false);
+				
+				for (ITable table : tables) {
+					// Deleting everything once is enough
+					if (operation == DatabaseOperation.DELETE_ALL) {
+						operation.execute(connection, new DefaultDataSet(table));
+						break;
+					}
+					
+					if (chunkedOperation != null) {
+						chunkedOperation.execute(connection, operation, table);
+					}
+					else {
+						operation.execute(connection, new DefaultDataSet(table));
+					}
+				}
+				
+				con.commit();
+			}
+			catch (Exception e) {
+				con.rollback();
+				throw e;
+			}
+			finally {
+				con.setAutoCommit(true);
+				pool.release(connection);
+			}
+			
+			return null;
+		}
+	}
+}
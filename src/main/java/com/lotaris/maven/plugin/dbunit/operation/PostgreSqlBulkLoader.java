@@ -0,0 +1,66 @@
+package com.lotaris.maven.plugin.dbunit.operation;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import org.dbunit.dataset.Column;
+
+/**
+ * Bulk load with the COPY ... FROM STDIN command of PostgreSQL, the file is
+ * streamed to the server through the copy API of the JDBC driver. The driver is
+ * called by reflection since it is only known at runtime.
+ *
+ * @author Laurent Prévost <laurent.prevost@lotaris.com>
+ */
+public class PostgreSqlBulkLoader extends BulkLoader {
+	private static final String PG_CONNECTION = "org.postgresql.PGConnection";
+
+	private static final String COPY_MANAGER = "org.postgresql.copy.CopyManager";
+
+	@Override
+	public boolean supports(Connection connection) throws SQLException {
+		try {
+			return connection.isWrapperFor(Class.forName(PG_CONNECTION, true, connection.getClass().getClassLoader()));
+		}
+		catch (ClassNotFoundException e) {
+			return false;
+		}
+	}
+
+	@Override
+	public long load(Connection connection, String tableName, Column[] columns, File file) throws SQLException, IOException {
+		String sql = "COPY " + tableName + " (" + joinColumnNames(columns) + ") FROM STDIN WITH CSV";
+
+		try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+			ClassLoader classLoader = connection.getClass().getClassLoader();
+			Class<?> pgConnectionClass = Class.forName(PG_CONNECTION, true, classLoader);
+			Method getCopyApi = pgConnectionClass.getMethod("getCopyAPI");
+			Method copyIn = Class.forName(COPY_MANAGER, true, classLoader).getMethod("copyIn", String.class, Reader.class);
+
+			Object copyManager = getCopyApi.invoke(connection.unwrap(pgConnectionClass));
+			return (Long) copyIn.invoke(copyManager, sql, reader);
+		}
+		catch (InvocationTargetException e) {
+			if (e.getCause() instanceof SQLException) {
+				throw (SQLException) e.getCause();
+			}
+			throw new SQLException("Unable to copy the rows of " + tableName, e.getCause());
+		}
+		catch (ReflectiveOperationException e) {
+			throw new SQLException("The copy API of the PostgreSQL driver is not available", e);
+		}
+	}
+
+	@Override
+	public String format(Object value) {
+		// Hexadecimal format of the bytea values
+		return value instanceof byte[] ? "\\x" + toHex((byte[]) value) : super.format(value);
+	}
+}
@@ -0,0 +1,172 @@
+package com.lotaris.maven.plugin.dbunit.operation;
+
+import com.lotaris.maven.plugin.dbunit.util.Compression;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.DefaultTableMetaData;
+import org.dbunit.dataset.datatype.DataType;
+import org.dbunit.dataset.stream.IDataSetConsumer;
+import org.dbunit.dataset.stream.IDataSetProducer;
+
+/**
+ * Flat XML data set producer that reads the file twice instead of buffering the
+ * tables. The first pass collects the columns of each table (the attributes
+ * found in its rows, in order of appearance, like the DB Unit column sensing),
+ * the second one sends the rows to the consumer as they are read. A missing
+ * attribute is a null value and an element without attributes declares an
+ * empty table. The DTD is not read. A compressed file is decompressed on each
+ * pass.
+ *
+ * @author Laurent Prévost <laurent.prevost@lotaris.com>
+ */
+public class StaxFlatXmlProducer implements IDataSetProducer {
+	private final File src;
+
+	private IDataSetConsumer consumer;
+
+	//<editor-fold defaultstate="collapsed" desc="Constructors">
+	/**
+	 * Constructor
+	 *
+	 * @param src The flat XML file
+	 */
+	public StaxFlatXmlProducer(File src) {
+		this.src = src;
+	}
+	//</editor-fold>
+
+	//<editor-fold defaultstate="collapsed" desc="Overrides">
+	@Override
+	public void setConsumer(IDataSetConsumer consumer) throws DataSetException {
+		this.consumer = consumer;
+	}
+
+	@Override
+	public void produce() throws DataSetException {
+		try {
+			List<Set<String>> blocks = readColumns();
+
+			consumer.startDataSet();
+
+			try (InputStream in = Compression.open(src)) {
+				XMLStreamReader reader = createReader(in);
+				try {
+					int block = -1;
+					String tableName = null;
+					Column[] columns = null;
+
+					for (int depth = 0; reader.hasNext();) {
+						int event = reader.next();
+
+						if (event == XMLStreamConstants.START_ELEMENT && ++depth == 2) {
+							if (!reader.getLocalName().equals(tableName)) {
+								if (tableName != null) {
+									consumer.endTable();
+								}
+
+								tableName = reader.getLocalName();
+								columns = toColumns(blocks.get(++block));
+								consumer.startTable(new DefaultTableMetaData(tableName, columns));
+							}
+
+							// An element without attributes declares an empty table
+							if (reader.getAttributeCount() > 0) {
+								Object[] row = new Object[columns.length];
+								for (int i = 0; i < columns.length; i++) {
+									row[i] = reader.getAttributeValue(null, columns[i].getColumnName());
+								}
+								consumer.row(row);
+							}
+						}
+						else if (event == XMLStreamConstants.END_ELEMENT) {
+							depth--;
+						}
+					}
+
+					if (tableName != null) {
+						consumer.endTable();
+					}
+				}
+				finally {
+					reader.close();
+				}
+			}
+
+			consumer.endDataSet();
+		}
+		catch (IOException | XMLStreamException e) {
+			throw new DataSetException("Unable to read the flat XML data set " + src, e);
+		}
+	}
+	//</editor-fold>
+
+	/**
+	 * Collect the columns of the consecutive rows of each table
+	 *
+	 * @return The columns of each block of rows in document order
+	 * @throws IOException When the file cannot be read
+	 * @throws XMLStreamException When the file is not valid
+	 */
+	private List<Set<String>> readColumns() throws IOException, XMLStreamException {
+		List<Set<String>> blocks = new ArrayList<>();
+
+		try (InputStream in = Compression.open(src)) {
+			XMLStreamReader reader = createReader(in);
+			try {
+				String tableName = null;
+				Set<String> columns = null;
+
+				for (int depth = 0; reader.hasNext();) {
+					int event = reader.next();
+
+					if (event == XMLStreamConstants.START_ELEMENT && ++depth == 2) {
+						if (!reader.getLocalName().equals(tableName)) {
+							tableName = reader.getLocalName();
+							columns = new LinkedHashSet<>();
+							blocks.add(columns);
+						}
+
+						for (int i = 0; i < reader.getAttributeCount(); i++) {
+							columns.add(reader.getAttributeLocalName(i));
+						}
+					}
+					else if (event == XMLStreamConstants.END_ELEMENT) {
+						depth--;
+					}
+				}
+			}
+			finally {
+				reader.close();
+			}
+		}
+
+		return blocks;
+	}
+
+	private static XMLStreamReader createReader(InputStream in) throws XMLStreamException {
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		return factory.createXMLStreamReader(in);
+	}
+
+	private static Column[] toColumns(Set<String> columnNames) {
+		Column[] columns = new Column[columnNames.size()];
+		int i = 0;
+		for (String columnName : columnNames) {
+			columns[i++] = new Column(columnName, DataType.UNKNOWN);
+		}
+		return columns;
+	}
+}
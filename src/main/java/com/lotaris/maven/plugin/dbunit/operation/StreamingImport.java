@@ -0,0 +1,739 @@
+package com.lotaris.maven.plugin.dbunit.operation;
+
+import com.lotaris.maven.plugin.dbunit.util.RunReport;
+import com.lotaris.maven.plugin.dbunit.util.TableStats;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.BitSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import org.dbunit.DatabaseUnitException;
+import org.dbunit.database.DatabaseConfig;
+import org.dbunit.database.IDatabaseConnection;
+import org.dbunit.dataset.Column;
+import org.dbunit.dataset.DataSetException;
+import org.dbunit.dataset.DefaultDataSet;
+import org.dbunit.dataset.DefaultTable;
+import org.dbunit.dataset.IDataSet;
+import org.dbunit.dataset.ITable;
+import org.dbunit.dataset.ITableMetaData;
+import org.dbunit.dataset.datatype.DataType;
+import org.dbunit.dataset.stream.DefaultConsumer;
+import org.dbunit.dataset.stream.IDataSetConsumer;
+import org.dbunit.dataset.stream.IDataSetProducer;
+import org.dbunit.operation.DatabaseOperation;
+import org.dbunit.util.QualifiedTableName;
+
+/**
+ * Import engine that inserts the rows while they are read from the data set
+ * file, in JDBC batches of the configured batch size. Only the current batch is
+ * held in memory, whatever the size of the file.
+ *
+ * The rows are read once, so only the operation types that insert rows without
+ * looking at the existing ones are supported: INSERT, CLEAN_INSERT, DELETE_ALL
+ * and NONE. The tables of CLEAN_INSERT and DELETE_ALL are emptied children first
+ * after a first pass that collects their names. The values are converted with
+ * the data types of the database columns, like the DB Unit operations do. The
+ * columns of the values absent from the data set, like the {@code <none/>}
+ * values of the xml format, are left out of the insert as DB Unit does: the
+ * batch is sent and a statement without these columns is prepared each time
+ * the set of absent columns changes.
+ *
+ * With a {@link BulkLoader}, the rows of each table are written in a CSV file
+ * instead, loaded by the native bulk loader of the database at the end of the
+ * table. The tables fall back to the batched inserts when the loader does not
+ * support the connection, and from the first row with absent values on, since
+ * the CSV file cannot leave a column out.
+ *
+ * @author Laurent Prévost <laurent.prevost@lotaris.com>
+ */
+public class StreamingImport implements IDataSetConsumer {
+	private final IDatabaseConnection connection;
+
+	private final boolean delete;
+
+	private final boolean insert;
+
+	private final int batchSize;
+
+	private int commitInterval;
+
+	private boolean transaction;
+
+	private IDataSet databaseDataSet;
+
+	private PreparedStatement statement;
+
+	/**
+	 * Table and columns of the current table
+	 */
+	private String tableName;
+	private String[] columnNames;
+
+	/**
+	 * Names of the current table and columns in the statements, qualified and escaped as configured
+	 */
+	private String qualifiedTableName;
+	private String[] escapedColumnNames;
+
+	/**
+	 * Columns left out of the current statement because their values are absent
+	 */
+	private BitSet absentColumns;
+
+	private DataType[] dataTypes;
+
+	private int pending;
+
+	private int uncommitted;
+
+	private long rows;
+
+	private int batches;
+
+	private int tables;
+
+	private RunReport report;
+
+	private BulkLoader bulkLoader;
+
+	/**
+	 * Whether the bulk loader supports the connection, null until checked
+	 */
+	private Boolean bulkSupported;
+
+	/**
+	 * Columns of the table being bulk loaded, null when the rows are inserted
+	 */
+	private Column[] bulkColumns;
+
+	private String bulkTableName;
+
+	private File bulkFile;
+
+	private Writer bulkWriter;
+
+	private int bulkRows;
+
+	private int bulkTables;
+
+	/**
+	 * Measures of the current table, null when not instrumented
+	 */
+	private TableStats stats;
+
+	/**
+	 * Time of the last measure in ns, the time since then is spent by the producer
+	 */
+	private long mark;
+
+	private long parseTime;
+
+	private long insertTime;
+
+	//<editor-fold defaultstate="collapsed" desc="Constructors">
+	/**
+	 * Constructor
+	 *
+	 * @param connection The connection
+	 * @param type The operation type, see {@link #isSupported(java.lang.String)}
+	 */
+	public StreamingImport(IDatabaseConnection connection, String type) {
+		if (!isSupported(type)) {
+			throw new IllegalArgumentException("The operation type " + type + " cannot be applied while the rows are read");
+		}
+
+		this.connection = connection;
+		this.delete = "CLEAN_INSERT".equals(type) || "DELETE_ALL".equals(type);
+		this.insert = "CLEAN_INSERT".equals(type) || "INSERT".equals(type);
+
+		Integer configuredBatchSize = (Integer) connection.getConfig().getProperty(DatabaseConfig.PROPERTY_BATCH_SIZE);
+		this.batchSize = configuredBatchSize != null && configuredBatchSize > 0 ? configuredBatchSize : 100;
+	}
+	//</editor-fold>
+
+	//<editor-fold defaultstate="collapsed" desc="Getters & Setters">
+	/**
+	 * @param commitInterval The number of rows per transaction, 0 to commit according to the transaction flag
+	 */
+	public void setCommitInterval(int commitInterval) {
+		this.commitInterval = commitInterval;
+	}
+
+	/**
+	 * @param transaction True to apply each file in one transaction
+	 */
+	public void setTransaction(boolean transaction) {
+		this.transaction = transaction;
+	}
+
+	/**
+	 * @param report The report receiving the parse, metadata and insert time of each table, null to not measure them
+	 */
+	public void setReport(RunReport report) {
+		this.report = report;
+	}
+
+	/**
+	 * @param bulkLoader The native bulk loader of the database, null to insert the rows by batches
+	 */
+	public void setBulkLoader(BulkLoader bulkLoader) {
+		this.bulkLoader = bulkLoader;
+		this.bulkSupported = null;
+	}
+
+	/**
+	 * @return The number of tables loaded by the bulk loader
+	 */
+	public int getBulkTables() {
+		return bulkTables;
+	}
+
+	/**
+	 * @return The number of rows inserted
+	 */
+	public long getRows() {
+		return rows;
+	}
+
+	/**
+	 * @return The number of JDBC batches executed
+	 */
+	public int getBatches() {
+		return batches;
+	}
+
+	/**
+	 * @return The number of tables written
+	 */
+	public int getTables() {
+		return tables;
+	}
+
+	/**
+	 * @return The number of rows sent to the database in each batch
+	 */
+	public int getBatchSize() {
+		return batchSize;
+	}
+	//</editor-fold>
+
+	/**
+	 * @param type The operation type
+	 * @return True if the operation type can be applied while the rows are read
+	 */
+	public static boolean isSupported(String type) {
+		switch (type) {
+			case "INSERT":
+			case "CLEAN_INSERT":
+			case "DELETE_ALL":
+			case "NONE":
+				return true;
+			default:
+				return false;
+		}
+	}
+
+	/**
+	 * Apply the operation to a data set file
+	 *
+	 * @param src The data set file
+	 * @param format The format of the file
+	 * @throws Exception When the operation fails, the current transaction is rolled back
+	 */
+	public void execute(File src, String format) throws Exception {
+		execute(src, format, null);
+	}
+
+	/**
+	 * Insert the rows of a producer, like a generated data set. The tables are not
+	 * emptied before since it would require to produce the rows twice.
+	 *
+	 * @param producer The producer of the rows
+	 * @throws Exception When the rows cannot be inserted, the current transaction is rolled back
+	 */
+	public void execute(IDataSetProducer producer) throws Exception {
+		if (delete) {
+			throw new IllegalStateException("The tables cannot be emptied before the rows of a producer are inserted, use the INSERT type");
+		}
+
+		execute(null, null, producer);
+	}
+
+	/**
+	 * @param src The data set file
+	 * @param format The format of the file
+	 * @param producer The producer of the rows, null to read them from the file
+	 * @throws Exception When the operation fails, the current transaction is rolled back
+	 */
+	private void execute(File src, String format, IDataSetProducer producer) throws Exception {
+		Connection con = connection.getConnection();
+		boolean autoCommit = con.getAutoCommit();
+		boolean transactional = transaction || commitInterval > 0;
+
+		try {
+			if (transactional) {
+				con.setAutoCommit(false);
+			}
+
+			if (delete) {
+				long start = System.nanoTime();
+				deleteAll(DataSetLoader.produce(src, format));
+				if (report != null) {
+					report.addTime("delete", System.nanoTime() - start);
+				}
+			}
+
+			if (insert) {
+				IDataSetProducer inserted = producer != null ? producer : DataSetLoader.produce(src, format);
+				inserted.setConsumer(this);
+				inserted.produce();
+			}
+
+			if (transactional) {
+				con.commit();
+			}
+		}
+		catch (Exception e) {
+			if (transactional) {
+				con.rollback();
+			}
+			throw e;
+		}
+		finally {
+			closeStatement();
+			closeBulkFile();
+			con.setAutoCommit(autoCommit);
+		}
+	}
+
+	/**
+	 * Empty the tables of a data set, children first
+	 *
+	 * @param producer The producer of the data set, only the table names are kept
+	 * @throws DatabaseUnitException When the tables cannot be emptied
+	 * @throws SQLException When the rows cannot be deleted
+	 */
+	private void deleteAll(IDataSetProducer producer) throws DatabaseUnitException, SQLException {
+		final Set<String> tableNames = new LinkedHashSet<>();
+		producer.setConsumer(new DefaultConsumer() {
+			@Override
+			public void startTable(ITableMetaData metaData) throws DataSetException {
+				tableNames.add(metaData.getTableName());
+			}
+		});
+		producer.produce();
+
+		DefaultDataSet names = new DefaultDataSet();
+		for (String tableName : tableNames) {
+			names.addTable(new DefaultTable(tableName));
+		}
+		DatabaseOperation.DELETE_ALL.execute(connection, names);
+	}
+
+	//<editor-fold defaultstate="collapsed" desc="Overrides">
+	@Override
+	public void startDataSet() throws DataSetException {
+		mark = System.nanoTime();
+	}
+
+	@Override
+	public void endDataSet() throws DataSetException {}
+
+	@Override
+	public void startTable(ITableMetaData metaData) throws DataSetException {
+		Column[] columns = metaData.getColumns();
+		if (columns.length == 0) {
+			return;
+		}
+
+		if (report != null) {
+			long now = System.nanoTime();
+			stats = report.table(metaData.getTableName());
+			stats.addTime("parse", now - mark);
+			mark = now;
+			parseTime = insertTime = 0;
+		}
+
+		try {
+			if (databaseDataSet == null) {
+				databaseDataSet = connection.createDataSet();
+			}
+
+			// The values are converted to the types of the database columns
+			ITableMetaData databaseMetaData = databaseDataSet.getTableMetaData(metaData.getTableName());
+			Column[] databaseColumns = databaseMetaData.getColumns();
+
+			tableName = metaData.getTableName();
+			qualifiedTableName = getQualifiedName(connection.getSchema(), tableName);
+			columnNames = new String[columns.length];
+			escapedColumnNames = new String[columns.length];
+			dataTypes = new DataType[columns.length];
+			Column[] targetColumns = new Column[columns.length];
+			for (int i = 0; i < columns.length; i++) {
+				columnNames[i] = columns[i].getColumnName();
+				escapedColumnNames[i] = getQualifiedName(null, columnNames[i]);
+				targetColumns[i] = databaseColumns[databaseMetaData.getColumnIndex(columnNames[i])];
+				dataTypes[i] = targetColumns[i].getDataType();
+			}
+
+			if (isBulkSupported()) {
+				// The loaders use the names in their statements as they are
+				Column[] loadedColumns = new Column[columns.length];
+				for (int i = 0; i < columns.length; i++) {
+					loadedColumns[i] = new Column(escapedColumnNames[i], targetColumns[i].getDataType(), targetColumns[i].getSqlTypeName(), targetColumns[i].getNullable());
+				}
+				openBulkFile(qualifiedTableName, loadedColumns);
+			}
+			else {
+				prepareInsert(new BitSet());
+			}
+			tables++;
+		}
+		catch (SQLException | IOException e) {
+			throw new DataSetException("Unable to prepare the insertion in " + metaData.getTableName(), e);
+		}
+
+		if (stats != null) {
+			long now = System.nanoTime();
+			stats.addTime("metadata", now - mark);
+			mark = now;
+		}
+	}
+
+	@Override
+	public void endTable() throws DataSetException {
+		if (stats != null) {
+			long now = System.nanoTime();
+			parseTime += now - mark;
+			mark = now;
+		}
+
+		try {
+			if (bulkWriter != null) {
+				loadBulkFile();
+			}
+			else {
+				flush();
+			}
+		}
+		catch (IOException e) {
+			throw new DataSetException("Unable to load the rows of " + bulkTableName, e);
+		}
+		catch (SQLException e) {
+			throw new DataSetException(e);
+		}
+		finally {
+			closeStatement();
+			closeBulkFile();
+		}
+
+		if (stats != null) {
+			long now = System.nanoTime();
+			stats.addTime("parse", parseTime);
+			stats.addTime("insert", insertTime + now - mark);
+			mark = now;
+			stats = null;
+		}
+	}
+
+	@Override
+	public void row(Object[] values) throws DataSetException {
+		if (stats != null) {
+			long now = System.nanoTime();
+			parseTime += now - mark;
+			mark = now;
+		}
+
+		try {
+			if (bulkWriter != null && hasAbsentValues(values)) {
+				// The rows written so far are loaded, the next ones are inserted
+				loadBulkFile();
+				closeBulkFile();
+				prepareInsert(new BitSet());
+			}
+			
+			if (bulkWriter != null) {
+				writeBulkRow(values);
+			}
+			else {
+				insertRow(values);
+			}
+		}
+		catch (SQLException | IOException e) {
+			throw new DataSetException(e);
+		}
+
+		if (stats != null) {
+			long now = System.nanoTime();
+			insertTime += now - mark;
+			mark = now;
+		}
+	}
+	//</editor-fold>
+
+	/**
+	 * Add a row to the current batch, sending the batch when it is full
+	 *
+	 * @param values The values of the row
+	 * @throws DataSetException When a value cannot be converted
+	 * @throws SQLException When the rows cannot be inserted
+	 */
+	private void insertRow(Object[] values) throws DataSetException, SQLException {
+		if (!matchesAbsentColumns(values)) {
+			BitSet absent = new BitSet(values.length);
+			for (int i = 0; i < values.length; i++) {
+				if (values[i] == ITable.NO_VALUE) {
+					absent.set(i);
+				}
+			}
+			
+			flush();
+			closeStatement();
+			prepareInsert(absent);
+		}
+		
+		int parameter = 1;
+		for (int i = 0; i < values.length; i++) {
+			if (absentColumns.get(i)) {
+				continue;
+			}
+			
+			if (values[i] == null) {
+				statement.setNull(parameter++, dataTypes[i].getSqlType());
+			}
+			else {
+				dataTypes[i].setSqlValue(values[i], parameter++, statement);
+			}
+		}
+		statement.addBatch();
+
+		if (++pending >= batchSize) {
+			flush();
+		}
+	}
+
+	/**
+	 * Prepare the insert statement of the current table
+	 *
+	 * @param absent The columns left out of the statement
+	 * @throws DataSetException When all the values are absent
+	 * @throws SQLException When the statement cannot be prepared
+	 */
+	private void prepareInsert(BitSet absent) throws DataSetException, SQLException {
+		if (absent.cardinality() == columnNames.length) {
+			throw new DataSetException("All the values of a row of " + tableName + " are absent, the row cannot be inserted");
+		}
+		
+		StringBuilder sql = new StringBuilder("INSERT INTO ").append(qualifiedTableName).append(" (");
+		StringBuilder parameters = new StringBuilder();
+		for (int i = 0; i < columnNames.length; i++) {
+			if (!absent.get(i)) {
+				sql.append(parameters.length() > 0 ? ", " : "").append(escapedColumnNames[i]);
+				parameters.append(parameters.length() > 0 ? ", ?" : "?");
+			}
+		}
+		sql.append(") VALUES (").append(parameters).append(")");
+
+		statement = connection.getConnection().prepareStatement(sql.toString());
+		absentColumns = absent;
+	}
+
+	/**
+	 * Qualify and escape a name as the DB Unit operations do, so the statements
+	 * target the same tables as the DELETE_ALL operation
+	 *
+	 * @param prefix The schema of a table name, null for a column name
+	 * @param name The table or column name
+	 * @return The name qualified when the qualified table names are enabled, escaped with the escape pattern
+	 */
+	private String getQualifiedName(String prefix, String name) {
+		DatabaseConfig config = connection.getConfig();
+		return new QualifiedTableName(name, prefix, (String) config.getProperty(DatabaseConfig.PROPERTY_ESCAPE_PATTERN)).getQualifiedNameIfEnabled(config);
+	}
+
+	/**
+	 * @param values The values of a row
+	 * @return True if the values are absent for the columns left out of the current statement only
+	 */
+	private boolean matchesAbsentColumns(Object[] values) {
+		for (int i = 0; i < values.length; i++) {
+			if ((values[i] == ITable.NO_VALUE) != absentColumns.get(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean hasAbsentValues(Object[] values) {
+		for (Object value : values) {
+			if (value == ITable.NO_VALUE) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Send the pending rows to the database, committing when the commit interval is reached
+	 *
+	 * @throws SQLException When the rows cannot be inserted
+	 */
+	private void flush() throws SQLException {
+		if (pending == 0) {
+			return;
+		}
+
+		statement.executeBatch();
+		batches++;
+		rows += pending;
+		uncommitted += pending;
+
+		if (stats != null) {
+			stats.addRows(pending);
+			stats.addRoundTrips(1);
+		}
+		pending = 0;
+
+		if (commitInterval > 0 && uncommitted >= commitInterval) {
+			connection.getConnection().commit();
+			uncommitted = 0;
+
+			if (stats != null) {
+				stats.addRoundTrips(1);
+			}
+		}
+	}
+
+	/**
+	 * @return True if the rows are loaded by the bulk loader
+	 * @throws SQLException When the connection cannot be inspected
+	 */
+	private boolean isBulkSupported() throws SQLException {
+		if (bulkLoader == null) {
+			return false;
+		}
+		else if (bulkSupported == null) {
+			bulkSupported = bulkLoader.supports(connection.getConnection());
+		}
+		return bulkSupported;
+	}
+
+	/**
+	 * Start the CSV file of a table
+	 *
+	 * @param tableName The table
+	 * @param columns The database columns of the values
+	 * @throws SQLException When the connection cannot be inspected
+	 * @throws IOException When the file cannot be created
+	 */
+	private void openBulkFile(String tableName, Column[] columns) throws SQLException, IOException {
+		bulkTableName = tableName;
+		bulkColumns = columns;
+		bulkFile = bulkLoader.createFile(connection.getConnection(), tableName);
+		bulkWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(bulkFile), StandardCharsets.UTF_8), 64 * 1024);
+		bulkRows = 0;
+	}
+
+	/**
+	 * Write a row in the CSV file of the table
+	 *
+	 * @param values The values of the row
+	 * @throws DataSetException When a value cannot be converted
+	 * @throws IOException When the row cannot be written
+	 */
+	private void writeBulkRow(Object[] values) throws DataSetException, IOException {
+		for (int i = 0; i < values.length; i++) {
+			if (i > 0) {
+				bulkWriter.write(',');
+			}
+
+			Object value = values[i] != null ? dataTypes[i].typeCast(values[i]) : null;
+			if (value == null) {
+				bulkWriter.write(bulkLoader.getNullText());
+			}
+			else {
+				bulkWriter.write('"');
+				bulkWriter.write(bulkLoader.format(value).replace("\"", "\"\""));
+				bulkWriter.write('"');
+			}
+		}
+		bulkWriter.write('\n');
+		bulkRows++;
+	}
+
+	/**
+	 * Load the CSV file of the table, committing when the commit interval is reached
+	 *
+	 * @throws SQLException When the rows cannot be loaded
+	 * @throws IOException When the file cannot be read
+	 */
+	private void loadBulkFile() throws SQLException, IOException {
+		bulkWriter.close();
+		bulkWriter = null;
+
+		if (bulkRows > 0) {
+			long loaded = bulkLoader.load(connection.getConnection(), bulkTableName, bulkColumns, bulkFile);
+			if (loaded != bulkRows) {
+				throw new SQLException(loaded + " rows of " + bulkRows + " loaded in " + bulkTableName + " by the bulk loader");
+			}
+			bulkTables++;
+			rows += bulkRows;
+			uncommitted += bulkRows;
+
+			if (stats != null) {
+				stats.addRows(bulkRows);
+				stats.addRoundTrips(1);
+			}
+		}
+
+		if (commitInterval > 0 && uncommitted >= commitInterval) {
+			connection.getConnection().commit();
+			uncommitted = 0;
+
+			if (stats != null) {
+				stats.addRoundTrips(1);
+			}
+		}
+	}
+
+	private void closeBulkFile() {
+		if (bulkWriter != null) {
+			try {
+				bulkWriter.close();
+			}
+			catch (IOException e) {
+				// The file is deleted anyway
+			}
+			bulkWriter = null;
+		}
+
+		if (bulkFile != null) {
+			bulkFile.delete();
+			bulkFile = null;
+		}
+		bulkColumns = null;
+		bulkTableName = null;
+	}
+
+	private void closeStatement() {
+		if (statement != null) {
+			try {
+				statement.close();
+			}
+			catch (SQLException e) {
+				// Nothing more can be done with the statement
+			}
+			statement = null;
+			pending = 0;
+		}
+	}
+}
@@ -0,0 +1,284 @@
+package com.lotaris.maven.plugin.dbunit.operation;
+
+import com.lotaris.maven.plugin.dbunit.database.ConnectionPool;
+import com.lotaris.maven.plugin.dbunit.database.Dialect;
+import com.lotaris.maven.plugin.dbunit.database.TableDependencies;
+import com.lotaris.maven.plugin.dbunit.model.UnitColumn;
+import com.lotaris.maven.plugin.dbunit.model.UnitForeignKey;
+import com.lotaris.maven.plugin.dbunit.model.UnitSchema;
+import com.lotaris.maven.plugin.dbunit.model.UnitTable;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.dbunit.database.IDatabaseConnection;
+
+/**
+ * Empty tables as fast as the database allows while respecting the foreign keys:
+ * <ul>
+ * <li>PostgreSQL truncates all the tables in a single statement</li>
+ * <li>MySQL truncates the tables with the foreign key checks disabled for the
+ * session, then restored to their previous value</li>
+ * <li>the other databases truncate the tables children first, level by level</li>
+ * </ul>
+ * The tables of a level are truncated at the same time when a pool is given. A
+ * table that cannot be truncated, for instance because it is referenced by a
+ * foreign key, is emptied with a DELETE statement, sent in one batch with the
+ * other failures of its level. The nullable references of a table to itself are
+ * cleared before its rows are deleted.
+ * 
+ * @author Laurent Prévost <laurent.prevost@lotaris.com>
+ */
+public class TableCleaner {
+	private final UnitSchema schema;
+
+	//<editor-fold defaultstate="collapsed" desc="Constructors">
+	/**
+	 * Constructor
+	 * 
+	 * @param schema The schema with the foreign keys
+	 */
+	public TableCleaner(UnitSchema schema) {
+		this.schema = schema;
+	}
+	//</editor-fold>
+	
+	/**
+	 * Empty the tables
+	 * 
+	 * @param connection The main connection
+	 * @param pool The pool to truncate the tables of a level at the same time, null to use the main connection only
+	 * @param tableNames The tables to empty
+	 * @throws Exception When a table cannot be emptied
+	 */
+	public void clear(IDatabaseConnection connection, ConnectionPool pool, List<String> tableNames) throws Exception {
+		if (tableNames.isEmpty()) {
+			return;
+		}
+		
+		Dialect dialect = Dialect.of(connection.getConnection());
+		
+		if (dialect == Dialect.POSTGRESQL && truncateAll(connection.getConnection(), tableNames)) {
+			return;
+		}
+		
+		List<List<String>> levels;
+		if (dialect == Dialect.MYSQL) {
+			// Foreign keys are not checked, the order does not matter
+			levels = Collections.singletonList(tableNames);
+		}
+		else {
+			levels = TableDependencies.levels(schema, tableNames);
+			Collections.reverse(levels);
+		}
+		
+		if (pool == null) {
+			for (List<String> level : levels) {
+				clearLevel(connection.getConnection(), level, dialect);
+			}
+		}
+		else {
+			ExecutorService executor = Executors.newFixedThreadPool(pool.size());
+			try {
+				for (List<String> level : levels) {
+					clearLevel(executor, pool, level, dialect);
+				}
+			}
+			finally {
+				executor.shutdownNow();
+			}
+		}
+	}
+	
+	/**
+	 * Truncate all the tables in one statement
+	 * 
+	 * @param con The connection
+	 * @param tableNames The tables
+	 * @return False if the statement failed
+	 */
+	private boolean truncateAll(Connection con, List<String> tableNames) {
+		StringBuilder sb = new StringBuilder("TRUNCATE TABLE ");
+		for (String tableName : tableNames) {
+			sb.append(tableName).append(", ");
+		}
+		sb.delete(sb.length() - 2, sb.length());
+		
+		try (Statement st = con.createStatement()) {
+			st.execute(sb.toString());
+			return true;
+		}
+		catch (SQLException e) {
+			return false;
+		}
+	}
+	
+	/**
+	 * Empty the tables of a level on one connection
+	 * 
+	 * @param con The connection
+	 * @param level The tables of the level
+	 * @param dialect The dialect
+	 * @throws SQLException When a table cannot be emptied
+	 */
+	private void clearLevel(Connection con, List<String> level, Dialect dialect) throws SQLException {
+		List<String> failures = new ArrayList<>();
+		for (String tableName : level) {
+			if (!truncate(con, tableName, dialect)) {
+				failures.add(tableName);
+			}
+		}
+		delete(con, failures);
+	}
+	
+	/**
+	 * Empty the tables of a level on the connections of a pool
+	 * 
+	 * @param executor The executor
+	 * @param pool The pool
+	 * @param level The tables of the level
+	 * @param dialect The dialect
+	 * @throws Exception When a table cannot be emptied
+	 */
+	private void clearLevel(ExecutorService executor, final ConnectionPool pool, List<String> level, final Dialect dialect) throws Exception {
+		List<Future<Boolean>> futures = new ArrayList<>();
+		for (final String tableName : level) {
+			futures.add(executor.submit(new Callable<Boolean>() {
+				@Override
+				public Boolean call() throws Exception {
+					IDatabaseConnection connection = pool.acquire();
+					try {
+						return truncate(connection.getConnection(), tableName, dialect);
+					}
+					finally {
+						pool.release(connection);
+					}
+				}
+			}));
+		}
+		
+		List<String> failures = new ArrayList<>();
+		for (int i = 0; i < futures.size(); i++) {
+			try {
+				if (!futures.get(i).get()) {
+					failures.add(level.get(i));
+				}
+			}
+			catch (ExecutionException e) {
+				if (e.getCause() instanceof Error) {
+					throw (Error) e.getCause();
+				}
+				throw (Exception) e.getCause();
+			}
+		}
+		
+		if (!failures.isEmpty()) {
+			IDatabaseConnection connection = pool.acquire();
+			try {
+				delete(connection.getConnection(), failures);
+			}
+			finally {
+				pool.release(connection);
+			}
+		}
+	}
+	
+	/**
+	 * Truncate a table
+	 * 
+	 * @param con The connection
+	 * @param tableName The table
+	 * @param dialect The dialect
+	 * @return False if the table cannot be truncated
+	 * @throws SQLException When the session cannot be configured
+	 */
+	private boolean truncate(Connection con, String tableName, Dialect dialect) throws SQLException {
+		try (Statement st = con.createStatement()) {
+			// The checks may already be disabled by the session, they are restored as they were
+			String foreignKeyChecks = null;
+			if (dialect == Dialect.MYSQL) {
+				try (ResultSet rs = st.executeQuery("SELECT @@FOREIGN_KEY_CHECKS")) {
+					foreignKeyChecks = rs.next() ? rs.getString(1) : "1";
+				}
+				st.execute("SET FOREIGN_KEY_CHECKS = 0");
+			}
+			
+			try {
+				st.execute("TRUNCATE TABLE " + tableName);
+				return true;
+			}
+			catch (SQLException e) {
+				return false;
+			}
+			finally {
+				if (dialect == Dialect.MYSQL) {
+					st.execute("SET FOREIGN_KEY_CHECKS = " + ("0".equals(foreignKeyChecks) ? "0" : "1"));
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Empty the tables with DELETE statements sent in one batch
+	 * 
+	 * @param con The connection
+	 * @param tableNames The tables
+	 * @throws SQLException When a table cannot be emptied
+	 */
+	private void delete(Connection con, List<String> tableNames) throws SQLException {
+		if (tableNames.isEmpty()) {
+			return;
+		}
+		
+		try (Statement st = con.createStatement()) {
+			for (String tableName : tableNames) {
+				String update = buildSelfReferenceUpdate(tableName);
+				if (update != null) {
+					st.addBatch(update);
+				}
+				st.addBatch("DELETE FROM " + tableName);
+			}
+			st.executeBatch();
+		}
+	}
+	
+	/**
+	 * The databases checking the foreign keys row by row reject the deletion of a
+	 * row referenced by a row of the same table that is not deleted yet, so the
+	 * nullable references to the table itself are cleared first.
+	 * 
+	 * @param tableName The table
+	 * @return The update clearing the nullable references of the table to itself, null when it has none
+	 */
+	private String buildSelfReferenceUpdate(String tableName) {
+		UnitTable table = schema.getTable(tableName);
+		if (table == null) {
+			return null;
+		}
+		
+		StringBuilder sb = new StringBuilder();
+		for (UnitForeignKey fk : table.getForeignKeys()) {
+			if (!fk.getReferencedTableName().equalsIgnoreCase(tableName)) {
+				continue;
+			}
+			
+			for (String columnName : fk.getColumnNames()) {
+				UnitColumn column = table.getColumn(columnName);
+				if (column == null || !column.isNullable()) {
+					return null;
+				}
+				sb.append(sb.length() == 0 ? "UPDATE " + tableName + " SET " : ", ").append(columnName).append(" = NULL");
+			}
+		}
+		
+		return sb.length() > 0 ? sb.toString() : null;
+	}
+}
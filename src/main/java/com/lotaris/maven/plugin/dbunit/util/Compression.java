@@ -0,0 +1,158 @@
+package com.lotaris.maven.plugin.dbunit.util;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Compression of the data set files. The files are compressed and decompressed
+ * while they are streamed, the compressed files being recognized by their
+ * first bytes whatever their name.
+ *
+ * @author Laurent Prévost <laurent.prevost@lotaris.com>
+ */
+public final class Compression {
+	public static final String NONE = "none";
+	public static final String GZIP = "gzip";
+	public static final String DEFLATE = "deflate";
+
+	/**
+	 * Size of the buffers used to read the files
+	 */
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private Compression() {}
+
+	/**
+	 * @param compression The compression to check
+	 * @return True if the compression is known
+	 */
+	public static boolean isSupported(String compression) {
+		return compression == null || NONE.equalsIgnoreCase(compression) || GZIP.equalsIgnoreCase(compression) || DEFLATE.equalsIgnoreCase(compression);
+	}
+
+	/**
+	 * @param compression The compression
+	 * @return True if the compression actually compresses
+	 */
+	public static boolean isEnabled(String compression) {
+		return compression != null && !NONE.equalsIgnoreCase(compression);
+	}
+
+	/**
+	 * Compress what is written to a stream
+	 *
+	 * @param out The stream to write the compressed bytes to
+	 * @param compression The compression: none, gzip or deflate (zlib)
+	 * @param level The compression level from 0 to 9, -1 for the default level
+	 * @param bufferSize The size of the compression buffer
+	 * @return The stream to write the uncompressed bytes to
+	 * @throws IOException When the stream cannot be created
+	 */
+	public static OutputStream compress(OutputStream out, String compression, final int level, int bufferSize) throws IOException {
+		if (!isEnabled(compression)) {
+			return out;
+		}
+		else if (GZIP.equalsIgnoreCase(compression)) {
+			return new GZIPOutputStream(out, bufferSize) {
+				{
+					def.setLevel(level);
+				}
+			};
+		}
+		else if (DEFLATE.equalsIgnoreCase(compression)) {
+			final Deflater deflater = new Deflater(level);
+			return new DeflaterOutputStream(out, deflater, bufferSize) {
+				@Override
+				public void close() throws IOException {
+					try {
+						super.close();
+					}
+					finally {
+						// The deflater given to the stream is not released by the stream
+						deflater.end();
+					}
+				}
+			};
+		}
+
+		throw new IllegalArgumentException("Unknown compression '" + compression + "', use none, gzip or deflate");
+	}
+
+	/**
+	 * Open a file, decompressing it while it is read when it is compressed
+	 *
+	 * @param file The file
+	 * @return The stream of the uncompressed bytes
+	 * @throws IOException When the file cannot be opened
+	 */
+	public static InputStream open(File file) throws IOException {
+		InputStream in = new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE);
+
+		try {
+			switch (detect(in)) {
+				case GZIP:
+					return new GZIPInputStream(in, BUFFER_SIZE);
+				case DEFLATE:
+					return new BufferedInputStream(new InflaterInputStream(in), BUFFER_SIZE);
+				default:
+					return in;
+			}
+		}
+		catch (IOException e) {
+			in.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * @param file The file to check
+	 * @return True if the file is compressed with gzip or deflate
+	 * @throws IOException When the file cannot be read
+	 */
+	public static boolean isCompressed(File file) throws IOException {
+		if (!file.isFile()) {
+			return false;
+		}
+
+		try (InputStream in = new BufferedInputStream(new FileInputStream(file), 16)) {
+			return !NONE.equals(detect(in));
+		}
+	}
+
+	/**
+	 * Recognize the compression of a stream by its magic bytes: 1f 8b for gzip, a
+	 * valid zlib header (deflate method, checksum multiple of 31, no dictionary) for
+	 * deflate. The stream is reset to its start.
+	 *
+	 * @param in The stream, must support mark
+	 * @return The compression of the stream
+	 * @throws IOException When the stream cannot be read
+	 */
+	private static String detect(InputStream in) throws IOException {
+		in.mark(2);
+		int b0 = in.read();
+		int b1 = in.read();
+		in.reset();
+
+		if (b0 < 0 || b1 < 0) {
+			return NONE;
+		}
+		else if (b0 == 0x1f && b1 == 0x8b) {
+			return GZIP;
+		}
+		else if ((b0 & 0x0f) == Deflater.DEFLATED && (b0 >> 4) <= 7 && (b1 & 0x20) == 0 && ((b0 << 8) | b1) % 31 == 0) {
+			return DEFLATE;
+		}
+
+		return NONE;
+	}
+}
@@ -0,0 +1,44 @@
+package com.lotaris.maven.plugin.dbunit.util;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Output stream that counts the bytes written to the underlying stream.
+ *
+ * @author Laurent Prévost <laurent.prevost@lotaris.com>
+ */
+public class CountingOutputStream extends FilterOutputStream {
+	private long count;
+
+	//<editor-fold defaultstate="collapsed" desc="Constructors">
+	/**
+	 * Constructor
+	 *
+	 * @param out The stream to write to
+	 */
+	public CountingOutputStream(OutputStream out) {
+		super(out);
+	}
+	//</editor-fold>
+
+	/**
+	 * @return The number of bytes written so far
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		out.write(b);
+		count++;
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		out.write(b, off, len);
+		count += len;
+	}
+}
@@ -0,0 +1,70 @@
+package com.lotaris.maven.plugin.dbunit.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Helpers to compute the digests used to identify cache entries and fingerprints
+ * 
+ * @author Laurent Prévost <laurent.prevost@lotaris.com>
+ */
+public final class Digests {
+	private Digests() {}
+	
+	/**
+	 * @return A new SHA-1 digest
+	 */
+	public static MessageDigest sha1() {
+		try {
+			return MessageDigest.getInstance("SHA-1");
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-1 is always available", e);
+		}
+	}
+	
+	/**
+	 * @param value The value to digest
+	 * @return The hexadecimal SHA-1 digest of the value encoded in UTF-8
+	 */
+	public static String sha1Hex(String value) {
+		MessageDigest digest = sha1();
+		digest.update(value.getBytes(StandardCharsets.UTF_8));
+		return toHex(digest.digest());
+	}
+	
+	/**
+	 * @param file The file to digest
+	 * @return The hexadecimal SHA-1 digest of the content of the file
+	 * @throws IOException When the file cannot be read
+	 */
+	public static String sha1Hex(File file) throws IOException {
+		MessageDigest digest = sha1();
+		
+		byte[] buffer = new byte[64 * 1024];
+		try (InputStream in = new FileInputStream(file)) {
+			for (int read; (read = in.read(buffer)) >= 0;) {
+				digest.update(buffer, 0, read);
+			}
+		}
+		
+		return toHex(digest.digest());
+	}
+	
+	/**
+	 * @param bytes The bytes
+	 * @return The bytes as a lower case hexadecimal string
+	 */
+	public static String toHex(byte[] bytes) {
+		StringBuilder sb = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes) {
+			sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		}
+		return sb.toString();
+	}
+}
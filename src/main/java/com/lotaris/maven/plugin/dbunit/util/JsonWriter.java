@@ -0,0 +1,187 @@
+package com.lotaris.maven.plugin.dbunit.util;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Minimal streaming JSON writer for the reports of the plugin. The values are
+ * written as they come, the writer only keeps track of the separators and of
+ * the indentation.
+ *
+ * @author Laurent Prévost <laurent.prevost@lotaris.com>
+ */
+public class JsonWriter implements AutoCloseable {
+	private final Writer out;
+
+	/**
+	 * True for each open object or array that already has an element
+	 */
+	private final Deque<Boolean> levels = new ArrayDeque<>();
+
+	/**
+	 * True when a name was written and its value is expected
+	 */
+	private boolean named = false;
+
+	//<editor-fold defaultstate="collapsed" desc="Constructors">
+	/**
+	 * Constructor
+	 *
+	 * @param out The writer to write to
+	 */
+	public JsonWriter(Writer out) {
+		this.out = out;
+	}
+	//</editor-fold>
+
+	public JsonWriter beginObject() throws IOException {
+		return open('{');
+	}
+
+	public JsonWriter endObject() throws IOException {
+		return close('}');
+	}
+
+	public JsonWriter beginArray() throws IOException {
+		return open('[');
+	}
+
+	public JsonWriter endArray() throws IOException {
+		return close(']');
+	}
+
+	/**
+	 * Write the name of the next value of an object
+	 *
+	 * @param name The name
+	 * @return This writer
+	 * @throws IOException When the name cannot be written
+	 */
+	public JsonWriter name(String name) throws IOException {
+		separate();
+		string(name);
+		out.write(": ");
+		named = true;
+		return this;
+	}
+
+	/**
+	 * Write a value, numbers and booleans as is, null as null and anything else as a string
+	 *
+	 * @param value The value
+	 * @return This writer
+	 * @throws IOException When the value cannot be written
+	 */
+	public JsonWriter value(Object value) throws IOException {
+		separate();
+
+		if (value == null) {
+			out.write("null");
+		}
+		else if (value instanceof Number || value instanceof Boolean) {
+			out.write(value.toString());
+		}
+		else {
+			string(value.toString());
+		}
+
+		return this;
+	}
+
+	/**
+	 * Write a named value
+	 *
+	 * @param name The name
+	 * @param value The value
+	 * @return This writer
+	 * @throws IOException When the value cannot be written
+	 */
+	public JsonWriter property(String name, Object value) throws IOException {
+		return name(name).value(value);
+	}
+
+	@Override
+	public void close() throws IOException {
+		out.close();
+	}
+
+	private JsonWriter open(char c) throws IOException {
+		separate();
+		out.write(c);
+		levels.push(false);
+		return this;
+	}
+
+	private JsonWriter close(char c) throws IOException {
+		if (levels.pop()) {
+			newLine();
+		}
+		out.write(c);
+
+		if (levels.isEmpty()) {
+			out.write('\n');
+		}
+		return this;
+	}
+
+	/**
+	 * Write the separator before an element, nothing for the value of a name
+	 */
+	private void separate() throws IOException {
+		if (named) {
+			named = false;
+			return;
+		}
+
+		if (!levels.isEmpty()) {
+			if (levels.pop()) {
+				out.write(',');
+			}
+			levels.push(true);
+			newLine();
+		}
+	}
+
+	private void newLine() throws IOException {
+		out.write('\n');
+		for (int i = 0; i < levels.size(); i++) {
+			out.write('\t');
+		}
+	}
+
+	private void string(String value) throws IOException {
+		out.write('"');
+
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+				case '"':
+					out.write("\\\"");
+					break;
+				case '\\':
+					out.write("\\\\");
+					break;
+				case '\n':
+					out.write("\\n");
+					break;
+				case '\r':
+					out.write("\\r");
+					break;
+				case '\t':
+					out.write("\\t");
+					break;
+				default:
+					if (c < 0x20) {
+						out.write(String.format("\\u%04x", (int) c));
+					}
+					else {
+						out.write(c);
+					}
+			}
+		}
+
+		out.write('"');
+	}
+}
@@ -0,0 +1,214 @@
+package com.lotaris.maven.plugin.dbunit.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Instrumentation of a goal execution: the measures of each table and the time
+ * of the phases that are not related to a table, like the schema metadata. The
+ * report is written as JSON for the tools and summarized in the build log with
+ * the slowest tables first.
+ *
+ * @author Laurent Prévost <laurent.prevost@lotaris.com>
+ */
+public class RunReport {
+	private final String goal;
+
+	private final String execution;
+
+	private final long start = System.nanoTime();
+
+	private final Map<String, TableStats> tables = new LinkedHashMap<>();
+
+	/**
+	 * Time of the phases of the run in ns
+	 */
+	private final Map<String, Long> phases = new LinkedHashMap<>();
+
+	//<editor-fold defaultstate="collapsed" desc="Constructors">
+	/**
+	 * Constructor
+	 *
+	 * @param goal The goal instrumented
+	 * @param execution The id of the execution of the goal
+	 */
+	public RunReport(String goal, String execution) {
+		this.goal = goal;
+		this.execution = execution;
+	}
+	//</editor-fold>
+
+	//<editor-fold defaultstate="collapsed" desc="Getters & Setters">
+	public String getGoal() {
+		return goal;
+	}
+
+	public String getExecution() {
+		return execution;
+	}
+	//</editor-fold>
+
+	/**
+	 * Get the measures of a table, created the first time a table is measured
+	 *
+	 * @param tableName The table name, as produced in the data set
+	 * @return The measures of the table
+	 */
+	public synchronized TableStats table(String tableName) {
+		TableStats stats = tables.get(tableName);
+		if (stats == null) {
+			stats = new TableStats(tableName);
+			tables.put(tableName, stats);
+		}
+		return stats;
+	}
+
+	/**
+	 * @param phase The phase of the run
+	 * @param nanos The time spent in ns
+	 */
+	public synchronized void addTime(String phase, long nanos) {
+		Long time = phases.get(phase);
+		phases.put(phase, time == null ? nanos : time + nanos);
+	}
+
+	/**
+	 * @return The measures of the tables, in the order they were first measured
+	 */
+	public synchronized List<TableStats> getTables() {
+		return new ArrayList<>(tables.values());
+	}
+
+	/**
+	 * Write the report, creating its directory if necessary
+	 *
+	 * @param file The report file
+	 * @throws IOException When the report cannot be written
+	 */
+	public void write(File file) throws IOException {
+		if (file.getParentFile() != null && !file.getParentFile().isDirectory() && !file.getParentFile().mkdirs()) {
+			throw new IOException("Unable to create the directory of " + file);
+		}
+
+		List<TableStats> measured = getTables();
+
+		long rows = 0;
+		long bytes = 0;
+		long roundTrips = 0;
+		for (TableStats stats : measured) {
+			rows += stats.getRows();
+			bytes += stats.getBytes();
+			roundTrips += stats.getRoundTrips();
+		}
+
+		try (JsonWriter json = new JsonWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+			json.beginObject()
+				.property("goal", goal)
+				.property("execution", execution)
+				.property("time", millis(System.nanoTime() - start))
+				.property("tables", measured.size())
+				.property("rows", rows)
+				.property("bytes", bytes)
+				.property("roundTrips", roundTrips);
+
+			json.name("phases");
+			writePhases(json, copyPhases());
+
+			json.name("results").beginArray();
+			for (TableStats stats : measured) {
+				json.beginObject()
+					.property("table", stats.getTableName())
+					.property("rows", stats.getRows())
+					.property("bytes", stats.getBytes())
+					.property("roundTrips", stats.getRoundTrips())
+					.property("time", millis(stats.getTime()))
+					.property("rowsPerSecond", stats.getRowsPerSecond());
+
+				json.name("phases");
+				writePhases(json, stats.getPhases());
+
+				json.endObject();
+			}
+			json.endArray();
+
+			json.endObject();
+		}
+	}
+
+	/**
+	 * Summarize the report for the build log, the slowest tables first
+	 *
+	 * @param maxTables The maximum number of tables listed, 0 for all
+	 * @return The lines of the summary
+	 */
+	public List<String> summarize(int maxTables) {
+		List<TableStats> measured = getTables();
+		Collections.sort(measured, new Comparator<TableStats>() {
+			@Override
+			public int compare(TableStats s1, TableStats s2) {
+				return Long.compare(s2.getTime(), s1.getTime());
+			}
+		});
+
+		List<String> lines = new ArrayList<>();
+		lines.add(String.format("%-30s %12s %14s %10s %10s %12s  %s", "Table", "Rows", "Bytes", "Trips", "Rows/s", "Time (ms)", "Phases (ms)"));
+
+		int listed = maxTables > 0 ? Math.min(maxTables, measured.size()) : measured.size();
+		for (TableStats stats : measured.subList(0, listed)) {
+			lines.add(String.format("%-30s %12d %14d %10d %10d %12s  %s", stats.getTableName(), stats.getRows(), stats.getBytes(), stats.getRoundTrips(),
+				stats.getRowsPerSecond(), millis(stats.getTime()), describePhases(stats.getPhases())));
+		}
+
+		if (listed < measured.size()) {
+			lines.add("... and " + (measured.size() - listed) + " more tables in the JSON report");
+		}
+
+		Map<String, Long> runPhases = copyPhases();
+		if (!runPhases.isEmpty()) {
+			lines.add("Run phases (ms): " + describePhases(runPhases));
+		}
+
+		lines.add(goal + " instrumented in " + millis(System.nanoTime() - start) + " ms");
+
+		return lines;
+	}
+
+	private synchronized Map<String, Long> copyPhases() {
+		return new LinkedHashMap<>(phases);
+	}
+
+	private static void writePhases(JsonWriter json, Map<String, Long> phases) throws IOException {
+		json.beginObject();
+		for (Map.Entry<String, Long> phase : phases.entrySet()) {
+			json.property(phase.getKey(), millis(phase.getValue()));
+		}
+		json.endObject();
+	}
+
+	private static String describePhases(Map<String, Long> phases) {
+		StringBuilder description = new StringBuilder();
+		for (Map.Entry<String, Long> phase : phases.entrySet()) {
+			description.append(description.length() > 0 ? ", " : "").append(phase.getKey()).append(" ").append(millis(phase.getValue()));
+		}
+		return description.toString();
+	}
+
+	/**
+	 * @param nanos A time in ns
+	 * @return The time in ms with a precision of a µs
+	 */
+	private static BigDecimal millis(long nanos) {
+		return BigDecimal.valueOf(nanos, 6).setScale(3, RoundingMode.HALF_UP);
+	}
+}
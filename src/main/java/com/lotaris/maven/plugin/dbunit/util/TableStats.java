@@ -0,0 +1,105 @@
+package com.lotaris.maven.plugin.dbunit.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Measures of a table in a run: the time spent in each phase, the rows, the bytes
+ * and the JDBC round trips. The measures are added once per table or per batch,
+ * never per row, so a table can be measured from several threads.
+ *
+ * @author Laurent Prévost <laurent.prevost@lotaris.com>
+ */
+public class TableStats {
+	private final String tableName;
+
+	/**
+	 * Time of each phase in ns, in the order the phases were first measured
+	 */
+	private final Map<String, Long> phases = new LinkedHashMap<>();
+
+	private long rows;
+
+	private long bytes;
+
+	private long roundTrips;
+
+	//<editor-fold defaultstate="collapsed" desc="Constructors">
+	/**
+	 * Constructor
+	 *
+	 * @param tableName The table name
+	 */
+	public TableStats(String tableName) {
+		this.tableName = tableName;
+	}
+	//</editor-fold>
+
+	//<editor-fold defaultstate="collapsed" desc="Getters & Setters">
+	public String getTableName() {
+		return tableName;
+	}
+
+	/**
+	 * @return A copy of the time of each phase in ns
+	 */
+	public synchronized Map<String, Long> getPhases() {
+		return new LinkedHashMap<>(phases);
+	}
+
+	public synchronized long getRows() {
+		return rows;
+	}
+
+	/**
+	 * @return The bytes written or read, 0 when they are not measured
+	 */
+	public synchronized long getBytes() {
+		return bytes;
+	}
+
+	public synchronized long getRoundTrips() {
+		return roundTrips;
+	}
+	//</editor-fold>
+
+	/**
+	 * @param phase The phase
+	 * @param nanos The time spent in ns
+	 */
+	public synchronized void addTime(String phase, long nanos) {
+		Long time = phases.get(phase);
+		phases.put(phase, time == null ? nanos : time + nanos);
+	}
+
+	public synchronized void addRows(long rows) {
+		this.rows += rows;
+	}
+
+	public synchronized void addBytes(long bytes) {
+		this.bytes += bytes;
+	}
+
+	public synchronized void addRoundTrips(long roundTrips) {
+		this.roundTrips += roundTrips;
+	}
+
+	/**
+	 * @return The time of all the phases in ns
+	 */
+	public synchronized long getTime() {
+		long time = 0;
+		for (long nanos : phases.values()) {
+			time += nanos;
+		}
+		return time;
+	}
+
+	/**
+	 * @return The rows per second over the time of all the phases, 0 when nothing was measured
+	 */
+	public synchronized long getRowsPerSecond() {
+		long time = getTime();
+		return time > 0 ? rows * 1000000000L / time : 0;
+	}
+}